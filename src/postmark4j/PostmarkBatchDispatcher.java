@@ -0,0 +1,251 @@
+package postmark4j;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.data.PostmarkError;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Coalesces individually sent messages into batch requests.
+ *
+ * Messages passed to {@link #send(postmark4j.data.PostmarkMessage)} are queued, and a background thread sends
+ * them through {@link PostmarkClient#sendAsync(postmark4j.data.PostmarkMessage...)} as a single batch request
+ * once either {@code maxBatchSize} messages are waiting, or the oldest waiting message has waited
+ * {@code lingerMillis}. Each caller gets a future for its own {@link PostmarkResponse}.
+ *
+ * This trades a little latency (at most {@code lingerMillis}) for far fewer requests when many threads send
+ * single messages at the same time. If a batch request fails, every future in that batch completes exceptionally
+ * with the same exception. A message that Postmark rejects on its own completes exceptionally with an
+ * {@link UnprocessableEntityPostmarkException} carrying its error, whether or not it was sent with others.
+ *
+ * The dispatcher doesn't own the client: closing the dispatcher sends any queued messages, but leaves the client
+ * open.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class PostmarkBatchDispatcher implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PostmarkBatchDispatcher.class);
+
+	public static final int DEFAULT_MAX_BATCH_SIZE = PostmarkClient.MAX_BATCH_SIZE;
+	public static final long DEFAULT_LINGER_MILLIS = 50;
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+	private final PostmarkClient client;
+	private final int maxBatchSize;
+	private final long lingerNanos;
+	private final BlockingQueue<Pending> queue;
+	private final Thread flusher;
+	private volatile boolean closed;
+
+	private final AtomicLong messageCount = new AtomicLong();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	public PostmarkBatchDispatcher(PostmarkClient client) {
+		this(client, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MILLIS);
+	}
+
+	public PostmarkBatchDispatcher(PostmarkClient client, int maxBatchSize, long lingerMillis) {
+		this(client, maxBatchSize, lingerMillis, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param client The client used to send batches.
+	 * @param maxBatchSize Send a batch as soon as this many messages are waiting. At most {@link PostmarkClient#MAX_BATCH_SIZE}.
+	 * @param lingerMillis The longest a message waits for others to join its batch.
+	 * @param queueCapacity The maximum number of messages waiting to be sent. When full, {@link #send(postmark4j.data.PostmarkMessage)}
+	 * fails with a {@link RejectedExecutionException}.
+	 */
+	public PostmarkBatchDispatcher(PostmarkClient client, int maxBatchSize, long lingerMillis, int queueCapacity) {
+		if(client == null) {
+			throw new IllegalArgumentException("A client is required.");
+		}
+		if(maxBatchSize < 1 || maxBatchSize > PostmarkClient.MAX_BATCH_SIZE) {
+			throw new IllegalArgumentException("Batch size must be between 1 and " + PostmarkClient.MAX_BATCH_SIZE + ".");
+		}
+		if(lingerMillis < 0) {
+			throw new IllegalArgumentException("Linger time can't be negative.");
+		}
+
+		this.client = client;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+		this.queue = new LinkedBlockingQueue<Pending>(queueCapacity);
+
+		this.flusher = new Thread(new Runnable() {
+			public void run() {
+				flushLoop();
+			}
+		}, "postmark4j-batch-dispatcher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * Queue a message to be sent in the next batch.
+	 *
+	 * @param message The message to send.
+	 * @return A future for the response from Postmark for this message.
+	 */
+	public CompletableFuture<PostmarkResponse> send(PostmarkMessage message) {
+		if(message == null) {
+			throw new IllegalArgumentException("A message is required.");
+		}
+
+		Pending pending = new Pending(message);
+		if(closed) {
+			pending.future.completeExceptionally(new IllegalStateException("PostmarkBatchDispatcher has been closed."));
+		} else if(!queue.offer(pending)) {
+			pending.future.completeExceptionally(new RejectedExecutionException("Too many messages waiting to be sent."));
+		} else if(closed && queue.remove(pending)) {
+			// closed after the check above, and possibly after close() drained the queue
+			pending.future.completeExceptionally(new IllegalStateException("PostmarkBatchDispatcher has been closed."));
+		}
+		return pending.future;
+	}
+
+	/**
+	 * @return The number of messages sent so far.
+	 */
+	public long getMessageCount() {
+		return messageCount.get();
+	}
+
+	/**
+	 * @return The number of requests made to Postmark so far.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return The number of messages waiting to be sent.
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops accepting messages and sends any that are already queued without waiting for the linger time. Blocks
+	 * until all queued messages have been handed to the client. Doesn't close the client.
+	 */
+	public void close() {
+		closed = true;
+		flusher.interrupt();
+		try {
+			flusher.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// anything queued after the flusher saw an empty queue and stopped
+		List<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+		while(queue.drainTo(batch, maxBatchSize) > 0) {
+			dispatch(batch);
+			batch = new ArrayList<Pending>(maxBatchSize);
+		}
+	}
+
+	private void flushLoop() {
+		List<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+		while(!closed || !queue.isEmpty()) {
+			try {
+				Pending first = closed ? queue.poll() : queue.take();
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+
+				long deadline = System.nanoTime() + lingerNanos;
+				while(batch.size() < maxBatchSize) {
+					queue.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if(closed || remaining <= 0 || batch.size() >= maxBatchSize) {
+						break;
+					}
+					Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if(next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch(InterruptedException e) {
+				// woken up by close(), send whatever we have and drain the rest
+				if(!closed) {
+					continue;
+				}
+			}
+
+			if(!batch.isEmpty()) {
+				dispatch(batch);
+				batch = new ArrayList<Pending>(maxBatchSize);
+			}
+		}
+	}
+
+	private void dispatch(final List<Pending> batch) {
+		messageCount.addAndGet(batch.size());
+		requestCount.incrementAndGet();
+
+		if(batch.size() == 1) {
+			final Pending pending = batch.get(0);
+			client.sendAsync(pending.message).whenComplete(new BiConsumer<PostmarkResponse, Throwable>() {
+				public void accept(PostmarkResponse response, Throwable error) {
+					if(error != null) {
+						pending.future.completeExceptionally(error);
+					} else {
+						pending.future.complete(response);
+					}
+				}
+			});
+			return;
+		}
+
+		PostmarkMessage[] messages = new PostmarkMessage[batch.size()];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = batch.get(i).message;
+		}
+
+		LOGGER.debug("Dispatching batch of {} messages", messages.length);
+
+		client.sendAsync(messages).whenComplete(new BiConsumer<PostmarkResponse[], Throwable>() {
+			public void accept(PostmarkResponse[] responses, Throwable error) {
+				if(error == null && (responses == null || responses.length != batch.size())) {
+					error = new IOException("Expected " + batch.size() + " responses from Postmark, but got " + (responses == null ? 0 : responses.length) + ".");
+				}
+				for(int i = 0; i < batch.size(); i++) {
+					if(error != null) {
+						batch.get(i).future.completeExceptionally(error);
+					} else if(!responses[i].isSuccess()) {
+						// the same exception a batch of one gets
+						batch.get(i).future.completeExceptionally(new UnprocessableEntityPostmarkException(new PostmarkError(responses[i].getErrorCode(), responses[i].getMessage())));
+					} else {
+						batch.get(i).future.complete(responses[i]);
+					}
+				}
+			}
+		});
+	}
+
+	private static class Pending {
+		private final PostmarkMessage message;
+		private final CompletableFuture<PostmarkResponse> future = new CompletableFuture<PostmarkResponse>();
+
+		private Pending(PostmarkMessage message) {
+			this.message = message;
+		}
+	}
+}
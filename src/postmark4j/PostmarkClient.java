@@ -2,30 +2,72 @@ package postmark4j;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.EntityUtils;
+import com.google.gson.stream.JsonReader;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import postmark4j.data.BatchResult;
+import postmark4j.data.FanOutMessage;
+import postmark4j.data.FanOutResult;
+import postmark4j.data.FrozenMessage;
 import postmark4j.data.PostmarkAddress;
 import postmark4j.data.PostmarkError;
 import postmark4j.data.PostmarkMessage;
 import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.CircuitOpenPostmarkException;
 import postmark4j.exceptions.InternalServerErrorPostmarkException;
 import postmark4j.exceptions.UnauthorizedPostmarkException;
 import postmark4j.exceptions.UnknownPostmarkException;
 import postmark4j.exceptions.UnprocessableEntityPostmarkException;
 import postmark4j.jsonio.ISODateDeserializer;
+import postmark4j.jsonio.JsonOutput;
 import postmark4j.jsonio.PostmarkAddressListSerializer;
 import postmark4j.jsonio.PostmarkAddressSerializer;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.metrics.MetricsListener;
+import postmark4j.metrics.RequestTiming;
+import postmark4j.metrics.Tracer;
+import postmark4j.resilience.CircuitBreaker;
+import postmark4j.resilience.RateLimiter;
+import postmark4j.resilience.RetryBudget;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.transport.JsonBody;
+import postmark4j.transport.Transport;
+import postmark4j.transport.TransportRequest;
+import postmark4j.transport.TransportResponse;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The main class for sending messages.
@@ -43,10 +85,23 @@ import java.util.Properties;
  * By default, HTTPS will be used, though this can be overriden by passing {@code false} to an appropriate
  * constructor for the {@code https} parameter.
  *
+ * Each client owns a pool of keep-alive connections (see {@link PostmarkClientConfig}), so a single instance
+ * should be created and shared by all threads in the application. It is thread safe. Call {@link #close()} when
+ * the client is no longer needed to release its connections. How requests are sent is up to its
+ * {@link Transport}: pooled HTTP/1.1 connections by default, or HTTP/2 with
+ * {@link postmark4j.transport.JavaHttpTransport}.
+ *
+ * Messages can also be sent without blocking the calling thread using {@link #sendAsync(postmark4j.data.PostmarkMessage)},
+ * which runs sends on a bounded executor, or on virtual threads (see {@link PostmarkClientConfig#setVirtualThreads(boolean)}),
+ * and returns a {@link CompletableFuture}.
+ *
+ * Sends that fail because Postmark is temporarily unavailable are retried with backoff, within a retry budget
+ * shared by all sends through the client. See {@link RetryPolicy}.
+ *
  * @author Erik Beeson
  */
 @SuppressWarnings({"NullableProblems", "UnusedDeclaration"})
-public class PostmarkClient {
+public class PostmarkClient implements Closeable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PostmarkClient.class);
 
 	/**
@@ -58,11 +113,28 @@ public class PostmarkClient {
 	 */
 	public static final String TEST_SERVER_TOKEN = "POSTMARK_API_TEST";
 
+	/**
+	 * The maximum number of messages Postmark accepts in a single batch request.
+	 *
+	 * @see <a href="http://developer.postmarkapp.com/developer-build.html#batching-messages">http://developer.postmarkapp.com/developer-build.html#batching-messages</a>
+	 */
+	public static final int MAX_BATCH_SIZE = 500;
+
+	/**
+	 * The largest batch request Postmark accepts, in bytes, including attachments.
+	 */
+	public static final long MAX_BATCH_BYTES = 50L * 1024 * 1024;
+
+	/**
+	 * The largest message Postmark accepts, in bytes, including attachments.
+	 */
+	public static final long MAX_MESSAGE_BYTES = 10L * 1024 * 1024;
+
 	private static final String URL_BASE_HTTP = "http://api.postmarkapp.com";
 	private static final String URL_BASE_HTTPS = "https://api.postmarkapp.com";
 
-	private static final String URL_SEND = "/email";
-	private static final String URL_BATCH = "/email/batch";
+	public static final String URL_SEND = "/email";
+	public static final String URL_BATCH = "/email/batch";
 	private static final String URL_BOUNCE_TAGS = "/bounces/tags";
 
 	private final Gson gson = new GsonBuilder()
@@ -73,18 +145,38 @@ public class PostmarkClient {
 
 	private final String serverToken;
 	private final PostmarkAddress defaultFrom;
-	private final boolean https;
+	private final String baseURL;
+	private final PostmarkClientConfig config;
+	private final RetryPolicy retryPolicy;
+	private final RetryBudget retryBudget;
+	private final RateLimiter rateLimiter;
+	private final CircuitBreaker circuitBreaker;
+	private final MetricsListener metrics;
+	private final Tracer tracer;
+	private final long slowRequestNanos;
+
+	private final Transport transport;
+	private volatile boolean closed;
+
+	private final ReentrantLock asyncExecutorLock = new ReentrantLock();
+	private ExecutorService asyncExecutor;
+	private ExecutorService batchExecutor;
 
 	private static final String version;
 
 	static {
-		String v;
-		try {
-			Properties properties = new Properties();
-			properties.load(PostmarkClient.class.getResourceAsStream("version.properties"));
-			v = properties.getProperty("version", "X");
-		} catch(IOException ignored) {
-			v = "X";
+		String v = "X";
+		InputStream in = PostmarkClient.class.getResourceAsStream("/version.properties");
+		if(in != null) {
+			try {
+				Properties properties = new Properties();
+				properties.load(in);
+				v = properties.getProperty("version", "X");
+			} catch(IOException ignored) {
+				// use default
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
 		}
 		version = v;
 	}
@@ -102,19 +194,100 @@ public class PostmarkClient {
 	}
 
 	public PostmarkClient(String serverToken, PostmarkAddress defaultFrom, boolean https) {
+		this(serverToken, defaultFrom, https, new PostmarkClientConfig());
+	}
+
+	public PostmarkClient(String serverToken, PostmarkAddress defaultFrom, boolean https, PostmarkClientConfig config) {
+		if(config == null) {
+			throw new IllegalArgumentException("A config is required.");
+		}
+
 		this.serverToken = serverToken != null && serverToken.trim().length() > 0 ? serverToken.trim() : TEST_SERVER_TOKEN;
 		this.defaultFrom = defaultFrom;
-		this.https = https;
+		this.config = config;
+		this.retryPolicy = config.getRetryPolicy();
+		this.retryBudget = retryPolicy.createRetryBudget();
+		this.rateLimiter = config.getRateLimitPolicy() != null ? new RateLimiter(config.getRateLimitPolicy()) : null;
+		this.circuitBreaker = config.getCircuitBreakerPolicy() != null ? new CircuitBreaker(config.getCircuitBreakerPolicy()) : null;
+		this.metrics = config.getMetricsListener();
+		this.tracer = config.getTracer();
+		this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowRequestMillis());
+		if(config.getBaseURL() != null) {
+			this.baseURL = config.getBaseURL().endsWith("/") ? config.getBaseURL().substring(0, config.getBaseURL().length() - 1) : config.getBaseURL();
+		} else {
+			this.baseURL = https ? URL_BASE_HTTPS : URL_BASE_HTTP;
+		}
+
+		this.transport = config.getTransportFactory().createTransport(config);
 
 		if(LOGGER.isInfoEnabled()) {
-			LOGGER.info("Created PostmarkClient [{}], Server Token: {}", (this.https ? "https" : "http"),
+			LOGGER.info("Created PostmarkClient [{}], Server Token: {}", this.baseURL,
 					TEST_SERVER_TOKEN.equals(this.serverToken) ? TEST_SERVER_TOKEN : this.serverToken.replaceAll("[a-zA-Z0-9]", "X")
 			);
+			LOGGER.debug("Connection config: {}", config);
 		}
 	}
 
+	/**
+	 * @return The {@link Transport} used to make requests, created by {@link PostmarkClientConfig#getTransportFactory()}.
+	 * @throws IllegalStateException If this client has been closed.
+	 */
+	protected Transport getTransport() {
+		if(closed) {
+			throw new IllegalStateException("PostmarkClient has been closed.");
+		}
+		return transport;
+	}
+
+	/**
+	 * @return The address used for messages without a "from" address, or {@code null}.
+	 */
+	public PostmarkAddress getDefaultFrom() {
+		return defaultFrom;
+	}
+
+	public PostmarkClientConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return The rate limiter in front of requests, or {@code null} if there's no {@link PostmarkClientConfig#getRateLimitPolicy()}.
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * @return The circuit breaker, for adding listeners, or {@code null} if there's no {@link PostmarkClientConfig#getCircuitBreakerPolicy()}.
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes the transport's connections and stops its background threads. Requests that are in progress
+	 * may fail. Once closed, a client can't be used to send any more messages. Calling this more than once has
+	 * no effect.
+	 */
+	public void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		shutdownAsyncExecutor();
+		transport.close();
+		LOGGER.debug("Closed PostmarkClient");
+	}
+
+	/**
+	 * @return The Postmark API, or the base URL from {@link PostmarkClientConfig#setBaseURL(String)}.
+	 */
 	protected String getBaseURL() {
-		return https ? URL_BASE_HTTPS : URL_BASE_HTTP;
+		return baseURL;
 	}
 
 	/**
@@ -127,44 +300,496 @@ public class PostmarkClient {
 	 * @throws postmark4j.exceptions.UnauthorizedPostmarkException Missing or incorrect API Key header.
 	 * @throws postmark4j.exceptions.UnknownPostmarkException Postmark returned an HTTP Status that wasn't documented.
 	 * @throws postmark4j.exceptions.UnprocessableEntityPostmarkException Something with the message is not quite right. See: {@link UnprocessableEntityPostmarkException}.
+	 * @throws postmark4j.exceptions.CircuitOpenPostmarkException Too many recent requests failed, so this one wasn't sent. See: {@link CircuitOpenPostmarkException}.
 	 */
-	public PostmarkResponse send(PostmarkMessage message) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException {
+	public PostmarkResponse send(PostmarkMessage message) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
 		return send(URL_SEND, new PostmarkMessage[]{message}, PostmarkResponse.class);
 	}
 
 	/**
-	 * Send messages.
+	 * Send messages. A batch too big for one request is split, and the parts are sent at once (see
+	 * {@link #sendBatch(postmark4j.data.PostmarkMessage...)}).
+	 *
+	 * @param messages The messages to send.
+	 * @return The responses from Postmark, in the same order as the messages.
+	 * @throws IOException If there's a problem communicating with the Postmark server.
+	 * @throws postmark4j.exceptions.InternalServerErrorPostmarkException Error at Postmark servers. See: {@link InternalServerErrorPostmarkException}.
+	 * @throws postmark4j.exceptions.UnauthorizedPostmarkException Missing or incorrect API Key header.
+	 * @throws postmark4j.exceptions.UnknownPostmarkException Postmark returned an HTTP Status that wasn't documented.
+	 * @throws postmark4j.exceptions.UnprocessableEntityPostmarkException Something with the message is not quite right. See: {@link UnprocessableEntityPostmarkException}.
+	 * @throws postmark4j.exceptions.CircuitOpenPostmarkException Too many recent requests failed, so this one wasn't sent. See: {@link CircuitOpenPostmarkException}.
+	 */
+	public PostmarkResponse[] send(PostmarkMessage... messages) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		int[][] parts = splitBatch(messages, MAX_BATCH_SIZE, MAX_BATCH_BYTES);
+		if(parts == null) {
+			return send(URL_BATCH, messages, PostmarkResponse[].class);
+		}
+		return sendParts(messages, parts, null);
+	}
+
+	/**
+	 * Send messages in a batch, pairing each message with its result. Messages that fail individually with a
+	 * retryable error code are sent again on their own, unless {@link RetryPolicy#setResubmitFailedMessages(boolean)}
+	 * is turned off; the rest of the batch isn't resent.
+	 *
+	 * A batch with more than {@link #MAX_BATCH_SIZE} messages, or more than {@link #MAX_BATCH_BYTES} of JSON, is
+	 * split into as few requests as will hold it, which are sent at once, up to
+	 * {@link PostmarkClientConfig#getBatchParallelism()} at a time. The results are put back in the order of the
+	 * messages. If a request fails, after retries, the parts that hadn't started aren't sent, and the failure is
+	 * thrown once the rest finish; messages in parts that were already sent have been delivered.
+	 *
+	 * @param messages The messages to send.
+	 * @return Each message and Postmark's final response to it.
+	 * @throws IOException If there's a problem communicating with the Postmark server.
+	 * @throws postmark4j.exceptions.InternalServerErrorPostmarkException Error at Postmark servers. See: {@link InternalServerErrorPostmarkException}.
+	 * @throws postmark4j.exceptions.UnauthorizedPostmarkException Missing or incorrect API Key header.
+	 * @throws postmark4j.exceptions.UnknownPostmarkException Postmark returned an HTTP Status that wasn't documented.
+	 * @throws postmark4j.exceptions.UnprocessableEntityPostmarkException Something with the message is not quite right. See: {@link UnprocessableEntityPostmarkException}.
+	 * @throws postmark4j.exceptions.CircuitOpenPostmarkException Too many recent requests failed, so this one wasn't sent. See: {@link CircuitOpenPostmarkException}.
+	 */
+	public BatchResult sendBatch(PostmarkMessage... messages) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		int[] attempts = new int[messages.length];
+		int[][] parts = splitBatch(messages, MAX_BATCH_SIZE, MAX_BATCH_BYTES);
+		PostmarkResponse[] responses = parts == null ? send(URL_BATCH, messages, PostmarkResponse[].class, attempts) : sendParts(messages, parts, attempts);
+		if(responses == null || responses.length != messages.length) {
+			throw new IOException("Postmark returned " + (responses == null ? 0 : responses.length) + " results for " + messages.length + " messages.");
+		}
+		return new BatchResult(messages, responses, attempts);
+	}
+
+	/**
+	 * Send a message to any number of recipients, as copies within Postmark's limit of 20 addresses each (see
+	 * {@link FanOutMessage}), sent in batches with {@link #sendBatch(postmark4j.data.PostmarkMessage...)}.
+	 *
+	 * @param message The message and its recipients.
+	 * @return Each recipient and Postmark's final response to their copy.
+	 * @throws IOException If attachment content can't be read, or there's a problem communicating with the Postmark server.
+	 * @throws postmark4j.exceptions.InternalServerErrorPostmarkException Error at Postmark servers. See: {@link InternalServerErrorPostmarkException}.
+	 * @throws postmark4j.exceptions.UnauthorizedPostmarkException Missing or incorrect API Key header.
+	 * @throws postmark4j.exceptions.UnknownPostmarkException Postmark returned an HTTP Status that wasn't documented.
+	 * @throws postmark4j.exceptions.UnprocessableEntityPostmarkException Something with the message is not quite right. See: {@link UnprocessableEntityPostmarkException}.
+	 * @throws postmark4j.exceptions.CircuitOpenPostmarkException Too many recent requests failed, so this one wasn't sent. See: {@link CircuitOpenPostmarkException}.
+	 */
+	public FanOutResult sendFanOut(FanOutMessage message) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		List<PostmarkAddress> recipients = message.getRecipients();
+		int recipientsPerMessage = message.getRecipientsPerMessage();
+		PostmarkMessage[] copies = message.expand();
+		LOGGER.debug("Fanning out to {} recipients in {} messages", recipients.size(), copies.length);
+		return new FanOutResult(recipients, recipientsPerMessage, sendBatch(copies));
+	}
+
+	/**
+	 * Send a message asynchronously on this client's async executor (see {@link PostmarkClientConfig}).
+	 *
+	 * Failures are delivered as exceptional completions of the returned future with the same exceptions that
+	 * {@link #send(postmark4j.data.PostmarkMessage)} throws. If the executor's queue is full and the rejection
+	 * policy is {@link PostmarkClientConfig.RejectionPolicy#FAIL}, the future completes exceptionally with a
+	 * {@link RejectedExecutionException}.
+	 *
+	 * @param message The message to send.
+	 * @return A future for the response from Postmark.
+	 */
+	public CompletableFuture<PostmarkResponse> sendAsync(final PostmarkMessage message) {
+		return submitAsync(new Callable<PostmarkResponse>() {
+			public PostmarkResponse call() throws Exception {
+				return send(message);
+			}
+		});
+	}
+
+	/**
+	 * Send messages asynchronously on this client's async executor (see {@link PostmarkClientConfig}).
+	 *
+	 * @param messages The messages to send.
+	 * @return A future for the responses from Postmark.
+	 * @see #sendAsync(postmark4j.data.PostmarkMessage)
+	 */
+	public CompletableFuture<PostmarkResponse[]> sendAsync(final PostmarkMessage... messages) {
+		return submitAsync(new Callable<PostmarkResponse[]>() {
+			public PostmarkResponse[] call() throws Exception {
+				return send(messages);
+			}
+		});
+	}
+
+	/**
+	 * Send messages in a batch asynchronously on this client's async executor (see {@link PostmarkClientConfig}).
 	 *
 	 * @param messages The messages to send.
-	 * @return The responses from Postmark.
+	 * @return A future for each message paired with its result.
+	 * @see #sendBatch(postmark4j.data.PostmarkMessage...)
+	 */
+	public CompletableFuture<BatchResult> sendBatchAsync(final PostmarkMessage... messages) {
+		return submitAsync(new Callable<BatchResult>() {
+			public BatchResult call() throws Exception {
+				return sendBatch(messages);
+			}
+		});
+	}
+
+	protected <T> CompletableFuture<T> submitAsync(Callable<T> callable) {
+		AsyncSend<T> task = new AsyncSend<T>(callable);
+		try {
+			getAsyncExecutor().execute(task);
+		} catch(RejectedExecutionException e) {
+			task.future.completeExceptionally(e);
+		} catch(IllegalStateException e) {
+			task.future.completeExceptionally(e);
+		}
+		return task.future;
+	}
+
+	/**
+	 * @return The executor used for asynchronous sends, creating it on first use.
+	 * @throws IllegalStateException If this client has been closed.
+	 */
+	protected ExecutorService getAsyncExecutor() {
+		asyncExecutorLock.lock();
+		try {
+			if(closed) {
+				throw new IllegalStateException("PostmarkClient has been closed.");
+			}
+			if(asyncExecutor == null) {
+				asyncExecutor = config.getAsyncExecutor() != null ? config.getAsyncExecutor() : createAsyncExecutor(config);
+			}
+			return asyncExecutor;
+		} finally {
+			asyncExecutorLock.unlock();
+		}
+	}
+
+	/**
+	 * Creates the bounded executor used for asynchronous sends when one wasn't given in the config, or one that
+	 * starts a virtual thread per send if {@link PostmarkClientConfig#isVirtualThreads()}.
+	 *
+	 * @param config The execution settings.
+	 * @return A new executor, which will be shut down when this client is closed.
+	 */
+	protected ExecutorService createAsyncExecutor(PostmarkClientConfig config) {
+		if(config.isVirtualThreads()) {
+			return VirtualThreads.newThreadPerTaskExecutor("postmark4j-async-");
+		}
+
+		RejectedExecutionHandler rejectionHandler;
+		switch(config.getAsyncRejectionPolicy()) {
+			case CALLER_RUNS:
+				rejectionHandler = new CallerRunsRejectionHandler();
+				break;
+			case BLOCK:
+				rejectionHandler = new BlockingRejectionHandler();
+				break;
+			default:
+				rejectionHandler = new ThreadPoolExecutor.AbortPolicy();
+				break;
+		}
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getAsyncThreads(), config.getAsyncThreads(), 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(config.getAsyncQueueCapacity()), new AsyncThreadFactory("postmark4j-async-"), rejectionHandler);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private void shutdownAsyncExecutor() {
+		asyncExecutorLock.lock();
+		try {
+			if(batchExecutor != null) {
+				batchExecutor.shutdown();
+			}
+			if(asyncExecutor == null || asyncExecutor == config.getAsyncExecutor()) {
+				return;
+			}
+			for(Runnable pending : asyncExecutor.shutdownNow()) {
+				if(pending instanceof AsyncSend) {
+					((AsyncSend<?>) pending).future.completeExceptionally(new IllegalStateException("PostmarkClient has been closed."));
+				}
+			}
+		} finally {
+			asyncExecutorLock.unlock();
+		}
+	}
+
+	/**
+	 * Send messages in a batch, handing each result to {@code handler} as it's read from the response rather than
+	 * collecting them into an array. The response is parsed incrementally, so this uses very little memory
+	 * regardless of the size of the batch.
+	 *
+	 * Requests that fail are retried according to the {@link RetryPolicy}, unless the failure happens after results
+	 * have been handed to {@code handler}. Messages that fail individually are not retried, since their results
+	 * have already been handled.
+	 *
+	 * A batch with more than {@link #MAX_BATCH_SIZE} messages, or more than {@link #MAX_BATCH_BYTES} of JSON, is
+	 * split into as few requests as will hold it (see {@link #sendBatch(postmark4j.data.PostmarkMessage...)}),
+	 * which are sent one after another. Results are handed over in the order of the messages within each request,
+	 * with the index of each message in {@code messages}; when messages vary in size, a request may hold messages
+	 * from further along than the next one, so indexes aren't always increasing across requests. If a request
+	 * fails, the requests after it aren't sent.
+	 *
+	 * @param messages The messages to send.
+	 * @param handler Called once for each result, on the calling thread.
+	 * @return The number of results handled.
 	 * @throws IOException If there's a problem communicating with the Postmark server.
 	 * @throws postmark4j.exceptions.InternalServerErrorPostmarkException Error at Postmark servers. See: {@link InternalServerErrorPostmarkException}.
 	 * @throws postmark4j.exceptions.UnauthorizedPostmarkException Missing or incorrect API Key header.
 	 * @throws postmark4j.exceptions.UnknownPostmarkException Postmark returned an HTTP Status that wasn't documented.
 	 * @throws postmark4j.exceptions.UnprocessableEntityPostmarkException Something with the message is not quite right. See: {@link UnprocessableEntityPostmarkException}.
+	 * @throws postmark4j.exceptions.CircuitOpenPostmarkException Too many recent requests failed, so this one wasn't sent. See: {@link CircuitOpenPostmarkException}.
+	 */
+	public int sendBatch(PostmarkMessage[] messages, final PostmarkResponseHandler handler) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		if(handler == null) {
+			throw new IllegalArgumentException("A response handler is required.");
+		}
+		int[][] parts = splitBatch(messages, MAX_BATCH_SIZE, MAX_BATCH_BYTES);
+		if(parts == null) {
+			return sendBatch(messages, null, handler);
+		}
+		int handled = 0;
+		for(int[] indexes : parts) {
+			PostmarkMessage[] part = new PostmarkMessage[indexes.length];
+			for(int i = 0; i < part.length; i++) {
+				part[i] = messages[indexes[i]];
+			}
+			handled += sendBatch(part, indexes, handler);
+		}
+		return handled;
+	}
+
+	/**
+	 * Sends one request, with retries, handing its results to {@code handler} with the indexes the messages had in
+	 * the batch, or their own positions if {@code indexes} is {@code null}.
 	 */
-	public PostmarkResponse[] send(PostmarkMessage... messages) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException {
-		return send(URL_BATCH, messages, PostmarkResponse[].class);
+	private int sendBatch(PostmarkMessage[] messages, int[] indexes, PostmarkResponseHandler handler) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		retryBudget.recordRequest();
+		final int[] handled = new int[1];
+		for(int attempt = 1; ; attempt++) {
+			try {
+				return sendBatch(messages, indexes, handler, handled);
+			} catch(IOException e) {
+				if(handled[0] > 0 || !awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(UnprocessableEntityPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(InternalServerErrorPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(UnknownPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private int sendBatch(PostmarkMessage[] messages, final int[] indexes, final PostmarkResponseHandler handler, final int[] handled) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		return execute(getTransport(), URL_BATCH, messages, true, new ResponseReader<Integer>() {
+			public Integer read(InputStream content, String charset) throws IOException {
+				if(content == null) {
+					return 0;
+				}
+				JsonReader reader = new JsonReader(new InputStreamReader(content, charset));
+				try {
+					int index = 0;
+					reader.beginArray();
+					while(reader.hasNext()) {
+						PostmarkResponse response = PostmarkJson.RESPONSE.read(reader);
+						recordErrorCodes(URL_BATCH, response);
+						if(indexes != null && index == indexes.length) {
+							throw new IOException("Postmark returned more than " + indexes.length + " results for " + indexes.length + " messages.");
+						}
+						handler.handle(indexes != null ? indexes[index] : index, response);
+						index++;
+						handled[0] = index;
+					}
+					reader.endArray();
+					return index;
+				} finally {
+					reader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Splits a batch that's too big for one request into parts that aren't. Each message goes into the first part
+	 * with room for it, so there are as few parts as possible when message sizes vary, and messages keep their
+	 * order within a part.
+	 *
+	 * Messages are sized by a cheap upper bound on their JSON (see
+	 * {@link postmark4j.jsonio.PostmarkMessageAdapter#maxLength(PostmarkMessage, PostmarkAddress)}), so a batch
+	 * that's well within the limits is sent without any work. Only a message whose bound doesn't fit in a part is
+	 * sized exactly, which renders its templates and walks its JSON without reading attachments (see
+	 * {@link postmark4j.jsonio.PostmarkMessageAdapter#length(PostmarkMessage)}).
+	 *
+	 * @param messages The batch.
+	 * @param maxMessages The most messages in a part.
+	 * @param maxBytes The most JSON in a part, in bytes. A message bigger than this gets a part of its own.
+	 * @return The positions of the messages in each part, or {@code null} if the batch fits in one request.
+	 */
+	int[][] splitBatch(PostmarkMessage[] messages, int maxMessages, long maxBytes) {
+		if(messages.length <= 1) {
+			return null;
+		}
+		// the enclosing [], and a comma after every message, which is one more than needed
+		long[] lengths = new long[messages.length];
+		long total = 2;
+		for(int i = 0; i < messages.length && total <= maxBytes; i++) {
+			lengths[i] = PostmarkJson.MESSAGE.maxLength(messages[i], defaultFrom);
+			total = lengths[i] == Long.MAX_VALUE ? Long.MAX_VALUE : total + lengths[i] + 1;
+		}
+		if(messages.length <= maxMessages && total <= maxBytes) {
+			return null;
+		}
+
+		List<List<Integer>> parts = new ArrayList<List<Integer>>();
+		List<Long> partBytes = new ArrayList<Long>();
+		for(int i = 0; i < messages.length; i++) {
+			if(lengths[i] == 0) {
+				lengths[i] = PostmarkJson.MESSAGE.maxLength(messages[i], defaultFrom);
+			}
+			// the separating comma
+			long length = lengths[i] == Long.MAX_VALUE ? Long.MAX_VALUE : lengths[i] + 1;
+			boolean exact = false;
+			// the bound is tried first, then the exact length the first time the bound doesn't fit
+			int part = 0;
+			while(part < parts.size()) {
+				if(parts.get(part).size() < maxMessages) {
+					if(!exact && length > maxBytes - partBytes.get(part)) {
+						length = exactLength(messages[i]) + 1;
+						exact = true;
+					}
+					if(length <= maxBytes - partBytes.get(part)) {
+						break;
+					}
+				}
+				part++;
+			}
+			if(part == parts.size()) {
+				parts.add(new ArrayList<Integer>());
+				// the enclosing [], less the comma the first message doesn't need
+				partBytes.add(1L);
+			}
+			if(!exact && length > maxBytes - partBytes.get(part)) {
+				length = exactLength(messages[i]) + 1;
+			}
+			parts.get(part).add(i);
+			// a part's size is the sum of bounds and exact lengths, never less than its JSON
+			partBytes.set(part, partBytes.get(part) + length);
+		}
+		if(parts.size() == 1) {
+			return null;
+		}
+		int[][] indexes = new int[parts.size()][];
+		for(int part = 0; part < indexes.length; part++) {
+			List<Integer> positions = parts.get(part);
+			indexes[part] = new int[positions.size()];
+			for(int i = 0; i < indexes[part].length; i++) {
+				indexes[part][i] = positions.get(i);
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * @return The size of a message's JSON, as it will be sent.
+	 */
+	private long exactLength(PostmarkMessage message) {
+		if(message.getFrom() == null && defaultFrom != null) {
+			message = new PostmarkMessage(defaultFrom, message);
+		}
+		return PostmarkJson.MESSAGE.length(message);
+	}
+
+	/**
+	 * Sends the parts of a split batch, the calling thread and up to {@link PostmarkClientConfig#getBatchParallelism()}
+	 * - 1 others each taking the next part until there are none left. The calling thread never waits for a part
+	 * that hasn't started, so this can't deadlock however busy the other threads are.
+	 *
+	 * @param attempts Filled in with the attempts for each message, or {@code null}.
+	 * @return The responses, in the same order as the messages.
+	 */
+	private PostmarkResponse[] sendParts(PostmarkMessage[] messages, int[][] parts, int[] attempts) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		LOGGER.debug("Splitting batch of {} messages into {} requests", messages.length, parts.length);
+		SplitBatch split = new SplitBatch(messages, parts, attempts);
+		int helpers = Math.min(config.getBatchParallelism(), parts.length) - 1;
+		for(int i = 0; i < helpers; i++) {
+			try {
+				getBatchExecutor().execute(split);
+			} catch(RejectedExecutionException e) {
+				// the calling thread sends whatever's left
+				break;
+			}
+		}
+		split.run();
+		return split.getResponses();
+	}
+
+	/**
+	 * @return The executor that sends the parts of split batches, creating it on first use.
+	 * @throws IllegalStateException If this client has been closed.
+	 */
+	private ExecutorService getBatchExecutor() {
+		asyncExecutorLock.lock();
+		try {
+			if(closed) {
+				throw new IllegalStateException("PostmarkClient has been closed.");
+			}
+			if(batchExecutor == null) {
+				if(config.isVirtualThreads()) {
+					batchExecutor = VirtualThreads.newThreadPerTaskExecutor("postmark4j-batch-");
+				} else {
+					// idle threads are kept for a minute; the number busy is bounded by the batch parallelism
+					batchExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+							new SynchronousQueue<Runnable>(), new AsyncThreadFactory("postmark4j-batch-"));
+				}
+			}
+			return batchExecutor;
+		} finally {
+			asyncExecutorLock.unlock();
+		}
 	}
 
 	protected String toJson(PostmarkMessage... messages) {
+		try {
+			return PostmarkJson.toJson(prepareMessages(messages));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Validates messages before sending, filling in the "default from address" where needed. The given array is
+	 * left alone; messages without a "from" address are replaced in a copy.
+	 *
+	 * @param messages The messages to send.
+	 * @return The messages to send, with "from" addresses.
+	 * @throws IllegalArgumentException If there are no messages, or a message has no "from" address and there's
+	 * no default.
+	 */
+	protected PostmarkMessage[] prepareMessages(PostmarkMessage... messages) {
 		if(messages.length == 0) {
 			throw new IllegalArgumentException("At least one message is required.");
 		}
 
+		PostmarkMessage[] prepared = messages;
 		for(int i = 0; i < messages.length; i++) {
 			if(messages[i].getFrom() == null) {
 				if(defaultFrom == null) {
 					throw new IllegalArgumentException("A valid \"from\" address is required.");
 				} else {
-					messages[i] = new PostmarkMessage(defaultFrom, messages[i]);
+					if(prepared == messages) {
+						prepared = messages.clone();
+					}
+					prepared[i] = new PostmarkMessage(defaultFrom, messages[i]);
 				}
 			}
 		}
 
 		if(LOGGER.isTraceEnabled() || LOGGER.isDebugEnabled()) {
 			StringBuilder sb = new StringBuilder();
-			for(PostmarkMessage message : messages) {
+			for(PostmarkMessage message : prepared) {
 				if(sb.length() != 0) {
 					sb.append(", ");
 				}
@@ -176,53 +801,628 @@ public class PostmarkClient {
 			}
 			LOGGER.debug("send: [{}]", sb.toString());
 		}
+		return prepared;
+	}
+
+	/**
+	 * Freezes a message for sending with this client, filling in the "default from address" if it has none, so
+	 * the frozen JSON can be sent as it is. See {@link FrozenMessage}.
+	 *
+	 * @param message The message to freeze.
+	 * @return An immutable, pre-serialized copy of the message.
+	 * @throws IOException If attachment content can't be read.
+	 * @throws IllegalArgumentException If the message has no "from" address and there's no default.
+	 */
+	public FrozenMessage freeze(PostmarkMessage message) throws IOException {
+		return prepareMessages(message)[0].freeze();
+	}
 
-		return gson.toJson((messages.length > 1) ? messages : messages[0]);
+	/**
+	 * Creates the request body, which streams the JSON for the messages to Postmark as the request is sent.
+	 *
+	 * @param messages The (already prepared) messages to send.
+	 * @param batch Whether the messages are going to the batch endpoint, which always expects a JSON array.
+	 * @return The request body.
+	 */
+	protected JsonBody createBody(final PostmarkMessage[] messages, boolean batch) {
+		final boolean array = batch || messages.length > 1;
+		if(LOGGER.isTraceEnabled()) {
+			try {
+				LOGGER.trace("Request: {}", PostmarkJson.toJson(messages));
+			} catch(IOException e) {
+				LOGGER.trace("Request: unable to read attachment content", e);
+			}
+		}
+		return new JsonBody() {
+			protected void writeJson(Writer writer) throws IOException {
+				JsonOutput out = new JsonOutput(writer);
+				if(array) {
+					PostmarkJson.MESSAGE.writeBatch(out, messages);
+				} else {
+					PostmarkJson.MESSAGE.write(out, messages[0]);
+				}
+			}
+		};
 	}
 
-	protected <T> T send(String url, PostmarkMessage[] messages, Class<T> responseClass) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException {
-		HttpClient httpClient = new DefaultHttpClient();
+	/**
+	 * Sends messages, retrying failures according to the {@link RetryPolicy}. When some messages in a batch fail
+	 * with a retryable error code, only those messages are sent again, and their new results replace the old.
+	 */
+	protected <T> T send(String url, PostmarkMessage[] messages, Class<T> responseClass) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		return send(url, messages, responseClass, null);
+	}
+
+	private <T> T send(String url, PostmarkMessage[] messages, Class<T> responseClass, int[] attempts) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		retryBudget.recordRequest();
+		for(int attempt = 1; ; attempt++) {
+			try {
+				T response = send(getTransport(), url, messages, responseClass);
+				if(response instanceof PostmarkResponse[]) {
+					if(attempts != null) {
+						Arrays.fill(attempts, attempt);
+					}
+					return responseClass.cast(retryFailedMessages(messages, (PostmarkResponse[]) response, attempt, attempts));
+				}
+				return response;
+			} catch(IOException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(UnprocessableEntityPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(InternalServerErrorPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			} catch(UnknownPostmarkException e) {
+				if(!awaitRetry(e, attempt)) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resends the messages in a batch whose results have retryable error codes, until they succeed, fail with an
+	 * error that isn't retryable, or run out of attempts. If a resend fails entirely, the earlier results are kept.
+	 * Does nothing if {@link RetryPolicy#isResubmitFailedMessages()} is off.
+	 *
+	 * @param messages The batch.
+	 * @param responses The results for the batch, in the same order.
+	 * @param attempt The attempt that produced the results.
+	 * @return The results, with those of retried messages replaced.
+	 */
+	protected PostmarkResponse[] retryFailedMessages(PostmarkMessage[] messages, PostmarkResponse[] responses, int attempt) {
+		return retryFailedMessages(messages, responses, attempt, null);
+	}
+
+	private PostmarkResponse[] retryFailedMessages(PostmarkMessage[] messages, PostmarkResponse[] responses, int attempt, int[] attempts) {
+		if(responses.length != messages.length || !retryPolicy.isResubmitFailedMessages()) {
+			return responses;
+		}
+		responses = responses.clone();
+		for(; ; attempt++) {
+			List<Integer> failed = new ArrayList<Integer>();
+			for(int i = 0; i < responses.length; i++) {
+				if(!responses[i].isSuccess() && retryPolicy.isRetryableErrorCode(responses[i].getErrorCode())) {
+					failed.add(i);
+				}
+			}
+			if(failed.isEmpty() || !awaitRetry(attempt, failed.size() + " failed messages in batch")) {
+				return responses;
+			}
+
+			PostmarkMessage[] retry = new PostmarkMessage[failed.size()];
+			for(int i = 0; i < retry.length; i++) {
+				retry[i] = messages[failed.get(i)];
+			}
+			if(attempts != null) {
+				for(int index : failed) {
+					attempts[index]++;
+				}
+			}
+			try {
+				PostmarkResponse[] retried = send(getTransport(), URL_BATCH, retry, PostmarkResponse[].class);
+				if(retried.length != retry.length) {
+					return responses;
+				}
+				for(int i = 0; i < retried.length; i++) {
+					responses[failed.get(i)] = retried[i];
+				}
+			} catch(Exception e) {
+				LOGGER.debug("Retrying failed messages in batch failed", e);
+				if(!retryPolicy.isRetryable(e)) {
+					return responses;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits before retrying a send that failed with {@code e}, if the failure is retryable and a retry is allowed.
+	 *
+	 * @return Whether to retry.
+	 */
+	protected boolean awaitRetry(Exception e, int attempt) {
+		return retryPolicy.isRetryable(e) && awaitRetry(attempt, e.toString());
+	}
+
+	/**
+	 * Waits before retrying, if there are attempts left and the retry budget allows it.
+	 *
+	 * @param attempt The attempt that just failed, starting at 1.
+	 * @param reason Why, for logging.
+	 * @return Whether to retry.
+	 */
+	protected boolean awaitRetry(int attempt, String reason) {
+		if(attempt >= retryPolicy.getMaxAttempts() || closed) {
+			return false;
+		}
+		if(!retryBudget.tryAcquire()) {
+			LOGGER.warn("Not retrying, retry budget exhausted: {}", reason);
+			return false;
+		}
+		long backoff = retryPolicy.getBackoffMillis(attempt, ThreadLocalRandom.current());
+		LOGGER.info("Retrying in {}ms after attempt {}: {}", new Object[]{backoff, attempt, reason});
+		try {
+			Thread.sleep(backoff);
+			return true;
+		} catch(InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	protected <T> T send(Transport transport, final String url, PostmarkMessage[] messages, final Class<T> responseClass) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		return execute(transport, url, messages, responseClass.isArray(), new ResponseReader<T>() {
+			public T read(InputStream content, String charset) throws IOException {
+				if(content == null) {
+					return null;
+				}
+				T response;
+				if(LOGGER.isDebugEnabled()) {
+					String responseJson = IOUtils.toString(content, charset);
+					LOGGER.debug("Response: {}", responseJson);
+					response = readResponse(new StringReader(responseJson), responseClass);
+				} else {
+					response = readResponse(new InputStreamReader(content, charset), responseClass);
+				}
+				if(response instanceof PostmarkResponse[]) {
+					recordErrorCodes(url, (PostmarkResponse[]) response);
+				}
+				return response;
+			}
+		});
+	}
+
+	private void recordErrorCodes(String url, PostmarkResponse... responses) {
+		if(metrics == null) {
+			return;
+		}
+		for(PostmarkResponse response : responses) {
+			if(response != null && !response.isSuccess()) {
+				metrics.onErrorCode(url, response.getErrorCode());
+			}
+		}
+	}
+
+	/**
+	 * Reads responses with the {@link PostmarkJson} adapters, falling back to {@link Gson} for any other type.
+	 */
+	protected <T> T readResponse(Reader reader, Class<T> responseClass) throws IOException {
 		try {
-			return send(httpClient, url, messages, responseClass);
+			if(responseClass == PostmarkResponse.class) {
+				return responseClass.cast(PostmarkJson.readResponse(reader));
+			} else if(responseClass == PostmarkResponse[].class) {
+				return responseClass.cast(PostmarkJson.readResponses(reader));
+			} else {
+				return gson.fromJson(reader, responseClass);
+			}
 		} finally {
-			httpClient.getConnectionManager().shutdown();
+			reader.close();
 		}
 	}
 
-	protected <T> T send(HttpClient httpClient, String url, PostmarkMessage[] messages, Class<T> responseClass) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException {
-		HttpPost method = new HttpPost(getBaseURL() + url);
+	/**
+	 * Makes a request to Postmark.
+	 *
+	 * @param transport The transport to make the request with.
+	 * @param url The API path.
+	 * @param messages The messages to send.
+	 * @param batch Whether the API expects an array of messages.
+	 * @param responseReader Reads a successful response. Error responses are turned into exceptions.
+	 * @return The result of the response reader.
+	 */
+	protected <T> T execute(Transport transport, String url, PostmarkMessage[] messages, boolean batch, ResponseReader<T> responseReader) throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+		messages = prepareMessages(messages);
+		JsonBody body = createBody(messages, batch);
+		TransportRequest request = new TransportRequest(getBaseURL() + url, body);
+
+		request.setHeader("Accept", "application/json");
+		request.setHeader("Content-Type", body.getContentType());
+		request.setHeader("X-Postmark-Server-Token", serverToken);
+		request.setHeader("User-Agent", "postmark4j-" + version);
 
-		method.addHeader("Accept", "application/json");
-		method.addHeader("Content-Type", "application/json; charset=UTF-8");
-		method.addHeader("X-Postmark-Server-Token", serverToken);
-		method.addHeader("User-Agent", "postmark4j-" + version);
+		long circuitTicket = circuitBreaker != null ? circuitBreaker.tryAcquire() : -1;
+		if(circuitBreaker != null && circuitTicket < 0) {
+			throw new CircuitOpenPostmarkException(circuitBreaker.getRemainingOpenMillis());
+		}
+		RequestTiming timing = tracer != null || slowRequestNanos > 0 ? new RequestTiming(url, messages.length) : null;
+		long throttleStart = System.nanoTime();
+		RateLimiter.Permit permit;
+		try {
+			permit = acquirePermit(messages.length);
+		} catch(IOException e) {
+			cancelCircuitBreaker(circuitTicket);
+			throw e;
+		} catch(RuntimeException e) {
+			cancelCircuitBreaker(circuitTicket);
+			throw e;
+		}
 
-		String requestJson = toJson(messages);
-		LOGGER.debug("Request: {}", requestJson);
-		method.setEntity(new StringEntity(requestJson, "UTF-8"));
+		long start = System.nanoTime();
+		Tracer.Span span = null;
+		if(timing != null) {
+			timing.recordThrottle(start - throttleStart);
+			span = startSpan(timing, request);
+			request.setTiming(timing);
+			timing.start();
+		}
+		Throwable failure = null;
+		boolean overloaded = false;
+		boolean failed = false;
+		int statusCode = -1;
+		IOException error = null;
+		TransportResponse response = null;
+		CountingInputStream counter = null;
+		try {
+			response = transport.execute(request);
+			InputStream content = response.getContent();
+			if(metrics != null && content != null) {
+				content = counter = new CountingInputStream(content);
+			}
+			String charset = response.getCharset() != null ? response.getCharset() : "UTF-8";
 
-		HttpResponse httpResponse = httpClient.execute(method);
-		HttpEntity entity = httpResponse.getEntity();
-		String responseJson = (entity == null ? null : EntityUtils.toString(entity));
+			statusCode = response.getStatus();
+			if(timing != null) {
+				timing.responseStarted(statusCode);
+			}
+			LOGGER.debug("Status: {}", statusCode);
+			overloaded = isOverloaded(statusCode);
+			failed = overloaded;
 
-		int statusCode = httpResponse.getStatusLine().getStatusCode();
+			if(statusCode == 200) {
+				return responseReader.read(content, charset);
+			}
 
-		LOGGER.debug("Status: {}, Response: {}", statusCode, responseJson);
+			String responseJson = (content == null ? null : IOUtils.toString(content, charset));
+			LOGGER.debug("Response: {}", responseJson);
 
-		if(statusCode == 200) {
-			return gson.fromJson(responseJson, responseClass);
-		} else if(statusCode == 401) {
-			throw new UnauthorizedPostmarkException();
-		} else if(statusCode == 422) {
-			if(responseJson != null && responseJson.trim().length() > 0) {
-				throw new UnprocessableEntityPostmarkException(gson.fromJson(responseJson, PostmarkError.class));
+			if(statusCode == 401) {
+				throw new UnauthorizedPostmarkException();
+			} else if(statusCode == 422) {
+				if(responseJson != null && responseJson.trim().length() > 0) {
+					PostmarkError postmarkError = PostmarkJson.readError(new StringReader(responseJson));
+					if(metrics != null) {
+						metrics.onErrorCode(url, postmarkError.getErrorCode());
+					}
+					throw new UnprocessableEntityPostmarkException(postmarkError);
+				} else {
+					throw new UnprocessableEntityPostmarkException();
+				}
+			} else if(statusCode == 500) {
+				throw new InternalServerErrorPostmarkException();
 			} else {
-				throw new UnprocessableEntityPostmarkException();
+				throw new UnknownPostmarkException(statusCode);
 			}
-		} else if(statusCode == 500) {
-			throw new InternalServerErrorPostmarkException();
-		} else {
-			throw new UnknownPostmarkException(httpResponse.getStatusLine().getStatusCode());
+		} catch(IOException e) {
+			error = e;
+			failure = e;
+			overloaded = isOverloaded(e);
+			// waiting for one of our own pooled connections says nothing about Postmark
+			failed = !(e instanceof ConnectionPoolTimeoutException);
+			if(response != null) {
+				response.abort();
+				response = null;
+			}
+			throw e;
+		} catch(RuntimeException e) {
+			failure = e;
+			if(response != null) {
+				response.abort();
+				response = null;
+			}
+			throw e;
+		} finally {
+			if(response != null) {
+				response.close();
+			}
+			if(permit != null) {
+				permit.release(overloaded);
+			}
+			long latency = System.nanoTime() - start;
+			if(circuitBreaker != null) {
+				circuitBreaker.record(circuitTicket, latency, failed);
+			}
+			if(metrics != null) {
+				recordRequest(url, statusCode, error, latency, messages.length, body, counter);
+			}
+			if(timing != null) {
+				timing.recordSerialization(body.getSerializationNanos());
+				timing.finish();
+				endSpan(span, timing, failure);
+			}
+		}
+	}
+
+	private Tracer.Span startSpan(RequestTiming timing, TransportRequest request) {
+		if(tracer == null) {
+			return null;
+		}
+		try {
+			Tracer.Span span = tracer.startSpan(timing.getEndpoint(), timing.getMessages());
+			String traceId = span != null ? span.getTraceId() : null;
+			if(traceId != null) {
+				timing.setTraceId(traceId);
+				request.setHeader(config.getTraceHeader(), traceId);
+			}
+			return span;
+		} catch(RuntimeException e) {
+			LOGGER.warn("Tracer failed", e);
+			return null;
+		}
+	}
+
+	private void endSpan(Tracer.Span span, RequestTiming timing, Throwable failure) {
+		if(span != null) {
+			try {
+				span.end(timing, failure);
+			} catch(RuntimeException e) {
+				LOGGER.warn("Tracer failed", e);
+			}
+		}
+		if(slowRequestNanos > 0 && timing.getTotalNanos() >= slowRequestNanos && LOGGER.isWarnEnabled()
+				&& ThreadLocalRandom.current().nextDouble() < config.getSlowRequestSampleRate()) {
+			LOGGER.warn("Slow request: {}", timing);
+		}
+	}
+
+	private void recordRequest(String url, int statusCode, IOException error, long latency, int messages, JsonBody body, CountingInputStream responseCounter) {
+		long requestBytes = body.getBytesWritten();
+		try {
+			if(statusCode >= 0) {
+				long responseBytes = responseCounter != null ? responseCounter.getByteCount() : 0;
+				metrics.onResponse(url, statusCode, latency, messages, requestBytes, responseBytes);
+			} else if(error != null) {
+				metrics.onFailure(url, error, latency, messages, requestBytes);
+			}
+		} catch(RuntimeException e) {
+			LOGGER.warn("Metrics listener failed", e);
+		}
+	}
+
+	private void cancelCircuitBreaker(long ticket) {
+		if(circuitBreaker != null) {
+			circuitBreaker.cancel(ticket);
+		}
+	}
+
+	/**
+	 * Waits for the {@link RateLimiter}, if there is one, to allow a request.
+	 *
+	 * @return The permit to release when the request is done, or {@code null} if there's no rate limiter.
+	 * @throws postmark4j.resilience.RateLimitExceededException If the request is throttled.
+	 */
+	protected RateLimiter.Permit acquirePermit(int messages) throws InterruptedIOException {
+		if(rateLimiter == null) {
+			return null;
+		}
+		try {
+			return rateLimiter.acquire(messages);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the rate limiter.");
+		}
+	}
+
+	/**
+	 * @return Whether a response with this status means Postmark is overloaded, so the concurrency limit should back off.
+	 */
+	protected boolean isOverloaded(int statusCode) {
+		return statusCode == 429 || statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * @return Whether a failure means Postmark is overloaded: timeouts and refused connections, but not waiting
+	 * for one of our own pooled connections.
+	 */
+	protected boolean isOverloaded(IOException e) {
+		return !(e instanceof ConnectionPoolTimeoutException) && (e instanceof InterruptedIOException || e instanceof ConnectException || e instanceof HttpTimeoutException);
+	}
+
+	/**
+	 * Reads the body of a successful response.
+	 */
+	protected interface ResponseReader<T> {
+		/**
+		 * @param content The response body, or {@code null} if there isn't one.
+		 * @param charset The response's charset, UTF-8 if it didn't give one.
+		 */
+		T read(InputStream content, String charset) throws IOException;
+	}
+
+	private static class AsyncSend<T> implements Runnable {
+		private final CompletableFuture<T> future = new CompletableFuture<T>();
+		private final Callable<T> callable;
+
+		private AsyncSend(Callable<T> callable) {
+			this.callable = callable;
+		}
+
+		public void run() {
+			if(future.isDone()) {
+				return;
+			}
+			try {
+				future.complete(callable.call());
+			} catch(Throwable t) {
+				future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * The parts of a split batch, taken one at a time by each thread sending them.
+	 */
+	private class SplitBatch implements Runnable {
+		private final PostmarkMessage[] messages;
+		private final int[][] parts;
+		private final int[] attempts;
+		private final PostmarkResponse[] responses;
+		private final AtomicInteger next = new AtomicInteger();
+		private final CountDownLatch done;
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile Exception failure;
+
+		private SplitBatch(PostmarkMessage[] messages, int[][] parts, int[] attempts) {
+			this.messages = messages;
+			this.parts = parts;
+			this.attempts = attempts;
+			this.responses = new PostmarkResponse[messages.length];
+			this.done = new CountDownLatch(parts.length);
+		}
+
+		public void run() {
+			for(int part = next.getAndIncrement(); part < parts.length; part = next.getAndIncrement()) {
+				try {
+					if(failure == null) {
+						send(parts[part]);
+					}
+				} catch(Exception e) {
+					fail(e);
+				} finally {
+					done.countDown();
+				}
+			}
+		}
+
+		private void send(int[] indexes) throws Exception {
+			PostmarkMessage[] part = new PostmarkMessage[indexes.length];
+			for(int i = 0; i < part.length; i++) {
+				part[i] = messages[indexes[i]];
+			}
+			int[] partAttempts = attempts != null ? new int[part.length] : null;
+			PostmarkResponse[] partResponses = PostmarkClient.this.send(URL_BATCH, part, PostmarkResponse[].class, partAttempts);
+			if(partResponses == null || partResponses.length != part.length) {
+				throw new IOException("Postmark returned " + (partResponses == null ? 0 : partResponses.length) + " results for " + part.length + " messages.");
+			}
+			// each part writes its own positions, and the latch publishes them
+			for(int i = 0; i < indexes.length; i++) {
+				responses[indexes[i]] = partResponses[i];
+				if(attempts != null) {
+					attempts[indexes[i]] = partAttempts[i];
+				}
+			}
+		}
+
+		private void fail(Exception e) {
+			lock.lock();
+			try {
+				if(failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Waits for the parts being sent by other threads, once the calling thread has run out of parts.
+		 */
+		private PostmarkResponse[] getResponses() throws IOException, UnauthorizedPostmarkException, UnprocessableEntityPostmarkException, InternalServerErrorPostmarkException, UnknownPostmarkException, CircuitOpenPostmarkException {
+			try {
+				done.await();
+			} catch(InterruptedException e) {
+				InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for a split batch.");
+				// stop the other threads taking parts
+				fail(interrupted);
+				Thread.currentThread().interrupt();
+				throw interrupted;
+			}
+			Exception e = failure;
+			if(e == null) {
+				return responses;
+			} else if(e instanceof IOException) {
+				throw (IOException) e;
+			} else if(e instanceof UnauthorizedPostmarkException) {
+				throw (UnauthorizedPostmarkException) e;
+			} else if(e instanceof UnprocessableEntityPostmarkException) {
+				throw (UnprocessableEntityPostmarkException) e;
+			} else if(e instanceof InternalServerErrorPostmarkException) {
+				throw (InternalServerErrorPostmarkException) e;
+			} else if(e instanceof UnknownPostmarkException) {
+				throw (UnknownPostmarkException) e;
+			} else if(e instanceof CircuitOpenPostmarkException) {
+				throw (CircuitOpenPostmarkException) e;
+			} else if(e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class AsyncThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private AsyncThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Waits for room in the executor's queue instead of rejecting.
+	 */
+	private static class BlockingRejectionHandler implements RejectedExecutionHandler {
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			if(executor.isShutdown()) {
+				throw new RejectedExecutionException("PostmarkClient has been closed.");
+			}
+			try {
+				executor.getQueue().put(runnable);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting to queue message.", e);
+			}
+			// shut down while we waited, possibly after the queue was drained
+			if(executor.isShutdown() && executor.remove(runnable)) {
+				throw new RejectedExecutionException("PostmarkClient has been closed.");
+			}
+		}
+	}
+
+	/**
+	 * Runs the task on the calling thread instead of rejecting, unlike
+	 * {@link ThreadPoolExecutor.CallerRunsPolicy} failing once the executor is shut down rather than silently
+	 * dropping the task, which would leave its future incomplete forever.
+	 */
+	private static class CallerRunsRejectionHandler implements RejectedExecutionHandler {
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			if(executor.isShutdown()) {
+				throw new RejectedExecutionException("PostmarkClient has been closed.");
+			}
+			runnable.run();
 		}
 	}
 }
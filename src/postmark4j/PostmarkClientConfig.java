@@ -0,0 +1,476 @@
+package postmark4j;
+
+import postmark4j.metrics.MetricsListener;
+import postmark4j.metrics.Tracer;
+import postmark4j.resilience.CircuitBreakerPolicy;
+import postmark4j.resilience.RateLimitPolicy;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.transport.ApacheTransport;
+import postmark4j.transport.TransportFactory;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Connection and execution settings for a {@link PostmarkClient}.
+ *
+ * A {@link PostmarkClient} owns a pool of keep-alive connections to the Postmark API that is shared by every
+ * thread sending through it. The settings here control the size of that pool and how long connections are
+ * kept around, as well as the executor used for {@link PostmarkClient#sendAsync(postmark4j.data.PostmarkMessage)}.
+ * They are read once, when the client is created; changing a config afterwards has no effect on clients that
+ * were already created with it.
+ *
+ * All durations are in milliseconds. A value of {@code 0} for a timeout means "wait forever".
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class PostmarkClientConfig {
+	private String baseURL;
+	private TransportFactory transportFactory = ApacheTransport.FACTORY;
+	private int maxConnectionsPerRoute = 20;
+	private int maxConnectionsTotal = 40;
+	private long keepAliveMillis = 30000;
+	private long connectionTimeToLiveMillis = -1;
+	private long idleConnectionTimeoutMillis = 30000;
+	private long evictionIntervalMillis = 5000;
+	private boolean staleConnectionCheck = true;
+	private int connectTimeoutMillis = 10000;
+	private int socketTimeoutMillis = 60000;
+	private long connectionRequestTimeoutMillis = 0;
+	private int asyncThreads = 20;
+	private int asyncQueueCapacity = 1000;
+	private RejectionPolicy asyncRejectionPolicy = RejectionPolicy.FAIL;
+	private ExecutorService asyncExecutor;
+	private boolean virtualThreads;
+	private int batchParallelism = 4;
+	private RetryPolicy retryPolicy = new RetryPolicy();
+	private RateLimitPolicy rateLimitPolicy;
+	private CircuitBreakerPolicy circuitBreakerPolicy;
+	private MetricsListener metricsListener;
+	private Tracer tracer;
+	private String traceHeader = "X-Trace-Id";
+	private long slowRequestMillis = 0;
+	private double slowRequestSampleRate = 1.0;
+
+	/**
+	 * What to do with an asynchronous send when all async threads are busy and the queue is full.
+	 */
+	public enum RejectionPolicy {
+		/**
+		 * Complete the returned future exceptionally with a {@link java.util.concurrent.RejectedExecutionException}.
+		 */
+		FAIL,
+
+		/**
+		 * Send the message on the calling thread, so {@code sendAsync} blocks until it's sent. If the client is
+		 * being closed, the future completes exceptionally instead.
+		 */
+		CALLER_RUNS,
+
+		/**
+		 * Block the calling thread until there is room in the queue.
+		 */
+		BLOCK
+	}
+
+	public String getBaseURL() {
+		return baseURL;
+	}
+
+	/**
+	 * Send requests somewhere other than the Postmark API, such as a proxy or a
+	 * {@link postmark4j.testing.FakePostmarkServer}.
+	 *
+	 * @param baseURL The scheme, host and optional port (and path prefix), e.g. {@code http://localhost:8080}.
+	 * Defaults to {@code null}, which uses api.postmarkapp.com over HTTP or HTTPS as given to the client.
+	 */
+	public void setBaseURL(String baseURL) {
+		if(baseURL != null && !baseURL.startsWith("http://") && !baseURL.startsWith("https://")) {
+			throw new IllegalArgumentException("Base URL must start with http:// or https://");
+		}
+		this.baseURL = baseURL;
+	}
+
+	public TransportFactory getTransportFactory() {
+		return transportFactory;
+	}
+
+	/**
+	 * @param transportFactory Creates the {@link postmark4j.transport.Transport} a client sends requests with.
+	 * Defaults to {@link ApacheTransport#FACTORY}, pooled HTTP/1.1 connections; use
+	 * {@link postmark4j.transport.JavaHttpTransport#FACTORY} to multiplex requests over HTTP/2. The connection pool
+	 * settings only apply to the default.
+	 */
+	public void setTransportFactory(TransportFactory transportFactory) {
+		if(transportFactory == null) {
+			throw new IllegalArgumentException("A transport factory is required.");
+		}
+		this.transportFactory = transportFactory;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Maximum number of pooled connections to a single host. Since a client normally only talks to
+	 * api.postmarkapp.com, this is effectively the maximum number of concurrent requests.
+	 *
+	 * @param maxConnectionsPerRoute Defaults to 20.
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		if(maxConnectionsPerRoute < 1) {
+			throw new IllegalArgumentException("At least one connection per route is required.");
+		}
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	/**
+	 * @param maxConnectionsTotal Maximum number of pooled connections across all hosts. Defaults to 40.
+	 */
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+		if(maxConnectionsTotal < 1) {
+			throw new IllegalArgumentException("At least one connection is required.");
+		}
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+
+	/**
+	 * How long an idle connection may be reused when the server doesn't send a {@code Keep-Alive: timeout=...}
+	 * header. If the server does send one, the shorter of the two is used.
+	 *
+	 * @param keepAliveMillis Defaults to 30 seconds. A negative value keeps connections alive indefinitely.
+	 */
+	public void setKeepAliveMillis(long keepAliveMillis) {
+		this.keepAliveMillis = keepAliveMillis;
+	}
+
+	public long getConnectionTimeToLiveMillis() {
+		return connectionTimeToLiveMillis;
+	}
+
+	/**
+	 * @param connectionTimeToLiveMillis Maximum lifetime of a pooled connection regardless of activity, which
+	 * helps to pick up DNS changes. Defaults to -1 (no limit).
+	 */
+	public void setConnectionTimeToLiveMillis(long connectionTimeToLiveMillis) {
+		this.connectionTimeToLiveMillis = connectionTimeToLiveMillis;
+	}
+
+	public long getIdleConnectionTimeoutMillis() {
+		return idleConnectionTimeoutMillis;
+	}
+
+	/**
+	 * @param idleConnectionTimeoutMillis Connections that have been idle in the pool for longer than this are
+	 * closed by the background evictor. Defaults to 30 seconds.
+	 */
+	public void setIdleConnectionTimeoutMillis(long idleConnectionTimeoutMillis) {
+		this.idleConnectionTimeoutMillis = idleConnectionTimeoutMillis;
+	}
+
+	public long getEvictionIntervalMillis() {
+		return evictionIntervalMillis;
+	}
+
+	/**
+	 * @param evictionIntervalMillis How often the background evictor looks for expired and idle connections.
+	 * Defaults to 5 seconds. Zero or a negative value disables the evictor.
+	 */
+	public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+		this.evictionIntervalMillis = evictionIntervalMillis;
+	}
+
+	public boolean isStaleConnectionCheck() {
+		return staleConnectionCheck;
+	}
+
+	/**
+	 * @param staleConnectionCheck Whether to check that a pooled connection hasn't been closed by the server
+	 * before reusing it. Costs a little time per request, but avoids failures on half-closed connections.
+	 * Defaults to {@code true}.
+	 */
+	public void setStaleConnectionCheck(boolean staleConnectionCheck) {
+		this.staleConnectionCheck = staleConnectionCheck;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * @param connectTimeoutMillis Timeout for establishing a new connection. Defaults to 10 seconds.
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public int getSocketTimeoutMillis() {
+		return socketTimeoutMillis;
+	}
+
+	/**
+	 * @param socketTimeoutMillis Timeout while waiting for data from Postmark. Defaults to 60 seconds.
+	 */
+	public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+		this.socketTimeoutMillis = socketTimeoutMillis;
+	}
+
+	public long getConnectionRequestTimeoutMillis() {
+		return connectionRequestTimeoutMillis;
+	}
+
+	/**
+	 * @param connectionRequestTimeoutMillis Timeout while waiting for a connection to become available in the
+	 * pool when all connections are in use. Defaults to 0 (wait forever).
+	 */
+	public void setConnectionRequestTimeoutMillis(long connectionRequestTimeoutMillis) {
+		this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+	}
+
+	public int getAsyncThreads() {
+		return asyncThreads;
+	}
+
+	/**
+	 * @param asyncThreads Maximum number of threads used for asynchronous sends. Defaults to 20, the same as the
+	 * default number of connections, since each send occupies a thread for as long as it holds a connection.
+	 */
+	public void setAsyncThreads(int asyncThreads) {
+		if(asyncThreads < 1) {
+			throw new IllegalArgumentException("At least one async thread is required.");
+		}
+		this.asyncThreads = asyncThreads;
+	}
+
+	public int getAsyncQueueCapacity() {
+		return asyncQueueCapacity;
+	}
+
+	/**
+	 * @param asyncQueueCapacity Maximum number of asynchronous sends waiting for a thread. Defaults to 1000.
+	 */
+	public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		if(asyncQueueCapacity < 1) {
+			throw new IllegalArgumentException("Async queue capacity must be positive.");
+		}
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	public RejectionPolicy getAsyncRejectionPolicy() {
+		return asyncRejectionPolicy;
+	}
+
+	/**
+	 * @param asyncRejectionPolicy What to do when the async queue is full. Defaults to {@link RejectionPolicy#FAIL}.
+	 */
+	public void setAsyncRejectionPolicy(RejectionPolicy asyncRejectionPolicy) {
+		if(asyncRejectionPolicy == null) {
+			throw new IllegalArgumentException("A rejection policy is required.");
+		}
+		this.asyncRejectionPolicy = asyncRejectionPolicy;
+	}
+
+	public ExecutorService getAsyncExecutor() {
+		return asyncExecutor;
+	}
+
+	/**
+	 * Use an existing executor for asynchronous sends instead of one owned by the client. When set, the async
+	 * thread, queue and rejection settings are ignored, and the executor is <em>not</em> shut down when the client
+	 * is closed.
+	 *
+	 * @param asyncExecutor The executor to use, or {@code null} to let the client create its own.
+	 */
+	public void setAsyncExecutor(ExecutorService asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Run each asynchronous send on its own virtual thread, instead of on a bounded pool of platform threads, so
+	 * tens of thousands of sends can wait for a connection or a response without a thread pool sized for them.
+	 * The async thread, queue and rejection settings are then ignored: concurrency is bounded by the connection pool
+	 * and the rate limit policy, and the sends waiting on them are cheap. Ignored if an async executor is given.
+	 *
+	 * The locks a send can wait on (the client's executor, the rate limiter's concurrency limit, the connection
+	 * queue, and a message's headers and attachments) are {@link java.util.concurrent.locks.ReentrantLock}s and
+	 * {@link java.util.concurrent.Semaphore}s rather than {@code synchronized} monitors, so a virtual thread that
+	 * waits on one doesn't pin its carrier thread.
+	 *
+	 * @param virtualThreads Defaults to {@code false}. Requires Java 21 or later.
+	 * @throws IllegalArgumentException If virtual threads aren't available in this JVM.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		if(virtualThreads && !VirtualThreads.isSupported()) {
+			throw new IllegalArgumentException("Virtual threads require Java 21 or later.");
+		}
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getBatchParallelism() {
+		return batchParallelism;
+	}
+
+	/**
+	 * @param batchParallelism The most requests sent at once when a batch is too big for one request and is split
+	 * (see {@link PostmarkClient#sendBatch(postmark4j.data.PostmarkMessage...)}). The calling thread sends one of
+	 * them. Defaults to 4; 1 sends the parts one after another.
+	 */
+	public void setBatchParallelism(int batchParallelism) {
+		if(batchParallelism < 1) {
+			throw new IllegalArgumentException("Batch parallelism must be at least 1.");
+		}
+		this.batchParallelism = batchParallelism;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * @param retryPolicy When and how to retry failed sends. Defaults to a {@link RetryPolicy} with its default
+	 * settings; use {@link RetryPolicy#none()} to disable retries.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		if(retryPolicy == null) {
+			throw new IllegalArgumentException("A retry policy is required.");
+		}
+		this.retryPolicy = retryPolicy;
+	}
+
+	public RateLimitPolicy getRateLimitPolicy() {
+		return rateLimitPolicy;
+	}
+
+	/**
+	 * @param rateLimitPolicy Limits on message and request rates and on concurrency, applied to every request
+	 * including retries. Defaults to {@code null} (no limits beyond the connection pool).
+	 */
+	public void setRateLimitPolicy(RateLimitPolicy rateLimitPolicy) {
+		this.rateLimitPolicy = rateLimitPolicy;
+	}
+
+	public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+		return circuitBreakerPolicy;
+	}
+
+	/**
+	 * @param circuitBreakerPolicy Settings for a circuit breaker that stops sending while Postmark is failing.
+	 * Defaults to {@code null} (no circuit breaker).
+	 */
+	public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+		this.circuitBreakerPolicy = circuitBreakerPolicy;
+	}
+
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * @param metricsListener Told about every request, for monitoring. See {@link postmark4j.metrics.InMemoryMetrics}.
+	 * Defaults to {@code null} (no metrics).
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	public Tracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * @param tracer Starts a span for every request, and is given a breakdown of where its time went when it's
+	 * over. Defaults to {@code null} (no tracing).
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	public String getTraceHeader() {
+		return traceHeader;
+	}
+
+	/**
+	 * @param traceHeader The request header a span's trace id is sent in. Defaults to {@code X-Trace-Id}.
+	 */
+	public void setTraceHeader(String traceHeader) {
+		if(traceHeader == null || traceHeader.trim().length() == 0) {
+			throw new IllegalArgumentException("Trace header is required.");
+		}
+		this.traceHeader = traceHeader.trim();
+	}
+
+	public long getSlowRequestMillis() {
+		return slowRequestMillis;
+	}
+
+	/**
+	 * @param slowRequestMillis Requests taking at least this long have their timing breakdown logged as a warning.
+	 * Defaults to 0 (don't log slow requests).
+	 */
+	public void setSlowRequestMillis(long slowRequestMillis) {
+		if(slowRequestMillis < 0) {
+			throw new IllegalArgumentException("Slow request threshold must not be negative.");
+		}
+		this.slowRequestMillis = slowRequestMillis;
+	}
+
+	public double getSlowRequestSampleRate() {
+		return slowRequestSampleRate;
+	}
+
+	/**
+	 * @param slowRequestSampleRate The fraction of slow requests to log, between 0 and 1, so a slow spell doesn't
+	 * flood the log. Defaults to 1 (log them all).
+	 */
+	public void setSlowRequestSampleRate(double slowRequestSampleRate) {
+		if(slowRequestSampleRate < 0 || slowRequestSampleRate > 1) {
+			throw new IllegalArgumentException("Slow request sample rate must be between 0 and 1.");
+		}
+		this.slowRequestSampleRate = slowRequestSampleRate;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("PostmarkClientConfig");
+		sb.append("{baseURL=").append(baseURL);
+		sb.append(", transportFactory=").append(transportFactory);
+		sb.append(", maxConnectionsPerRoute=").append(maxConnectionsPerRoute);
+		sb.append(", maxConnectionsTotal=").append(maxConnectionsTotal);
+		sb.append(", keepAliveMillis=").append(keepAliveMillis);
+		sb.append(", connectionTimeToLiveMillis=").append(connectionTimeToLiveMillis);
+		sb.append(", idleConnectionTimeoutMillis=").append(idleConnectionTimeoutMillis);
+		sb.append(", evictionIntervalMillis=").append(evictionIntervalMillis);
+		sb.append(", staleConnectionCheck=").append(staleConnectionCheck);
+		sb.append(", connectTimeoutMillis=").append(connectTimeoutMillis);
+		sb.append(", socketTimeoutMillis=").append(socketTimeoutMillis);
+		sb.append(", connectionRequestTimeoutMillis=").append(connectionRequestTimeoutMillis);
+		sb.append(", asyncThreads=").append(asyncThreads);
+		sb.append(", asyncQueueCapacity=").append(asyncQueueCapacity);
+		sb.append(", asyncRejectionPolicy=").append(asyncRejectionPolicy);
+		sb.append(", virtualThreads=").append(virtualThreads);
+		sb.append(", batchParallelism=").append(batchParallelism);
+		sb.append(", retryPolicy=").append(retryPolicy);
+		sb.append(", rateLimitPolicy=").append(rateLimitPolicy);
+		sb.append(", circuitBreakerPolicy=").append(circuitBreakerPolicy);
+		sb.append(", metricsListener=").append(metricsListener);
+		sb.append(", tracer=").append(tracer);
+		sb.append(", traceHeader=").append(traceHeader);
+		sb.append(", slowRequestMillis=").append(slowRequestMillis);
+		sb.append(", slowRequestSampleRate=").append(slowRequestSampleRate);
+		sb.append('}');
+		return sb.toString();
+	}
+}
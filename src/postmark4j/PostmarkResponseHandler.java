@@ -0,0 +1,17 @@
+package postmark4j;
+
+import postmark4j.data.PostmarkResponse;
+
+/**
+ * Receives the results of a batch send one at a time, as they're read from Postmark's response.
+ *
+ * @author Erik Beeson
+ * @see PostmarkClient#sendBatch(postmark4j.data.PostmarkMessage[], PostmarkResponseHandler)
+ */
+public interface PostmarkResponseHandler {
+	/**
+	 * @param index The position of the message this result is for in the array that was sent.
+	 * @param response The result.
+	 */
+	void handle(int index, PostmarkResponse response);
+}
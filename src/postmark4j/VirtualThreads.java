@@ -0,0 +1,72 @@
+package postmark4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on Java 21 and later, through reflection so the library still builds and runs on older
+ * versions.
+ *
+ * @author Erik Beeson
+ */
+final class VirtualThreads {
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch(ClassNotFoundException e) {
+			ofVirtual = null;
+		} catch(NoSuchMethodException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return Whether this JVM has virtual threads.
+	 */
+	static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * @param name The thread name prefix; threads are numbered from 1.
+	 * @return An executor that starts a new virtual thread for each task.
+	 * @throws UnsupportedOperationException If this JVM doesn't have virtual threads.
+	 */
+	static ExecutorService newThreadPerTaskExecutor(String name) {
+		if(!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+		}
+		try {
+			Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name, 1L);
+			ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+		} catch(IllegalAccessException e) {
+			throw new IllegalStateException("Unable to create virtual threads.", e);
+		} catch(InvocationTargetException e) {
+			throw new IllegalStateException("Unable to create virtual threads.", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package postmark4j.attachment;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.data.PostmarkAttachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the base64 encoding of attachment content, so that an attachment sent with many messages (terms and
+ * conditions, a logo, ...) is read and encoded once, and every {@link PostmarkAttachment} created through the cache
+ * shares the same encoded bytes.
+ *
+ * Encodings are keyed by a SHA-256 hash of their content, so identical content from different sources is only
+ * stored once. Files are additionally keyed by path, size and modification time, so a cached file isn't read again
+ * until it changes.
+ *
+ * The cache holds at most {@code maxBytes} of encoded content, evicting the least recently used encodings when
+ * it's full. Attachments that are still referenced keep working after their encoding is evicted; the cache just
+ * stops handing it out. Content larger than the whole budget is encoded but never cached.
+ *
+ * This class is thread safe; one instance is meant to be shared.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class AttachmentCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AttachmentCache.class);
+
+	private static final int BUFFER_SIZE = 3 * 1024;
+
+	private final long maxBytes;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// guarded by lock
+	private final LinkedHashMap<String, Encoding> encodings = new LinkedHashMap<String, Encoding>(16, 0.75f, true);
+	private final Map<FileKey, String> files = new LinkedHashMap<FileKey, String>(16, 0.75f, true);
+	private long sizeBytes;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * @param maxBytes The most encoded content to hold, in bytes.
+	 */
+	public AttachmentCache(long maxBytes) {
+		if(maxBytes < 0) {
+			throw new IllegalArgumentException("Cache size can't be negative.");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Create an attachment for a file, reading and encoding it only if it isn't already cached (or has changed).
+	 */
+	public PostmarkAttachment attachment(File file, String contentType) throws IOException {
+		return attachment(file.toPath(), contentType, file.getName());
+	}
+
+	public PostmarkAttachment attachment(File file, String contentType, String name) throws IOException {
+		return attachment(file.toPath(), contentType, name);
+	}
+
+	public PostmarkAttachment attachment(Path path, String contentType) throws IOException {
+		return attachment(path, contentType, path.getFileName().toString());
+	}
+
+	public PostmarkAttachment attachment(Path path, String contentType, String name) throws IOException {
+		if(!Files.isRegularFile(path) || !Files.isReadable(path)) {
+			throw new FileNotFoundException("Can't read attachment: " + path);
+		}
+
+		FileKey key = new FileKey(path.toRealPath().toString(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		lock.lock();
+		try {
+			String hash = files.get(key);
+			Encoding encoding = hash == null ? null : encodings.get(hash);
+			if(encoding != null) {
+				hitCount++;
+				return new PostmarkAttachment(encoding, contentType, name);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Encoding encoding = encode(new PathAttachmentSource(path));
+		lock.lock();
+		try {
+			if(encoding.cached) {
+				files.put(key, encoding.hash);
+				trimFiles();
+			}
+		} finally {
+			lock.unlock();
+		}
+		return new PostmarkAttachment(encoding, contentType, name);
+	}
+
+	/**
+	 * Create an attachment from any source. The source is read and hashed every time, but if the same content is
+	 * already cached, the existing encoding is shared instead of keeping another copy.
+	 */
+	public PostmarkAttachment attachment(AttachmentSource source, String contentType, String name) throws IOException {
+		return new PostmarkAttachment(encode(source), contentType, name);
+	}
+
+	public long getHitCount() {
+		lock.lock();
+		try {
+			return hitCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getMissCount() {
+		lock.lock();
+		try {
+			return missCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getEvictionCount() {
+		lock.lock();
+		try {
+			return evictionCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The total size of cached encodings, in bytes.
+	 */
+	public long getSizeBytes() {
+		lock.lock();
+		try {
+			return sizeBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getEntryCount() {
+		lock.lock();
+		try {
+			return encodings.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Remove everything from the cache. Counters aren't reset.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			encodings.clear();
+			files.clear();
+			sizeBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public String toString() {
+		lock.lock();
+		try {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("AttachmentCache");
+			sb.append("{entries=").append(encodings.size());
+			sb.append(", sizeBytes=").append(sizeBytes);
+			sb.append(", maxBytes=").append(maxBytes);
+			sb.append(", hits=").append(hitCount);
+			sb.append(", misses=").append(missCount);
+			sb.append(", evictions=").append(evictionCount);
+			sb.append('}');
+			return sb.toString();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Encoding encode(AttachmentSource source) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		long length = source.length();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(length > 0 ? (int) Math.min(Integer.MAX_VALUE - 8, (length + 2) / 3 * 4) : BUFFER_SIZE);
+		InputStream in = new DigestInputStream(source.openStream(), digest);
+		try {
+			OutputStream encoder = Base64.getEncoder().wrap(encoded);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				encoder.write(buffer, 0, read);
+			}
+			encoder.close();
+		} finally {
+			in.close();
+		}
+
+		String hash = Hex.encodeHexString(digest.digest());
+		byte[] bytes = encoded.toByteArray();
+
+		lock.lock();
+		try {
+			Encoding existing = encodings.get(hash);
+			if(existing != null) {
+				// same content from a different source, share the existing copy
+				hitCount++;
+				return existing;
+			}
+			missCount++;
+
+			Encoding encoding = new Encoding(hash, bytes, bytes.length <= maxBytes);
+			if(encoding.cached) {
+				encodings.put(hash, encoding);
+				sizeBytes += bytes.length;
+				evict();
+			} else {
+				LOGGER.debug("Attachment of {} encoded bytes is too large to cache", bytes.length);
+			}
+			return encoding;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// must hold lock
+	private void evict() {
+		Iterator<Map.Entry<String, Encoding>> iterator = encodings.entrySet().iterator();
+		while(sizeBytes > maxBytes && iterator.hasNext()) {
+			Encoding eldest = iterator.next().getValue();
+			iterator.remove();
+			sizeBytes -= eldest.bytes.length;
+			evictionCount++;
+		}
+		trimFiles();
+	}
+
+	// must hold lock; forgets files whose encoding has been evicted
+	private void trimFiles() {
+		Iterator<String> iterator = files.values().iterator();
+		while(iterator.hasNext()) {
+			if(!encodings.containsKey(iterator.next())) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Base64 encoded attachment content, shared by every attachment that uses it.
+	 */
+	private static class Encoding implements EncodedAttachmentSource {
+		private final String hash;
+		private final byte[] bytes;
+		private final boolean cached;
+
+		private Encoding(String hash, byte[] bytes, boolean cached) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.cached = cached;
+		}
+
+		public void writeBase64(Writer writer) throws IOException {
+			char[] chars = new char[Math.min(bytes.length, 4096)];
+			for(int off = 0; off < bytes.length; off += chars.length) {
+				int count = Math.min(chars.length, bytes.length - off);
+				for(int i = 0; i < count; i++) {
+					chars[i] = (char) bytes[off + i];
+				}
+				writer.write(chars, 0, count);
+			}
+		}
+
+		public long encodedLength() {
+			return bytes.length;
+		}
+
+		public InputStream openStream() {
+			return Base64.getDecoder().wrap(new ByteArrayInputStream(bytes));
+		}
+
+		public long length() {
+			int padding = 0;
+			if(bytes.length > 0 && bytes[bytes.length - 1] == '=') {
+				padding++;
+				if(bytes.length > 1 && bytes[bytes.length - 2] == '=') {
+					padding++;
+				}
+			}
+			return bytes.length / 4 * 3 - padding;
+		}
+
+		public String toString() {
+			return "Encoding{sha256=" + hash + ", encodedLength=" + bytes.length + '}';
+		}
+	}
+
+	private static class FileKey {
+		private final String path;
+		private final long size;
+		private final long lastModified;
+
+		private FileKey(String path, long size, long lastModified) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof FileKey)) return false;
+
+			FileKey that = (FileKey) o;
+
+			return size == that.size && lastModified == that.lastModified && path.equals(that.path);
+		}
+
+		public int hashCode() {
+			int result = path.hashCode();
+			result = 31 * result + (int) (size ^ (size >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package postmark4j.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the content of a {@link postmark4j.data.PostmarkAttachment} comes from.
+ *
+ * A source is opened every time the attachment is serialized (which may be more than once, for example if a
+ * request is retried), and the returned stream is always closed by the caller once the content has been read.
+ *
+ * @author Erik Beeson
+ */
+public interface AttachmentSource {
+	/**
+	 * @return A new stream of the raw (not encoded) attachment content. The caller closes it.
+	 * @throws IOException If the content can't be read.
+	 */
+	InputStream openStream() throws IOException;
+
+	/**
+	 * @return The length of the raw content in bytes, or -1 if it isn't known without reading it.
+	 */
+	long length();
+}
@@ -0,0 +1,48 @@
+package postmark4j.attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Attachment content that's already base64 encoded, such as an attachment read back from JSON.
+ *
+ * @author Erik Beeson
+ */
+public class Base64AttachmentSource implements EncodedAttachmentSource {
+	private final String base64;
+
+	/**
+	 * @param base64 The base64 encoded content, without line breaks.
+	 */
+	public Base64AttachmentSource(String base64) {
+		if(base64 == null) {
+			throw new IllegalArgumentException("Content is required.");
+		}
+		this.base64 = base64;
+	}
+
+	public void writeBase64(Writer writer) throws IOException {
+		writer.write(base64);
+	}
+
+	public long encodedLength() {
+		return base64.length();
+	}
+
+	public InputStream openStream() {
+		return Base64.getDecoder().wrap(new ByteArrayInputStream(base64.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	public long length() {
+		int padding = base64.endsWith("==") ? 2 : base64.endsWith("=") ? 1 : 0;
+		return base64.length() / 4 * 3 - padding;
+	}
+
+	public String toString() {
+		return "Base64AttachmentSource{encodedLength=" + base64.length() + '}';
+	}
+}
@@ -0,0 +1,35 @@
+package postmark4j.attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Attachment content that's already in memory.
+ *
+ * @author Erik Beeson
+ */
+public class ByteArrayAttachmentSource implements AttachmentSource {
+	private final byte[] content;
+
+	/**
+	 * @param content The raw content. Not copied, so it shouldn't be modified afterwards.
+	 */
+	public ByteArrayAttachmentSource(byte[] content) {
+		if(content == null) {
+			throw new IllegalArgumentException("Content is required.");
+		}
+		this.content = content;
+	}
+
+	public InputStream openStream() {
+		return new ByteArrayInputStream(content);
+	}
+
+	public long length() {
+		return content.length;
+	}
+
+	public String toString() {
+		return "ByteArrayAttachmentSource{length=" + content.length + '}';
+	}
+}
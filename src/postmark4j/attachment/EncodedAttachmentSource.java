@@ -0,0 +1,25 @@
+package postmark4j.attachment;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An {@link AttachmentSource} that already has its content base64 encoded, so it can be written to a request as-is
+ * instead of being encoded again every time it's sent.
+ *
+ * @author Erik Beeson
+ */
+public interface EncodedAttachmentSource extends AttachmentSource {
+	/**
+	 * Write the base64 encoded content (without line breaks).
+	 *
+	 * @param writer Where to write the encoded content.
+	 * @throws IOException If the content can't be written.
+	 */
+	void writeBase64(Writer writer) throws IOException;
+
+	/**
+	 * @return The length of the base64 encoded content.
+	 */
+	long encodedLength();
+}
@@ -0,0 +1,39 @@
+package postmark4j.attachment;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads attachment content from a {@link File} each time it's needed.
+ *
+ * @author Erik Beeson
+ */
+public class FileAttachmentSource implements AttachmentSource {
+	private final File file;
+
+	public FileAttachmentSource(File file) {
+		if(file == null) {
+			throw new IllegalArgumentException("A file is required.");
+		}
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public InputStream openStream() throws IOException {
+		return new BufferedInputStream(new FileInputStream(file));
+	}
+
+	public long length() {
+		return file.length();
+	}
+
+	public String toString() {
+		return "FileAttachmentSource{" + file + '}';
+	}
+}
@@ -0,0 +1,103 @@
+package postmark4j.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads attachment content from a memory-mapped region of a file, so the content is paged in by the operating
+ * system as it's encoded rather than copied onto the heap. Useful for large attachments, or for attachments
+ * that are a slice of a larger file.
+ *
+ * The file is mapped each time the content is read, and the channel is closed right after mapping. The
+ * mapping itself is released by the JVM once the buffer is no longer referenced.
+ *
+ * @author Erik Beeson
+ */
+public class MappedAttachmentSource implements AttachmentSource {
+	private final Path path;
+	private final long position;
+	private final long size;
+
+	/**
+	 * Maps the whole file.
+	 *
+	 * @param path The file to map.
+	 * @throws IOException If the size of the file can't be determined.
+	 */
+	public MappedAttachmentSource(Path path) throws IOException {
+		this(path, 0, Files.size(path));
+	}
+
+	/**
+	 * @param path The file to map.
+	 * @param position Offset of the attachment content within the file.
+	 * @param size Length of the attachment content. Must be less than 2GB.
+	 */
+	public MappedAttachmentSource(Path path, long position, long size) {
+		if(path == null) {
+			throw new IllegalArgumentException("A path is required.");
+		}
+		if(position < 0 || size < 0 || size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid region: " + position + "+" + size);
+		}
+		this.path = path;
+		this.position = position;
+		this.size = size;
+	}
+
+	public InputStream openStream() throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+		} finally {
+			channel.close();
+		}
+	}
+
+	public long length() {
+		return size;
+	}
+
+	public String toString() {
+		return "MappedAttachmentSource{" + path + ", position=" + position + ", size=" + size + '}';
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private ByteBuffer buffer;
+
+		private ByteBufferInputStream(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() throws IOException {
+			if(buffer == null || !buffer.hasRemaining()) {
+				return -1;
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(buffer == null || !buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		public int available() {
+			return buffer == null ? 0 : buffer.remaining();
+		}
+
+		public void close() {
+			// drop the reference so the mapping can be released
+			buffer = null;
+		}
+	}
+}
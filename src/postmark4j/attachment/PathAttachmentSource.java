@@ -0,0 +1,43 @@
+package postmark4j.attachment;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads attachment content from a {@link Path} each time it's needed.
+ *
+ * @author Erik Beeson
+ */
+public class PathAttachmentSource implements AttachmentSource {
+	private final Path path;
+
+	public PathAttachmentSource(Path path) {
+		if(path == null) {
+			throw new IllegalArgumentException("A path is required.");
+		}
+		this.path = path;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public InputStream openStream() throws IOException {
+		return new BufferedInputStream(Files.newInputStream(path));
+	}
+
+	public long length() {
+		try {
+			return Files.size(path);
+		} catch(IOException e) {
+			return -1;
+		}
+	}
+
+	public String toString() {
+		return "PathAttachmentSource{" + path + '}';
+	}
+}
@@ -0,0 +1,5 @@
+/**
+ * Sources of attachment content for {@link postmark4j.data.PostmarkAttachment}s. Attachments only remember where
+ * their content comes from; it is read and base64 encoded while the message is being sent.
+ */
+package postmark4j.attachment;
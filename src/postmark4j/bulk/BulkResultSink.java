@@ -0,0 +1,34 @@
+package postmark4j.bulk;
+
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link BulkSender} puts the result for each message. Called once per message, one call at a time, in
+ * the order batches complete, which isn't necessarily the order the messages were read.
+ *
+ * @author Erik Beeson
+ */
+public interface BulkResultSink {
+	/**
+	 * Postmark answered for the message, accepting it or not (see {@link PostmarkResponse#isSuccess()}).
+	 *
+	 * @param index The position of the message in the input, starting at 0.
+	 * @param message The message.
+	 * @param response Postmark's response to it.
+	 * @throws IOException To stop sending; the exception is thrown by {@link BulkSender#send}.
+	 */
+	void onResult(long index, PostmarkMessage message, PostmarkResponse response) throws IOException;
+
+	/**
+	 * The message wasn't sent: its batch request failed, or the message was too big to send.
+	 *
+	 * @param index The position of the message in the input, starting at 0.
+	 * @param message The message.
+	 * @param error Why.
+	 * @throws IOException To stop sending; the exception is thrown by {@link BulkSender#send}.
+	 */
+	void onFailure(long index, PostmarkMessage message, Exception error) throws IOException;
+}
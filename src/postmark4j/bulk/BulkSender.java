@@ -0,0 +1,305 @@
+package postmark4j.bulk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.PostmarkClient;
+import postmark4j.data.BatchResult;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.PostmarkJson;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends any number of messages in batches while holding only a few batches in memory.
+ *
+ * <pre>
+ * BulkSender sender = new BulkSender(client);
+ * try(JsonLinesMessageSource messages = new JsonLinesMessageSource(Files.newBufferedReader(input));
+ *     JsonLinesResultSink results = new JsonLinesResultSink(Files.newBufferedWriter(output))) {
+ *     BulkSummary summary = sender.send(messages, results);
+ * }
+ * </pre>
+ *
+ * Messages are read from the iterator only as fast as they can be sent. They're grouped into batches of up to
+ * {@link #setBatchSize(int) batchSize} messages and {@link #setMaxBatchBytes(long) maxBatchBytes} of JSON (worked
+ * out without reading attachments; see {@link postmark4j.jsonio.PostmarkMessageAdapter#length(PostmarkMessage)}), and
+ * up to {@link #setMaxInFlight(int) maxInFlight} batches are sent at once with
+ * {@link PostmarkClient#sendBatchAsync(PostmarkMessage...)}. Reading waits while that many batches are in flight,
+ * so memory use depends on those settings, not on the number of messages. The result for every message is given to
+ * the {@link BulkResultSink} as soon as its batch completes.
+ *
+ * Messages larger than Postmark accepts are reported as failures without being sent. If a batch request fails,
+ * after the client's retries, every message in it is reported as a failure and sending carries on. Thread safe;
+ * each call to {@link #send} is independent.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class BulkSender {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkSender.class);
+
+	public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+	private final PostmarkClient client;
+	private volatile int batchSize = PostmarkClient.MAX_BATCH_SIZE;
+	private volatile long maxBatchBytes = PostmarkClient.MAX_BATCH_BYTES;
+	private volatile long maxMessageBytes = PostmarkClient.MAX_MESSAGE_BYTES;
+	private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+	public BulkSender(PostmarkClient client) {
+		if(client == null) {
+			throw new IllegalArgumentException("A client is required.");
+		}
+		this.client = client;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize The most messages in one batch request. Defaults to {@link PostmarkClient#MAX_BATCH_SIZE}.
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1 || batchSize > PostmarkClient.MAX_BATCH_SIZE) {
+			throw new IllegalArgumentException("Batch size must be between 1 and " + PostmarkClient.MAX_BATCH_SIZE + ".");
+		}
+		this.batchSize = batchSize;
+	}
+
+	public long getMaxBatchBytes() {
+		return maxBatchBytes;
+	}
+
+	/**
+	 * @param maxBatchBytes The most JSON in one batch request, in bytes. Defaults to {@link PostmarkClient#MAX_BATCH_BYTES}.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes) {
+		if(maxBatchBytes < 1 || maxBatchBytes > PostmarkClient.MAX_BATCH_BYTES) {
+			throw new IllegalArgumentException("Batch bytes must be between 1 and " + PostmarkClient.MAX_BATCH_BYTES + ".");
+		}
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	public long getMaxMessageBytes() {
+		return maxMessageBytes;
+	}
+
+	/**
+	 * @param maxMessageBytes Messages with more JSON than this, in bytes, are reported as failures instead of being
+	 * sent. Defaults to {@link PostmarkClient#MAX_MESSAGE_BYTES}.
+	 */
+	public void setMaxMessageBytes(long maxMessageBytes) {
+		if(maxMessageBytes < 1) {
+			throw new IllegalArgumentException("Message bytes must be positive.");
+		}
+		this.maxMessageBytes = maxMessageBytes;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @param maxInFlight The most batch requests in flight at once. Defaults to {@value #DEFAULT_MAX_IN_FLIGHT}.
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if(maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one batch must be allowed in flight.");
+		}
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Sends every message from {@code messages}, and waits for the last batch to complete.
+	 *
+	 * @param messages The messages, read as they're needed. Not closed.
+	 * @param sink Given the result for each message.
+	 * @return How it went.
+	 * @throws IOException If the sink threw, which stops sending, or the thread was interrupted. Batches that were
+	 * already in flight are waited for, but their results aren't given to a sink that has thrown.
+	 */
+	public BulkSummary send(Iterator<? extends PostmarkMessage> messages, BulkResultSink sink) throws IOException {
+		if(messages == null) {
+			throw new IllegalArgumentException("Messages are required.");
+		}
+		if(sink == null) {
+			throw new IllegalArgumentException("A result sink is required.");
+		}
+		int batchSize = this.batchSize;
+		long maxBatchBytes = this.maxBatchBytes;
+		long maxMessageBytes = this.maxMessageBytes;
+		int maxInFlight = this.maxInFlight;
+
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		Delivery delivery = new Delivery(sink);
+		long index = 0;
+		long batches = 0;
+		Batch batch = new Batch(batchSize);
+		try {
+			while(!delivery.isStopped() && messages.hasNext()) {
+				PostmarkMessage message = messages.next();
+				long length = PostmarkJson.MESSAGE.length(message);
+				if(length > maxMessageBytes) {
+					delivery.failed(index++, message, new IllegalArgumentException("Message is " + length + " bytes, more than the " + maxMessageBytes + " allowed."));
+					continue;
+				}
+				if(batch.size() == batchSize || (batch.size() > 0 && batch.bytes + 1 + length > maxBatchBytes)) {
+					submit(batch, inFlight, delivery);
+					batches++;
+					batch = new Batch(batchSize);
+				}
+				batch.add(index++, message, length);
+			}
+			if(batch.size() > 0 && !delivery.isStopped()) {
+				submit(batch, inFlight, delivery);
+				batches++;
+			}
+		} finally {
+			// wait for every batch in flight, even if reading failed
+			inFlight.acquireUninterruptibly(maxInFlight);
+		}
+		delivery.rethrow();
+		BulkSummary summary = new BulkSummary(index, delivery.getSuccessCount(), batches);
+		LOGGER.debug("Bulk send complete: {}", summary);
+		return summary;
+	}
+
+	private void submit(final Batch batch, final Semaphore inFlight, final Delivery delivery) throws IOException {
+		try {
+			inFlight.acquire();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to send a batch.");
+		}
+		final PostmarkMessage[] messages = batch.messages.toArray(new PostmarkMessage[batch.messages.size()]);
+		client.sendBatchAsync(messages).whenComplete(new BiConsumer<BatchResult, Throwable>() {
+			public void accept(BatchResult result, Throwable error) {
+				try {
+					if(error != null) {
+						Exception cause = unwrap(error);
+						LOGGER.warn("Batch of {} messages failed: {}", messages.length, cause.toString());
+						for(int i = 0; i < messages.length; i++) {
+							delivery.failed(batch.indexes[i], messages[i], cause);
+						}
+					} else {
+						for(BatchResult.Entry entry : result) {
+							delivery.result(batch.indexes[entry.getIndex()], entry);
+						}
+					}
+				} finally {
+					inFlight.release();
+				}
+			}
+		});
+	}
+
+	private static Exception unwrap(Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		return cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+	}
+
+	/**
+	 * The messages for one batch request, and their positions in the input.
+	 */
+	private static class Batch {
+		private final List<PostmarkMessage> messages;
+		private final long[] indexes;
+		// the enclosing [] of the batch
+		private long bytes = 2;
+
+		private Batch(int capacity) {
+			this.messages = new ArrayList<PostmarkMessage>(capacity);
+			this.indexes = new long[capacity];
+		}
+
+		private int size() {
+			return messages.size();
+		}
+
+		private void add(long index, PostmarkMessage message, long length) {
+			if(!messages.isEmpty()) {
+				bytes++;
+			}
+			indexes[messages.size()] = index;
+			messages.add(message);
+			bytes += length;
+		}
+	}
+
+	/**
+	 * Hands results to the sink one at a time, and remembers if it failed.
+	 */
+	private static class Delivery {
+		private final BulkResultSink sink;
+		private final ReentrantLock lock = new ReentrantLock();
+		private long successCount;
+		private volatile Exception sinkError;
+
+		private Delivery(BulkResultSink sink) {
+			this.sink = sink;
+		}
+
+		private void result(long index, BatchResult.Entry entry) {
+			lock.lock();
+			try {
+				if(entry.isSuccess()) {
+					successCount++;
+				}
+				if(sinkError == null) {
+					sink.onResult(index, entry.getMessage(), entry.getResponse());
+				}
+			} catch(IOException e) {
+				sinkError = e;
+			} catch(RuntimeException e) {
+				sinkError = e;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void failed(long index, PostmarkMessage message, Exception error) {
+			lock.lock();
+			try {
+				if(sinkError == null) {
+					sink.onFailure(index, message, error);
+				}
+			} catch(IOException e) {
+				sinkError = e;
+			} catch(RuntimeException e) {
+				sinkError = e;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isStopped() {
+			return sinkError != null;
+		}
+
+		private long getSuccessCount() {
+			lock.lock();
+			try {
+				return successCount;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void rethrow() throws IOException {
+			if(sinkError instanceof IOException) {
+				throw (IOException) sinkError;
+			} else if(sinkError instanceof RuntimeException) {
+				throw (RuntimeException) sinkError;
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package postmark4j.bulk;
+
+/**
+ * Counts from one {@link BulkSender#send} run.
+ *
+ * @author Erik Beeson
+ */
+public class BulkSummary {
+	private final long messageCount;
+	private final long successCount;
+	private final long batchCount;
+
+	public BulkSummary(long messageCount, long successCount, long batchCount) {
+		this.messageCount = messageCount;
+		this.successCount = successCount;
+		this.batchCount = batchCount;
+	}
+
+	/**
+	 * @return How many messages were read.
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * @return How many messages Postmark accepted.
+	 */
+	public long getSuccessCount() {
+		return successCount;
+	}
+
+	/**
+	 * @return How many messages were rejected by Postmark or not sent at all.
+	 */
+	public long getFailureCount() {
+		return messageCount - successCount;
+	}
+
+	/**
+	 * @return How many batch requests were made.
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("BulkSummary");
+		sb.append("{messages=").append(messageCount);
+		sb.append(", successes=").append(successCount);
+		sb.append(", failures=").append(getFailureCount());
+		sb.append(", batches=").append(batchCount);
+		sb.append('}');
+		return sb.toString();
+	}
+}
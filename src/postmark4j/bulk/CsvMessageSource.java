@@ -0,0 +1,263 @@
+package postmark4j.bulk;
+
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.PostmarkAddressAdapter;
+import postmark4j.jsonio.PostmarkAddressListAdapter;
+import postmark4j.template.Template;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads messages from CSV (RFC 4180: comma separated, optionally double quoted, with {@code ""} for a quote inside
+ * a quoted field). The first row names the columns, and each following row is a message. Rows are read one at a
+ * time, as messages are asked for.
+ *
+ * Columns named after Postmark's message fields (From, To, Cc, Bcc, Subject, Tag, HtmlBody, TextBody, ReplyTo,
+ * in any case) set those fields; To and Subject are required. Address columns may hold several comma separated
+ * addresses. Every other column is a template value for the templates given with
+ * {@link #setHtmlTemplate(Template)} and {@link #setTextTemplate(Template)}, so a mail merge is one template and
+ * a CSV file:
+ *
+ * <pre>
+ * To,Subject,name,plan
+ * ann@example.com,Your plan,Ann,Pro
+ * "Bob Smith &lt;bob@example.com&gt;",Your plan,Bob,Basic
+ * </pre>
+ *
+ * Empty cells are treated as missing.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class CsvMessageSource implements Iterator<PostmarkMessage>, Closeable {
+	private static final String[] FIELDS = {"From", "To", "Cc", "Bcc", "Subject", "Tag", "HtmlBody", "TextBody", "ReplyTo"};
+
+	private final BufferedReader reader;
+	private final String[] columns;
+	// index into FIELDS for each column, or -1 for a template value
+	private final int[] fields;
+	private Template htmlTemplate;
+	private Template textTemplate;
+	private long rowNumber;
+	private PostmarkMessage next;
+	private boolean done;
+
+	/**
+	 * @param reader The CSV, starting with the header row, which is read now.
+	 * @throws IOException If the header row can't be read.
+	 * @throws IllegalArgumentException If there's no header row, or it doesn't have To and Subject columns.
+	 */
+	public CsvMessageSource(Reader reader) throws IOException {
+		if(reader == null) {
+			throw new IllegalArgumentException("A reader is required.");
+		}
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		List<String> header = readRecord();
+		if(header == null) {
+			throw new IllegalArgumentException("A header row is required.");
+		}
+		this.columns = header.toArray(new String[header.size()]);
+		this.fields = new int[columns.length];
+		boolean to = false;
+		boolean subject = false;
+		for(int i = 0; i < columns.length; i++) {
+			columns[i] = columns[i].trim();
+			fields[i] = -1;
+			for(int field = 0; field < FIELDS.length; field++) {
+				if(FIELDS[field].equalsIgnoreCase(columns[i])) {
+					fields[i] = field;
+					to |= field == 1;
+					subject |= field == 4;
+				}
+			}
+		}
+		if(!to || !subject) {
+			throw new IllegalArgumentException("To and Subject columns are required.");
+		}
+	}
+
+	public Template getHtmlTemplate() {
+		return htmlTemplate;
+	}
+
+	/**
+	 * @param htmlTemplate The HTML body of every message, filled in from the row. Overrides an HtmlBody column.
+	 */
+	public void setHtmlTemplate(Template htmlTemplate) {
+		this.htmlTemplate = htmlTemplate;
+	}
+
+	public Template getTextTemplate() {
+		return textTemplate;
+	}
+
+	/**
+	 * @param textTemplate The text body of every message, filled in from the row. Overrides a TextBody column.
+	 */
+	public void setTextTemplate(Template textTemplate) {
+		this.textTemplate = textTemplate;
+	}
+
+	/**
+	 * @throws UncheckedIOException If the input can't be read.
+	 * @throws IllegalArgumentException If the next row isn't a valid message.
+	 */
+	public boolean hasNext() {
+		if(next != null) {
+			return true;
+		}
+		if(done) {
+			return false;
+		}
+		List<String> record;
+		try {
+			do {
+				record = readRecord();
+			} while(record != null && record.size() == 1 && record.get(0).length() == 0);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(record == null) {
+			done = true;
+			return false;
+		}
+		rowNumber++;
+		try {
+			next = toMessage(record);
+		} catch(RuntimeException e) {
+			throw new IllegalArgumentException("Invalid message in row " + rowNumber + ": " + e.getMessage(), e);
+		}
+		return true;
+	}
+
+	public PostmarkMessage next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		PostmarkMessage message = next;
+		next = null;
+		return message;
+	}
+
+	/**
+	 * @return The row the last message was read from, starting at 1 for the first row after the header.
+	 */
+	public long getRowNumber() {
+		return rowNumber;
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private PostmarkMessage toMessage(List<String> record) {
+		String[] values = new String[FIELDS.length];
+		Map<String, String> templateValues = null;
+		for(int i = 0; i < columns.length && i < record.size(); i++) {
+			String value = record.get(i);
+			if(value.length() == 0) {
+				continue;
+			}
+			if(fields[i] >= 0) {
+				values[fields[i]] = value;
+			} else {
+				if(templateValues == null) {
+					templateValues = new HashMap<String, String>();
+				}
+				templateValues.put(columns[i], value);
+			}
+		}
+
+		List<PostmarkAddress> to = addresses(values[1]);
+		PostmarkAddress from = values[0] != null ? PostmarkAddressAdapter.parse(values[0]) : null;
+		PostmarkMessage message = new PostmarkMessage(from, values[4], to.toArray(new PostmarkAddress[to.size()]));
+		List<PostmarkAddress> cc = addresses(values[2]);
+		if(!cc.isEmpty()) {
+			message.addCc(cc.toArray(new PostmarkAddress[cc.size()]));
+		}
+		List<PostmarkAddress> bcc = addresses(values[3]);
+		if(!bcc.isEmpty()) {
+			message.addBcc(bcc.toArray(new PostmarkAddress[bcc.size()]));
+		}
+		message.setTag(values[5]);
+		message.setHtmlBody(values[6]);
+		message.setTextBody(values[7]);
+		if(values[8] != null) {
+			message.setReplyTo(PostmarkAddressAdapter.parse(values[8]));
+		}
+		if(htmlTemplate != null) {
+			message.setHtmlTemplate(htmlTemplate);
+		}
+		if(textTemplate != null) {
+			message.setTextTemplate(textTemplate);
+		}
+		if(templateValues != null) {
+			message.setTemplateValues(templateValues);
+		}
+		return message;
+	}
+
+	private static List<PostmarkAddress> addresses(String value) {
+		return value != null ? PostmarkAddressListAdapter.parse(value) : new ArrayList<PostmarkAddress>();
+	}
+
+	/**
+	 * @return The fields of the next record, or {@code null} at the end of the input.
+	 */
+	private List<String> readRecord() throws IOException {
+		int c = reader.read();
+		if(c < 0) {
+			return null;
+		}
+		List<String> record = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while(true) {
+			if(quoted) {
+				if(c < 0) {
+					throw new IllegalArgumentException("Unclosed quote in row " + (rowNumber + 1) + ".");
+				}
+				if(c == '"') {
+					reader.mark(1);
+					int following = reader.read();
+					if(following == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						reader.reset();
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if(c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if(c == ',') {
+				record.add(field.toString());
+				field.setLength(0);
+			} else if(c == '\r' || c == '\n' || c < 0) {
+				if(c == '\r') {
+					reader.mark(1);
+					if(reader.read() != '\n') {
+						reader.reset();
+					}
+				}
+				record.add(field.toString());
+				return record;
+			} else {
+				field.append((char) c);
+			}
+			c = reader.read();
+		}
+	}
+}
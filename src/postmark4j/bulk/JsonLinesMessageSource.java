@@ -0,0 +1,90 @@
+package postmark4j.bulk;
+
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.PostmarkJson;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads messages from JSON Lines: one message per line, in the same JSON Postmark's API takes. Blank lines are
+ * skipped. Lines are read one at a time, as messages are asked for.
+ *
+ * <pre>
+ * {"From":"sender@example.com","To":"receiver@example.com","Subject":"Hello","TextBody":"..."}
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+public class JsonLinesMessageSource implements Iterator<PostmarkMessage>, Closeable {
+	private final BufferedReader reader;
+	private long lineNumber;
+	private PostmarkMessage next;
+	private boolean done;
+
+	public JsonLinesMessageSource(Reader reader) {
+		if(reader == null) {
+			throw new IllegalArgumentException("A reader is required.");
+		}
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	/**
+	 * @throws UncheckedIOException If the input can't be read.
+	 * @throws IllegalArgumentException If the next line isn't a valid message.
+	 */
+	public boolean hasNext() {
+		if(next != null) {
+			return true;
+		}
+		if(done) {
+			return false;
+		}
+		String line;
+		try {
+			do {
+				line = reader.readLine();
+				lineNumber++;
+			} while(line != null && line.trim().length() == 0);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(line == null) {
+			done = true;
+			return false;
+		}
+		try {
+			next = PostmarkJson.readMessage(line);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Invalid JSON on line " + lineNumber + ": " + e.getMessage(), e);
+		} catch(RuntimeException e) {
+			throw new IllegalArgumentException("Invalid message on line " + lineNumber + ": " + e.getMessage(), e);
+		}
+		return true;
+	}
+
+	public PostmarkMessage next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		PostmarkMessage message = next;
+		next = null;
+		return message;
+	}
+
+	/**
+	 * @return The line the last message was read from, starting at 1.
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+}
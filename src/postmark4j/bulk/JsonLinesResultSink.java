@@ -0,0 +1,76 @@
+package postmark4j.bulk;
+
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.jsonio.JsonOutput;
+import postmark4j.jsonio.PostmarkAddressListAdapter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one JSON line per message:
+ *
+ * <pre>
+ * {"Index":0,"To":"receiver@example.com","ErrorCode":0,"Message":"OK","MessageID":"..."}
+ * {"Index":1,"To":"other@example.com","Error":"java.net.SocketTimeoutException: Read timed out"}
+ * </pre>
+ *
+ * "Index" is the position of the message in the input. Lines are in the order batches complete.
+ *
+ * @author Erik Beeson
+ */
+public class JsonLinesResultSink implements BulkResultSink, Closeable {
+	private final Writer writer;
+	private final PostmarkAddressListAdapter addressListAdapter = new PostmarkAddressListAdapter();
+
+	/**
+	 * @param writer Where to write; buffering it is up to the caller.
+	 */
+	public JsonLinesResultSink(Writer writer) {
+		if(writer == null) {
+			throw new IllegalArgumentException("A writer is required.");
+		}
+		this.writer = writer;
+	}
+
+	public void onResult(long index, PostmarkMessage message, PostmarkResponse response) throws IOException {
+		JsonOutput out = begin(index, message);
+		out.name("ErrorCode").value(response.getErrorCode());
+		if(response.getMessage() != null) {
+			out.name("Message").value(response.getMessage());
+		}
+		if(response.getMessageId() != null) {
+			out.name("MessageID").value(response.getMessageId());
+		}
+		end(out);
+	}
+
+	public void onFailure(long index, PostmarkMessage message, Exception error) throws IOException {
+		JsonOutput out = begin(index, message);
+		out.name("Error").value(error.toString());
+		end(out);
+	}
+
+	private JsonOutput begin(long index, PostmarkMessage message) throws IOException {
+		JsonOutput out = new JsonOutput(writer);
+		out.beginObject();
+		out.name("Index").value(index);
+		addressListAdapter.writeMember(out, "To", message.getTo());
+		return out;
+	}
+
+	private void end(JsonOutput out) throws IOException {
+		out.endObject();
+		writer.write('\n');
+	}
+
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,7 @@
+/**
+ * Sending very large numbers of messages in constant memory: {@link postmark4j.bulk.BulkSender} reads messages
+ * lazily from a {@link postmark4j.bulk.JsonLinesMessageSource}, a {@link postmark4j.bulk.CsvMessageSource} or any
+ * {@link java.util.Iterator}, sends them in batches, and hands each result to a
+ * {@link postmark4j.bulk.BulkResultSink}.
+ */
+package postmark4j.bulk;
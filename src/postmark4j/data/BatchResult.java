@@ -0,0 +1,170 @@
+package postmark4j.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of sending a batch: every message, in the order it was given, paired with Postmark's response to it.
+ * Messages in a batch succeed or fail individually, so a batch that was accepted may still contain failures.
+ *
+ * <pre>
+ * BatchResult result = client.sendBatch(messages);
+ * for(BatchResult.Entry entry : result.getFailures()) {
+ *     log.warn("Not sent to {}: {}", entry.getMessage().getTo(), entry.getError().getMessage());
+ * }
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+public class BatchResult extends AbstractList<BatchResult.Entry> {
+	private final PostmarkMessage[] messages;
+	private final PostmarkResponse[] responses;
+	private final int[] attempts;
+
+	/**
+	 * @param messages The messages sent.
+	 * @param responses Postmark's response to each message, in the same order.
+	 * @param attempts How many times each message was sent, or {@code null} if each was sent once.
+	 */
+	public BatchResult(PostmarkMessage[] messages, PostmarkResponse[] responses, int[] attempts) {
+		if(messages == null || responses == null || messages.length != responses.length) {
+			throw new IllegalArgumentException("A response is required for every message.");
+		}
+		if(attempts != null && attempts.length != messages.length) {
+			throw new IllegalArgumentException("An attempt count is required for every message.");
+		}
+		this.messages = messages.clone();
+		this.responses = responses.clone();
+		this.attempts = attempts != null ? attempts.clone() : null;
+	}
+
+	public Entry get(int index) {
+		if(index < 0 || index >= messages.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + messages.length);
+		}
+		return new Entry(index);
+	}
+
+	public int size() {
+		return messages.length;
+	}
+
+	/**
+	 * @return Whether every message in the batch was accepted.
+	 */
+	public boolean isSuccess() {
+		return getFailureCount() == 0;
+	}
+
+	public int getSuccessCount() {
+		return messages.length - getFailureCount();
+	}
+
+	public int getFailureCount() {
+		int failures = 0;
+		for(PostmarkResponse response : responses) {
+			if(!response.isSuccess()) {
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * @return The entries for messages that weren't accepted, in order.
+	 */
+	public List<Entry> getFailures() {
+		List<Entry> failures = new ArrayList<Entry>();
+		for(int i = 0; i < responses.length; i++) {
+			if(!responses[i].isSuccess()) {
+				failures.add(new Entry(i));
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * @return The messages that weren't accepted, in order, for sending again or elsewhere.
+	 */
+	public PostmarkMessage[] getFailedMessages() {
+		List<Entry> failures = getFailures();
+		PostmarkMessage[] failed = new PostmarkMessage[failures.size()];
+		for(int i = 0; i < failed.length; i++) {
+			failed[i] = failures.get(i).getMessage();
+		}
+		return failed;
+	}
+
+	/**
+	 * @return The responses, in the same order as the messages.
+	 */
+	public PostmarkResponse[] getResponses() {
+		return responses.clone();
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("BatchResult");
+		sb.append("{size=").append(messages.length);
+		sb.append(", failures=").append(getFailureCount());
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * One message in the batch and Postmark's response to it.
+	 */
+	public class Entry {
+		private final int index;
+
+		private Entry(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return The position of the message in the batch.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public PostmarkMessage getMessage() {
+			return messages[index];
+		}
+
+		public PostmarkResponse getResponse() {
+			return responses[index];
+		}
+
+		public boolean isSuccess() {
+			return responses[index].isSuccess();
+		}
+
+		/**
+		 * @return Why the message wasn't accepted, or {@code null} if it was.
+		 */
+		public PostmarkError getError() {
+			PostmarkResponse response = responses[index];
+			return response.isSuccess() ? null : new PostmarkError(response.getErrorCode(), response.getMessage());
+		}
+
+		/**
+		 * @return How many times the message was sent, counting resubmissions of failed messages in the batch.
+		 */
+		public int getAttempts() {
+			return attempts != null ? attempts[index] : 1;
+		}
+
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("Entry");
+			sb.append("{index=").append(index);
+			sb.append(", to='").append(messages[index].getTo()).append('\'');
+			sb.append(", response=").append(responses[index]);
+			sb.append(", attempts=").append(getAttempts());
+			sb.append('}');
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package postmark4j.data;
+
+import postmark4j.attachment.Base64AttachmentSource;
+import postmark4j.attachment.EncodedAttachmentSource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One message for any number of recipients, sent as copies that each stay within Postmark's limit of 20 addresses.
+ *
+ * <pre>
+ * PostmarkMessage alert = new PostmarkMessage("Disk full on db-3", new PostmarkAddress("oncall@example.com"));
+ * alert.setTextBody(details);
+ * FanOutResult result = client.sendFanOut(new FanOutMessage(alert, distributionList));
+ * for(PostmarkAddress recipient : result.getFailedRecipients()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * The content (from, subject, bodies, templates, reply to, tag, headers and attachments) comes from a
+ * {@link PostmarkMessage}, whose own To, Cc and Bcc are replaced by the recipients in every copy. Each copy is
+ * addressed To {@link #setRecipientsPerMessage(int) recipientsPerMessage} of the recipients, 1 by default so no one
+ * sees anyone else's address.
+ *
+ * The copies share the content's objects rather than copying them, so thousands of copies of a large message take
+ * little more memory than one. Attachment content is read and base64 encoded once, when the copies are made, and
+ * that one encoding is written for every copy.
+ *
+ * Not thread safe.
+ *
+ * @author Erik Beeson
+ * @see postmark4j.PostmarkClient#sendFanOut(FanOutMessage)
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class FanOutMessage {
+	public static final int MAX_RECIPIENTS_PER_MESSAGE = 20;
+
+	private final PostmarkMessage content;
+	private final List<PostmarkAddress> recipients = new ArrayList<PostmarkAddress>();
+	private int recipientsPerMessage = 1;
+
+	/**
+	 * @param content The message to send. Its To, Cc and Bcc aren't used.
+	 * @param recipients Who to send it to.
+	 */
+	public FanOutMessage(PostmarkMessage content, Collection<? extends PostmarkAddress> recipients) {
+		if(content == null) {
+			throw new IllegalArgumentException("A message is required.");
+		}
+		if(recipients == null || recipients.isEmpty()) {
+			throw new IllegalArgumentException("At least one recipient is required.");
+		}
+		this.content = content;
+		addRecipients(recipients);
+	}
+
+	/**
+	 * @return The message being sent. Changes to it show up in copies made afterwards.
+	 */
+	public PostmarkMessage getContent() {
+		return content;
+	}
+
+	/**
+	 * @return The recipients, in the order they were added.
+	 */
+	public List<PostmarkAddress> getRecipients() {
+		return Collections.unmodifiableList(recipients);
+	}
+
+	public void addRecipients(Collection<? extends PostmarkAddress> recipients) {
+		for(PostmarkAddress recipient : recipients) {
+			if(recipient == null) {
+				throw new IllegalArgumentException("Recipients can't be null.");
+			}
+		}
+		this.recipients.addAll(recipients);
+	}
+
+	public void addRecipient(PostmarkAddress... recipients) {
+		for(PostmarkAddress recipient : recipients) {
+			if(recipient == null) {
+				throw new IllegalArgumentException("Recipients can't be null.");
+			}
+		}
+		Collections.addAll(this.recipients, recipients);
+	}
+
+	public int getRecipientsPerMessage() {
+		return recipientsPerMessage;
+	}
+
+	/**
+	 * @param recipientsPerMessage How many recipients to put in the To of each copy. They'll see each other's
+	 * addresses. Defaults to 1; at most {@value #MAX_RECIPIENTS_PER_MESSAGE}.
+	 */
+	public void setRecipientsPerMessage(int recipientsPerMessage) {
+		if(recipientsPerMessage < 1 || recipientsPerMessage > MAX_RECIPIENTS_PER_MESSAGE) {
+			throw new IllegalArgumentException("Recipients per message must be between 1 and " + MAX_RECIPIENTS_PER_MESSAGE + ".");
+		}
+		this.recipientsPerMessage = recipientsPerMessage;
+	}
+
+	/**
+	 * @return How many copies will be sent.
+	 */
+	public int getMessageCount() {
+		return (recipients.size() + recipientsPerMessage - 1) / recipientsPerMessage;
+	}
+
+	/**
+	 * Makes the copies to send. The recipients of copy {@code i} are recipients {@code i * recipientsPerMessage}
+	 * up to {@code (i + 1) * recipientsPerMessage}.
+	 *
+	 * @return The copies, in the order of their recipients.
+	 * @throws IOException If attachment content can't be read.
+	 */
+	public PostmarkMessage[] expand() throws IOException {
+		PostmarkMessage[] copies = new PostmarkMessage[getMessageCount()];
+		List<PostmarkAttachment> attachments = copies.length > 1 ? encodeAttachments() : content.getAttachments();
+		for(int i = 0; i < copies.length; i++) {
+			int from = i * recipientsPerMessage;
+			int to = Math.min(from + recipientsPerMessage, recipients.size());
+			copies[i] = new PostmarkMessage(content, recipients.subList(from, to), attachments);
+		}
+		return copies;
+	}
+
+	/**
+	 * @return The content's attachments, with any that aren't already encoded read and encoded once, to be shared by
+	 * every copy.
+	 */
+	private List<PostmarkAttachment> encodeAttachments() throws IOException {
+		List<PostmarkAttachment> attachments = content.getAttachments();
+		if(attachments == null) {
+			return null;
+		}
+		List<PostmarkAttachment> encoded = new ArrayList<PostmarkAttachment>(attachments.size());
+		for(PostmarkAttachment attachment : attachments) {
+			if(attachment.getSource() instanceof EncodedAttachmentSource) {
+				encoded.add(attachment);
+			} else {
+				StringWriter content = new StringWriter();
+				attachment.writeContent(content);
+				encoded.add(new PostmarkAttachment(new Base64AttachmentSource(content.toString()), attachment.getContentType(), attachment.getName()));
+			}
+		}
+		return encoded;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("FanOutMessage");
+		sb.append("{content=").append(content);
+		sb.append(", recipients=").append(recipients.size());
+		sb.append(", recipientsPerMessage=").append(recipientsPerMessage);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,164 @@
+package postmark4j.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of sending a {@link FanOutMessage}: every recipient, in the order they were added, paired with
+ * Postmark's response to the copy they were in. Recipients who shared a copy share its response.
+ *
+ * <pre>
+ * FanOutResult result = client.sendFanOut(message);
+ * for(FanOutResult.Entry entry : result) {
+ *     if(!entry.isSuccess()) {
+ *         log.warn("Not sent to {}: {}", entry.getRecipient(), entry.getError().getMessage());
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+public class FanOutResult extends AbstractList<FanOutResult.Entry> {
+	private final List<PostmarkAddress> recipients;
+	private final int recipientsPerMessage;
+	private final BatchResult batchResult;
+
+	/**
+	 * @param recipients The recipients, in order.
+	 * @param recipientsPerMessage How many recipients were in each copy.
+	 * @param batchResult The result of sending the copies, as made by {@link FanOutMessage#expand()}.
+	 */
+	public FanOutResult(List<PostmarkAddress> recipients, int recipientsPerMessage, BatchResult batchResult) {
+		if(recipients == null || batchResult == null || recipientsPerMessage < 1) {
+			throw new IllegalArgumentException("Recipients and a batch result are required.");
+		}
+		if(batchResult.size() != (recipients.size() + recipientsPerMessage - 1) / recipientsPerMessage) {
+			throw new IllegalArgumentException("A result is required for every copy.");
+		}
+		this.recipients = new ArrayList<PostmarkAddress>(recipients);
+		this.recipientsPerMessage = recipientsPerMessage;
+		this.batchResult = batchResult;
+	}
+
+	public Entry get(int index) {
+		if(index < 0 || index >= recipients.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + recipients.size());
+		}
+		return new Entry(index);
+	}
+
+	public int size() {
+		return recipients.size();
+	}
+
+	/**
+	 * @return Whether the message was accepted for every recipient.
+	 */
+	public boolean isSuccess() {
+		return batchResult.isSuccess();
+	}
+
+	public int getSuccessCount() {
+		return recipients.size() - getFailureCount();
+	}
+
+	public int getFailureCount() {
+		return getFailedRecipients().size();
+	}
+
+	/**
+	 * @return The recipients whose copy wasn't accepted, in order, for sending again or elsewhere.
+	 */
+	public List<PostmarkAddress> getFailedRecipients() {
+		List<PostmarkAddress> failed = new ArrayList<PostmarkAddress>();
+		for(BatchResult.Entry copy : batchResult.getFailures()) {
+			int from = copy.getIndex() * recipientsPerMessage;
+			failed.addAll(recipients.subList(from, Math.min(from + recipientsPerMessage, recipients.size())));
+		}
+		return failed;
+	}
+
+	/**
+	 * @return The result for each copy that was sent.
+	 */
+	public BatchResult getBatchResult() {
+		return batchResult;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("FanOutResult");
+		sb.append("{recipients=").append(recipients.size());
+		sb.append(", messages=").append(batchResult.size());
+		sb.append(", failures=").append(getFailureCount());
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * One recipient and Postmark's response to the copy they were in.
+	 */
+	public class Entry {
+		private final int index;
+
+		private Entry(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return The position of the recipient.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public PostmarkAddress getRecipient() {
+			return recipients.get(index);
+		}
+
+		/**
+		 * @return The copy sent to the recipient.
+		 */
+		public PostmarkMessage getMessage() {
+			return copy().getMessage();
+		}
+
+		public PostmarkResponse getResponse() {
+			return copy().getResponse();
+		}
+
+		public boolean isSuccess() {
+			return copy().isSuccess();
+		}
+
+		/**
+		 * @return Why the copy wasn't accepted, or {@code null} if it was.
+		 */
+		public PostmarkError getError() {
+			return copy().getError();
+		}
+
+		/**
+		 * @return How many times the copy was sent.
+		 */
+		public int getAttempts() {
+			return copy().getAttempts();
+		}
+
+		private BatchResult.Entry copy() {
+			return batchResult.get(index / recipientsPerMessage);
+		}
+
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("Entry");
+			sb.append("{index=").append(index);
+			sb.append(", recipient=").append(getRecipient());
+			sb.append(", response=").append(getResponse());
+			sb.append(", attempts=").append(getAttempts());
+			sb.append('}');
+			return sb.toString();
+		}
+	}
+}
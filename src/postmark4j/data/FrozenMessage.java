@@ -0,0 +1,153 @@
+package postmark4j.data;
+
+import postmark4j.jsonio.JsonOutput;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.template.Template;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable {@link PostmarkMessage} that was serialized once, when it was frozen, and keeps its JSON as UTF-8
+ * bytes. Every later send, retry or resend copies those bytes straight into the request instead of serializing the
+ * message again, and attachment content is read only once.
+ *
+ * <pre>
+ * FrozenMessage message = client.freeze(draft);
+ * client.send(message);
+ * </pre>
+ *
+ * Created with {@link PostmarkMessage#freeze()}, or {@link postmark4j.PostmarkClient#freeze(PostmarkMessage)} to
+ * also fill in the client's default "from" address. Methods that would change the message throw
+ * {@link UnsupportedOperationException}, and the lists it returns can't be modified, so a frozen message can be
+ * shared between threads.
+ *
+ * @author Erik Beeson
+ */
+public final class FrozenMessage extends PostmarkMessage {
+	private final List<PostmarkAddress> to;
+	private final List<PostmarkAddress> cc;
+	private final List<PostmarkAddress> bcc;
+	private final List<Header> headers;
+	private final List<PostmarkAttachment> attachments;
+	private final byte[] json;
+
+	FrozenMessage(PostmarkMessage message) throws IOException {
+		super(message.getFrom(), message, true);
+		this.to = Collections.unmodifiableList(super.getTo());
+		this.cc = Collections.unmodifiableList(super.getCc());
+		this.bcc = Collections.unmodifiableList(super.getBcc());
+		this.headers = super.getHeaders() != null ? Collections.unmodifiableList(super.getHeaders()) : null;
+		this.attachments = super.getAttachments() != null ? Collections.unmodifiableList(super.getAttachments()) : null;
+		// serialize the copy, so the JSON always matches what the getters return
+		PostmarkMessage copy = new PostmarkMessage(getFrom(), this);
+		this.json = PostmarkJson.toJsonBytes(copy);
+	}
+
+	/**
+	 * Writes the cached JSON as a value.
+	 */
+	public void writeTo(JsonOutput out) throws IOException {
+		out.rawValue(json);
+	}
+
+	/**
+	 * @return A copy of the cached JSON.
+	 */
+	public byte[] toJsonBytes() {
+		return json.clone();
+	}
+
+	public String toJson() {
+		return new String(json, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The size of the cached JSON in bytes.
+	 */
+	public int getJsonLength() {
+		return json.length;
+	}
+
+	/**
+	 * @return This message, which is already frozen.
+	 */
+	public FrozenMessage freeze() {
+		return this;
+	}
+
+	public List<PostmarkAddress> getTo() {
+		return to;
+	}
+
+	public List<PostmarkAddress> getCc() {
+		return cc;
+	}
+
+	public List<PostmarkAddress> getBcc() {
+		return bcc;
+	}
+
+	public List<Header> getHeaders() {
+		return headers;
+	}
+
+	public List<PostmarkAttachment> getAttachments() {
+		return attachments;
+	}
+
+	public void addTo(PostmarkAddress... to) {
+		throw frozen();
+	}
+
+	public void addCc(PostmarkAddress... cc) {
+		throw frozen();
+	}
+
+	public void addBcc(PostmarkAddress... bcc) {
+		throw frozen();
+	}
+
+	public void setTag(String tag) {
+		throw frozen();
+	}
+
+	public void setHtmlBody(String htmlBody) {
+		throw frozen();
+	}
+
+	public void setTextBody(String textBody) {
+		throw frozen();
+	}
+
+	public void setHtmlTemplate(Template htmlTemplate) {
+		throw frozen();
+	}
+
+	public void setTextTemplate(Template textTemplate) {
+		throw frozen();
+	}
+
+	public void setTemplateValues(Map<String, ?> templateValues) {
+		throw frozen();
+	}
+
+	public void setReplyTo(PostmarkAddress replyTo) {
+		throw frozen();
+	}
+
+	public void addHeader(String name, String value) {
+		throw frozen();
+	}
+
+	public void addAttachment(PostmarkAttachment... attachments) {
+		throw frozen();
+	}
+
+	private static UnsupportedOperationException frozen() {
+		return new UnsupportedOperationException("A frozen message can't be changed.");
+	}
+}
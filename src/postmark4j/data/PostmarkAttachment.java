@@ -1,15 +1,25 @@
 package postmark4j.data;
 
 import com.google.gson.annotations.SerializedName;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.binary.StringUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import postmark4j.attachment.AttachmentSource;
+import postmark4j.attachment.EncodedAttachmentSource;
+import postmark4j.attachment.FileAttachmentSource;
+import postmark4j.attachment.PathAttachmentSource;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Base64;
 
 /**
  * Represents an attachment as defined by: http://developer.postmarkapp.com/developer-build.html#attachments
@@ -20,6 +30,10 @@ import java.io.IOException;
  *   "ContentType": "text/plain"
  * }
  *
+ * An attachment only records where its content comes from (see {@link AttachmentSource}). The content is read
+ * and base64 encoded a piece at a time while the message is being written to Postmark, so large attachments are
+ * never held in memory, and the source is closed as soon as it has been read.
+ *
  * @author Erik Beeson
  */
 public class PostmarkAttachment {
@@ -31,36 +45,143 @@ public class PostmarkAttachment {
 			"log", "csv", "ics", "xml"
 	};
 
+	// read in multiples of 3 bytes so each chunk encodes to whole base64 quanta
+	private static final int READ_BUFFER_SIZE = 3 * 1024;
+
 	@SerializedName("Name")
 	private final String name;
 
-	@SerializedName("Content")
-	private final String content;
+	private final transient AttachmentSource source;
 
 	@SerializedName("ContentType")
 	private final String contentType;
 
+	/**
+	 * @param file The file to attach. It isn't read until the message is sent.
+	 * @param contentType The MIME type of the file.
+	 * @throws FileNotFoundException If the file doesn't exist or can't be read.
+	 */
 	public PostmarkAttachment(File file, String contentType) throws IOException {
 		this(file, contentType, file.getName());
 	}
 
+	/**
+	 * @param file The file to attach. It isn't read until the message is sent.
+	 * @param contentType The MIME type of the file.
+	 * @param name The attachment name shown to the recipient.
+	 * @throws FileNotFoundException If the file doesn't exist or can't be read.
+	 */
 	public PostmarkAttachment(File file, String contentType, String name) throws IOException {
-		this.name = name;
-		// not using Base64.encodeBase64String(...) because it chunks
-		this.content = StringUtils.newStringUtf8(Base64.encodeBase64(IOUtils.toByteArray(new FileInputStream(file))));
-		this.contentType = contentType;
+		this(new FileAttachmentSource(file), contentType, name);
 
+		if(!file.isFile() || !file.canRead()) {
+			throw new FileNotFoundException("Can't read attachment: " + file);
+		}
 		if(!isAcceptableExtension(file)) {
 			LOGGER.warn("Attachment with unacceptable extension: {}", file);
 		}
 	}
 
+	/**
+	 * @param path The file to attach. It isn't read until the message is sent.
+	 * @param contentType The MIME type of the file.
+	 * @throws NoSuchFileException If the file doesn't exist or can't be read.
+	 */
+	public PostmarkAttachment(Path path, String contentType) throws IOException {
+		this(path, contentType, path.getFileName().toString());
+	}
+
+	/**
+	 * @param path The file to attach. It isn't read until the message is sent.
+	 * @param contentType The MIME type of the file.
+	 * @param name The attachment name shown to the recipient.
+	 * @throws NoSuchFileException If the file doesn't exist or can't be read.
+	 */
+	public PostmarkAttachment(Path path, String contentType, String name) throws IOException {
+		this(new PathAttachmentSource(path), contentType, name);
+
+		if(!Files.isRegularFile(path) || !Files.isReadable(path)) {
+			throw new NoSuchFileException(path.toString());
+		}
+		if(!isAcceptableExtension(path.getFileName().toString())) {
+			LOGGER.warn("Attachment with unacceptable extension: {}", path);
+		}
+	}
+
+	/**
+	 * @param source Where to read the content from when the message is sent.
+	 * @param contentType The MIME type of the content.
+	 * @param name The attachment name shown to the recipient.
+	 */
+	public PostmarkAttachment(AttachmentSource source, String contentType, String name) {
+		if(source == null) {
+			throw new IllegalArgumentException("An attachment source is required.");
+		}
+		this.name = name;
+		this.source = source;
+		this.contentType = contentType;
+	}
+
 	public String getName() {
 		return name;
 	}
 
+	public AttachmentSource getSource() {
+		return source;
+	}
+
+	/**
+	 * Reads and encodes the entire attachment into a {@link String}. Since that holds the whole (encoded)
+	 * attachment in memory, prefer {@link #writeContent(java.io.Writer)}, which streams it and reports read
+	 * failures as a checked {@link IOException}.
+	 *
+	 * @return The base64 encoded content.
+	 * @throws UncheckedIOException If the content can't be read.
+	 */
 	public String getContent() {
-		return content;
+		StringWriter writer = new StringWriter();
+		try {
+			writeContent(writer);
+		} catch(IOException e) {
+			throw new UncheckedIOException("Couldn't read the content of attachment " + name, e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Reads the attachment from its source and writes it base64 encoded (without line breaks) to the given
+	 * writer, a buffer at a time. The source is closed before this returns. Content from an
+	 * {@link EncodedAttachmentSource} (such as an {@link postmark4j.attachment.AttachmentCache}) is written as-is.
+	 *
+	 * @param writer Where to write the encoded content.
+	 * @throws IOException If the content can't be read or written.
+	 */
+	public void writeContent(Writer writer) throws IOException {
+		if(source instanceof EncodedAttachmentSource) {
+			((EncodedAttachmentSource) source).writeBase64(writer);
+			return;
+		}
+
+		InputStream in = source.openStream();
+		try {
+			OutputStream encoder = Base64.getEncoder().wrap(new AsciiOutputStream(writer));
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				encoder.write(buffer, 0, read);
+			}
+			// writes any final partial quantum and padding; doesn't close the writer
+			encoder.close();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return The size of the raw (not encoded) content in bytes, or -1 if unknown.
+	 */
+	public long getSize() {
+		return source.length();
 	}
 
 	public String getContentType() {
@@ -68,7 +189,14 @@ public class PostmarkAttachment {
 	}
 
 	public static boolean isAcceptableExtension(File file) {
-		String name = file.getName().toLowerCase();
+		return isAcceptableExtension(file.getName());
+	}
+
+	public static boolean isAcceptableExtension(String fileName) {
+		if(fileName == null) {
+			return false;
+		}
+		String name = fileName.toLowerCase();
 		for(String allowedExtension : ALLOWED_EXTENSIONS) {
 			if(name.endsWith(allowedExtension)) {
 				return true;
@@ -76,4 +204,46 @@ public class PostmarkAttachment {
 		}
 		return false;
 	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("PostmarkAttachment");
+		sb.append("{name='").append(name).append('\'');
+		sb.append(", contentType='").append(contentType).append('\'');
+		sb.append(", source=").append(source);
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * Passes base64 output (which is always ASCII) to a {@link Writer} without going through a charset encoder.
+	 */
+	private static class AsciiOutputStream extends OutputStream {
+		private final Writer writer;
+		private final char[] chars = new char[4096];
+
+		private AsciiOutputStream(Writer writer) {
+			this.writer = writer;
+		}
+
+		public void write(int b) throws IOException {
+			writer.write((char) (b & 0x7F));
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while(len > 0) {
+				int count = Math.min(len, chars.length);
+				for(int i = 0; i < count; i++) {
+					chars[i] = (char) (b[off + i] & 0x7F);
+				}
+				writer.write(chars, 0, count);
+				off += count;
+				len -= count;
+			}
+		}
+
+		public void close() {
+			// the writer belongs to the caller
+		}
+	}
 }
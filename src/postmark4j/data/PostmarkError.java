@@ -10,12 +10,30 @@ import com.google.gson.annotations.SerializedName;
  * @author Erik Beeson
  */
 public class PostmarkError {
+	/**
+	 * The Postmark API is offline for maintenance; the request can be tried again later.
+	 */
+	public static final int MAINTENANCE = 100;
+
+	/**
+	 * The request body couldn't be parsed as JSON.
+	 */
+	public static final int INVALID_JSON = 402;
+
 	@SerializedName("ErrorCode")
 	private int errorCode;
 
 	@SerializedName("Message")
 	private String message;
 
+	public PostmarkError() {
+	}
+
+	public PostmarkError(int errorCode, String message) {
+		this.errorCode = errorCode;
+		this.message = message;
+	}
+
 	public int getErrorCode() {
 		return errorCode;
 	}
@@ -29,6 +47,11 @@ public class PostmarkError {
 	}
 
 	private enum ErrorCodes {
+		/**
+		 * The Postmark API is offline for maintenance.
+		 */
+		MAINTENANCE(PostmarkError.MAINTENANCE, "Maintenance"),
+
 		/**
 		 * You requested a bounce by ID, but we could not find an entry in our database.
 		 */
@@ -57,7 +80,7 @@ public class PostmarkError {
 		/**
 		 * The JSON input you provided is syntactically incorrect.
 		 */
-		INVALID_JSON(402, "Invalid JSON"),
+		INVALID_JSON(PostmarkError.INVALID_JSON, "Invalid JSON"),
 
 		/**
 		 * Your HTTP request does not have the Accept and Content-Type headers set to application/json.
@@ -1,10 +1,15 @@
 package postmark4j.data;
 
 import com.google.gson.annotations.SerializedName;
+import postmark4j.template.Template;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a message as defined by: http://developer.postmarkapp.com/developer-build.html#message-format
@@ -58,6 +63,13 @@ public class PostmarkMessage {
 	@SerializedName("Attachments")
 	private List<PostmarkAttachment> attachments;
 
+	// written by the streaming serializer in place of htmlBody and textBody; see setHtmlTemplate
+	private transient Template htmlTemplate;
+	private transient Template textTemplate;
+	private transient Map<String, ?> templateValues;
+
+	private final transient ReentrantLock lock = new ReentrantLock();
+
 	public PostmarkMessage(String subject, PostmarkAddress... to) {
 		this(null, subject, to);
 	}
@@ -83,6 +95,13 @@ public class PostmarkMessage {
 	 * @param message The message to copy data from.
 	 */
 	public PostmarkMessage(PostmarkAddress from, PostmarkMessage message) {
+		this(from, message, false);
+	}
+
+	/**
+	 * @param snapshot Whether to also copy the template values, so later changes to the map don't show through.
+	 */
+	PostmarkMessage(PostmarkAddress from, PostmarkMessage message, boolean snapshot) {
 		this.from = from;
 		this.to.addAll(message.to);
 		this.subject = message.subject;
@@ -91,7 +110,49 @@ public class PostmarkMessage {
 		this.bcc.addAll(message.bcc);
 		this.htmlBody = message.htmlBody;
 		this.textBody = message.textBody;
+		this.htmlTemplate = message.htmlTemplate;
+		this.textTemplate = message.textTemplate;
+		if(snapshot && message.templateValues != null) {
+			this.templateValues = Collections.unmodifiableMap(new HashMap<String, Object>(message.templateValues));
+		} else {
+			this.templateValues = message.templateValues;
+		}
 		this.tag = message.tag;
+		if(message.headers != null) {
+			this.headers = new ArrayList<Header>(message.headers);
+		}
+		if(message.attachments != null) {
+			this.attachments = new ArrayList<PostmarkAttachment>(message.attachments);
+		}
+	}
+
+	/**
+	 * A copy of {@code message} for other recipients, used by {@link FanOutMessage}. The bodies, templates, template
+	 * values, headers and attachments are the same objects as the original's, not copies of them.
+	 *
+	 * @param to The recipients of the copy, no more than 20.
+	 * @param attachments The attachments of the copy, or {@code null}.
+	 */
+	PostmarkMessage(PostmarkMessage message, List<PostmarkAddress> to, List<PostmarkAttachment> attachments) {
+		if(to.isEmpty() || to.size() > 20) {
+			throw new IllegalArgumentException("Between 1 and 20 \"to\" addresses are required.");
+		}
+		this.from = message.from;
+		this.to.addAll(to);
+		this.subject = message.subject;
+		this.replyTo = message.replyTo;
+		this.htmlBody = message.htmlBody;
+		this.textBody = message.textBody;
+		this.htmlTemplate = message.htmlTemplate;
+		this.textTemplate = message.textTemplate;
+		this.templateValues = message.templateValues;
+		this.tag = message.tag;
+		if(message.headers != null) {
+			this.headers = new ArrayList<Header>(message.headers);
+		}
+		if(attachments != null) {
+			this.attachments = new ArrayList<PostmarkAttachment>(attachments);
+		}
 	}
 
 	public PostmarkAddress getFrom() {
@@ -167,20 +228,72 @@ public class PostmarkMessage {
 		this.tag = tag;
 	}
 
+	/**
+	 * @return The HTML body, rendering the {@link #getHtmlTemplate() template} if there is one.
+	 */
 	public String getHtmlBody() {
-		return htmlBody;
+		return htmlTemplate != null ? htmlTemplate.render(templateValues) : htmlBody;
 	}
 
 	public void setHtmlBody(String htmlBody) {
 		this.htmlBody = htmlBody;
+		this.htmlTemplate = null;
 	}
 
+	/**
+	 * @return The text body, rendering the {@link #getTextTemplate() template} if there is one.
+	 */
 	public String getTextBody() {
-		return textBody;
+		return textTemplate != null ? textTemplate.render(templateValues) : textBody;
 	}
 
 	public void setTextBody(String textBody) {
 		this.textBody = textBody;
+		this.textTemplate = null;
+	}
+
+	public Template getHtmlTemplate() {
+		return htmlTemplate;
+	}
+
+	/**
+	 * Use a precompiled template for the HTML body, filled in with the {@link #setTemplateValues(java.util.Map)
+	 * template values} as the message is sent. Replaces any HTML body.
+	 *
+	 * Templates are only understood by {@link postmark4j.jsonio.PostmarkJson}; serializing the message with
+	 * {@link com.google.gson.Gson} leaves the body out.
+	 *
+	 * @param htmlTemplate The template, or {@code null} for none.
+	 */
+	public void setHtmlTemplate(Template htmlTemplate) {
+		this.htmlTemplate = htmlTemplate;
+		this.htmlBody = null;
+	}
+
+	public Template getTextTemplate() {
+		return textTemplate;
+	}
+
+	/**
+	 * Use a precompiled template for the text body. Replaces any text body.
+	 *
+	 * @param textTemplate The template, or {@code null} for none.
+	 * @see #setHtmlTemplate(postmark4j.template.Template)
+	 */
+	public void setTextTemplate(Template textTemplate) {
+		this.textTemplate = textTemplate;
+		this.textBody = null;
+	}
+
+	public Map<String, ?> getTemplateValues() {
+		return templateValues;
+	}
+
+	/**
+	 * @param templateValues The values for the placeholders in the HTML and text templates, by name. Not copied.
+	 */
+	public void setTemplateValues(Map<String, ?> templateValues) {
+		this.templateValues = templateValues;
 	}
 
 	public PostmarkAddress getReplyTo() {
@@ -195,19 +308,41 @@ public class PostmarkMessage {
 		return headers;
 	}
 
-	public synchronized void addHeader(String name, String value) {
-		if(headers == null) {
-			headers = new ArrayList<Header>();
+	public void addHeader(String name, String value) {
+		lock.lock();
+		try {
+			if(headers == null) {
+				headers = new ArrayList<Header>();
+			}
+			headers.add(new Header(name, value));
+		} finally {
+			lock.unlock();
 		}
-		headers.add(new Header(name, value));
 	}
 
-	public synchronized void addAttachment(PostmarkAttachment... attachments) {
-		if(this.attachments == null) {
-			this.attachments = new ArrayList<PostmarkAttachment>();
+	public List<PostmarkAttachment> getAttachments() {
+		return attachments;
+	}
+
+	public void addAttachment(PostmarkAttachment... attachments) {
+		lock.lock();
+		try {
+			if(this.attachments == null) {
+				this.attachments = new ArrayList<PostmarkAttachment>();
+			}
+
+			Collections.addAll(this.attachments, attachments);
+		} finally {
+			lock.unlock();
 		}
+	}
 
-		Collections.addAll(this.attachments, attachments);
+	/**
+	 * @return An immutable copy of this message, serialized once, now. See {@link FrozenMessage}.
+	 * @throws IOException If attachment content can't be read.
+	 */
+	public FrozenMessage freeze() throws IOException {
+		return new FrozenMessage(this);
 	}
 
 	public boolean equals(Object o) {
@@ -219,11 +354,11 @@ public class PostmarkMessage {
 		return !(cc != null ? !cc.equals(message.cc) : message.cc != null) &&
 				!(from != null ? !from.equals(message.from) : message.from != null) &&
 				!(headers != null ? !headers.equals(message.headers) : message.headers != null) &&
-				!(htmlBody != null ? !htmlBody.equals(message.htmlBody) : message.htmlBody != null) &&
+				!(getHtmlBody() != null ? !getHtmlBody().equals(message.getHtmlBody()) : message.getHtmlBody() != null) &&
 				!(replyTo != null ? !replyTo.equals(message.replyTo) : message.replyTo != null) &&
 				!(subject != null ? !subject.equals(message.subject) : message.subject != null) &&
 				!(tag != null ? !tag.equals(message.tag) : message.tag != null) &&
-				!(textBody != null ? !textBody.equals(message.textBody) : message.textBody != null) &&
+				!(getTextBody() != null ? !getTextBody().equals(message.getTextBody()) : message.getTextBody() != null) &&
 				!(to != null ? !to.equals(message.to) : message.to != null);
 	}
 
@@ -233,8 +368,8 @@ public class PostmarkMessage {
 		result = 31 * result + (subject != null ? subject.hashCode() : 0);
 		result = 31 * result + (replyTo != null ? replyTo.hashCode() : 0);
 		result = 31 * result + (cc != null ? cc.hashCode() : 0);
-		result = 31 * result + (htmlBody != null ? htmlBody.hashCode() : 0);
-		result = 31 * result + (textBody != null ? textBody.hashCode() : 0);
+		result = 31 * result + (getHtmlBody() != null ? getHtmlBody().hashCode() : 0);
+		result = 31 * result + (getTextBody() != null ? getTextBody().hashCode() : 0);
 		result = 31 * result + (tag != null ? tag.hashCode() : 0);
 		result = 31 * result + (headers != null ? headers.hashCode() : 0);
 		return result;
@@ -259,8 +394,11 @@ public class PostmarkMessage {
 		sb.append(", bcc='").append(bcc).append('\'');
 
 		if(verbose) {
-			sb.append(", htmlBody='").append(htmlBody).append('\'');
-			sb.append(", textBody='").append(textBody).append('\'');
+			sb.append(", htmlBody='").append(getHtmlBody()).append('\'');
+			sb.append(", textBody='").append(getTextBody()).append('\'');
+		} else if(htmlTemplate != null || textTemplate != null) {
+			sb.append(", htmlTemplate=").append(htmlTemplate);
+			sb.append(", textTemplate=").append(textTemplate);
 		} else {
 			sb.append(", htmlBody.length=").append(htmlBody == null ? "null" : htmlBody.length());
 			sb.append(", textBody.length=").append(textBody == null ? "null" : textBody.length());
@@ -2,6 +2,7 @@ package postmark4j.data;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.time.Instant;
 import java.util.Date;
 
 
@@ -19,6 +20,13 @@ import java.util.Date;
  * @author Erik Beeson
  */
 public class PostmarkResponse {
+	// 0 for success. In a batch, each message gets its own error code.
+	@SerializedName("ErrorCode")
+	protected int errorCode;
+
+	@SerializedName("Message")
+	protected String message;
+
 	@SerializedName("MessageID")
 	protected String messageId;
 
@@ -26,10 +34,54 @@ public class PostmarkResponse {
 	@SerializedName("SubmittedAt")
 	protected Date submittedAt;
 
+	// SubmittedAt to the nanosecond, when it was read with PostmarkJson
+	protected transient Instant submittedAtInstant;
+
 	// The recipient of the submitted request.
 	@SerializedName("To")
 	protected String to;
 
+	public PostmarkResponse() {
+	}
+
+	public PostmarkResponse(String messageId, Date submittedAt, String to) {
+		this(0, "OK", messageId, submittedAt, to);
+	}
+
+	public PostmarkResponse(int errorCode, String message, String messageId, Date submittedAt, String to) {
+		this.errorCode = errorCode;
+		this.message = message;
+		this.messageId = messageId;
+		this.submittedAt = submittedAt;
+		this.to = to;
+	}
+
+	/**
+	 * A factory rather than a constructor, so {@code null} arguments aren't ambiguous.
+	 *
+	 * @param submittedAt The time the request was received, to the nanosecond.
+	 */
+	public static PostmarkResponse of(int errorCode, String message, String messageId, Instant submittedAt, String to) {
+		PostmarkResponse response = new PostmarkResponse(errorCode, message, messageId, submittedAt != null ? new Date(submittedAt.toEpochMilli()) : null, to);
+		response.submittedAtInstant = submittedAt;
+		return response;
+	}
+
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return Whether Postmark accepted the message. Messages in a batch can fail individually.
+	 */
+	public boolean isSuccess() {
+		return errorCode == 0;
+	}
+
 	public String getMessageId() {
 		return messageId;
 	}
@@ -38,6 +90,17 @@ public class PostmarkResponse {
 		return submittedAt;
 	}
 
+	/**
+	 * @return The time the request was received by Postmark, to the 100 nanoseconds Postmark gives it in, or
+	 * {@code null}.
+	 */
+	public Instant getSubmittedAtInstant() {
+		if(submittedAtInstant == null && submittedAt != null) {
+			return submittedAt.toInstant();
+		}
+		return submittedAtInstant;
+	}
+
 	public String getTo() {
 		return to;
 	}
@@ -48,14 +111,18 @@ public class PostmarkResponse {
 
 		PostmarkResponse response = (PostmarkResponse) o;
 
-		return !(messageId != null ? !messageId.equals(response.messageId) : response.messageId != null) &&
+		return errorCode == response.errorCode &&
+				!(message != null ? !message.equals(response.message) : response.message != null) &&
+				!(messageId != null ? !messageId.equals(response.messageId) : response.messageId != null) &&
 				!(submittedAt != null ? !submittedAt.equals(response.submittedAt) : response.submittedAt != null) &&
 				!(to != null ? !to.equals(response.to) : response.to != null);
 
 	}
 
 	public int hashCode() {
-		int result = messageId != null ? messageId.hashCode() : 0;
+		int result = errorCode;
+		result = 31 * result + (message != null ? message.hashCode() : 0);
+		result = 31 * result + (messageId != null ? messageId.hashCode() : 0);
 		result = 31 * result + (submittedAt != null ? submittedAt.hashCode() : 0);
 		result = 31 * result + (to != null ? to.hashCode() : 0);
 		return result;
@@ -64,7 +131,9 @@ public class PostmarkResponse {
 	public String toString() {
 		final StringBuilder sb = new StringBuilder();
 		sb.append("PostmarkResponse");
-		sb.append("{messageId='").append(messageId).append('\'');
+		sb.append("{errorCode=").append(errorCode);
+		sb.append(", message='").append(message).append('\'');
+		sb.append(", messageId='").append(messageId).append('\'');
 		sb.append(", submittedAt=").append(submittedAt);
 		sb.append(", to='").append(to).append('\'');
 		sb.append('}');
@@ -0,0 +1,24 @@
+package postmark4j.exceptions;
+
+/**
+ * The client's circuit breaker is open because too many recent requests to Postmark failed or were slow, so the
+ * message was rejected without being sent. It's safe to try again later.
+ *
+ * @see postmark4j.resilience.CircuitBreaker
+ * @author Erik Beeson
+ */
+public class CircuitOpenPostmarkException extends PostmarkException {
+	private final long retryAfterMillis;
+
+	public CircuitOpenPostmarkException(long retryAfterMillis) {
+		super("Circuit breaker is open, not sending to Postmark. Try again in " + retryAfterMillis + "ms.");
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * @return Roughly how long until the circuit breaker lets requests through again.
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
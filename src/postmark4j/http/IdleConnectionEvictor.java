@@ -0,0 +1,70 @@
+package postmark4j.http;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background daemon thread that periodically closes expired and idle connections in a pooled
+ * {@link ClientConnectionManager}, so that connections closed by the server (or by a firewall) while sitting in
+ * the pool don't cause the next request to fail.
+ *
+ * Only a weak reference to the connection manager is held, so a client that is never closed doesn't leak this
+ * thread: once the connection manager has been garbage collected, the thread exits on its own.
+ *
+ * @author Erik Beeson
+ */
+public class IdleConnectionEvictor extends Thread {
+	private static final Logger LOGGER = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+
+	private final WeakReference<ClientConnectionManager> connectionManager;
+	private final long intervalMillis;
+	private final long idleTimeoutMillis;
+	private volatile boolean shutdown;
+
+	public IdleConnectionEvictor(ClientConnectionManager connectionManager, long intervalMillis, long idleTimeoutMillis) {
+		super("postmark4j-connection-evictor");
+		if(intervalMillis <= 0) {
+			throw new IllegalArgumentException("Eviction interval must be positive.");
+		}
+		this.connectionManager = new WeakReference<ClientConnectionManager>(connectionManager);
+		this.intervalMillis = intervalMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		setDaemon(true);
+	}
+
+	public void run() {
+		try {
+			while(!shutdown) {
+				synchronized(this) {
+					wait(intervalMillis);
+				}
+				ClientConnectionManager manager = connectionManager.get();
+				if(shutdown || manager == null) {
+					break;
+				}
+				manager.closeExpiredConnections();
+				if(idleTimeoutMillis > 0) {
+					manager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+		} catch(InterruptedException ignored) {
+			// shutting down
+		} catch(RuntimeException e) {
+			LOGGER.warn("Connection evictor stopped unexpectedly", e);
+		}
+	}
+
+	/**
+	 * Stops the thread. Does not close the connection manager.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		synchronized(this) {
+			notifyAll();
+		}
+	}
+}
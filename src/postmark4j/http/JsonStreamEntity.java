@@ -0,0 +1,62 @@
+package postmark4j.http;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import postmark4j.transport.JsonBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An {@link org.apache.http.HttpEntity} that writes a {@link JsonBody} directly onto the connection's output
+ * stream as the request is sent, using chunked transfer encoding, instead of first building the whole request body
+ * as a {@link String} and then again as a {@code byte[]}.
+ *
+ * The entity is repeatable: the JSON is simply written again if the request needs to be resent.
+ *
+ * @author Erik Beeson
+ */
+public class JsonStreamEntity extends AbstractHttpEntity {
+	private final JsonBody body;
+
+	public JsonStreamEntity(JsonBody body) {
+		if(body == null) {
+			throw new IllegalArgumentException("A body is required.");
+		}
+		this.body = body;
+		setChunked(true);
+		setContentType(body.getContentType());
+	}
+
+	public JsonBody getBody() {
+		return body;
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return -1;
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Only for callers that insist on reading the entity, since this buffers the entire body in memory.
+	 * {@link #writeTo(java.io.OutputStream)} is used to actually send it.
+	 */
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeTo(out);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		body.writeTo(out);
+	}
+}
@@ -0,0 +1,35 @@
+package postmark4j.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Honors the server's {@code Keep-Alive: timeout=...} header, but never keeps a connection around longer than
+ * the configured maximum. When the server doesn't say, the configured maximum is used.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+	private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+	private final long maxKeepAliveMillis;
+
+	/**
+	 * @param maxKeepAliveMillis The longest time to keep an idle connection alive, negative for no limit.
+	 */
+	public PostmarkKeepAliveStrategy(long maxKeepAliveMillis) {
+		this.maxKeepAliveMillis = maxKeepAliveMillis;
+	}
+
+	public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+		long serverMillis = serverStrategy.getKeepAliveDuration(response, context);
+		if(maxKeepAliveMillis < 0) {
+			return serverMillis;
+		} else if(serverMillis < 0) {
+			return maxKeepAliveMillis;
+		} else {
+			return Math.min(serverMillis, maxKeepAliveMillis);
+		}
+	}
+}
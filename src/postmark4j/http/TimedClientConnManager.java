@@ -0,0 +1,43 @@
+package postmark4j.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import postmark4j.metrics.RequestTiming;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pooled connection manager that records how long new connections (TCP connect and TLS handshake) take to open
+ * in the {@link RequestTiming} kept in the request's context, if there is one.
+ *
+ * @author Erik Beeson
+ */
+public class TimedClientConnManager extends ThreadSafeClientConnManager {
+	public TimedClientConnManager(SchemeRegistry schemeRegistry, long connTTL, TimeUnit connTTLTimeUnit) {
+		super(schemeRegistry, connTTL, connTTLTimeUnit);
+	}
+
+	protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+		return new DefaultClientConnectionOperator(schemeRegistry) {
+			public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+				RequestTiming timing = context != null ? (RequestTiming) context.getAttribute(RequestTiming.CONTEXT_ATTRIBUTE) : null;
+				long start = System.nanoTime();
+				try {
+					super.openConnection(conn, target, local, context, params);
+				} finally {
+					if(timing != null) {
+						timing.recordConnect(System.nanoTime() - start);
+					}
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,22 @@
+package postmark4j.http;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * A {@link DefaultHttpClient} that records where each request's time goes, using a {@link TimedRequestExecutor}.
+ * Pair it with a {@link TimedClientConnManager} to also time opening connections.
+ *
+ * @author Erik Beeson
+ */
+public class TimedHttpClient extends DefaultHttpClient {
+	public TimedHttpClient(ClientConnectionManager connectionManager, HttpParams params) {
+		super(connectionManager, params);
+	}
+
+	protected HttpRequestExecutor createRequestExecutor() {
+		return new TimedRequestExecutor();
+	}
+}
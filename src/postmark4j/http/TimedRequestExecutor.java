@@ -0,0 +1,45 @@
+package postmark4j.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import postmark4j.metrics.RequestTiming;
+
+import java.io.IOException;
+
+/**
+ * Records how long requests take to write and how long their responses take to arrive in the
+ * {@link RequestTiming} kept in the request's context, if there is one.
+ *
+ * @author Erik Beeson
+ */
+public class TimedRequestExecutor extends HttpRequestExecutor {
+	protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+		RequestTiming timing = (RequestTiming) context.getAttribute(RequestTiming.CONTEXT_ATTRIBUTE);
+		if(timing == null) {
+			return super.doSendRequest(request, conn, context);
+		}
+		long start = System.nanoTime();
+		try {
+			return super.doSendRequest(request, conn, context);
+		} finally {
+			timing.recordSend(start, System.nanoTime() - start);
+		}
+	}
+
+	protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context) throws HttpException, IOException {
+		RequestTiming timing = (RequestTiming) context.getAttribute(RequestTiming.CONTEXT_ATTRIBUTE);
+		if(timing == null) {
+			return super.doReceiveResponse(request, conn, context);
+		}
+		long start = System.nanoTime();
+		try {
+			return super.doReceiveResponse(request, conn, context);
+		} finally {
+			timing.recordServer(System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,5 @@
+/**
+ * HTTP plumbing used by {@link postmark4j.PostmarkClient}: connection pool housekeeping, request and response
+ * entities, and timing each phase of a request.
+ */
+package postmark4j.http;
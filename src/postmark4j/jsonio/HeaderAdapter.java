@@ -0,0 +1,45 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import postmark4j.data.PostmarkMessage;
+
+import java.io.IOException;
+
+/**
+ * {"Name": "CUSTOM-HEADER", "Value": "value"}
+ *
+ * @author Erik Beeson
+ */
+public class HeaderAdapter extends PostmarkTypeAdapter<PostmarkMessage.Header> {
+	public void write(JsonOutput out, PostmarkMessage.Header value) throws IOException {
+		out.beginObject();
+		if(value.getName() != null) {
+			out.name("Name").value(value.getName());
+		}
+		if(value.getValue() != null) {
+			out.name("Value").value(value.getValue());
+		}
+		out.endObject();
+	}
+
+	public PostmarkMessage.Header read(JsonReader in) throws IOException {
+		String name = null;
+		String value = null;
+		in.beginObject();
+		while(in.hasNext()) {
+			String member = in.nextName();
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if("Name".equals(member)) {
+				name = in.nextString();
+			} else if("Value".equals(member)) {
+				value = in.nextString();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new PostmarkMessage.Header(name, value);
+	}
+}
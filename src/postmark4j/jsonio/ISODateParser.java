@@ -0,0 +1,201 @@
+package postmark4j.jsonio;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Parses ISO 8601 date/times, like Postmark's {@code SubmittedAt}: {@code 2010-11-26T12:01:05.1794748-05:00}.
+ *
+ * Date/times in that layout, {@code yyyy-MM-ddTHH:mm:ss}, then an optional fraction of up to 9 digits, then
+ * {@code Z} or an offset ({@code +HH:mm}, {@code +HHmm} or {@code +HH}), are parsed field by field straight from
+ * the characters, without creating any objects but the result. Anything else ISO 8601 allows (dates without
+ * times, week dates, ...) falls back to {@link ISODateTimeFormat#dateTimeParser()} from JodaTime.
+ *
+ * @author Erik Beeson
+ */
+public final class ISODateParser {
+	private static final DateTimeFormatter FALLBACK = ISODateTimeFormat.dateTimeParser();
+
+	private static final long NOT_PARSED = Long.MIN_VALUE;
+	private static final int FRACTION_START = 20;
+
+	private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000};
+
+	private ISODateParser() {
+	}
+
+	/**
+	 * @param value An ISO 8601 date/time.
+	 * @return The date, to the millisecond.
+	 * @throws IllegalArgumentException If it can't be parsed.
+	 */
+	public static Date parseDate(CharSequence value) {
+		return new Date(parseMillis(value));
+	}
+
+	/**
+	 * @param value An ISO 8601 date/time.
+	 * @return The milliseconds since the epoch. Digits past the millisecond are dropped.
+	 * @throws IllegalArgumentException If it can't be parsed.
+	 */
+	public static long parseMillis(CharSequence value) {
+		long seconds = parseEpochSecond(value);
+		if(seconds != NOT_PARSED) {
+			return seconds * 1000 + fractionNanos(value) / 1000000;
+		}
+		return parseFallback(value);
+	}
+
+	/**
+	 * @param value An ISO 8601 date/time.
+	 * @return The instant, to the nanosecond for date/times in the layout above, or else to the millisecond.
+	 * @throws IllegalArgumentException If it can't be parsed.
+	 */
+	public static Instant parseInstant(CharSequence value) {
+		long seconds = parseEpochSecond(value);
+		if(seconds != NOT_PARSED) {
+			return Instant.ofEpochSecond(seconds, fractionNanos(value));
+		}
+		return Instant.ofEpochMilli(parseFallback(value));
+	}
+
+	private static long parseFallback(CharSequence value) {
+		if(value == null) {
+			throw new IllegalArgumentException("A date/time is required.");
+		}
+		try {
+			return FALLBACK.parseMillis(value.toString());
+		} catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException("Not an ISO 8601 date/time: \"" + value + "\"", e);
+		}
+	}
+
+	/**
+	 * @return The seconds since the epoch, or {@link #NOT_PARSED} if the value isn't in the layout this parses.
+	 */
+	private static long parseEpochSecond(CharSequence value) {
+		if(value == null || value.length() < 20) {
+			return NOT_PARSED;
+		}
+		int year = digits(value, 0, 4);
+		int month = digits(value, 5, 2);
+		int day = digits(value, 8, 2);
+		int hour = digits(value, 11, 2);
+		int minute = digits(value, 14, 2);
+		int second = digits(value, 17, 2);
+		if(year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23
+				|| minute < 0 || minute > 59 || second < 0 || second > 59
+				|| value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+			return NOT_PARSED;
+		}
+
+		int i = 19;
+		if(value.charAt(i) == '.') {
+			int start = ++i;
+			while(i < value.length() && isDigit(value.charAt(i))) {
+				i++;
+			}
+			if(i == start || i - start > 9) {
+				return NOT_PARSED;
+			}
+		}
+		if(i >= value.length()) {
+			return NOT_PARSED;
+		}
+
+		int offsetSeconds;
+		char sign = value.charAt(i);
+		int remaining = value.length() - i - 1;
+		if(sign == 'Z' && remaining == 0) {
+			offsetSeconds = 0;
+		} else if(sign == '+' || sign == '-') {
+			int offsetHours = digits(value, i + 1, 2);
+			int offsetMinutes;
+			if(remaining == 2) {
+				offsetMinutes = 0;
+			} else if(remaining == 4) {
+				offsetMinutes = digits(value, i + 3, 2);
+			} else if(remaining == 5 && value.charAt(i + 3) == ':') {
+				offsetMinutes = digits(value, i + 4, 2);
+			} else {
+				return NOT_PARSED;
+			}
+			if(offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+				return NOT_PARSED;
+			}
+			offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+		} else {
+			return NOT_PARSED;
+		}
+
+		return epochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+	}
+
+	/**
+	 * @return The fraction of a second of a value already checked by {@link #parseEpochSecond}, in nanoseconds.
+	 */
+	private static int fractionNanos(CharSequence value) {
+		if(value.charAt(19) != '.') {
+			return 0;
+		}
+		int nanos = 0;
+		int i = FRACTION_START;
+		while(i < value.length() && isDigit(value.charAt(i))) {
+			nanos = nanos * 10 + (value.charAt(i) - '0');
+			i++;
+		}
+		return nanos * POWERS_OF_TEN[9 - (i - FRACTION_START)];
+	}
+
+	/**
+	 * @return The number made of {@code count} digits at {@code start}, or -1 if they aren't all digits.
+	 */
+	private static int digits(CharSequence value, int start, int count) {
+		if(start + count > value.length()) {
+			return -1;
+		}
+		int n = 0;
+		for(int i = start; i < start + count; i++) {
+			char c = value.charAt(i);
+			if(!isDigit(c)) {
+				return -1;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch(month) {
+			case 2:
+				return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * @return The days since 1970-01-01 of a date in the proleptic Gregorian calendar, for years 0 to 9999.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		// count years from March, so the leap day is the last day of the year
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+}
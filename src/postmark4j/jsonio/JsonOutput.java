@@ -0,0 +1,239 @@
+package postmark4j.jsonio;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal streaming JSON writer, similar to {@link com.google.gson.stream.JsonWriter}, that can also write a
+ * string value a piece at a time (see {@link #beginRawString()}), which is how attachment content is streamed
+ * without ever being held in memory as a single {@link String}.
+ *
+ * Strings are escaped the same way as Gson with HTML escaping disabled. Nothing is indented.
+ *
+ * @author Erik Beeson
+ */
+public class JsonOutput {
+	private static final String[] REPLACEMENT_CHARS = new String[128];
+
+	static {
+		for(int i = 0; i <= 0x1F; i++) {
+			REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+		}
+		REPLACEMENT_CHARS['"'] = "\\\"";
+		REPLACEMENT_CHARS['\\'] = "\\\\";
+		REPLACEMENT_CHARS['\t'] = "\\t";
+		REPLACEMENT_CHARS['\b'] = "\\b";
+		REPLACEMENT_CHARS['\n'] = "\\n";
+		REPLACEMENT_CHARS['\r'] = "\\r";
+		REPLACEMENT_CHARS['\f'] = "\\f";
+	}
+
+	private final Writer out;
+
+	// whether the current object or array already has a member, so the next one needs a comma
+	private boolean[] hasMember = new boolean[16];
+	private int depth;
+	private boolean afterName;
+	private boolean inRawString;
+
+	public JsonOutput(Writer out) {
+		if(out == null) {
+			throw new IllegalArgumentException("A writer is required.");
+		}
+		this.out = out;
+	}
+
+	public JsonOutput beginObject() throws IOException {
+		beforeValue();
+		out.write('{');
+		push();
+		return this;
+	}
+
+	public JsonOutput endObject() throws IOException {
+		pop();
+		out.write('}');
+		return this;
+	}
+
+	public JsonOutput beginArray() throws IOException {
+		beforeValue();
+		out.write('[');
+		push();
+		return this;
+	}
+
+	public JsonOutput endArray() throws IOException {
+		pop();
+		out.write(']');
+		return this;
+	}
+
+	public JsonOutput name(String name) throws IOException {
+		if(name == null) {
+			throw new IllegalArgumentException("Name can't be null.");
+		}
+		if(afterName || depth == 0) {
+			throw new IllegalStateException("Unexpected name: " + name);
+		}
+		if(hasMember[depth]) {
+			out.write(',');
+		}
+		hasMember[depth] = true;
+		string(name);
+		out.write(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonOutput value(String value) throws IOException {
+		if(value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		string(value);
+		return this;
+	}
+
+	public JsonOutput value(long value) throws IOException {
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	public JsonOutput value(boolean value) throws IOException {
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonOutput nullValue() throws IOException {
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/**
+	 * Starts a string value whose content is written directly to the returned writer, and ended with
+	 * {@link #endRawString()}. No escaping is done, so the content must not contain anything that would need
+	 * escaping in a JSON string (base64, for example).
+	 *
+	 * @return The underlying writer.
+	 */
+	public Writer beginRawString() throws IOException {
+		beforeValue();
+		out.write('"');
+		inRawString = true;
+		return out;
+	}
+
+	public JsonOutput endRawString() throws IOException {
+		if(!inRawString) {
+			throw new IllegalStateException("Not in a raw string.");
+		}
+		inRawString = false;
+		out.write('"');
+		return this;
+	}
+
+	/**
+	 * Writes a value that is already valid, escaped JSON, as-is.
+	 *
+	 * @param json The JSON value.
+	 */
+	public JsonOutput rawValue(CharSequence json) throws IOException {
+		beforeValue();
+		out.append(json);
+		return this;
+	}
+
+	/**
+	 * Writes a value that is already valid JSON, encoded as UTF-8. When writing to a {@link Utf8Writer} the bytes
+	 * are copied as they are, without being decoded.
+	 *
+	 * @param json The JSON value.
+	 */
+	public JsonOutput rawValue(byte[] json) throws IOException {
+		beforeValue();
+		if(out instanceof Utf8Writer) {
+			((Utf8Writer) out).writeUtf8(json, 0, json.length);
+		} else {
+			out.write(new String(json, StandardCharsets.UTF_8));
+		}
+		return this;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	private void beforeValue() throws IOException {
+		if(inRawString) {
+			throw new IllegalStateException("Raw string not ended.");
+		}
+		if(afterName) {
+			afterName = false;
+		} else if(depth > 0) {
+			if(hasMember[depth]) {
+				out.write(',');
+			}
+			hasMember[depth] = true;
+		}
+	}
+
+	private void push() {
+		depth++;
+		if(depth == hasMember.length) {
+			boolean[] grown = new boolean[hasMember.length * 2];
+			System.arraycopy(hasMember, 0, grown, 0, hasMember.length);
+			hasMember = grown;
+		}
+		hasMember[depth] = false;
+	}
+
+	private void pop() {
+		if(depth == 0 || afterName) {
+			throw new IllegalStateException("Nesting problem.");
+		}
+		depth--;
+	}
+
+	private void string(String value) throws IOException {
+		out.write('"');
+		writeEscaped(out, value);
+		out.write('"');
+	}
+
+	/**
+	 * Writes the content of a JSON string, escaped the same way as string values but without the quotes. For
+	 * writing pieces of a string between {@link #beginRawString()} and {@link #endRawString()}.
+	 *
+	 * @param out The writer to write to.
+	 * @param value The unescaped content.
+	 */
+	public static void writeEscaped(Writer out, String value) throws IOException {
+		int last = 0;
+		int length = value.length();
+		for(int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String replacement;
+			if(c < 128) {
+				replacement = REPLACEMENT_CHARS[c];
+				if(replacement == null) {
+					continue;
+				}
+			} else {
+				continue;
+			}
+			if(last < i) {
+				out.write(value, last, i - last);
+			}
+			out.write(replacement);
+			last = i + 1;
+		}
+		if(last < length) {
+			out.write(value, last, length - last);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import postmark4j.data.PostmarkAddress;
+
+import java.io.IOException;
+
+/**
+ * Postmark expects addresses as Strings ({@code John Doe <email@example.com>}), but we prefer to represent them as
+ * Objects. Same format as {@link PostmarkAddressSerializer}.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkAddressAdapter extends PostmarkTypeAdapter<PostmarkAddress> {
+	public void write(JsonOutput out, PostmarkAddress value) throws IOException {
+		out.value(format(value));
+	}
+
+	public PostmarkAddress read(JsonReader in) throws IOException {
+		return parse(in.nextString());
+	}
+
+	public static String format(PostmarkAddress address) {
+		if(address.getName() != null) {
+			return address.getName() + " <" + address.getEmail() + ">";
+		} else {
+			return address.getEmail();
+		}
+	}
+
+	public static PostmarkAddress parse(String value) {
+		String trimmed = value.trim();
+		int open = trimmed.lastIndexOf('<');
+		if(open >= 0 && trimmed.endsWith(">")) {
+			String name = trimmed.substring(0, open).trim();
+			if(name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+				name = name.substring(1, name.length() - 1);
+			}
+			return new PostmarkAddress(name, trimmed.substring(open + 1, trimmed.length() - 1));
+		}
+		return new PostmarkAddress(trimmed);
+	}
+}
@@ -0,0 +1,64 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import postmark4j.data.PostmarkAddress;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Postmark expects multiple addresses as a single comma separated String, but we prefer to represent them as a
+ * {@link List}. Same format as {@link PostmarkAddressListSerializer}. An empty list isn't written at all.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkAddressListAdapter extends PostmarkTypeAdapter<List<PostmarkAddress>> {
+	public void write(JsonOutput out, List<PostmarkAddress> value) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for(PostmarkAddress address : value) {
+			if(builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append(PostmarkAddressAdapter.format(address));
+		}
+		out.value(builder.toString());
+	}
+
+	public void writeMember(JsonOutput out, String name, List<PostmarkAddress> value) throws IOException {
+		if(value != null && !value.isEmpty()) {
+			super.writeMember(out, name, value);
+		}
+	}
+
+	public List<PostmarkAddress> read(JsonReader in) throws IOException {
+		return parse(in.nextString());
+	}
+
+	/**
+	 * Split a comma separated list of addresses, ignoring commas in quoted names and inside angle brackets.
+	 */
+	public static List<PostmarkAddress> parse(String value) {
+		List<PostmarkAddress> addresses = new ArrayList<PostmarkAddress>();
+		boolean quoted = false;
+		boolean bracketed = false;
+		int start = 0;
+		for(int i = 0; i <= value.length(); i++) {
+			char c = i < value.length() ? value.charAt(i) : ',';
+			if(c == '"') {
+				quoted = !quoted;
+			} else if(c == '<' && !quoted) {
+				bracketed = true;
+			} else if(c == '>' && !quoted) {
+				bracketed = false;
+			} else if(c == ',' && !quoted && !bracketed) {
+				String address = value.substring(start, Math.min(i, value.length())).trim();
+				if(address.length() > 0) {
+					addresses.add(PostmarkAddressAdapter.parse(address));
+				}
+				start = i + 1;
+			}
+		}
+		return addresses;
+	}
+}
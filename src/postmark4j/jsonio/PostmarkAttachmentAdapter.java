@@ -0,0 +1,65 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import postmark4j.attachment.Base64AttachmentSource;
+import postmark4j.data.PostmarkAttachment;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes attachment content by streaming it from the attachment's source (see
+ * {@link PostmarkAttachment#writeContent(java.io.Writer)}), so it's never held in memory as a whole. Attachments
+ * that are read back keep their content in its encoded form.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkAttachmentAdapter extends PostmarkTypeAdapter<PostmarkAttachment> {
+	public void write(JsonOutput out, PostmarkAttachment value) throws IOException {
+		write(out, value, true);
+	}
+
+	/**
+	 * @param content Whether to write the content, or leave it empty.
+	 */
+	void write(JsonOutput out, PostmarkAttachment value, boolean content) throws IOException {
+		out.beginObject();
+		if(value.getName() != null) {
+			out.name("Name").value(value.getName());
+		}
+		out.name("Content");
+		Writer writer = out.beginRawString();
+		if(content) {
+			value.writeContent(writer);
+		}
+		out.endRawString();
+		if(value.getContentType() != null) {
+			out.name("ContentType").value(value.getContentType());
+		}
+		out.endObject();
+	}
+
+	public PostmarkAttachment read(JsonReader in) throws IOException {
+		String name = null;
+		String content = "";
+		String contentType = null;
+		in.beginObject();
+		while(in.hasNext()) {
+			String member = in.nextName();
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if("Name".equals(member)) {
+				name = in.nextString();
+			} else if("Content".equals(member)) {
+				content = in.nextString();
+			} else if("ContentType".equals(member)) {
+				contentType = in.nextString();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new PostmarkAttachment(new Base64AttachmentSource(content), contentType, name);
+	}
+}
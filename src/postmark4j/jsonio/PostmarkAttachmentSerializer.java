@@ -0,0 +1,41 @@
+package postmark4j.jsonio;
+
+import com.google.gson.*;
+import postmark4j.data.PostmarkAttachment;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+
+/**
+ * Custom serializer for {@link PostmarkAttachment} since its content isn't a field but is read from its
+ * {@link postmark4j.attachment.AttachmentSource} and base64 encoded while it's serialized. Gson needs the whole
+ * encoded content as a single {@link JsonPrimitive}, so unlike {@link PostmarkAttachmentAdapter} this holds it in
+ * memory.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkAttachmentSerializer implements JsonSerializer<PostmarkAttachment> {
+	public JsonElement serialize(PostmarkAttachment attachment, Type typeOfSrc, JsonSerializationContext context) {
+		if(attachment == null) {
+			return new JsonNull();
+		}
+
+		StringWriter content = new StringWriter();
+		try {
+			attachment.writeContent(content);
+		} catch(IOException e) {
+			throw new JsonIOException("Couldn't read the content of attachment " + attachment.getName(), e);
+		}
+
+		JsonObject json = new JsonObject();
+		if(attachment.getName() != null) {
+			json.addProperty("Name", attachment.getName());
+		}
+		json.addProperty("Content", content.toString());
+		if(attachment.getContentType() != null) {
+			json.addProperty("ContentType", attachment.getContentType());
+		}
+		return json;
+	}
+}
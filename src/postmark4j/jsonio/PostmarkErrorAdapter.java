@@ -0,0 +1,43 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import postmark4j.data.PostmarkError;
+
+import java.io.IOException;
+
+/**
+ * {ErrorCode: 405, Message: "details"}
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkErrorAdapter extends PostmarkTypeAdapter<PostmarkError> {
+	public void write(JsonOutput out, PostmarkError value) throws IOException {
+		out.beginObject();
+		out.name("ErrorCode").value(value.getErrorCode());
+		if(value.getMessage() != null) {
+			out.name("Message").value(value.getMessage());
+		}
+		out.endObject();
+	}
+
+	public PostmarkError read(JsonReader in) throws IOException {
+		int errorCode = 0;
+		String message = null;
+		in.beginObject();
+		while(in.hasNext()) {
+			String name = in.nextName();
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if("ErrorCode".equals(name)) {
+				errorCode = in.nextInt();
+			} else if("Message".equals(name)) {
+				message = in.nextString();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return new PostmarkError(errorCode, message);
+	}
+}
@@ -0,0 +1,89 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import postmark4j.data.FrozenMessage;
+import postmark4j.data.PostmarkError;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Shared {@link PostmarkTypeAdapter}s for the {@link postmark4j.data} model, and conveniences for converting to
+ * and from {@link String}s.
+ *
+ * @author Erik Beeson
+ */
+public final class PostmarkJson {
+	public static final PostmarkMessageAdapter MESSAGE = new PostmarkMessageAdapter();
+	public static final PostmarkResponseAdapter RESPONSE = new PostmarkResponseAdapter();
+	public static final PostmarkErrorAdapter ERROR = new PostmarkErrorAdapter();
+
+	private PostmarkJson() {
+	}
+
+	/**
+	 * @return A single message as a JSON object, or multiple messages as a JSON array.
+	 * @throws IOException If attachment content can't be read.
+	 */
+	public static String toJson(PostmarkMessage... messages) throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonOutput out = new JsonOutput(writer);
+		if(messages.length == 1) {
+			MESSAGE.write(out, messages[0]);
+		} else {
+			MESSAGE.writeBatch(out, messages);
+		}
+		out.flush();
+		return writer.toString();
+	}
+
+	/**
+	 * @return A single message as a JSON object, encoded as UTF-8.
+	 * @throws IOException If attachment content can't be read.
+	 */
+	public static byte[] toJsonBytes(PostmarkMessage message) throws IOException {
+		if(message instanceof FrozenMessage) {
+			return ((FrozenMessage) message).toJsonBytes();
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		JsonOutput out = new JsonOutput(new Utf8Writer(bytes));
+		MESSAGE.write(out, message);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	public static PostmarkMessage readMessage(String json) throws IOException {
+		return read(MESSAGE, new StringReader(json));
+	}
+
+	public static PostmarkResponse readResponse(Reader reader) throws IOException {
+		return read(RESPONSE, reader);
+	}
+
+	public static PostmarkResponse[] readResponses(Reader reader) throws IOException {
+		JsonReader in = new JsonReader(reader);
+		try {
+			return RESPONSE.readArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	public static PostmarkError readError(Reader reader) throws IOException {
+		return read(ERROR, reader);
+	}
+
+	private static <T> T read(PostmarkTypeAdapter<T> adapter, Reader reader) throws IOException {
+		JsonReader in = new JsonReader(reader);
+		try {
+			return adapter.read(in);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import postmark4j.attachment.AttachmentSource;
+import postmark4j.attachment.EncodedAttachmentSource;
+import postmark4j.data.FrozenMessage;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkAttachment;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.template.Template;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link PostmarkMessage}s in the format Postmark expects.
+ *
+ * The output is byte for byte the same as Gson with the {@link PostmarkAddressSerializer} and
+ * {@link PostmarkAddressListSerializer} registered and HTML escaping disabled, except that attachment content is
+ * streamed from its source, which Gson can't do.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkMessageAdapter extends PostmarkTypeAdapter<PostmarkMessage> {
+	// the longest member name, quoted, with its colon and a comma
+	private static final int MAX_MEMBER_LENGTH = 16;
+
+	private final PostmarkAddressAdapter addressAdapter = new PostmarkAddressAdapter();
+	private final PostmarkAddressListAdapter addressListAdapter = new PostmarkAddressListAdapter();
+	private final HeaderAdapter headerAdapter = new HeaderAdapter();
+	private final PostmarkAttachmentAdapter attachmentAdapter = new PostmarkAttachmentAdapter();
+
+	public void write(JsonOutput out, PostmarkMessage value) throws IOException {
+		if(value instanceof FrozenMessage) {
+			((FrozenMessage) value).writeTo(out);
+			return;
+		}
+		write(out, value, true);
+	}
+
+	private void write(JsonOutput out, PostmarkMessage value, boolean attachmentContent) throws IOException {
+		out.beginObject();
+		addressAdapter.writeMember(out, "From", value.getFrom());
+		addressListAdapter.writeMember(out, "To", value.getTo());
+		addressListAdapter.writeMember(out, "Cc", value.getCc());
+		addressListAdapter.writeMember(out, "Bcc", value.getBcc());
+		writeString(out, "Subject", value.getSubject());
+		writeString(out, "Tag", value.getTag());
+		if(value.getHtmlTemplate() != null) {
+			writeTemplate(out, "HtmlBody", value.getHtmlTemplate(), value.getTemplateValues());
+		} else {
+			writeString(out, "HtmlBody", value.getHtmlBody());
+		}
+		if(value.getTextTemplate() != null) {
+			writeTemplate(out, "TextBody", value.getTextTemplate(), value.getTemplateValues());
+		} else {
+			writeString(out, "TextBody", value.getTextBody());
+		}
+		addressAdapter.writeMember(out, "ReplyTo", value.getReplyTo());
+
+		List<PostmarkMessage.Header> headers = value.getHeaders();
+		if(headers != null) {
+			out.name("Headers").beginArray();
+			for(PostmarkMessage.Header header : headers) {
+				headerAdapter.write(out, header);
+			}
+			out.endArray();
+		}
+
+		List<PostmarkAttachment> attachments = value.getAttachments();
+		if(attachments != null) {
+			out.name("Attachments").beginArray();
+			for(PostmarkAttachment attachment : attachments) {
+				attachmentAdapter.write(out, attachment, attachmentContent);
+			}
+			out.endArray();
+		}
+		out.endObject();
+	}
+
+	/**
+	 * Works out how big the JSON for a message is, in UTF-8 bytes, without reading its attachments: their encoded
+	 * size is worked out from the size of their content. For splitting messages into requests that stay within
+	 * Postmark's size limits.
+	 *
+	 * @return The size of the JSON {@link #write(JsonOutput, PostmarkMessage)} would write. Exact, except that
+	 * attachments whose size isn't known count as empty.
+	 */
+	public long length(PostmarkMessage value) {
+		if(value instanceof FrozenMessage) {
+			return ((FrozenMessage) value).getJsonLength();
+		}
+		CountingOutputStream counter = new CountingOutputStream(new NullOutputStream());
+		Writer writer = new Utf8Writer(counter, 256);
+		try {
+			write(new JsonOutput(writer), value, false);
+			writer.flush();
+		} catch(IOException e) {
+			// nothing is read, and the counter doesn't throw
+			throw new IllegalStateException(e);
+		}
+		long length = counter.getByteCount();
+		if(value.getAttachments() != null) {
+			for(PostmarkAttachment attachment : value.getAttachments()) {
+				length += encodedLength(attachment.getSource());
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * An upper bound on {@link #length(PostmarkMessage)}, from the lengths of the message's strings, without writing
+	 * anything. A character takes at most 6 bytes in JSON (an escaped control character), so the bound can be
+	 * several times the real length; it's for telling quickly that messages are well within a limit.
+	 *
+	 * @param defaultFrom Counted as the "from" address if the message doesn't have one, or {@code null}.
+	 * @return The bound, or {@link Long#MAX_VALUE} if there isn't one short of rendering the message's templates,
+	 * whose output depends on their values.
+	 */
+	public long maxLength(PostmarkMessage value, PostmarkAddress defaultFrom) {
+		if(value instanceof FrozenMessage) {
+			return ((FrozenMessage) value).getJsonLength();
+		}
+		if(value.getHtmlTemplate() != null || value.getTextTemplate() != null) {
+			return Long.MAX_VALUE;
+		}
+		// the braces; every member's name is counted as MAX_MEMBER_LENGTH
+		long length = 2;
+		length += maxLength(value.getFrom() != null ? value.getFrom() : defaultFrom);
+		length += maxLength(value.getTo()) + maxLength(value.getCc()) + maxLength(value.getBcc());
+		length += maxLength(value.getSubject()) + maxLength(value.getTag());
+		length += maxLength(value.getHtmlBody()) + maxLength(value.getTextBody());
+		length += maxLength(value.getReplyTo());
+		if(value.getHeaders() != null) {
+			length += MAX_MEMBER_LENGTH;
+			for(PostmarkMessage.Header header : value.getHeaders()) {
+				length += 3 + maxLength(header.getName()) + maxLength(header.getValue());
+			}
+		}
+		if(value.getAttachments() != null) {
+			length += MAX_MEMBER_LENGTH;
+			for(PostmarkAttachment attachment : value.getAttachments()) {
+				length += 3 + maxLength(attachment.getName()) + MAX_MEMBER_LENGTH + encodedLength(attachment.getSource()) + maxLength(attachment.getContentType());
+			}
+		}
+		return length;
+	}
+
+	private static long maxLength(String value) {
+		return value == null ? MAX_MEMBER_LENGTH : MAX_MEMBER_LENGTH + 6L * value.length();
+	}
+
+	private static long maxLength(PostmarkAddress address) {
+		if(address == null) {
+			return MAX_MEMBER_LENGTH;
+		}
+		// Name <email>, and the ", " before it in a list
+		return MAX_MEMBER_LENGTH + 6L * ((address.getName() != null ? address.getName().length() : 0) + address.getEmail().length() + 5);
+	}
+
+	private static long maxLength(List<PostmarkAddress> addresses) {
+		long length = MAX_MEMBER_LENGTH;
+		if(addresses != null) {
+			for(PostmarkAddress address : addresses) {
+				length += maxLength(address);
+			}
+		}
+		return length;
+	}
+
+	private static long encodedLength(AttachmentSource source) {
+		if(source instanceof EncodedAttachmentSource) {
+			return ((EncodedAttachmentSource) source).encodedLength();
+		}
+		long length = source.length();
+		return length <= 0 ? 0 : (length + 2) / 3 * 4;
+	}
+
+	/**
+	 * Write messages as a JSON array, as expected by the batch API.
+	 */
+	public void writeBatch(JsonOutput out, PostmarkMessage... messages) throws IOException {
+		out.beginArray();
+		for(PostmarkMessage message : messages) {
+			write(out, message);
+		}
+		out.endArray();
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the message is missing required fields, the same as the
+	 * {@link PostmarkMessage} constructors.
+	 */
+	public PostmarkMessage read(JsonReader in) throws IOException {
+		PostmarkAddress from = null;
+		List<PostmarkAddress> to = Collections.emptyList();
+		List<PostmarkAddress> cc = Collections.emptyList();
+		List<PostmarkAddress> bcc = Collections.emptyList();
+		String subject = null;
+		String tag = null;
+		String htmlBody = null;
+		String textBody = null;
+		PostmarkAddress replyTo = null;
+		List<PostmarkMessage.Header> headers = null;
+		List<PostmarkAttachment> attachments = null;
+
+		in.beginObject();
+		while(in.hasNext()) {
+			String name = in.nextName();
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if("From".equals(name)) {
+				from = addressAdapter.read(in);
+			} else if("To".equals(name)) {
+				to = addressListAdapter.read(in);
+			} else if("Cc".equals(name)) {
+				cc = addressListAdapter.read(in);
+			} else if("Bcc".equals(name)) {
+				bcc = addressListAdapter.read(in);
+			} else if("Subject".equals(name)) {
+				subject = in.nextString();
+			} else if("Tag".equals(name)) {
+				tag = in.nextString();
+			} else if("HtmlBody".equals(name)) {
+				htmlBody = in.nextString();
+			} else if("TextBody".equals(name)) {
+				textBody = in.nextString();
+			} else if("ReplyTo".equals(name)) {
+				replyTo = addressAdapter.read(in);
+			} else if("Headers".equals(name)) {
+				headers = new ArrayList<PostmarkMessage.Header>();
+				in.beginArray();
+				while(in.hasNext()) {
+					headers.add(headerAdapter.read(in));
+				}
+				in.endArray();
+			} else if("Attachments".equals(name)) {
+				attachments = new ArrayList<PostmarkAttachment>();
+				in.beginArray();
+				while(in.hasNext()) {
+					attachments.add(attachmentAdapter.read(in));
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		PostmarkMessage message = new PostmarkMessage(from, subject, to.toArray(new PostmarkAddress[to.size()]));
+		message.addCc(cc.toArray(new PostmarkAddress[cc.size()]));
+		message.addBcc(bcc.toArray(new PostmarkAddress[bcc.size()]));
+		message.setTag(tag);
+		message.setHtmlBody(htmlBody);
+		message.setTextBody(textBody);
+		message.setReplyTo(replyTo);
+		if(headers != null) {
+			for(PostmarkMessage.Header header : headers) {
+				message.addHeader(header.getName(), header.getValue());
+			}
+		}
+		if(attachments != null) {
+			message.addAttachment(attachments.toArray(new PostmarkAttachment[attachments.size()]));
+		}
+		return message;
+	}
+
+	/**
+	 * Writes a templated body straight into the JSON, without rendering it to a {@link String} first.
+	 */
+	private static void writeTemplate(JsonOutput out, String name, Template template, Map<String, ?> values) throws IOException {
+		out.name(name);
+		template.writeJson(out.beginRawString(), values);
+		out.endRawString();
+	}
+
+	private static void writeString(JsonOutput out, String name, String value) throws IOException {
+		if(value != null) {
+			out.name(name).value(value);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.data.PostmarkResponse;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads {@link PostmarkResponse}s, one at a time, so batch responses can be handled without building the whole
+ * response as a {@link String} or array first. Unknown fields are skipped.
+ *
+ * @author Erik Beeson
+ */
+public class PostmarkResponseAdapter extends PostmarkTypeAdapter<PostmarkResponse> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PostmarkResponseAdapter.class);
+
+	private static final DateTimeFormatter DATE_FORMATTER = ISODateTimeFormat.dateTime();
+
+	public void write(JsonOutput out, PostmarkResponse value) throws IOException {
+		out.beginObject();
+		out.name("ErrorCode").value(value.getErrorCode());
+		if(value.getMessage() != null) {
+			out.name("Message").value(value.getMessage());
+		}
+		if(value.getMessageId() != null) {
+			out.name("MessageID").value(value.getMessageId());
+		}
+		if(value.getSubmittedAt() != null) {
+			out.name("SubmittedAt").value(DATE_FORMATTER.print(new DateTime(value.getSubmittedAt())));
+		}
+		if(value.getTo() != null) {
+			out.name("To").value(value.getTo());
+		}
+		out.endObject();
+	}
+
+	public PostmarkResponse read(JsonReader in) throws IOException {
+		int errorCode = 0;
+		String message = null;
+		String messageId = null;
+		Instant submittedAt = null;
+		String to = null;
+
+		in.beginObject();
+		while(in.hasNext()) {
+			String name = in.nextName();
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+			} else if("ErrorCode".equals(name)) {
+				errorCode = in.nextInt();
+			} else if("Message".equals(name)) {
+				message = in.nextString();
+			} else if("MessageID".equals(name)) {
+				messageId = in.nextString();
+			} else if("SubmittedAt".equals(name)) {
+				String value = in.nextString();
+				try {
+					submittedAt = ISODateParser.parseInstant(value);
+				} catch(IllegalArgumentException e) {
+					// the message was still accepted, so failing the whole response would only get it sent again
+					LOGGER.warn("Unable to parse SubmittedAt: {}", e.getMessage());
+				}
+			} else if("To".equals(name)) {
+				to = in.nextString();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		return PostmarkResponse.of(errorCode, message, messageId, submittedAt, to);
+	}
+
+	/**
+	 * Read a JSON array of responses, as returned by the batch API.
+	 */
+	public PostmarkResponse[] readArray(JsonReader in) throws IOException {
+		List<PostmarkResponse> responses = new ArrayList<PostmarkResponse>();
+		in.beginArray();
+		while(in.hasNext()) {
+			responses.add(read(in));
+		}
+		in.endArray();
+		return responses.toArray(new PostmarkResponse[responses.size()]);
+	}
+}
@@ -0,0 +1,36 @@
+package postmark4j.jsonio;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes one type of the {@link postmark4j.data} model directly with streaming JSON, without Gson's
+ * reflection or tree model.
+ *
+ * Adapters are stateless and thread safe.
+ *
+ * @author Erik Beeson
+ */
+public abstract class PostmarkTypeAdapter<T> {
+	/**
+	 * Write {@code value}, which is never {@code null}.
+	 */
+	public abstract void write(JsonOutput out, T value) throws IOException;
+
+	/**
+	 * Read a value. The reader is positioned at the start of the value, which is never {@code null}.
+	 */
+	public abstract T read(JsonReader in) throws IOException;
+
+	/**
+	 * Write {@code value} as the member {@code name} of the current object, or nothing at all if it's
+	 * {@code null}, like Gson does by default.
+	 */
+	public void writeMember(JsonOutput out, String name, T value) throws IOException {
+		if(value != null) {
+			out.name(name);
+			write(out, value);
+		}
+	}
+}
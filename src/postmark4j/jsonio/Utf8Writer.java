@@ -0,0 +1,163 @@
+package postmark4j.jsonio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A buffered {@link Writer} that encodes UTF-8 onto an {@link OutputStream}, like a
+ * {@link java.io.BufferedWriter} around an {@link java.io.OutputStreamWriter}, but that can also take bytes that
+ * are already UTF-8 (see {@link #writeUtf8(byte[], int, int)}). That's how {@link JsonOutput#rawValue(byte[])}
+ * splices in the cached JSON of a {@link postmark4j.data.FrozenMessage} without decoding and re-encoding it.
+ *
+ * Unpaired surrogates are written as {@code ?}, the same as {@link java.io.OutputStreamWriter}. Not thread safe.
+ *
+ * @author Erik Beeson
+ */
+public class Utf8Writer extends Writer {
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count;
+	// a high surrogate waiting for the low surrogate in the next write
+	private char pendingHighSurrogate;
+
+	public Utf8Writer(OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public Utf8Writer(OutputStream out, int bufferSize) {
+		if(out == null) {
+			throw new IllegalArgumentException("An output stream is required.");
+		}
+		if(bufferSize < 16) {
+			throw new IllegalArgumentException("Buffer size must be at least 16 bytes.");
+		}
+		this.out = out;
+		this.buffer = new byte[bufferSize];
+	}
+
+	public void write(int c) throws IOException {
+		encode((char) c);
+	}
+
+	public void write(char[] chars, int offset, int length) throws IOException {
+		for(int i = offset, end = offset + length; i < end; i++) {
+			char c = chars[i];
+			if(c < 0x80 && pendingHighSurrogate == 0) {
+				if(count == buffer.length) {
+					flushBuffer();
+				}
+				buffer[count++] = (byte) c;
+			} else {
+				encode(c);
+			}
+		}
+	}
+
+	public void write(String str, int offset, int length) throws IOException {
+		for(int i = offset, end = offset + length; i < end; i++) {
+			char c = str.charAt(i);
+			if(c < 0x80 && pendingHighSurrogate == 0) {
+				if(count == buffer.length) {
+					flushBuffer();
+				}
+				buffer[count++] = (byte) c;
+			} else {
+				encode(c);
+			}
+		}
+	}
+
+	/**
+	 * Writes bytes that are already encoded as UTF-8.
+	 */
+	public void writeUtf8(byte[] bytes, int offset, int length) throws IOException {
+		if(pendingHighSurrogate != 0) {
+			pendingHighSurrogate = 0;
+			put('?');
+		}
+		if(length > buffer.length - count) {
+			flushBuffer();
+			if(length > buffer.length) {
+				out.write(bytes, offset, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, offset, buffer, count, length);
+		count += length;
+	}
+
+	private void encode(char c) throws IOException {
+		if(pendingHighSurrogate != 0) {
+			char high = pendingHighSurrogate;
+			pendingHighSurrogate = 0;
+			if(Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				ensureCapacity(4);
+				buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+				return;
+			}
+			put('?');
+		}
+		if(c < 0x80) {
+			put(c);
+		} else if(c < 0x800) {
+			ensureCapacity(2);
+			buffer[count++] = (byte) (0xC0 | (c >> 6));
+			buffer[count++] = (byte) (0x80 | (c & 0x3F));
+		} else if(Character.isHighSurrogate(c)) {
+			pendingHighSurrogate = c;
+		} else if(Character.isLowSurrogate(c)) {
+			put('?');
+		} else {
+			ensureCapacity(3);
+			buffer[count++] = (byte) (0xE0 | (c >> 12));
+			buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[count++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	private void put(char c) throws IOException {
+		ensureCapacity(1);
+		buffer[count++] = (byte) c;
+	}
+
+	private void ensureCapacity(int bytes) throws IOException {
+		if(buffer.length - count < bytes) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if(count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	/**
+	 * Writes out anything buffered, and flushes the stream. A high surrogate at the very end is written as
+	 * {@code ?}.
+	 */
+	public void flush() throws IOException {
+		if(pendingHighSurrogate != 0) {
+			pendingHighSurrogate = 0;
+			put('?');
+		}
+		flushBuffer();
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+}
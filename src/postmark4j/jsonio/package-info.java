@@ -1,5 +1,6 @@
 /**
- * {@link com.google.gson.JsonSerializer}s and {@link com.google.gson.JsonDeserializer}s for
- * {@link com.google.gson.Gson}.
+ * Reflection-free {@link postmark4j.jsonio.PostmarkTypeAdapter}s that read and write the {@link postmark4j.data}
+ * model with streaming JSON, plus the original {@link com.google.gson.JsonSerializer}s and
+ * {@link com.google.gson.JsonDeserializer}s for {@link com.google.gson.Gson}.
  */
-package postmark4j.jsonio;
\ No newline at end of file
+package postmark4j.jsonio;
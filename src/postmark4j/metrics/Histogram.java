@@ -0,0 +1,129 @@
+package postmark4j.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative {@code long} values (latencies in nanoseconds, batch sizes), with
+ * percentiles accurate to within about 3%.
+ *
+ * Values below 64 are counted exactly. Larger values share a bucket with others that have the same highest six
+ * bits, so each power of two is split into 32 buckets and the whole {@code long} range fits in under 2000
+ * counters. Recording a value is a couple of atomic increments; nothing is allocated.
+ *
+ * Reads made while values are being recorded may be slightly inconsistent with each other (a count that doesn't
+ * quite match the buckets, say), which doesn't matter for monitoring.
+ *
+ * @author Erik Beeson
+ */
+public class Histogram {
+	private static final int PRECISION_BITS = 6;
+	private static final int HALF = 1 << (PRECISION_BITS - 1);
+	private static final int BUCKETS = (Long.SIZE - PRECISION_BITS + 1) * HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param percentile Between 0 and 100, like 99.9.
+	 * @return The highest value in the bucket holding the value at {@code percentile}, or 0 if nothing has been
+	 * recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+		}
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= target) {
+				return Math.min(highestValueAt(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public long getP50() {
+		return getValueAtPercentile(50);
+	}
+
+	public long getP99() {
+		return getValueAtPercentile(99);
+	}
+
+	public long getP999() {
+		return getValueAtPercentile(99.9);
+	}
+
+	static int indexOf(long value) {
+		if(value < 2 * HALF) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - PRECISION_BITS;
+		// the top PRECISION_BITS bits, between HALF and 2 * HALF - 1
+		int top = (int) (value >>> shift);
+		return shift * HALF + top;
+	}
+
+	static long highestValueAt(int index) {
+		if(index < 2 * HALF) {
+			return index;
+		}
+		int shift = index / HALF - 1;
+		long top = index % HALF + HALF;
+		long highest = ((top + 1) << shift) - 1;
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Histogram");
+		sb.append("{count=").append(getCount());
+		sb.append(", mean=").append(getMean());
+		sb.append(", p50=").append(getP50());
+		sb.append(", p99=").append(getP99());
+		sb.append(", p999=").append(getP999());
+		sb.append(", max=").append(getMax());
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,165 @@
+package postmark4j.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsListener} that keeps everything in memory, without locks: a latency {@link Histogram} per
+ * endpoint, counters by HTTP status and by Postmark error code, a histogram of messages per request, and request
+ * and response byte counts.
+ *
+ * <pre>
+ * InMemoryMetrics metrics = new InMemoryMetrics();
+ * config.setMetricsListener(metrics);
+ * ...
+ * long p99 = metrics.getLatency(PostmarkClient.URL_BATCH).getP99();
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+public class InMemoryMetrics implements MetricsListener {
+	private static final int MAX_STATUS = 600;
+
+	private final ConcurrentMap<String, Histogram> latencies = new ConcurrentHashMap<String, Histogram>();
+	private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+	private final ConcurrentMap<Integer, LongAdder> errorCodeCounts = new ConcurrentHashMap<Integer, LongAdder>();
+	private final Histogram batchSizes = new Histogram();
+	private final LongAdder failureCount = new LongAdder();
+	private final LongAdder requestBytes = new LongAdder();
+	private final LongAdder responseBytes = new LongAdder();
+
+	public void onResponse(String endpoint, int status, long latencyNanos, int messages, long requestBytes, long responseBytes) {
+		latency(endpoint).record(latencyNanos);
+		if(status >= 0 && status < MAX_STATUS) {
+			statusCounts.incrementAndGet(status);
+		}
+		batchSizes.record(messages);
+		this.requestBytes.add(requestBytes);
+		this.responseBytes.add(responseBytes);
+	}
+
+	public void onFailure(String endpoint, IOException error, long latencyNanos, int messages, long requestBytes) {
+		latency(endpoint).record(latencyNanos);
+		failureCount.increment();
+		batchSizes.record(messages);
+		this.requestBytes.add(requestBytes);
+	}
+
+	public void onErrorCode(String endpoint, int errorCode) {
+		LongAdder counter = errorCodeCounts.get(errorCode);
+		if(counter == null) {
+			LongAdder created = new LongAdder();
+			counter = errorCodeCounts.putIfAbsent(errorCode, created);
+			if(counter == null) {
+				counter = created;
+			}
+		}
+		counter.increment();
+	}
+
+	private Histogram latency(String endpoint) {
+		Histogram histogram = latencies.get(endpoint);
+		if(histogram == null) {
+			Histogram created = new Histogram();
+			histogram = latencies.putIfAbsent(endpoint, created);
+			if(histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @param endpoint The API path, like {@link postmark4j.PostmarkClient#URL_BATCH}.
+	 * @return Request latencies in nanoseconds, including failed requests.
+	 */
+	public Histogram getLatency(String endpoint) {
+		return latency(endpoint);
+	}
+
+	/**
+	 * @return The number of responses with each HTTP status.
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		for(int status = 0; status < MAX_STATUS; status++) {
+			long count = statusCounts.get(status);
+			if(count > 0) {
+				counts.put(status, count);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of times Postmark returned each error code.
+	 */
+	public Map<Integer, Long> getErrorCodeCounts() {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		for(Map.Entry<Integer, LongAdder> entry : errorCodeCounts.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of requests that failed without a response.
+	 */
+	public long getFailureCount() {
+		return failureCount.sum();
+	}
+
+	/**
+	 * @return The number of messages in each request.
+	 */
+	public Histogram getBatchSizes() {
+		return batchSizes;
+	}
+
+	public long getRequestBytes() {
+		return requestBytes.sum();
+	}
+
+	public long getResponseBytes() {
+		return responseBytes.sum();
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("InMemoryMetrics");
+		sb.append("{latencies={");
+		boolean first = true;
+		for(Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(latencies).entrySet()) {
+			Histogram histogram = entry.getValue();
+			if(!first) {
+				sb.append(", ");
+			}
+			first = false;
+			sb.append(entry.getKey());
+			sb.append("={count=").append(histogram.getCount());
+			sb.append(", p50=").append(toMillis(histogram.getP50())).append("ms");
+			sb.append(", p99=").append(toMillis(histogram.getP99())).append("ms");
+			sb.append(", p999=").append(toMillis(histogram.getP999())).append("ms");
+			sb.append('}');
+		}
+		sb.append('}');
+		sb.append(", statusCounts=").append(getStatusCounts());
+		sb.append(", errorCodeCounts=").append(getErrorCodeCounts());
+		sb.append(", failureCount=").append(getFailureCount());
+		sb.append(", meanBatchSize=").append(batchSizes.getMean());
+		sb.append(", requestBytes=").append(getRequestBytes());
+		sb.append(", responseBytes=").append(getResponseBytes());
+		sb.append('}');
+		return sb.toString();
+	}
+
+	private static double toMillis(long nanos) {
+		return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -0,0 +1,45 @@
+package postmark4j.metrics;
+
+import java.io.IOException;
+
+/**
+ * Receives measurements of every request a {@link postmark4j.PostmarkClient} makes, including retries. Set one
+ * with {@link postmark4j.PostmarkClientConfig#setMetricsListener(MetricsListener)}; {@link InMemoryMetrics} keeps
+ * histograms and counters, and implementations can forward to any other metrics library.
+ *
+ * Methods are called on the sending thread once the request is done, so they must be thread safe and quick.
+ *
+ * @author Erik Beeson
+ */
+public interface MetricsListener {
+	/**
+	 * A request got a response, whatever its status.
+	 *
+	 * @param endpoint The API path, like {@code /email/batch}.
+	 * @param status The HTTP status.
+	 * @param latencyNanos The time from sending the request to reading the whole response.
+	 * @param messages The number of messages in the request.
+	 * @param requestBytes The size of the request body.
+	 * @param responseBytes The size of the response body.
+	 */
+	void onResponse(String endpoint, int status, long latencyNanos, int messages, long requestBytes, long responseBytes);
+
+	/**
+	 * A request failed without a response: it timed out, or the connection was refused or reset.
+	 *
+	 * @param endpoint The API path, like {@code /email/batch}.
+	 * @param error Why it failed.
+	 * @param latencyNanos The time from sending the request to the failure.
+	 * @param messages The number of messages in the request.
+	 * @param requestBytes The size of the request body written before the failure.
+	 */
+	void onFailure(String endpoint, IOException error, long latencyNanos, int messages, long requestBytes);
+
+	/**
+	 * Postmark returned an error code, either for a whole request (with a 422) or for one message in a batch.
+	 *
+	 * @param endpoint The API path, like {@code /email/batch}.
+	 * @param errorCode The {@link postmark4j.data.PostmarkError} code.
+	 */
+	void onErrorCode(String endpoint, int errorCode);
+}
@@ -0,0 +1,198 @@
+package postmark4j.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time went in one request to Postmark. Passed to {@link Tracer.Span#end(RequestTiming, Throwable)},
+ * and logged for slow requests (see {@link postmark4j.PostmarkClientConfig#setSlowRequestMillis(long)}).
+ *
+ * The phases, in order:
+ * <ul>
+ * <li>throttle: waiting for the {@link postmark4j.resilience.RateLimiter}.</li>
+ * <li>lease: waiting for a connection from the pool.</li>
+ * <li>connect: opening a new connection, including the TLS handshake. 0 if a pooled connection was reused.</li>
+ * <li>serialization: writing the messages as JSON.</li>
+ * <li>upload: writing the request to the network. The JSON is streamed as it's written, so serialization and
+ * upload overlap; upload is the time spent blocked on the network.</li>
+ * <li>server: from the end of the upload until the response headers arrive, which is mostly Postmark's own
+ * processing time, plus a network round trip.</li>
+ * <li>response: reading and parsing the response body.</li>
+ * </ul>
+ *
+ * Recorded by {@link postmark4j.PostmarkClient} and its HTTP plumbing as the request progresses; not thread safe.
+ *
+ * @author Erik Beeson
+ */
+public class RequestTiming {
+	/**
+	 * The {@link org.apache.http.protocol.HttpContext} attribute a request's timing is kept in.
+	 */
+	public static final String CONTEXT_ATTRIBUTE = "postmark4j.timing";
+
+	private final String endpoint;
+	private final int messages;
+	private String traceId;
+	private int status = -1;
+
+	private long throttleNanos;
+	private long startNanos;
+	private long firstSendNanos;
+	private long connectNanos;
+	private long sendNanos;
+	private long serializationNanos;
+	private long serverNanos;
+	private long responseStartNanos;
+	private long responseNanos;
+	private long totalNanos;
+
+	public RequestTiming(String endpoint, int messages) {
+		this.endpoint = endpoint;
+		this.messages = messages;
+	}
+
+	public void setTraceId(String traceId) {
+		this.traceId = traceId;
+	}
+
+	public void recordThrottle(long nanos) {
+		throttleNanos += nanos;
+	}
+
+	/**
+	 * The request has been handed to the HTTP client.
+	 */
+	public void start() {
+		startNanos = System.nanoTime();
+	}
+
+	public void recordConnect(long nanos) {
+		connectNanos += nanos;
+	}
+
+	/**
+	 * @param start When writing the request began.
+	 * @param nanos How long writing the request took, including serializing the body.
+	 */
+	public void recordSend(long start, long nanos) {
+		if(firstSendNanos == 0) {
+			firstSendNanos = start;
+		}
+		sendNanos += nanos;
+	}
+
+	public void recordSerialization(long nanos) {
+		serializationNanos += nanos;
+	}
+
+	public void recordServer(long nanos) {
+		serverNanos += nanos;
+	}
+
+	/**
+	 * The response headers have been read, and the body is about to be.
+	 */
+	public void responseStarted(int status) {
+		this.status = status;
+		responseStartNanos = System.nanoTime();
+	}
+
+	/**
+	 * The request is over, successfully or not.
+	 */
+	public void finish() {
+		long now = System.nanoTime();
+		if(responseStartNanos != 0) {
+			responseNanos = now - responseStartNanos;
+		}
+		totalNanos = throttleNanos + (startNanos == 0 ? 0 : now - startNanos);
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public int getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return The trace id sent with the request, or {@code null}.
+	 */
+	public String getTraceId() {
+		return traceId;
+	}
+
+	/**
+	 * @return The HTTP status, or -1 if there was no response.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	public long getThrottleNanos() {
+		return throttleNanos;
+	}
+
+	public long getLeaseNanos() {
+		if(firstSendNanos == 0 || startNanos == 0) {
+			return 0;
+		}
+		return Math.max(0, firstSendNanos - startNanos - connectNanos);
+	}
+
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	public long getSerializationNanos() {
+		return serializationNanos;
+	}
+
+	public long getUploadNanos() {
+		return Math.max(0, sendNanos - serializationNanos);
+	}
+
+	public long getServerNanos() {
+		return serverNanos;
+	}
+
+	public long getResponseNanos() {
+		return responseNanos;
+	}
+
+	/**
+	 * @return The time from asking the rate limiter for permission until the request was over.
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public boolean isConnectionReused() {
+		return connectNanos == 0;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("RequestTiming");
+		sb.append("{endpoint=").append(endpoint);
+		sb.append(", messages=").append(messages);
+		sb.append(", status=").append(status);
+		sb.append(", total=").append(toMillis(totalNanos));
+		sb.append(", throttle=").append(toMillis(throttleNanos));
+		sb.append(", lease=").append(toMillis(getLeaseNanos()));
+		sb.append(", connect=").append(toMillis(connectNanos));
+		sb.append(", serialization=").append(toMillis(serializationNanos));
+		sb.append(", upload=").append(toMillis(getUploadNanos()));
+		sb.append(", server=").append(toMillis(serverNanos));
+		sb.append(", response=").append(toMillis(responseNanos));
+		if(traceId != null) {
+			sb.append(", traceId=").append(traceId);
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format("%.3fms", (double) nanos / TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
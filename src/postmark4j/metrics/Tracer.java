@@ -0,0 +1,37 @@
+package postmark4j.metrics;
+
+/**
+ * Hooks a {@link postmark4j.PostmarkClient} into a distributed tracing system. A span is started for every request
+ * to Postmark, including retries, and ended with the request's {@link RequestTiming} once it's over. Set one with
+ * {@link postmark4j.PostmarkClientConfig#setTracer(Tracer)}.
+ *
+ * Methods are called on the sending thread, so they must be thread safe and quick.
+ *
+ * @author Erik Beeson
+ */
+public interface Tracer {
+	/**
+	 * @param endpoint The API path, like {@code /email/batch}.
+	 * @param messages The number of messages in the request.
+	 * @return The span for the request, or {@code null} to not trace it.
+	 */
+	Span startSpan(String endpoint, int messages);
+
+	/**
+	 * One request to Postmark.
+	 */
+	interface Span {
+		/**
+		 * @return An id to send with the request in the {@link postmark4j.PostmarkClientConfig#getTraceHeader()}
+		 * header, or {@code null} to not send one.
+		 */
+		String getTraceId();
+
+		/**
+		 * @param timing Where the time went.
+		 * @param error Why the request failed, or {@code null} if it got a response. Error responses (a 422, say)
+		 * count as responses; see {@link RequestTiming#getStatus()}.
+		 */
+		void end(RequestTiming timing, Throwable error);
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Measuring {@link postmark4j.PostmarkClient}: the {@link postmark4j.metrics.MetricsListener} SPI and a lock-free
+ * in-memory implementation with latency histograms, and
+ * {@link postmark4j.metrics.Tracer} hooks given a per-phase {@link postmark4j.metrics.RequestTiming} for each request.
+ */
+package postmark4j.metrics;
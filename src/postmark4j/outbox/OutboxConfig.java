@@ -0,0 +1,102 @@
+package postmark4j.outbox;
+
+import postmark4j.PostmarkClient;
+
+/**
+ * Settings for a {@link PostmarkOutbox}.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class OutboxConfig {
+	private int segmentSize = 64 * 1024 * 1024;
+	private int batchSize = PostmarkClient.MAX_BATCH_SIZE;
+	private double compactionRatio = 0.25;
+	private long retryBackoffMillis = 1000;
+	private long maxRetryBackoffMillis = 60000;
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * @param segmentSize The size in bytes of each journal file. A message larger than this gets a segment of its
+	 * own. Defaults to 64MB.
+	 */
+	public void setSegmentSize(int segmentSize) {
+		if(segmentSize < 4096) {
+			throw new IllegalArgumentException("Segment size must be at least 4096 bytes.");
+		}
+		this.segmentSize = segmentSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize The most messages to send in one request. Defaults to {@link PostmarkClient#MAX_BATCH_SIZE}.
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1 || batchSize > PostmarkClient.MAX_BATCH_SIZE) {
+			throw new IllegalArgumentException("Batch size must be between 1 and " + PostmarkClient.MAX_BATCH_SIZE + ".");
+		}
+		this.batchSize = batchSize;
+	}
+
+	public double getCompactionRatio() {
+		return compactionRatio;
+	}
+
+	/**
+	 * @param compactionRatio When less than this fraction of the oldest segment is still unacknowledged, its
+	 * remaining messages are copied to the newest segment so the file can be deleted. Defaults to 0.25.
+	 */
+	public void setCompactionRatio(double compactionRatio) {
+		if(compactionRatio < 0 || compactionRatio > 1) {
+			throw new IllegalArgumentException("Compaction ratio must be between 0 and 1.");
+		}
+		this.compactionRatio = compactionRatio;
+	}
+
+	public long getRetryBackoffMillis() {
+		return retryBackoffMillis;
+	}
+
+	/**
+	 * @param retryBackoffMillis How long to wait after a batch fails (once the client's own retries are used up)
+	 * before trying again. Doubles with each consecutive failure. Defaults to 1 second.
+	 */
+	public void setRetryBackoffMillis(long retryBackoffMillis) {
+		if(retryBackoffMillis < 0) {
+			throw new IllegalArgumentException("Backoff can't be negative.");
+		}
+		this.retryBackoffMillis = retryBackoffMillis;
+	}
+
+	public long getMaxRetryBackoffMillis() {
+		return maxRetryBackoffMillis;
+	}
+
+	/**
+	 * @param maxRetryBackoffMillis The longest to wait between failed batches. Defaults to 1 minute.
+	 */
+	public void setMaxRetryBackoffMillis(long maxRetryBackoffMillis) {
+		if(maxRetryBackoffMillis < 0) {
+			throw new IllegalArgumentException("Backoff can't be negative.");
+		}
+		this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("OutboxConfig");
+		sb.append("{segmentSize=").append(segmentSize);
+		sb.append(", batchSize=").append(batchSize);
+		sb.append(", compactionRatio=").append(compactionRatio);
+		sb.append(", retryBackoffMillis=").append(retryBackoffMillis);
+		sb.append(", maxRetryBackoffMillis=").append(maxRetryBackoffMillis);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,554 @@
+package postmark4j.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only journal behind a {@link PostmarkOutbox}: a directory of memory-mapped segment files holding
+ * message records (the message's JSON) and acknowledgement records (the sequence number of a message Postmark is
+ * done with, and its MessageID or error).
+ *
+ * Each record is a payload length, a CRC32 of the rest of the record, a type, a sequence number and the payload.
+ * Replaying the segments in order and dropping every acknowledged message leaves the messages that still need to
+ * be sent. A record that's cut short or fails its checksum marks the end of the journal; anything after it in the
+ * last segment is zeroed, since it was never synced.
+ *
+ * {@link #append(byte[][])} returns only once its records are on disk. Threads appending at the same time share a
+ * single sync: whichever gets there first syncs everything written so far while the others wait for it
+ * ("group commit"). Acknowledgements aren't synced on their own; losing one to a crash only means a message is
+ * sent twice.
+ *
+ * Segments are deleted oldest first, once every message in them has been acknowledged, so an acknowledgement is
+ * never deleted before the message it refers to. When only a few messages in the oldest segment are holding it
+ * back, {@link #compact(double)} copies them (with their original sequence numbers) to the newest segment first.
+ *
+ * @author Erik Beeson
+ */
+class OutboxJournal implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(OutboxJournal.class);
+
+	static final byte MESSAGE = 1;
+	static final byte ACK = 2;
+
+	// length, checksum, type, sequence
+	private static final int HEADER_SIZE = 4 + 4 + 1 + 8;
+	private static final String PREFIX = "outbox-";
+	private static final String SUFFIX = ".log";
+
+	private final File directory;
+	private final int segmentSize;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition synced = lock.newCondition();
+
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private final TreeMap<Long, Entry> live = new TreeMap<Long, Entry>();
+	private Segment active;
+	private long nextSequence = 1;
+	private long appendedBytes;
+	private long syncedBytes;
+	private boolean syncing;
+	private boolean closed;
+
+	/**
+	 * Opens the journal in {@code directory}, creating it if necessary, and replays any existing segments.
+	 */
+	OutboxJournal(File directory, int segmentSize) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create outbox directory " + directory + ".");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+			}
+		});
+		if(files == null) {
+			throw new IOException("Couldn't list outbox directory " + directory + ".");
+		}
+		// zero padded, so name order is segment order
+		Arrays.sort(files);
+		for(int i = 0; i < files.length; i++) {
+			Segment segment = openSegment(files[i]);
+			segments.add(segment);
+			replay(segment, i == files.length - 1);
+			nextSequence = Math.max(nextSequence, segment.id);
+		}
+
+		if(segments.isEmpty()) {
+			active = createSegment(nextSequence, segmentSize);
+			segments.add(active);
+		} else {
+			active = segments.getLast();
+		}
+	}
+
+	/**
+	 * Write message records, and wait until they're on disk.
+	 *
+	 * @param payloads The JSON of each message.
+	 * @return The journal entries, in the same order.
+	 */
+	Entry[] append(byte[][] payloads) throws IOException {
+		Entry[] entries = new Entry[payloads.length];
+		long target;
+		lock.lock();
+		try {
+			checkOpen();
+			for(int i = 0; i < payloads.length; i++) {
+				long sequence = nextSequence++;
+				int position = write(MESSAGE, sequence, payloads[i]);
+				entries[i] = new Entry(sequence, active, position, payloads[i].length);
+				live.put(sequence, entries[i]);
+				active.retain(entries[i]);
+			}
+			target = appendedBytes;
+		} finally {
+			lock.unlock();
+		}
+		awaitSync(target);
+		return entries;
+	}
+
+	/**
+	 * Record that Postmark is done with a message. Does nothing if it has already been acknowledged.
+	 *
+	 * @param errorCode 0 if Postmark accepted the message, otherwise the error it was rejected with.
+	 * @param detail The MessageID, or the error message.
+	 */
+	void acknowledge(Entry entry, int errorCode, String detail) throws IOException {
+		byte[] text = (detail == null ? "" : detail).getBytes(StandardCharsets.UTF_8);
+		byte[] payload = ByteBuffer.allocate(4 + text.length).putInt(errorCode).put(text).array();
+		lock.lock();
+		try {
+			checkOpen();
+			if(live.remove(entry.sequence) == null) {
+				return;
+			}
+			entry.segment.release(entry);
+			write(ACK, entry.sequence, payload);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The JSON of an unacknowledged message.
+	 */
+	byte[] read(Entry entry) {
+		lock.lock();
+		try {
+			return readLocked(entry);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The unacknowledged messages, in sequence order.
+	 */
+	List<Entry> getLive() {
+		lock.lock();
+		try {
+			return new ArrayList<Entry>(live.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getLiveCount() {
+		lock.lock();
+		try {
+			return live.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getSegmentCount() {
+		lock.lock();
+		try {
+			return segments.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until everything written so far, including acknowledgements, is on disk.
+	 */
+	void sync() throws IOException {
+		long target;
+		lock.lock();
+		try {
+			target = appendedBytes;
+		} finally {
+			lock.unlock();
+		}
+		awaitSync(target);
+	}
+
+	/**
+	 * Delete old segments that no longer hold unacknowledged messages. The oldest segment is compacted first if
+	 * its unacknowledged messages take up less than {@code ratio} of it.
+	 *
+	 * Must not be called while entries from the oldest segment are being {@link #read(Entry)}.
+	 */
+	void compact(double ratio) throws IOException {
+		while(true) {
+			Segment oldest;
+			boolean relocated = false;
+			long target;
+			lock.lock();
+			try {
+				if(closed || segments.size() < 2) {
+					return;
+				}
+				oldest = segments.getFirst();
+				if(oldest.liveCount > 0) {
+					if(oldest.liveBytes > oldest.position * ratio) {
+						return;
+					}
+					relocate(oldest);
+					relocated = true;
+				}
+				target = appendedBytes;
+			} finally {
+				lock.unlock();
+			}
+			if(relocated) {
+				// the copies must be on disk before the originals are deleted
+				awaitSync(target);
+			}
+			lock.lock();
+			try {
+				segments.remove(oldest);
+			} finally {
+				lock.unlock();
+			}
+			oldest.delete();
+		}
+	}
+
+	/**
+	 * Syncs and closes the segment files. Unacknowledged messages are replayed when the journal is opened again.
+	 */
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if(closed) {
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		sync();
+		lock.lock();
+		try {
+			closed = true;
+			for(Segment segment : segments) {
+				segment.close();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void checkOpen() {
+		if(closed) {
+			throw new IllegalStateException("Outbox journal has been closed.");
+		}
+	}
+
+	private void relocate(Segment from) throws IOException {
+		int count = 0;
+		for(Entry entry : live.values()) {
+			if(entry.segment == from) {
+				byte[] payload = readLocked(entry);
+				int position = write(MESSAGE, entry.sequence, payload);
+				from.release(entry);
+				entry.segment = active;
+				entry.position = position;
+				active.retain(entry);
+				count++;
+			}
+		}
+		LOGGER.debug("Copied {} unacknowledged messages out of {}", count, from.file);
+	}
+
+	private byte[] readLocked(Entry entry) {
+		ByteBuffer buffer = entry.segment.buffer.duplicate();
+		buffer.position(entry.position + HEADER_SIZE);
+		byte[] payload = new byte[entry.length];
+		buffer.get(payload);
+		return payload;
+	}
+
+	/**
+	 * @return Where the record starts in the (possibly new) active segment.
+	 */
+	private int write(byte type, long sequence, byte[] payload) throws IOException {
+		int size = HEADER_SIZE + payload.length;
+		if(size > active.buffer.capacity() - active.position) {
+			roll(size);
+		}
+
+		byte[] header = ByteBuffer.allocate(HEADER_SIZE).putInt(payload.length).putInt(0).put(type).putLong(sequence).array();
+		CRC32 crc = new CRC32();
+		crc.update(header, 8, HEADER_SIZE - 8);
+		crc.update(payload);
+		ByteBuffer.wrap(header).putInt(4, (int) crc.getValue());
+
+		int position = active.position;
+		ByteBuffer buffer = active.buffer.duplicate();
+		buffer.position(position);
+		buffer.put(header);
+		buffer.put(payload);
+		active.position += size;
+		appendedBytes += size;
+		return position;
+	}
+
+	private void roll(int size) throws IOException {
+		// everything in a full segment is on disk, so replay only ever finds a torn record in the last one
+		active.buffer.force();
+		syncedBytes = appendedBytes;
+		long id = Math.max(active.id + 1, nextSequence);
+		active = createSegment(id, Math.max(segmentSize, size));
+		segments.add(active);
+	}
+
+	private void awaitSync(long target) throws IOException {
+		lock.lock();
+		try {
+			while(syncedBytes < target) {
+				if(syncing) {
+					try {
+						synced.await();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while waiting for the outbox journal to sync.");
+					}
+					continue;
+				}
+
+				syncing = true;
+				Segment segment = active;
+				long syncTarget = appendedBytes;
+				boolean success = false;
+				lock.unlock();
+				try {
+					segment.buffer.force();
+					success = true;
+				} finally {
+					lock.lock();
+					syncing = false;
+					if(success) {
+						syncedBytes = Math.max(syncedBytes, syncTarget);
+					}
+					synced.signalAll();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void replay(Segment segment, boolean last) throws IOException {
+		ByteBuffer buffer = segment.buffer.duplicate();
+		int capacity = buffer.capacity();
+		int position = 0;
+		while(capacity - position >= HEADER_SIZE) {
+			int length = buffer.getInt(position);
+			byte type = buffer.get(position + 8);
+			if((type != MESSAGE && type != ACK) || length < 0 || length > capacity - position - HEADER_SIZE) {
+				break;
+			}
+			long sequence = buffer.getLong(position + 9);
+			byte[] record = new byte[HEADER_SIZE - 8 + length];
+			buffer.position(position + 8);
+			buffer.get(record);
+			CRC32 crc = new CRC32();
+			crc.update(record);
+			if((int) crc.getValue() != buffer.getInt(position + 4)) {
+				break;
+			}
+
+			if(type == MESSAGE) {
+				Entry entry = new Entry(sequence, segment, position, length);
+				Entry copied = live.put(sequence, entry);
+				if(copied != null) {
+					// compaction copied this message here, and crashed before deleting the original
+					copied.segment.release(copied);
+				}
+				segment.retain(entry);
+			} else {
+				Entry entry = live.remove(sequence);
+				if(entry != null) {
+					entry.segment.release(entry);
+				}
+			}
+			nextSequence = Math.max(nextSequence, sequence + 1);
+			position += HEADER_SIZE + length;
+		}
+		segment.position = position;
+
+		if(last) {
+			zeroTail(segment);
+		} else if(capacity - position >= HEADER_SIZE && buffer.get(position + 8) != 0) {
+			LOGGER.warn("Ignoring corrupt records at {} in {}", position, segment.file);
+		}
+	}
+
+	/**
+	 * Clears whatever a crash left after the last good record, so it can't be mistaken for records later.
+	 */
+	private void zeroTail(Segment segment) {
+		ByteBuffer buffer = segment.buffer;
+		int end = buffer.capacity();
+		while(end > segment.position && buffer.get(end - 1) == 0) {
+			end--;
+		}
+		if(end > segment.position) {
+			LOGGER.warn("Discarding {} bytes of incomplete records at the end of {}", end - segment.position, segment.file);
+			byte[] zeros = new byte[Math.min(65536, end - segment.position)];
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(segment.position);
+			while(duplicate.position() < end) {
+				duplicate.put(zeros, 0, Math.min(zeros.length, end - duplicate.position()));
+			}
+			segment.buffer.force();
+		}
+	}
+
+	private Segment createSegment(long id, int size) throws IOException {
+		File file = new File(directory, String.format("%s%019d%s", PREFIX, id, SUFFIX));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(size);
+			raf.getChannel().force(true);
+			syncDirectory();
+			return new Segment(id, file, raf);
+		} catch(IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	private Segment openSegment(File file) throws IOException {
+		String name = file.getName();
+		long id;
+		try {
+			id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch(NumberFormatException e) {
+			throw new IOException("Unexpected file in outbox directory: " + file + ".");
+		}
+		return new Segment(id, file, new RandomAccessFile(file, "rw"));
+	}
+
+	/**
+	 * Makes a new segment file's directory entry durable. Not possible on every platform.
+	 */
+	private void syncDirectory() {
+		try {
+			FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch(IOException ignored) {
+			// e.g. Windows can't open directories
+		}
+	}
+
+	/**
+	 * A message in the journal.
+	 */
+	static final class Entry {
+		private final long sequence;
+		private final int length;
+		private Segment segment;
+		private int position;
+
+		private Entry(long sequence, Segment segment, int position, int length) {
+			this.sequence = sequence;
+			this.segment = segment;
+			this.position = position;
+			this.length = length;
+		}
+
+		long getSequence() {
+			return sequence;
+		}
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final File file;
+		private final RandomAccessFile raf;
+		private final MappedByteBuffer buffer;
+		private int position;
+		private int liveCount;
+		private long liveBytes;
+
+		private Segment(long id, File file, RandomAccessFile raf) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.raf = raf;
+			try {
+				this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+			} catch(IOException e) {
+				raf.close();
+				throw e;
+			}
+		}
+
+		private void retain(Entry entry) {
+			liveCount++;
+			liveBytes += HEADER_SIZE + entry.length;
+		}
+
+		private void release(Entry entry) {
+			liveCount--;
+			liveBytes -= HEADER_SIZE + entry.length;
+		}
+
+		private void close() throws IOException {
+			raf.close();
+		}
+
+		private void delete() {
+			try {
+				close();
+			} catch(IOException e) {
+				LOGGER.warn("Failed to close " + file, e);
+			}
+			// the mapping itself is released when the buffer is garbage collected
+			if(!file.delete()) {
+				LOGGER.warn("Failed to delete {}", file);
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package postmark4j.outbox;
+
+import postmark4j.data.PostmarkResponse;
+
+/**
+ * Told about each message a {@link PostmarkOutbox} is done with: either Postmark accepted it, or rejected it with
+ * an error that won't go away by sending it again (see {@link PostmarkResponse#isSuccess()}).
+ *
+ * Called on the outbox's sender thread, so implementations should be quick.
+ *
+ * @author Erik Beeson
+ */
+public interface OutboxListener {
+	/**
+	 * @param sequence The sequence number {@link PostmarkOutbox#enqueue(postmark4j.data.PostmarkMessage)} returned.
+	 * @param response Postmark's result for the message.
+	 */
+	void onAcknowledged(long sequence, PostmarkResponse response);
+}
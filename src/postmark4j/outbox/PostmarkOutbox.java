@@ -0,0 +1,475 @@
+package postmark4j.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.PostmarkClient;
+import postmark4j.data.PostmarkError;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.CircuitOpenPostmarkException;
+import postmark4j.exceptions.PostmarkException;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.resilience.RetryPolicy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A durable queue of messages in front of a {@link PostmarkClient}, so that messages aren't lost if the JVM dies
+ * before Postmark has accepted them.
+ *
+ * {@link #enqueue(postmark4j.data.PostmarkMessage)} writes the message to a journal on local disk and returns
+ * once it's there. A background thread sends journaled messages through {@code /email/batch} and records each
+ * result in the journal. When the outbox is opened again after a crash (or a {@link #close()}), messages without
+ * a result are sent again. Delivery is at least once: a message that was accepted by Postmark just before a crash
+ * may be sent twice.
+ *
+ * <pre>
+ * PostmarkOutbox outbox = new PostmarkOutbox(client, new File("/var/spool/postmark"));
+ * outbox.addListener(listener);
+ * outbox.start();
+ * long sequence = outbox.enqueue(message);
+ * </pre>
+ *
+ * Batches that fail once the client's own retries (see {@link RetryPolicy}) are used up are tried again with
+ * backoff, indefinitely. Messages Postmark rejects for a reason that won't go away (an inactive recipient, say)
+ * are acknowledged, logged and reported to {@link OutboxListener}s.
+ *
+ * Only one outbox may use a directory at a time. The outbox doesn't own the client: closing the outbox leaves the
+ * client open.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class PostmarkOutbox implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PostmarkOutbox.class);
+
+	private final PostmarkClient client;
+	private final OutboxConfig config;
+	private final OutboxJournal journal;
+	private final List<OutboxListener> listeners = new CopyOnWriteArrayList<OutboxListener>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition drained = lock.newCondition();
+	private final ArrayDeque<OutboxJournal.Entry> ready = new ArrayDeque<OutboxJournal.Entry>();
+	private int inFlight;
+	private boolean started;
+	private volatile boolean closed;
+	private final Thread sender;
+
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	public PostmarkOutbox(PostmarkClient client, File directory) throws IOException {
+		this(client, directory, new OutboxConfig());
+	}
+
+	/**
+	 * Opens the outbox, replaying any messages left in {@code directory}. Nothing is sent until {@link #start()}.
+	 *
+	 * @param client The client used to send messages.
+	 * @param directory Where the journal is kept. Created if it doesn't exist.
+	 * @param config Settings for the journal and sender.
+	 * @throws IOException If the journal can't be opened.
+	 */
+	public PostmarkOutbox(PostmarkClient client, File directory, OutboxConfig config) throws IOException {
+		if(client == null) {
+			throw new IllegalArgumentException("A client is required.");
+		}
+		if(directory == null) {
+			throw new IllegalArgumentException("A directory is required.");
+		}
+		if(config == null) {
+			throw new IllegalArgumentException("A config is required.");
+		}
+
+		this.client = client;
+		this.config = config;
+		this.journal = new OutboxJournal(directory, config.getSegmentSize());
+		this.ready.addAll(journal.getLive());
+		if(!ready.isEmpty()) {
+			LOGGER.info("Replaying {} unacknowledged messages from {}", ready.size(), directory);
+		}
+
+		this.sender = new Thread(new Runnable() {
+			public void run() {
+				sendLoop();
+			}
+		}, "postmark4j-outbox");
+		this.sender.setDaemon(true);
+	}
+
+	public void addListener(OutboxListener listener) {
+		if(listener == null) {
+			throw new IllegalArgumentException("A listener is required.");
+		}
+		listeners.add(listener);
+	}
+
+	public void removeListener(OutboxListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Start sending messages, beginning with any that were replayed from the journal.
+	 */
+	public void start() {
+		lock.lock();
+		try {
+			if(closed) {
+				throw new IllegalStateException("PostmarkOutbox has been closed.");
+			}
+			if(!started) {
+				started = true;
+				sender.start();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add a message to the outbox.
+	 *
+	 * @param message The message to send. Messages without a "from" address get the client's default.
+	 * @return The message's sequence number, which is passed to {@link OutboxListener}s with its result.
+	 * @throws IOException If the message can't be written to the journal.
+	 */
+	public long enqueue(PostmarkMessage message) throws IOException {
+		return enqueue(new PostmarkMessage[]{message})[0];
+	}
+
+	/**
+	 * Add messages to the outbox. Adding many messages at once shares a single disk sync between them.
+	 *
+	 * @param messages The messages to send. Messages without a "from" address get the client's default.
+	 * @return The messages' sequence numbers, in the same order.
+	 * @throws IOException If the messages can't be written to the journal. Some of them may have been written,
+	 * and will be sent.
+	 */
+	public long[] enqueue(PostmarkMessage... messages) throws IOException {
+		if(closed) {
+			throw new IllegalStateException("PostmarkOutbox has been closed.");
+		}
+
+		byte[][] payloads = new byte[messages.length][];
+		for(int i = 0; i < messages.length; i++) {
+			PostmarkMessage message = messages[i];
+			if(message == null) {
+				throw new IllegalArgumentException("A message is required.");
+			}
+			if(message.getFrom() == null) {
+				if(client.getDefaultFrom() == null) {
+					throw new IllegalArgumentException("A valid \"from\" address is required.");
+				}
+				message = new PostmarkMessage(client.getDefaultFrom(), message);
+			}
+			payloads[i] = PostmarkJson.toJsonBytes(message);
+		}
+
+		OutboxJournal.Entry[] entries = journal.append(payloads);
+		long[] sequences = new long[entries.length];
+		lock.lock();
+		try {
+			for(int i = 0; i < entries.length; i++) {
+				ready.addLast(entries[i]);
+				sequences[i] = entries[i].getSequence();
+			}
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		return sequences;
+	}
+
+	/**
+	 * Wait until every message in the outbox has been acknowledged.
+	 *
+	 * @return {@code false} if the timeout passed first.
+	 */
+	public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while(!ready.isEmpty() || inFlight > 0) {
+				if(remaining <= 0) {
+					return false;
+				}
+				remaining = drained.awaitNanos(remaining);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of messages in the outbox that haven't been acknowledged, including any being sent.
+	 */
+	public int getPendingCount() {
+		return journal.getLiveCount();
+	}
+
+	/**
+	 * @return The number of messages Postmark has accepted since the outbox was opened.
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * @return The number of messages Postmark has rejected since the outbox was opened.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return The number of batch requests made since the outbox was opened.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return The number of journal files.
+	 */
+	public int getSegmentCount() {
+		return journal.getSegmentCount();
+	}
+
+	/**
+	 * Stops sending, waiting for a batch that's already being sent to finish, and closes the journal. Messages
+	 * still in the outbox are sent when it's opened again. Doesn't close the client.
+	 */
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if(started) {
+			try {
+				sender.join();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		journal.close();
+	}
+
+	private void sendLoop() {
+		List<OutboxJournal.Entry> batch = new ArrayList<OutboxJournal.Entry>(config.getBatchSize());
+		int failures = 0;
+		while(takeBatch(batch)) {
+			List<OutboxJournal.Entry> sending = new ArrayList<OutboxJournal.Entry>(batch.size());
+			List<PostmarkMessage> messages = readMessages(batch, sending);
+
+			List<OutboxJournal.Entry> retry = new ArrayList<OutboxJournal.Entry>();
+			List<OutboxJournal.Entry> acknowledged = new ArrayList<OutboxJournal.Entry>();
+			long waitMillis = 0;
+			try {
+				send(sending, messages, retry, acknowledged);
+				if(retry.isEmpty()) {
+					failures = 0;
+				} else {
+					waitMillis = getBackoffMillis(++failures);
+				}
+			} catch(CircuitOpenPostmarkException e) {
+				retry = unsent(sending, retry, acknowledged);
+				waitMillis = Math.max(e.getRetryAfterMillis(), getBackoffMillis(++failures));
+			} catch(Exception e) {
+				retry = unsent(sending, retry, acknowledged);
+				waitMillis = getBackoffMillis(++failures);
+				LOGGER.warn("Failed to send {} messages from the outbox, trying again in {}ms: {}", new Object[]{retry.size(), waitMillis, e});
+			}
+			// nothing is being read from the journal between batches, so this is when it's compacted
+			try {
+				journal.compact(config.getCompactionRatio());
+			} catch(IOException e) {
+				LOGGER.warn("Failed to compact the outbox journal", e);
+			}
+			finishBatch(batch.size(), retry);
+			batch.clear();
+			if(waitMillis > 0) {
+				pause(waitMillis);
+			}
+		}
+	}
+
+	private boolean takeBatch(List<OutboxJournal.Entry> batch) {
+		lock.lock();
+		try {
+			while(ready.isEmpty() && !closed) {
+				notEmpty.awaitUninterruptibly();
+			}
+			if(closed) {
+				return false;
+			}
+			while(batch.size() < config.getBatchSize() && !ready.isEmpty()) {
+				batch.add(ready.pollFirst());
+			}
+			inFlight += batch.size();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void finishBatch(int size, List<OutboxJournal.Entry> retry) {
+		lock.lock();
+		try {
+			inFlight -= size;
+			// back to the front, in their original order
+			for(int i = retry.size() - 1; i >= 0; i--) {
+				ready.addFirst(retry.get(i));
+			}
+			if(ready.isEmpty() && inFlight == 0) {
+				drained.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void pause(long millis) {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(millis);
+		lock.lock();
+		try {
+			// woken early by close()
+			while(!closed && remaining > 0) {
+				remaining = notEmpty.awaitNanos(remaining);
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the messages for a batch from the journal. Messages that can't be read are acknowledged as rejected.
+	 */
+	private List<PostmarkMessage> readMessages(List<OutboxJournal.Entry> batch, List<OutboxJournal.Entry> sending) {
+		List<PostmarkMessage> messages = new ArrayList<PostmarkMessage>(batch.size());
+		for(OutboxJournal.Entry entry : batch) {
+			try {
+				messages.add(PostmarkJson.readMessage(new String(journal.read(entry), StandardCharsets.UTF_8)));
+				sending.add(entry);
+			} catch(Exception e) {
+				LOGGER.error("Couldn't read message " + entry.getSequence() + " from the outbox journal", e);
+				acknowledge(entry, new PostmarkResponse(PostmarkError.INVALID_JSON, "Couldn't read message from the outbox journal: " + e.getMessage(), null, null, null));
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Sends messages, acknowledging them or adding them to {@code retry} in order. When Postmark rejects the whole
+	 * request for a reason that won't go away (one message with an invalid address, say), the batch is split in
+	 * half and each half sent, until the messages it rejects are found and acknowledged as rejected.
+	 *
+	 * @param retry Gets the messages that failed with a retryable error code.
+	 * @param acknowledged Gets the messages that were acknowledged.
+	 */
+	private void send(List<OutboxJournal.Entry> sending, List<PostmarkMessage> messages, List<OutboxJournal.Entry> retry, List<OutboxJournal.Entry> acknowledged) throws IOException, PostmarkException {
+		if(sending.isEmpty()) {
+			return;
+		}
+
+		RetryPolicy retryPolicy = client.getConfig().getRetryPolicy();
+		PostmarkResponse[] responses;
+		requestCount.incrementAndGet();
+		try {
+			responses = client.send(messages.toArray(new PostmarkMessage[messages.size()]));
+		} catch(UnprocessableEntityPostmarkException e) {
+			if(retryPolicy.isRetryable(e)) {
+				throw e;
+			}
+			if(sending.size() == 1) {
+				acknowledge(sending.get(0), new PostmarkResponse(e.getErrorCode(), e.getMessage(), null, null, null));
+				acknowledged.add(sending.get(0));
+			} else {
+				LOGGER.info("Postmark rejected a batch of {} messages from the outbox, splitting it: {} {}", new Object[]{sending.size(), e.getErrorCode(), e.getMessage()});
+				int half = sending.size() / 2;
+				send(sending.subList(0, half), messages.subList(0, half), retry, acknowledged);
+				send(sending.subList(half, sending.size()), messages.subList(half, messages.size()), retry, acknowledged);
+			}
+			return;
+		}
+		if(responses == null || responses.length != sending.size()) {
+			throw new IOException("Expected " + sending.size() + " responses from Postmark, but got " + (responses == null ? 0 : responses.length) + ".");
+		}
+
+		for(int i = 0; i < responses.length; i++) {
+			if(!responses[i].isSuccess() && retryPolicy.isRetryableErrorCode(responses[i].getErrorCode())) {
+				retry.add(sending.get(i));
+			} else {
+				acknowledge(sending.get(i), responses[i]);
+				acknowledged.add(sending.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @return The messages of a batch that failed part way that should be sent again: those that failed with a
+	 * retryable error code, then those that weren't sent. Messages are sent in order, so the ones that weren't sent
+	 * are the ones after every message that was handled.
+	 */
+	private static List<OutboxJournal.Entry> unsent(List<OutboxJournal.Entry> sending, List<OutboxJournal.Entry> retry, List<OutboxJournal.Entry> acknowledged) {
+		List<OutboxJournal.Entry> unsent = new ArrayList<OutboxJournal.Entry>(retry);
+		unsent.addAll(sending.subList(retry.size() + acknowledged.size(), sending.size()));
+		return unsent;
+	}
+
+	private void acknowledge(OutboxJournal.Entry entry, PostmarkResponse response) {
+		try {
+			if(response.isSuccess()) {
+				journal.acknowledge(entry, 0, response.getMessageId());
+			} else {
+				journal.acknowledge(entry, response.getErrorCode(), response.getMessage());
+			}
+		} catch(IOException e) {
+			// it'll be sent again when the outbox is next opened
+			LOGGER.error("Failed to record the result for message " + entry.getSequence() + " in the outbox journal", e);
+		}
+
+		if(response.isSuccess()) {
+			sentCount.incrementAndGet();
+		} else {
+			rejectedCount.incrementAndGet();
+			LOGGER.warn("Postmark rejected message {} from the outbox: {} {}", new Object[]{entry.getSequence(), response.getErrorCode(), response.getMessage()});
+		}
+
+		for(OutboxListener listener : listeners) {
+			try {
+				listener.onAcknowledged(entry.getSequence(), response);
+			} catch(RuntimeException e) {
+				LOGGER.warn("Outbox listener failed", e);
+			}
+		}
+	}
+
+	private long getBackoffMillis(int failures) {
+		double backoff = config.getRetryBackoffMillis() * Math.pow(2, Math.min(failures - 1, 30));
+		return (long) Math.min((double) config.getMaxRetryBackoffMillis(), backoff);
+	}
+}
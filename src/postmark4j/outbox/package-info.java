@@ -0,0 +1,5 @@
+/**
+ * A durable, disk-backed outbox ({@link postmark4j.outbox.PostmarkOutbox}) that keeps messages until Postmark has
+ * accepted them, so they survive the JVM dying.
+ */
+package postmark4j.outbox;
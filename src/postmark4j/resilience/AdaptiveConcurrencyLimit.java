@@ -0,0 +1,138 @@
+package postmark4j.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight with additive-increase/multiplicative-decrease (AIMD), like TCP
+ * congestion control: the limit grows by about one for each limit's worth of healthy responses, and shrinks by
+ * {@code backoffRatio} when Postmark is overloaded (errors, timeouts or slow responses).
+ *
+ * The limit only shrinks once per "generation" of requests: requests that were already in flight when it last
+ * shrank don't shrink it again, so a burst of failures from one bad moment backs off once instead of collapsing
+ * to the minimum.
+ *
+ * @author Erik Beeson
+ */
+public class AdaptiveConcurrencyLimit {
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+
+	private double limit;
+	private int inFlight;
+	private long sequence;
+	private long lastDecreaseSequence;
+
+	/**
+	 * @param initialLimit The starting limit.
+	 * @param minLimit The limit never shrinks below this.
+	 * @param maxLimit The limit never grows above this.
+	 * @param backoffRatio The limit is multiplied by this when Postmark is overloaded, e.g. 0.9.
+	 */
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+		if(minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max.");
+		}
+		if(backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1.");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoffRatio = backoffRatio;
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * @return A ticket to pass to {@link #release(long, boolean)}, or -1 if the limit has been reached.
+	 */
+	public long tryAcquire() {
+		lock.lock();
+		try {
+			if(inFlight >= (int) limit) {
+				return -1;
+			}
+			inFlight++;
+			return ++sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until a request may be made.
+	 *
+	 * @param timeout How long to wait, or 0 to wait forever.
+	 * @return A ticket to pass to {@link #release(long, boolean)}, or -1 if the timeout elapsed first.
+	 */
+	public long acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = timeout > 0 ? unit.toNanos(timeout) : 0;
+		lock.lockInterruptibly();
+		try {
+			while(inFlight >= (int) limit) {
+				if(timeout <= 0) {
+					released.await();
+				} else {
+					if(remaining <= 0) {
+						return -1;
+					}
+					remaining = released.awaitNanos(remaining);
+				}
+			}
+			inFlight++;
+			return ++sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Finish a request.
+	 *
+	 * @param ticket From {@link #acquire(long, java.util.concurrent.TimeUnit)} or {@link #tryAcquire()}.
+	 * @param overloaded Whether the request showed that Postmark is overloaded.
+	 */
+	public void release(long ticket, boolean overloaded) {
+		lock.lock();
+		try {
+			// only grow if the limit is actually being used, so it doesn't drift to the maximum while idle
+			boolean busy = inFlight >= limit / 2;
+			inFlight--;
+			if(overloaded) {
+				if(ticket > lastDecreaseSequence) {
+					limit = Math.max(minLimit, limit * backoffRatio);
+					lastDecreaseSequence = sequence;
+				}
+			} else if(busy) {
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The current limit.
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package postmark4j.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stops sending to Postmark while it's failing, so threads fail fast with a
+ * {@link postmark4j.exceptions.CircuitOpenPostmarkException} instead of piling up on hanging connections.
+ *
+ * <ul>
+ * <li>{@link State#CLOSED}: requests go through, and their outcomes are recorded in a sliding window of the most
+ * recent requests. When the failure rate or slow call rate in the window reaches its threshold, the breaker
+ * opens.</li>
+ * <li>{@link State#OPEN}: requests are rejected. After the open duration, the breaker becomes half-open.</li>
+ * <li>{@link State#HALF_OPEN}: a few probe requests are let through. If they all succeed, the breaker closes with
+ * an empty window; if any fails, it opens again.</li>
+ * </ul>
+ *
+ * Every request that {@link #tryAcquire()} allows must be followed by {@link #record(long, long, boolean)} or
+ * {@link #cancel(long)}, with the ticket it was given. Tickets belong to a "generation" of the breaker, which
+ * ends whenever its state changes; outcomes from an earlier generation are ignored, so requests that were in flight
+ * when the breaker opened can't count as half-open probes, or against a window that was cleared when it closed.
+ * Thread safe.
+ *
+ * @author Erik Beeson
+ */
+public class CircuitBreaker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final CircuitBreakerPolicy policy;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<CircuitBreakerListener>();
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private State state = State.CLOSED;
+	private final byte[] window;
+	private int windowCount;
+	private int windowIndex;
+	private int failedCount;
+	private int slowCount;
+	private long openedAtNanos;
+	private long generation;
+	private int probesIssued;
+	private int probesSucceeded;
+
+	public CircuitBreaker(CircuitBreakerPolicy policy) {
+		if(policy == null) {
+			throw new IllegalArgumentException("A circuit breaker policy is required.");
+		}
+		this.policy = policy;
+		this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallMillis());
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(policy.getOpenMillis());
+		this.window = new byte[policy.getWindowSize()];
+	}
+
+	public void addListener(CircuitBreakerListener listener) {
+		if(listener == null) {
+			throw new IllegalArgumentException("A listener is required.");
+		}
+		listeners.add(listener);
+	}
+
+	public void removeListener(CircuitBreakerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return A ticket to pass to {@link #record(long, long, boolean)} or {@link #cancel(long)}, or -1 if a request
+	 * may not be made now.
+	 */
+	public long tryAcquire() {
+		long ticket;
+		boolean halfOpened = false;
+		lock.lock();
+		try {
+			if(state == State.OPEN) {
+				if(System.nanoTime() - openedAtNanos < openNanos) {
+					return -1;
+				}
+				state = State.HALF_OPEN;
+				generation++;
+				halfOpened = true;
+				probesIssued = 0;
+				probesSucceeded = 0;
+			}
+			if(state == State.HALF_OPEN) {
+				if(probesIssued >= policy.getHalfOpenProbes()) {
+					return -1;
+				}
+				probesIssued++;
+			}
+			ticket = generation;
+		} finally {
+			lock.unlock();
+		}
+		if(halfOpened) {
+			fireStateChange(State.OPEN, State.HALF_OPEN);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Record the outcome of a request allowed by {@link #tryAcquire()}.
+	 *
+	 * @param ticket From {@link #tryAcquire()}.
+	 * @param durationNanos How long the request took.
+	 * @param failed Whether it failed in a way that suggests Postmark is unhealthy.
+	 */
+	public void record(long ticket, long durationNanos, boolean failed) {
+		boolean slow = durationNanos > slowCallNanos;
+		State from;
+		State to;
+		lock.lock();
+		try {
+			from = state;
+			if(ticket != generation) {
+				// acquired before the state last changed, so it says nothing about the current state
+				return;
+			}
+			if(state == State.HALF_OPEN) {
+				if(failed || slow) {
+					open();
+				} else if(++probesSucceeded >= policy.getHalfOpenProbes()) {
+					close();
+				}
+			} else if(state == State.CLOSED) {
+				add((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+				if(windowCount >= policy.getMinimumCalls() &&
+						(getFailureRateLocked() >= policy.getFailureRateThreshold() || getSlowCallRateLocked() >= policy.getSlowCallRateThreshold())) {
+					LOGGER.warn("Opening circuit breaker: failure rate {}, slow call rate {} over the last {} requests",
+							new Object[]{getFailureRateLocked(), getSlowCallRateLocked(), windowCount});
+					open();
+				}
+			}
+			to = state;
+		} finally {
+			lock.unlock();
+		}
+		if(from != to) {
+			fireStateChange(from, to);
+		}
+	}
+
+	/**
+	 * Give back a request allowed by {@link #tryAcquire()} that was never made.
+	 *
+	 * @param ticket From {@link #tryAcquire()}.
+	 */
+	public void cancel(long ticket) {
+		lock.lock();
+		try {
+			if(ticket == generation && state == State.HALF_OPEN && probesIssued > 0) {
+				probesIssued--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public State getState() {
+		lock.lock();
+		try {
+			return state;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The fraction of requests in the window that failed.
+	 */
+	public double getFailureRate() {
+		lock.lock();
+		try {
+			return getFailureRateLocked();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The fraction of requests in the window that were slow.
+	 */
+	public double getSlowCallRate() {
+		lock.lock();
+		try {
+			return getSlowCallRateLocked();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Roughly how long until an open breaker lets probes through, or 0 if it isn't open.
+	 */
+	public long getRemainingOpenMillis() {
+		lock.lock();
+		try {
+			if(state != State.OPEN) {
+				return 0;
+			}
+			return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (System.nanoTime() - openedAtNanos)));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private double getFailureRateLocked() {
+		return windowCount == 0 ? 0 : (double) failedCount / windowCount;
+	}
+
+	private double getSlowCallRateLocked() {
+		return windowCount == 0 ? 0 : (double) slowCount / windowCount;
+	}
+
+	private void add(byte outcome) {
+		if(windowCount == window.length) {
+			byte evicted = window[windowIndex];
+			failedCount -= evicted & FAILED;
+			slowCount -= (evicted & SLOW) >> 1;
+		} else {
+			windowCount++;
+		}
+		window[windowIndex] = outcome;
+		failedCount += outcome & FAILED;
+		slowCount += (outcome & SLOW) >> 1;
+		windowIndex = (windowIndex + 1) % window.length;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		generation++;
+		openedAtNanos = System.nanoTime();
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		generation++;
+		windowCount = 0;
+		windowIndex = 0;
+		failedCount = 0;
+		slowCount = 0;
+	}
+
+	private void fireStateChange(State from, State to) {
+		LOGGER.info("Circuit breaker {} -> {}", from, to);
+		for(CircuitBreakerListener listener : listeners) {
+			try {
+				listener.onStateChange(this, from, to);
+			} catch(RuntimeException e) {
+				LOGGER.warn("Circuit breaker listener failed", e);
+			}
+		}
+	}
+
+	public String toString() {
+		return "CircuitBreaker{state=" + getState() + ", policy=" + policy + '}';
+	}
+}
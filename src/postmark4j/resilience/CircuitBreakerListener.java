@@ -0,0 +1,12 @@
+package postmark4j.resilience;
+
+/**
+ * Notified when a {@link CircuitBreaker} changes state, e.g. to raise an alert when it opens.
+ *
+ * Called on the thread that caused the change, after it has happened; it should return quickly.
+ *
+ * @author Erik Beeson
+ */
+public interface CircuitBreakerListener {
+	void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
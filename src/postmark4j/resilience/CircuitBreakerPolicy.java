@@ -0,0 +1,134 @@
+package postmark4j.resilience;
+
+/**
+ * Settings for a {@link CircuitBreaker}.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class CircuitBreakerPolicy {
+	private int windowSize = 100;
+	private int minimumCalls = 20;
+	private double failureRateThreshold = 0.5;
+	private double slowCallRateThreshold = 0.8;
+	private long slowCallMillis = 10000;
+	private long openMillis = 30000;
+	private int halfOpenProbes = 3;
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * @param windowSize The number of most recent requests the failure and slow call rates are measured over.
+	 * Defaults to 100.
+	 */
+	public void setWindowSize(int windowSize) {
+		if(windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least 1.");
+		}
+		this.windowSize = windowSize;
+	}
+
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	/**
+	 * @param minimumCalls The breaker doesn't open until at least this many requests are in the window, so a
+	 * couple of failures after startup don't open it. Defaults to 20.
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		if(minimumCalls < 1) {
+			throw new IllegalArgumentException("Minimum calls must be at least 1.");
+		}
+		this.minimumCalls = minimumCalls;
+	}
+
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	/**
+	 * @param failureRateThreshold Open when at least this fraction of requests in the window failed (5xx,
+	 * connection failures and timeouts). Defaults to 0.5.
+	 */
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		if(failureRateThreshold <= 0 || failureRateThreshold > 1) {
+			throw new IllegalArgumentException("Failure rate threshold must be greater than 0 and at most 1.");
+		}
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	public double getSlowCallRateThreshold() {
+		return slowCallRateThreshold;
+	}
+
+	/**
+	 * @param slowCallRateThreshold Open when at least this fraction of requests in the window took longer than
+	 * {@link #getSlowCallMillis()}. Defaults to 0.8.
+	 */
+	public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+		if(slowCallRateThreshold <= 0 || slowCallRateThreshold > 1) {
+			throw new IllegalArgumentException("Slow call rate threshold must be greater than 0 and at most 1.");
+		}
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	public long getSlowCallMillis() {
+		return slowCallMillis;
+	}
+
+	/**
+	 * @param slowCallMillis Requests that take longer than this are slow. Defaults to 10 seconds.
+	 */
+	public void setSlowCallMillis(long slowCallMillis) {
+		if(slowCallMillis <= 0) {
+			throw new IllegalArgumentException("Slow call threshold must be positive.");
+		}
+		this.slowCallMillis = slowCallMillis;
+	}
+
+	public long getOpenMillis() {
+		return openMillis;
+	}
+
+	/**
+	 * @param openMillis How long the breaker stays open before letting probe requests through. Defaults to 30 seconds.
+	 */
+	public void setOpenMillis(long openMillis) {
+		if(openMillis < 0) {
+			throw new IllegalArgumentException("Open duration can't be negative.");
+		}
+		this.openMillis = openMillis;
+	}
+
+	public int getHalfOpenProbes() {
+		return halfOpenProbes;
+	}
+
+	/**
+	 * @param halfOpenProbes The number of requests let through while half-open. If they all succeed the breaker
+	 * closes; if any fails it opens again. Defaults to 3.
+	 */
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		if(halfOpenProbes < 1) {
+			throw new IllegalArgumentException("At least one probe is required.");
+		}
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("CircuitBreakerPolicy");
+		sb.append("{windowSize=").append(windowSize);
+		sb.append(", minimumCalls=").append(minimumCalls);
+		sb.append(", failureRateThreshold=").append(failureRateThreshold);
+		sb.append(", slowCallRateThreshold=").append(slowCallRateThreshold);
+		sb.append(", slowCallMillis=").append(slowCallMillis);
+		sb.append(", openMillis=").append(openMillis);
+		sb.append(", halfOpenProbes=").append(halfOpenProbes);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,17 @@
+package postmark4j.resilience;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A send was throttled by the client's {@link RateLimiter} instead of being sent: the rate or concurrency limit
+ * was reached and the limiter is set to fail fast, or waiting would have taken longer than allowed.
+ *
+ * Like a full async queue, this is a {@link RejectedExecutionException}; nothing was sent to Postmark.
+ *
+ * @author Erik Beeson
+ */
+public class RateLimitExceededException extends RejectedExecutionException {
+	public RateLimitExceededException(String message) {
+		super(message);
+	}
+}
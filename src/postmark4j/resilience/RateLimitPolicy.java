@@ -0,0 +1,212 @@
+package postmark4j.resilience;
+
+/**
+ * Settings for a client-side {@link RateLimiter}, which keeps a client within Postmark's limits so that one busy
+ * sender (a marketing job, say) can't starve others sharing the same server token.
+ *
+ * Rates of {@code 0} mean unlimited. By default there are no rate limits, only the adaptive concurrency limit.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class RateLimitPolicy {
+	private double messagesPerSecond = 0;
+	private double requestsPerSecond = 0;
+	private double burstSeconds = 1;
+	private boolean adaptiveConcurrency = true;
+	private int initialConcurrency = 10;
+	private int minConcurrency = 1;
+	private int maxConcurrency = 20;
+	private long slowCallMillis = 5000;
+	private double backoffRatio = 0.9;
+	private ThrottlePolicy throttlePolicy = ThrottlePolicy.BLOCK;
+	private long maxWaitMillis = 0;
+
+	/**
+	 * What to do with a send when it's over a limit.
+	 */
+	public enum ThrottlePolicy {
+		/**
+		 * Wait until the send is within the limits (or until {@link #getMaxWaitMillis()} has passed).
+		 */
+		BLOCK,
+
+		/**
+		 * Throw a {@link RateLimitExceededException} immediately.
+		 */
+		FAIL
+	}
+
+	public double getMessagesPerSecond() {
+		return messagesPerSecond;
+	}
+
+	/**
+	 * @param messagesPerSecond The most messages to send per second, counting every message in a batch.
+	 * Defaults to 0 (unlimited).
+	 */
+	public void setMessagesPerSecond(double messagesPerSecond) {
+		if(messagesPerSecond < 0) {
+			throw new IllegalArgumentException("Rate can't be negative.");
+		}
+		this.messagesPerSecond = messagesPerSecond;
+	}
+
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	/**
+	 * @param requestsPerSecond The most requests to make per second, including retries. Defaults to 0 (unlimited).
+	 */
+	public void setRequestsPerSecond(double requestsPerSecond) {
+		if(requestsPerSecond < 0) {
+			throw new IllegalArgumentException("Rate can't be negative.");
+		}
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	public double getBurstSeconds() {
+		return burstSeconds;
+	}
+
+	/**
+	 * @param burstSeconds How many seconds' worth of unused rate can be saved up and used at once. Defaults to 1.
+	 */
+	public void setBurstSeconds(double burstSeconds) {
+		if(burstSeconds <= 0) {
+			throw new IllegalArgumentException("Burst must be positive.");
+		}
+		this.burstSeconds = burstSeconds;
+	}
+
+	public boolean isAdaptiveConcurrency() {
+		return adaptiveConcurrency;
+	}
+
+	/**
+	 * @param adaptiveConcurrency Whether to limit requests in flight with an {@link AdaptiveConcurrencyLimit}.
+	 * Defaults to {@code true}.
+	 */
+	public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+		this.adaptiveConcurrency = adaptiveConcurrency;
+	}
+
+	public int getInitialConcurrency() {
+		return initialConcurrency;
+	}
+
+	/**
+	 * @param initialConcurrency The concurrency limit to start with. Defaults to 10.
+	 */
+	public void setInitialConcurrency(int initialConcurrency) {
+		if(initialConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1.");
+		}
+		this.initialConcurrency = initialConcurrency;
+	}
+
+	public int getMinConcurrency() {
+		return minConcurrency;
+	}
+
+	/**
+	 * @param minConcurrency The concurrency limit never shrinks below this. Defaults to 1.
+	 */
+	public void setMinConcurrency(int minConcurrency) {
+		if(minConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1.");
+		}
+		this.minConcurrency = minConcurrency;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * @param maxConcurrency The concurrency limit never grows above this. There's no point in it being more than
+	 * {@link postmark4j.PostmarkClientConfig#getMaxConnectionsPerRoute()}. Defaults to 20.
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		if(maxConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1.");
+		}
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public long getSlowCallMillis() {
+		return slowCallMillis;
+	}
+
+	/**
+	 * @param slowCallMillis Responses slower than this count as a sign of overload, like a 500. Defaults to 5 seconds.
+	 */
+	public void setSlowCallMillis(long slowCallMillis) {
+		if(slowCallMillis <= 0) {
+			throw new IllegalArgumentException("Slow call threshold must be positive.");
+		}
+		this.slowCallMillis = slowCallMillis;
+	}
+
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	/**
+	 * @param backoffRatio What the concurrency limit is multiplied by on overload. Defaults to 0.9.
+	 */
+	public void setBackoffRatio(double backoffRatio) {
+		if(backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1.");
+		}
+		this.backoffRatio = backoffRatio;
+	}
+
+	public ThrottlePolicy getThrottlePolicy() {
+		return throttlePolicy;
+	}
+
+	/**
+	 * @param throttlePolicy Whether to wait or fail when over a limit. Defaults to {@link ThrottlePolicy#BLOCK}.
+	 */
+	public void setThrottlePolicy(ThrottlePolicy throttlePolicy) {
+		if(throttlePolicy == null) {
+			throw new IllegalArgumentException("A throttle policy is required.");
+		}
+		this.throttlePolicy = throttlePolicy;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	/**
+	 * @param maxWaitMillis With {@link ThrottlePolicy#BLOCK}, the longest to wait before failing with a
+	 * {@link RateLimitExceededException}. Defaults to 0 (wait forever).
+	 */
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		if(maxWaitMillis < 0) {
+			throw new IllegalArgumentException("Wait can't be negative.");
+		}
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("RateLimitPolicy");
+		sb.append("{messagesPerSecond=").append(messagesPerSecond);
+		sb.append(", requestsPerSecond=").append(requestsPerSecond);
+		sb.append(", burstSeconds=").append(burstSeconds);
+		sb.append(", adaptiveConcurrency=").append(adaptiveConcurrency);
+		sb.append(", initialConcurrency=").append(initialConcurrency);
+		sb.append(", minConcurrency=").append(minConcurrency);
+		sb.append(", maxConcurrency=").append(maxConcurrency);
+		sb.append(", slowCallMillis=").append(slowCallMillis);
+		sb.append(", backoffRatio=").append(backoffRatio);
+		sb.append(", throttlePolicy=").append(throttlePolicy);
+		sb.append(", maxWaitMillis=").append(maxWaitMillis);
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,170 @@
+package postmark4j.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles requests to Postmark with token buckets for messages and requests per second, and an
+ * {@link AdaptiveConcurrencyLimit} on requests in flight. Configured with a {@link RateLimitPolicy}.
+ *
+ * Every request, including retries, must {@link #acquire(int)} a permit before it's made and release it when the
+ * response has been read. Thread safe.
+ *
+ * @author Erik Beeson
+ */
+public class RateLimiter {
+	private final TokenBucket messageBucket;
+	private final TokenBucket requestBucket;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final boolean block;
+	private final long maxWaitNanos;
+	private final long slowCallNanos;
+
+	public RateLimiter(RateLimitPolicy policy) {
+		this.messageBucket = createBucket(policy.getMessagesPerSecond(), policy.getBurstSeconds());
+		this.requestBucket = createBucket(policy.getRequestsPerSecond(), policy.getBurstSeconds());
+		if(policy.isAdaptiveConcurrency()) {
+			int max = Math.max(policy.getMaxConcurrency(), policy.getMinConcurrency());
+			int initial = Math.min(max, Math.max(policy.getInitialConcurrency(), policy.getMinConcurrency()));
+			this.concurrencyLimit = new AdaptiveConcurrencyLimit(initial, policy.getMinConcurrency(), max, policy.getBackoffRatio());
+		} else {
+			this.concurrencyLimit = null;
+		}
+		this.block = policy.getThrottlePolicy() == RateLimitPolicy.ThrottlePolicy.BLOCK;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMaxWaitMillis());
+		this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallMillis());
+	}
+
+	private static TokenBucket createBucket(double ratePerSecond, double burstSeconds) {
+		return ratePerSecond > 0 ? new TokenBucket(ratePerSecond, Math.max(1, ratePerSecond * burstSeconds)) : null;
+	}
+
+	/**
+	 * Wait for (or, when failing fast, check for) permission to make a request.
+	 *
+	 * @param messages The number of messages in the request.
+	 * @return A permit, which must be released when the request is done.
+	 * @throws RateLimitExceededException If the request is over a limit and the policy is to fail fast, or
+	 * waiting would take longer than the maximum wait.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public Permit acquire(int messages) throws InterruptedException {
+		return block ? acquireBlocking(messages) : acquireNow(messages);
+	}
+
+	private Permit acquireNow(int messages) {
+		if(requestBucket != null && !requestBucket.tryAcquire(1)) {
+			throw new RateLimitExceededException("Request rate limit of " + requestBucket.getRatePerSecond() + "/s reached.");
+		}
+		if(messageBucket != null && !messageBucket.tryAcquire(messages)) {
+			// only the request was taken; crediting the messages would refill the bucket on every rejection
+			if(requestBucket != null) {
+				requestBucket.refund(1);
+			}
+			throw new RateLimitExceededException("Message rate limit of " + messageBucket.getRatePerSecond() + "/s reached.");
+		}
+		long ticket = 0;
+		if(concurrencyLimit != null && (ticket = concurrencyLimit.tryAcquire()) < 0) {
+			refund(messages);
+			throw new RateLimitExceededException("Concurrency limit of " + concurrencyLimit.getLimit() + " reached.");
+		}
+		return new Permit(ticket);
+	}
+
+	private Permit acquireBlocking(int messages) throws InterruptedException {
+		long start = System.nanoTime();
+		long wait = 0;
+		if(requestBucket != null) {
+			wait = Math.max(wait, requestBucket.reserve(1));
+		}
+		if(messageBucket != null) {
+			wait = Math.max(wait, messageBucket.reserve(messages));
+		}
+		if(maxWaitNanos > 0 && wait > maxWaitNanos) {
+			refund(messages);
+			throw new RateLimitExceededException("Rate limit reached; sending would have to wait " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms.");
+		}
+		if(wait > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch(InterruptedException e) {
+				refund(messages);
+				throw e;
+			}
+		}
+
+		long ticket = 0;
+		if(concurrencyLimit != null) {
+			long timeout = 0;
+			if(maxWaitNanos > 0) {
+				timeout = maxWaitNanos - (System.nanoTime() - start);
+				if(timeout <= 0) {
+					refund(messages);
+					throw new RateLimitExceededException("Concurrency limit of " + concurrencyLimit.getLimit() + " reached.");
+				}
+			}
+			try {
+				ticket = concurrencyLimit.acquire(timeout, TimeUnit.NANOSECONDS);
+			} catch(InterruptedException e) {
+				refund(messages);
+				throw e;
+			}
+			if(ticket < 0) {
+				refund(messages);
+				throw new RateLimitExceededException("Concurrency limit of " + concurrencyLimit.getLimit() + " reached.");
+			}
+		}
+		return new Permit(ticket);
+	}
+
+	private void refund(int messages) {
+		if(requestBucket != null) {
+			requestBucket.refund(1);
+		}
+		if(messageBucket != null) {
+			messageBucket.refund(messages);
+		}
+	}
+
+	/**
+	 * @return The current concurrency limit, or -1 if concurrency isn't limited.
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit != null ? concurrencyLimit.getLimit() : -1;
+	}
+
+	/**
+	 * @return The number of requests holding a permit.
+	 */
+	public int getInFlight() {
+		return concurrencyLimit != null ? concurrencyLimit.getInFlight() : 0;
+	}
+
+	/**
+	 * Permission to make one request.
+	 */
+	public class Permit {
+		private final long ticket;
+		private final long startNanos = System.nanoTime();
+		private boolean released;
+
+		private Permit(long ticket) {
+			this.ticket = ticket;
+		}
+
+		/**
+		 * Finish the request. Calling this more than once has no effect.
+		 *
+		 * @param overloaded Whether the outcome showed Postmark is overloaded (a 500, 503 or a timeout). Responses
+		 * slower than the slow call threshold count as overloaded regardless.
+		 */
+		public void release(boolean overloaded) {
+			if(released) {
+				return;
+			}
+			released = true;
+			if(concurrencyLimit != null) {
+				concurrencyLimit.release(ticket, overloaded || System.nanoTime() - startNanos > slowCallNanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package postmark4j.resilience;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits retries to a fraction of the requests being made, so that when Postmark is struggling, retries can't
+ * multiply the load on it.
+ *
+ * Every request deposits {@code ratio} into the budget and every retry withdraws one. A small number of retries
+ * per second is always allowed, so that clients sending very little can still retry. The balance never exceeds
+ * {@code maxBalance}, which bounds the burst of retries after a quiet period.
+ *
+ * @author Erik Beeson
+ */
+public class RetryBudget {
+	private final double ratio;
+	private final double minRetriesPerSecond;
+	private final double maxBalance;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private double balance;
+	private long lastRefillNanos;
+
+	/**
+	 * @param ratio Retries allowed per request, e.g. 0.1 for one retry for every ten requests.
+	 * @param minRetriesPerSecond Retries allowed per second regardless of traffic.
+	 * @param maxBalance The most retries that can be saved up.
+	 */
+	public RetryBudget(double ratio, double minRetriesPerSecond, double maxBalance) {
+		if(ratio < 0 || minRetriesPerSecond < 0) {
+			throw new IllegalArgumentException("Retry budget rates can't be negative.");
+		}
+		if(maxBalance < 1) {
+			throw new IllegalArgumentException("Retry budget must allow at least one retry.");
+		}
+		this.ratio = ratio;
+		this.minRetriesPerSecond = minRetriesPerSecond;
+		this.maxBalance = maxBalance;
+		this.balance = maxBalance;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * Record an original (not retried) request.
+	 */
+	public void recordRequest() {
+		lock.lock();
+		try {
+			refill();
+			balance = Math.min(maxBalance, balance + ratio);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Whether a retry may be made, withdrawing it from the budget if so.
+	 */
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			refill();
+			if(balance >= 1) {
+				balance -= 1;
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of retries currently available.
+	 */
+	public double getBalance() {
+		lock.lock();
+		try {
+			refill();
+			return balance;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		balance = Math.min(maxBalance, balance + (now - lastRefillNanos) / 1e9 * minRetriesPerSecond);
+		lastRefillNanos = now;
+	}
+
+	public String toString() {
+		return "RetryBudget{ratio=" + ratio + ", minRetriesPerSecond=" + minRetriesPerSecond + ", maxBalance=" + maxBalance + '}';
+	}
+}
@@ -0,0 +1,273 @@
+package postmark4j.resilience;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import postmark4j.data.PostmarkError;
+import postmark4j.exceptions.InternalServerErrorPostmarkException;
+import postmark4j.exceptions.UnknownPostmarkException;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.transport.NoResponseException;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * When and how a {@link postmark4j.PostmarkClient} retries failed sends.
+ *
+ * Only failures that mean Postmark is temporarily unable to accept a message are retried: 500s, 502/503/504 from
+ * its load balancers, the maintenance error code, refused or timed out connections, and connections that were
+ * reset or closed without a response. 401s and other 422s won't succeed on a second try, so they're never
+ * retried. Waiting for a response that doesn't arrive (a read timeout) isn't retried by default, since the message
+ * may have been accepted and would then be sent twice.
+ *
+ * Retries wait with exponential backoff and "full jitter": a random time between zero and
+ * {@code initialBackoffMillis * 2^(attempt - 1)}, capped at {@code maxBackoffMillis}. They're also limited by a
+ * {@link RetryBudget} shared by all sends through a client.
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class RetryPolicy {
+	private int maxAttempts = 3;
+	private long initialBackoffMillis = 100;
+	private long maxBackoffMillis = 10000;
+	private boolean retryReadTimeouts = false;
+	private int[] retryableStatuses = {500, 502, 503, 504};
+	private int[] retryableErrorCodes = {PostmarkError.MAINTENANCE};
+	private boolean resubmitFailedMessages = true;
+	private double retryBudgetRatio = 0.1;
+	private double retryBudgetMinPerSecond = 5;
+	private double retryBudgetMaxBalance = 50;
+
+	/**
+	 * @return A policy that never retries.
+	 */
+	public static RetryPolicy none() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setMaxAttempts(1);
+		return policy;
+	}
+
+	/**
+	 * @return Whether a send that failed with {@code t} may succeed if it's tried again.
+	 */
+	public boolean isRetryable(Throwable t) {
+		if(t instanceof InternalServerErrorPostmarkException) {
+			return isRetryableStatus(500);
+		} else if(t instanceof UnknownPostmarkException) {
+			return isRetryableStatus(((UnknownPostmarkException) t).getStatus());
+		} else if(t instanceof UnprocessableEntityPostmarkException) {
+			return isRetryableErrorCode(((UnprocessableEntityPostmarkException) t).getErrorCode());
+		} else if(t instanceof ConnectionPoolTimeoutException) {
+			// all of our own connections are busy; retrying would only add to the queue
+			return false;
+		} else if(t instanceof ConnectTimeoutException || t instanceof ConnectException) {
+			return true;
+		} else if(t instanceof HttpConnectTimeoutException) {
+			return true;
+		} else if(t instanceof HttpTimeoutException) {
+			// the HTTP/2 transport's equivalent of a read timeout
+			return retryReadTimeouts;
+		} else if(t instanceof NoHttpResponseException || t instanceof NoResponseException) {
+			// a pooled connection closed by the server before it read the request
+			return true;
+		} else if(t instanceof SocketTimeoutException) {
+			return retryReadTimeouts;
+		} else if(t instanceof SocketException) {
+			// connection reset, broken pipe
+			return true;
+		}
+		return false;
+	}
+
+	public boolean isRetryableStatus(int status) {
+		for(int retryable : retryableStatuses) {
+			if(retryable == status) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param errorCode A Postmark error code, from a 422 or from one message in a batch.
+	 */
+	public boolean isRetryableErrorCode(int errorCode) {
+		for(int retryable : retryableErrorCodes) {
+			if(retryable == errorCode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param attempt The attempt that just failed, starting at 1.
+	 * @param random The source of jitter.
+	 * @return How long to wait before the next attempt.
+	 */
+	public long getBackoffMillis(int attempt, Random random) {
+		double ceiling = Math.min((double) maxBackoffMillis, initialBackoffMillis * Math.pow(2, attempt - 1));
+		return (long) (random.nextDouble() * ceiling);
+	}
+
+	/**
+	 * @return A new budget with this policy's settings.
+	 */
+	public RetryBudget createRetryBudget() {
+		return new RetryBudget(retryBudgetRatio, retryBudgetMinPerSecond, retryBudgetMaxBalance);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @param maxAttempts The most times a message is sent, including the first. Defaults to 3; 1 disables retries.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("At least one attempt is required.");
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getInitialBackoffMillis() {
+		return initialBackoffMillis;
+	}
+
+	/**
+	 * @param initialBackoffMillis The most to wait before the first retry. Defaults to 100.
+	 */
+	public void setInitialBackoffMillis(long initialBackoffMillis) {
+		if(initialBackoffMillis < 0) {
+			throw new IllegalArgumentException("Backoff can't be negative.");
+		}
+		this.initialBackoffMillis = initialBackoffMillis;
+	}
+
+	public long getMaxBackoffMillis() {
+		return maxBackoffMillis;
+	}
+
+	/**
+	 * @param maxBackoffMillis The most to wait before any retry. Defaults to 10 seconds.
+	 */
+	public void setMaxBackoffMillis(long maxBackoffMillis) {
+		if(maxBackoffMillis < 0) {
+			throw new IllegalArgumentException("Backoff can't be negative.");
+		}
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public boolean isRetryReadTimeouts() {
+		return retryReadTimeouts;
+	}
+
+	/**
+	 * @param retryReadTimeouts Whether to retry when Postmark doesn't answer within the socket timeout. The
+	 * message may already have been accepted, so this can send duplicates. Defaults to {@code false}.
+	 */
+	public void setRetryReadTimeouts(boolean retryReadTimeouts) {
+		this.retryReadTimeouts = retryReadTimeouts;
+	}
+
+	public int[] getRetryableStatuses() {
+		return retryableStatuses.clone();
+	}
+
+	/**
+	 * @param retryableStatuses HTTP statuses to retry. Defaults to 500, 502, 503 and 504.
+	 */
+	public void setRetryableStatuses(int... retryableStatuses) {
+		this.retryableStatuses = retryableStatuses.clone();
+	}
+
+	public int[] getRetryableErrorCodes() {
+		return retryableErrorCodes.clone();
+	}
+
+	/**
+	 * @param retryableErrorCodes Postmark error codes to retry. Defaults to {@link PostmarkError#MAINTENANCE}.
+	 */
+	public void setRetryableErrorCodes(int... retryableErrorCodes) {
+		this.retryableErrorCodes = retryableErrorCodes.clone();
+	}
+
+	public boolean isResubmitFailedMessages() {
+		return resubmitFailedMessages;
+	}
+
+	/**
+	 * @param resubmitFailedMessages Whether messages in a batch that fail individually with a retryable error code
+	 * are sent again on their own, without the rest of the batch. Defaults to {@code true}.
+	 */
+	public void setResubmitFailedMessages(boolean resubmitFailedMessages) {
+		this.resubmitFailedMessages = resubmitFailedMessages;
+	}
+
+	public double getRetryBudgetRatio() {
+		return retryBudgetRatio;
+	}
+
+	/**
+	 * @param retryBudgetRatio Retries allowed as a fraction of requests. Defaults to 0.1.
+	 */
+	public void setRetryBudgetRatio(double retryBudgetRatio) {
+		if(retryBudgetRatio < 0) {
+			throw new IllegalArgumentException("Retry budget ratio can't be negative.");
+		}
+		this.retryBudgetRatio = retryBudgetRatio;
+	}
+
+	public double getRetryBudgetMinPerSecond() {
+		return retryBudgetMinPerSecond;
+	}
+
+	/**
+	 * @param retryBudgetMinPerSecond Retries allowed per second regardless of traffic. Defaults to 5.
+	 */
+	public void setRetryBudgetMinPerSecond(double retryBudgetMinPerSecond) {
+		if(retryBudgetMinPerSecond < 0) {
+			throw new IllegalArgumentException("Retry budget rate can't be negative.");
+		}
+		this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+	}
+
+	public double getRetryBudgetMaxBalance() {
+		return retryBudgetMaxBalance;
+	}
+
+	/**
+	 * @param retryBudgetMaxBalance The most retries that can be saved up during quiet periods. Defaults to 50.
+	 */
+	public void setRetryBudgetMaxBalance(double retryBudgetMaxBalance) {
+		if(retryBudgetMaxBalance < 1) {
+			throw new IllegalArgumentException("Retry budget must allow at least one retry.");
+		}
+		this.retryBudgetMaxBalance = retryBudgetMaxBalance;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("RetryPolicy");
+		sb.append("{maxAttempts=").append(maxAttempts);
+		sb.append(", initialBackoffMillis=").append(initialBackoffMillis);
+		sb.append(", maxBackoffMillis=").append(maxBackoffMillis);
+		sb.append(", retryReadTimeouts=").append(retryReadTimeouts);
+		sb.append(", retryableStatuses=").append(Arrays.toString(retryableStatuses));
+		sb.append(", retryableErrorCodes=").append(Arrays.toString(retryableErrorCodes));
+		sb.append(", resubmitFailedMessages=").append(resubmitFailedMessages);
+		sb.append(", retryBudgetRatio=").append(retryBudgetRatio);
+		sb.append(", retryBudgetMinPerSecond=").append(retryBudgetMinPerSecond);
+		sb.append(", retryBudgetMaxBalance=").append(retryBudgetMaxBalance);
+		sb.append('}');
+		return sb.toString();
+	}
+}
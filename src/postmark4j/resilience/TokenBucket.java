@@ -0,0 +1,111 @@
+package postmark4j.resilience;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket: tokens are added at a steady rate up to a fixed capacity, and taken out for each unit of work.
+ *
+ * Taking out more tokens than the bucket holds is allowed with {@link #reserve(double)}, which puts the bucket
+ * in debt and tells the caller how long to wait, so a large batch doesn't starve. The wait is paid by the caller
+ * taking out the tokens, not by the next caller.
+ *
+ * @author Erik Beeson
+ */
+public class TokenBucket {
+	private final double ratePerSecond;
+	private final double capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private double tokens;
+	private long lastRefillNanos;
+
+	/**
+	 * @param ratePerSecond Tokens added per second.
+	 * @param capacity The most tokens the bucket holds, which is the largest burst allowed.
+	 */
+	public TokenBucket(double ratePerSecond, double capacity) {
+		if(ratePerSecond <= 0) {
+			throw new IllegalArgumentException("Rate must be positive.");
+		}
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1.");
+		}
+		this.ratePerSecond = ratePerSecond;
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * Take out tokens only if they're available now. Requests for more than the capacity succeed when the bucket
+	 * is full.
+	 *
+	 * @return Whether the tokens were taken.
+	 */
+	public boolean tryAcquire(double permits) {
+		lock.lock();
+		try {
+			refill();
+			if(tokens >= Math.min(permits, capacity)) {
+				tokens -= permits;
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Take out tokens whether or not they're available.
+	 *
+	 * @return How long the caller must wait, in nanoseconds, before the tokens would have been available.
+	 */
+	public long reserve(double permits) {
+		lock.lock();
+		try {
+			refill();
+			tokens -= permits;
+			return tokens >= 0 ? 0 : (long) (-tokens / ratePerSecond * 1e9);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Put back tokens that were taken out but not used.
+	 */
+	public void refund(double permits) {
+		lock.lock();
+		try {
+			refill();
+			tokens = Math.min(capacity, tokens + permits);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double getAvailable() {
+		lock.lock();
+		try {
+			refill();
+			return tokens;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double getRatePerSecond() {
+		return ratePerSecond;
+	}
+
+	public double getCapacity() {
+		return capacity;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * ratePerSecond);
+		lastRefillNanos = now;
+	}
+}
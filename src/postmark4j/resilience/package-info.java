@@ -0,0 +1,5 @@
+/**
+ * Protecting applications and the Postmark API from each other when things go wrong: retries with backoff and a
+ * retry budget, client-side rate and concurrency limits, and a circuit breaker.
+ */
+package postmark4j.resilience;
@@ -0,0 +1,245 @@
+package postmark4j.template;
+
+import postmark4j.jsonio.JsonOutput;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message body with {@code {{name}}} placeholders, compiled once and then filled in for each recipient.
+ *
+ * <pre>
+ * Template welcome = Template.html("&lt;p&gt;Hello {{name}},&lt;/p&gt; ... 40KB of layout ...");
+ * for(User user : users) {
+ *     PostmarkMessage message = new PostmarkMessage("Welcome", new PostmarkAddress(user.getEmail()));
+ *     message.setHtmlTemplate(welcome);
+ *     message.setTemplateValues(Collections.singletonMap("name", user.getName()));
+ *     ...
+ * }
+ * </pre>
+ *
+ * Compiling splits the body into static text and named slots, and escapes the static text for JSON up front, so
+ * sending a templated message only escapes and writes the values. The rendered body is never built as a
+ * {@link String} unless someone asks for it (see {@link postmark4j.data.PostmarkMessage#getHtmlBody()}).
+ *
+ * In an {@link #html(String) HTML} template, values are HTML escaped; use {@code {{{name}}}} for a value that is
+ * already HTML. In a {@link #text(String) text} template, values are used as they are. A missing or {@code null}
+ * value is an empty string. Whitespace inside the braces is ignored.
+ *
+ * Templates are immutable and thread safe.
+ *
+ * @author Erik Beeson
+ */
+public class Template {
+	private static final String OPEN = "{{";
+	private static final String CLOSE = "}}";
+	private static final String OPEN_RAW = "{{{";
+	private static final String CLOSE_RAW = "}}}";
+
+	private final String source;
+	private final boolean html;
+
+	// fragments.length == slots.length + 1: fragment, slot, fragment, slot, ..., fragment
+	private final String[] fragments;
+	private final String[] jsonFragments;
+	private final String[] slots;
+	private final boolean[] escapeSlot;
+	private final int fragmentsLength;
+
+	private Template(String source, boolean html) {
+		if(source == null) {
+			throw new IllegalArgumentException("A template is required.");
+		}
+		this.source = source;
+		this.html = html;
+
+		List<String> fragments = new ArrayList<String>();
+		List<String> slots = new ArrayList<String>();
+		List<Boolean> escapeSlot = new ArrayList<Boolean>();
+		int position = 0;
+		while(true) {
+			int open = source.indexOf(OPEN, position);
+			if(open < 0) {
+				break;
+			}
+			boolean raw = source.startsWith(OPEN_RAW, open);
+			String close = raw ? CLOSE_RAW : CLOSE;
+			int nameStart = open + (raw ? OPEN_RAW.length() : OPEN.length());
+			int end = source.indexOf(close, nameStart);
+			if(end < 0) {
+				throw new IllegalArgumentException("Unclosed \"" + (raw ? OPEN_RAW : OPEN) + "\" at " + open + ".");
+			}
+			String name = source.substring(nameStart, end).trim();
+			if(name.length() == 0) {
+				throw new IllegalArgumentException("Empty placeholder at " + open + ".");
+			}
+			fragments.add(source.substring(position, open));
+			slots.add(name);
+			escapeSlot.add(html && !raw);
+			position = end + close.length();
+		}
+		fragments.add(source.substring(position));
+
+		this.fragments = fragments.toArray(new String[fragments.size()]);
+		this.slots = slots.toArray(new String[slots.size()]);
+		this.escapeSlot = new boolean[this.slots.length];
+		for(int i = 0; i < this.escapeSlot.length; i++) {
+			this.escapeSlot[i] = escapeSlot.get(i);
+		}
+		this.jsonFragments = new String[this.fragments.length];
+		int length = 0;
+		for(int i = 0; i < this.fragments.length; i++) {
+			this.jsonFragments[i] = escapeJson(this.fragments[i]);
+			length += this.fragments[i].length();
+		}
+		this.fragmentsLength = length;
+	}
+
+	/**
+	 * @param source The template, with {@code {{name}}} placeholders for HTML escaped values and {@code {{{name}}}}
+	 * for values that are already HTML.
+	 * @throws IllegalArgumentException If a placeholder isn't closed or has no name.
+	 */
+	public static Template html(String source) {
+		return new Template(source, true);
+	}
+
+	/**
+	 * @param source The template, with {@code {{name}}} placeholders.
+	 * @throws IllegalArgumentException If a placeholder isn't closed or has no name.
+	 */
+	public static Template text(String source) {
+		return new Template(source, false);
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public boolean isHtml() {
+		return html;
+	}
+
+	/**
+	 * @return The names of the placeholders, in order, including repeats.
+	 */
+	public List<String> getSlotNames() {
+		return Collections.unmodifiableList(Arrays.asList(slots));
+	}
+
+	/**
+	 * @param values The value for each placeholder, by name.
+	 * @return The filled in body.
+	 */
+	public String render(Map<String, ?> values) {
+		StringBuilder sb = new StringBuilder(fragmentsLength + slots.length * 16);
+		for(int i = 0; i < slots.length; i++) {
+			sb.append(fragments[i]);
+			String value = valueOf(values, i);
+			sb.append(escapeSlot[i] ? escapeHtml(value) : value);
+		}
+		sb.append(fragments[slots.length]);
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the filled in body as the content of a JSON string (escaped, without the quotes). Only the values
+	 * are escaped; the static text was escaped when the template was compiled.
+	 *
+	 * @param out The writer to write to, as returned by {@link JsonOutput#beginRawString()}.
+	 * @param values The value for each placeholder, by name.
+	 */
+	public void writeJson(Writer out, Map<String, ?> values) throws IOException {
+		for(int i = 0; i < slots.length; i++) {
+			out.write(jsonFragments[i]);
+			String value = valueOf(values, i);
+			JsonOutput.writeEscaped(out, escapeSlot[i] ? escapeHtml(value) : value);
+		}
+		out.write(jsonFragments[slots.length]);
+	}
+
+	private String valueOf(Map<String, ?> values, int slot) {
+		Object value = values != null ? values.get(slots[slot]) : null;
+		return value != null ? value.toString() : "";
+	}
+
+	static String escapeHtml(String value) {
+		int length = value.length();
+		int i = 0;
+		while(i < length && !isHtmlSpecial(value.charAt(i))) {
+			i++;
+		}
+		if(i == length) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(length + 16);
+		sb.append(value, 0, i);
+		for(; i < length; i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '&':
+					sb.append("&amp;");
+					break;
+				case '<':
+					sb.append("&lt;");
+					break;
+				case '>':
+					sb.append("&gt;");
+					break;
+				case '"':
+					sb.append("&quot;");
+					break;
+				case '\'':
+					sb.append("&#39;");
+					break;
+				default:
+					sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isHtmlSpecial(char c) {
+		return c == '&' || c == '<' || c == '>' || c == '"' || c == '\'';
+	}
+
+	private static String escapeJson(String value) {
+		StringWriter writer = new StringWriter(value.length() + 16);
+		try {
+			JsonOutput.writeEscaped(writer, value);
+		} catch(IOException e) {
+			// StringWriter doesn't throw
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof Template)) return false;
+
+		Template template = (Template) o;
+
+		return html == template.html && source.equals(template.source);
+	}
+
+	public int hashCode() {
+		return 31 * source.hashCode() + (html ? 1 : 0);
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Template");
+		sb.append("{html=").append(html);
+		sb.append(", length=").append(source.length());
+		sb.append(", slots=").append(Arrays.toString(slots));
+		sb.append('}');
+		return sb.toString();
+	}
+}
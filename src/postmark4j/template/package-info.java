@@ -0,0 +1,5 @@
+/**
+ * Precompiled message body {@link postmark4j.template.Template}s, for sending the same layout to many recipients
+ * with only a few fields changed.
+ */
+package postmark4j.template;
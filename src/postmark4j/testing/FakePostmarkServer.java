@@ -0,0 +1,584 @@
+package postmark4j.testing;
+
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import postmark4j.PostmarkClient;
+import postmark4j.PostmarkClientConfig;
+import postmark4j.data.PostmarkError;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.JsonOutput;
+import postmark4j.jsonio.PostmarkJson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the Postmark API that answers {@code /email} and {@code /email/batch} the way Postmark
+ * does, without sending anything. It's meant for measuring the throughput and latency of an application (and
+ * of {@link PostmarkClient}) on a single machine, and for testing how it copes with failures.
+ *
+ * Responses can be delayed according to a {@link LatencyDistribution}, and failures can be injected either at
+ * random ({@link #setFaultRate(Fault, double)}) or for the next few requests ({@link #failNext(Fault)}).
+ * Messages are validated much as Postmark validates them: a malformed request is rejected with a 422 and a
+ * {@link postmark4j.data.PostmarkError}, and invalid messages in a batch get their own error entry.
+ *
+ * Run with {@code -Dsun.net.httpserver.nodelay=true} when measuring latency, or small responses are held back
+ * by Nagle's algorithm. The JDK's HTTP server reads the property once, before the first server is created.
+ *
+ * <pre>
+ * FakePostmarkServer server = new FakePostmarkServer();
+ * server.setLatency(LatencyDistribution.logNormal(20, 0.5));
+ * server.start();
+ * PostmarkClient client = new PostmarkClient(token, from, true, server.createClientConfig());
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+@SuppressWarnings({"UnusedDeclaration"})
+public class FakePostmarkServer implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FakePostmarkServer.class);
+
+	// Postmark reports submission times in US Eastern time
+	private static final DateTimeFormatter DATE_FORMATTER = ISODateTimeFormat.dateTime().withZone(DateTimeZone.forOffsetHours(-5));
+
+	/**
+	 * Failures that can be injected.
+	 */
+	public enum Fault {
+		/**
+		 * 401, as if the server token was wrong.
+		 */
+		UNAUTHORIZED(401),
+
+		/**
+		 * 422 with error code 406 (inactive recipient).
+		 */
+		UNPROCESSABLE_ENTITY(422),
+
+		/**
+		 * 500, an error at Postmark.
+		 */
+		INTERNAL_SERVER_ERROR(500),
+
+		/**
+		 * 503, as from an overloaded load balancer.
+		 */
+		SERVICE_UNAVAILABLE(503),
+
+		/**
+		 * Close the connection without answering.
+		 */
+		DISCONNECT(-1);
+
+		private final int status;
+
+		private Fault(int status) {
+			this.status = status;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService requestExecutor;
+	private final ScheduledExecutorService responseScheduler;
+
+	private volatile String serverToken;
+	private volatile LatencyDistribution latency = LatencyDistribution.none();
+	private volatile Map<Fault, Double> faultRates = new EnumMap<Fault, Double>(Fault.class);
+	private volatile double inactiveRecipientRate;
+	private volatile double maintenanceRate;
+	private final Queue<Fault> scheduledFaults = new ConcurrentLinkedQueue<Fault>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong messageCount = new AtomicLong();
+	private final AtomicLong faultCount = new AtomicLong();
+	private volatile Headers lastRequestHeaders;
+	private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Listen on a free port on the loopback interface.
+	 */
+	public FakePostmarkServer() throws IOException {
+		this(0);
+	}
+
+	/**
+	 * @param port The port to listen on, or 0 for any free port.
+	 */
+	public FakePostmarkServer(int port) throws IOException {
+		this(port, 32);
+	}
+
+	/**
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @param threads The number of threads reading requests. Delayed responses are sent by a separate scheduler,
+	 * so latency doesn't tie up these threads.
+	 */
+	public FakePostmarkServer(int port, int threads) throws IOException {
+		if(threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required.");
+		}
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+		this.requestExecutor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("postmark4j-fake-server-"));
+		this.responseScheduler = Executors.newScheduledThreadPool(2, new DaemonThreadFactory("postmark4j-fake-server-scheduler-"));
+		this.server.setExecutor(requestExecutor);
+		this.server.createContext("/email", new EmailHandler());
+	}
+
+	public void start() {
+		server.start();
+		LOGGER.info("Started FakePostmarkServer at {}", getBaseURL());
+	}
+
+	/**
+	 * Stops the server immediately. Delayed responses that haven't been sent are dropped.
+	 */
+	public void close() {
+		server.stop(0);
+		responseScheduler.shutdownNow();
+		requestExecutor.shutdownNow();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String getBaseURL() {
+		return "http://127.0.0.1:" + getPort();
+	}
+
+	/**
+	 * @return A new config pointing at this server, for creating a {@link PostmarkClient}.
+	 */
+	public PostmarkClientConfig createClientConfig() {
+		PostmarkClientConfig config = new PostmarkClientConfig();
+		config.setBaseURL(getBaseURL());
+		return config;
+	}
+
+	public String getServerToken() {
+		return serverToken;
+	}
+
+	/**
+	 * @param serverToken The only server token to accept, or {@code null} (the default) to accept any token.
+	 */
+	public void setServerToken(String serverToken) {
+		this.serverToken = serverToken;
+	}
+
+	public LatencyDistribution getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @param latency How long to wait before answering each request. Defaults to {@link LatencyDistribution#none()}.
+	 */
+	public void setLatency(LatencyDistribution latency) {
+		if(latency == null) {
+			throw new IllegalArgumentException("A latency distribution is required.");
+		}
+		this.latency = latency;
+	}
+
+	/**
+	 * @param fault The failure to inject.
+	 * @param rate The fraction of requests that should fail this way, between 0 and 1.
+	 */
+	public synchronized void setFaultRate(Fault fault, double rate) {
+		if(rate < 0 || rate > 1) {
+			throw new IllegalArgumentException("Fault rate must be between 0 and 1.");
+		}
+		Map<Fault, Double> rates = new EnumMap<Fault, Double>(faultRates);
+		if(rate == 0) {
+			rates.remove(fault);
+		} else {
+			rates.put(fault, rate);
+		}
+		faultRates = rates;
+	}
+
+	/**
+	 * Fail the next request with the given fault. Each call fails one more request, in order, before any random
+	 * faults are considered.
+	 */
+	public void failNext(Fault fault) {
+		if(fault == null) {
+			throw new IllegalArgumentException("A fault is required.");
+		}
+		scheduledFaults.add(fault);
+	}
+
+	/**
+	 * @param inactiveRecipientRate The fraction of messages in a batch that are rejected with error code 406
+	 * (inactive recipient), while the rest of the batch succeeds. Defaults to 0.
+	 */
+	public void setInactiveRecipientRate(double inactiveRecipientRate) {
+		if(inactiveRecipientRate < 0 || inactiveRecipientRate > 1) {
+			throw new IllegalArgumentException("Inactive recipient rate must be between 0 and 1.");
+		}
+		this.inactiveRecipientRate = inactiveRecipientRate;
+	}
+
+	/**
+	 * @param maintenanceRate The fraction of messages in a batch that are rejected with error code 100
+	 * (maintenance), which can be retried, while the rest of the batch succeeds. Defaults to 0.
+	 */
+	public void setMaintenanceRate(double maintenanceRate) {
+		if(maintenanceRate < 0 || maintenanceRate > 1) {
+			throw new IllegalArgumentException("Maintenance rate must be between 0 and 1.");
+		}
+		this.maintenanceRate = maintenanceRate;
+	}
+
+	/**
+	 * Undo all fault injection.
+	 */
+	public synchronized void clearFaults() {
+		faultRates = new EnumMap<Fault, Double>(Fault.class);
+		scheduledFaults.clear();
+		inactiveRecipientRate = 0;
+		maintenanceRate = 0;
+	}
+
+	/**
+	 * @return The number of requests received.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return The number of client connections requests were received on, told apart by their address and port.
+	 */
+	public int getConnectionCount() {
+		return clientAddresses.size();
+	}
+
+	/**
+	 * @return The number of messages accepted.
+	 */
+	public long getMessageCount() {
+		return messageCount.get();
+	}
+
+	/**
+	 * @return The number of requests failed by fault injection.
+	 */
+	public long getFaultCount() {
+		return faultCount.get();
+	}
+
+	/**
+	 * @param name A header name, like {@code X-Trace-Id}.
+	 * @return The value of the header in the most recent request, or {@code null}.
+	 */
+	public String getLastRequestHeader(String name) {
+		Headers headers = lastRequestHeaders;
+		return headers == null ? null : headers.getFirst(name);
+	}
+
+	private Fault nextFault() {
+		Fault fault = scheduledFaults.poll();
+		if(fault == null && !faultRates.isEmpty()) {
+			double r = ThreadLocalRandom.current().nextDouble();
+			for(Map.Entry<Fault, Double> entry : faultRates.entrySet()) {
+				r -= entry.getValue();
+				if(r < 0) {
+					fault = entry.getKey();
+					break;
+				}
+			}
+		}
+		return fault;
+	}
+
+	private class EmailHandler implements HttpHandler {
+		public void handle(HttpExchange exchange) throws IOException {
+			requestCount.incrementAndGet();
+			lastRequestHeaders = exchange.getRequestHeaders();
+			clientAddresses.add(exchange.getRemoteAddress());
+			try {
+				Response response = process(exchange);
+				long delayMicros = (long) (latency.nextMillis(ThreadLocalRandom.current()) * 1000);
+				if(delayMicros > 0) {
+					responseScheduler.schedule(new Send(exchange, response), delayMicros, TimeUnit.MICROSECONDS);
+				} else {
+					new Send(exchange, response).run();
+				}
+			} catch(IOException e) {
+				LOGGER.debug("Failed to read request", e);
+				exchange.close();
+			} catch(RuntimeException e) {
+				LOGGER.warn("Failed to handle request", e);
+				exchange.close();
+			}
+		}
+
+		private Response process(HttpExchange exchange) throws IOException {
+			String path = exchange.getRequestURI().getPath();
+			boolean batch = path.equals("/email/batch");
+			if(!batch && !path.equals("/email")) {
+				return Response.error(404, 0, "Not found: " + path);
+			}
+			if(!"POST".equals(exchange.getRequestMethod())) {
+				return Response.error(405, 0, "POST required.");
+			}
+
+			// read the whole body before answering, like Postmark
+			byte[] body = readBody(exchange);
+
+			String token = exchange.getRequestHeaders().getFirst("X-Postmark-Server-Token");
+			if(token == null || token.length() == 0 || (serverToken != null && !serverToken.equals(token))) {
+				return Response.error(401, 0, "Bad or missing API token");
+			}
+
+			Fault fault = nextFault();
+			if(fault != null) {
+				faultCount.incrementAndGet();
+				switch(fault) {
+					case DISCONNECT:
+						return null;
+					case UNPROCESSABLE_ENTITY:
+						return Response.error(422, 406, "You tried to send to a recipient that has been marked as inactive.");
+					case UNAUTHORIZED:
+						return Response.error(401, 0, "Bad or missing API token");
+					default:
+						return Response.error(fault.getStatus(), 0, "Injected failure.");
+				}
+			}
+
+			JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+			try {
+				if(batch) {
+					List<Result> results = new ArrayList<Result>();
+					in.beginArray();
+					while(in.hasNext()) {
+						results.add(readMessage(in, true));
+					}
+					in.endArray();
+					if(results.size() > PostmarkClient.MAX_BATCH_SIZE) {
+						return Response.error(422, 300, "Batch may not contain more than " + PostmarkClient.MAX_BATCH_SIZE + " messages.");
+					}
+					for(Result result : results) {
+						if(result.errorCode == 0) {
+							messageCount.incrementAndGet();
+						}
+					}
+					return Response.batch(results);
+				} else {
+					Result result = readMessage(in, false);
+					if(result.errorCode != 0) {
+						return Response.error(422, result.errorCode, result.message);
+					}
+					messageCount.incrementAndGet();
+					return Response.single(result);
+				}
+			} catch(IOException e) {
+				return Response.error(422, 402, "The JSON input you provided is syntactically incorrect.");
+			} catch(IllegalStateException e) {
+				// thrown by JsonReader when the JSON doesn't have the expected structure
+				return Response.error(422, 403, "The JSON input you provided is syntactically correct, but still not the one we expect.");
+			} catch(NumberFormatException e) {
+				return Response.error(422, 403, "The JSON input you provided is syntactically correct, but still not the one we expect.");
+			}
+		}
+
+		private Result readMessage(JsonReader in, boolean batch) throws IOException {
+			PostmarkMessage message;
+			try {
+				message = PostmarkJson.MESSAGE.read(in);
+			} catch(IllegalArgumentException e) {
+				// the reader has already consumed the whole message
+				return Result.error(300, e.getMessage());
+			}
+			if(message.getFrom() == null) {
+				return Result.error(300, "Provide a 'From' address.");
+			}
+			if(batch && maintenanceRate > 0 && ThreadLocalRandom.current().nextDouble() < maintenanceRate) {
+				return Result.error(PostmarkError.MAINTENANCE, "The Postmark API is offline for maintenance.");
+			}
+			if(batch && inactiveRecipientRate > 0 && ThreadLocalRandom.current().nextDouble() < inactiveRecipientRate) {
+				return Result.error(406, "You tried to send to a recipient that has been marked as inactive.");
+			}
+			StringBuilder to = new StringBuilder();
+			for(int i = 0; i < message.getTo().size(); i++) {
+				if(i > 0) {
+					to.append(", ");
+				}
+				to.append(message.getTo().get(i).getEmail());
+			}
+			return Result.ok(to.toString());
+		}
+
+		private byte[] readBody(HttpExchange exchange) throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = exchange.getRequestBody().read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+			}
+			return body.toByteArray();
+		}
+	}
+
+	/**
+	 * The outcome for one message.
+	 */
+	private static class Result {
+		private final int errorCode;
+		private final String message;
+		private final String to;
+
+		private Result(int errorCode, String message, String to) {
+			this.errorCode = errorCode;
+			this.message = message;
+			this.to = to;
+		}
+
+		private static Result ok(String to) {
+			return new Result(0, "OK", to);
+		}
+
+		private static Result error(int errorCode, String message) {
+			return new Result(errorCode, message, null);
+		}
+
+		private void write(JsonOutput out) throws IOException {
+			out.beginObject();
+			out.name("ErrorCode").value(errorCode);
+			out.name("Message").value(message);
+			if(errorCode == 0) {
+				out.name("MessageID").value(UUID.randomUUID().toString());
+				out.name("SubmittedAt").value(DATE_FORMATTER.print(new DateTime()));
+				out.name("To").value(to);
+			}
+			out.endObject();
+		}
+	}
+
+	private static class Response {
+		private final int status;
+		private final Result result;
+		private final List<Result> results;
+
+		private Response(int status, Result result, List<Result> results) {
+			this.status = status;
+			this.result = result;
+			this.results = results;
+		}
+
+		private static Response single(Result result) {
+			return new Response(200, result, null);
+		}
+
+		private static Response batch(List<Result> results) {
+			return new Response(200, null, results);
+		}
+
+		private static Response error(int status, int errorCode, String message) {
+			return new Response(status, Result.error(errorCode, message), null);
+		}
+
+		private byte[] toBytes() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+			JsonOutput out = new JsonOutput(writer);
+			if(results != null) {
+				out.beginArray();
+				for(Result r : results) {
+					r.write(out);
+				}
+				out.endArray();
+			} else {
+				result.write(out);
+			}
+			out.flush();
+			writer.flush();
+			return bytes.toByteArray();
+		}
+	}
+
+	/**
+	 * Writes a response, or drops the connection if there isn't one.
+	 */
+	private static class Send implements Runnable {
+		private final HttpExchange exchange;
+		private final Response response;
+
+		private Send(HttpExchange exchange, Response response) {
+			this.exchange = exchange;
+			this.response = response;
+		}
+
+		public void run() {
+			try {
+				if(response != null) {
+					byte[] bytes = response.toBytes();
+					exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+					exchange.sendResponseHeaders(response.status, bytes.length);
+					OutputStream out = exchange.getResponseBody();
+					out.write(bytes);
+					out.close();
+				}
+			} catch(IOException e) {
+				LOGGER.debug("Failed to send response", e);
+			} finally {
+				// closing without sending a response drops the connection
+				exchange.close();
+			}
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package postmark4j.testing;
+
+import java.util.Random;
+
+/**
+ * How long a {@link FakePostmarkServer} waits before answering each request.
+ *
+ * @author Erik Beeson
+ */
+public abstract class LatencyDistribution {
+	/**
+	 * @param random The source of randomness to use; distributions don't keep their own, so they're thread safe.
+	 * @return The next delay in milliseconds. Negative values are treated as zero.
+	 */
+	public abstract double nextMillis(Random random);
+
+	/**
+	 * Answer immediately.
+	 */
+	public static LatencyDistribution none() {
+		return fixed(0);
+	}
+
+	public static LatencyDistribution fixed(final double millis) {
+		return new LatencyDistribution() {
+			public double nextMillis(Random random) {
+				return millis;
+			}
+
+			public String toString() {
+				return "fixed(" + millis + ")";
+			}
+		};
+	}
+
+	public static LatencyDistribution uniform(final double minMillis, final double maxMillis) {
+		if(maxMillis < minMillis) {
+			throw new IllegalArgumentException("Maximum latency must not be less than the minimum.");
+		}
+		return new LatencyDistribution() {
+			public double nextMillis(Random random) {
+				return minMillis + random.nextDouble() * (maxMillis - minMillis);
+			}
+
+			public String toString() {
+				return "uniform(" + minMillis + ", " + maxMillis + ")";
+			}
+		};
+	}
+
+	public static LatencyDistribution exponential(final double meanMillis) {
+		return new LatencyDistribution() {
+			public double nextMillis(Random random) {
+				return -meanMillis * Math.log(1 - random.nextDouble());
+			}
+
+			public String toString() {
+				return "exponential(" + meanMillis + ")";
+			}
+		};
+	}
+
+	/**
+	 * A long-tailed distribution, which is usually a good model of real network and server latency.
+	 *
+	 * @param medianMillis Half of all delays are shorter than this.
+	 * @param sigma The spread; with 1.0 the 99th percentile is about 10x the median.
+	 */
+	public static LatencyDistribution logNormal(final double medianMillis, final double sigma) {
+		if(medianMillis <= 0) {
+			throw new IllegalArgumentException("Median latency must be positive.");
+		}
+		final double mu = Math.log(medianMillis);
+		return new LatencyDistribution() {
+			public double nextMillis(Random random) {
+				return Math.exp(mu + sigma * random.nextGaussian());
+			}
+
+			public String toString() {
+				return "logNormal(" + medianMillis + ", " + sigma + ")";
+			}
+		};
+	}
+
+	/**
+	 * Usually {@code base}, but {@code tail} with the given probability, e.g. to add occasional stalls.
+	 */
+	public static LatencyDistribution mixture(final LatencyDistribution base, final double probability, final LatencyDistribution tail) {
+		if(base == null || tail == null) {
+			throw new IllegalArgumentException("Both distributions are required.");
+		}
+		return new LatencyDistribution() {
+			public double nextMillis(Random random) {
+				return random.nextDouble() < probability ? tail.nextMillis(random) : base.nextMillis(random);
+			}
+
+			public String toString() {
+				return "mixture(" + base + ", " + probability + ", " + tail + ")";
+			}
+		};
+	}
+}
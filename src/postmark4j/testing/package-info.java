@@ -0,0 +1,5 @@
+/**
+ * An embeddable stand-in for the Postmark API, for testing and load testing applications that use
+ * {@link postmark4j.PostmarkClient} without sending any email.
+ */
+package postmark4j.testing;
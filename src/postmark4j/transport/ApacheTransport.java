@@ -0,0 +1,227 @@
+package postmark4j.transport;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import postmark4j.PostmarkClientConfig;
+import postmark4j.http.IdleConnectionEvictor;
+import postmark4j.http.JsonStreamEntity;
+import postmark4j.http.PostmarkKeepAliveStrategy;
+import postmark4j.http.TimedClientConnManager;
+import postmark4j.http.TimedHttpClient;
+import postmark4j.metrics.RequestTiming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The default {@link Transport}: Apache HttpClient with a pool of keep-alive HTTP/1.1 connections, sized and timed
+ * out by the connection settings in {@link PostmarkClientConfig}, and a background thread that closes idle ones.
+ * Each request holds a connection, and the thread that sent it, until its response has been read.
+ *
+ * Requests wait for a connection on a fair {@link Semaphore} with one permit per connection, in front of the pool,
+ * so only as many requests as there are connections ever reach it. Any number of threads, including tens of
+ * thousands of virtual threads, can queue on the semaphore cheaply and without pinning, while the number of real
+ * connections stays bounded. The connection request timeout applies to that wait.
+ *
+ * @author Erik Beeson
+ */
+public class ApacheTransport implements Transport {
+	public static final TransportFactory FACTORY = new TransportFactory() {
+		public Transport createTransport(PostmarkClientConfig config) {
+			return new ApacheTransport(config);
+		}
+
+		public String toString() {
+			return "ApacheTransport.FACTORY";
+		}
+	};
+
+	private final ThreadSafeClientConnManager connectionManager;
+	private final HttpClient httpClient;
+	private final IdleConnectionEvictor connectionEvictor;
+	private final Semaphore connections;
+	private final long connectionRequestTimeoutMillis;
+	private volatile boolean closed;
+
+	public ApacheTransport(PostmarkClientConfig config) {
+		if(config == null) {
+			throw new IllegalArgumentException("A config is required.");
+		}
+		this.connectionManager = new TimedClientConnManager(SchemeRegistryFactory.createDefault(), config.getConnectionTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+		this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+		this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+		this.httpClient = createHttpClient(connectionManager, config);
+		// every request goes to the same host, so the per-route limit is the real one
+		this.connections = new Semaphore(Math.min(config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal()), true);
+		this.connectionRequestTimeoutMillis = config.getConnectionRequestTimeoutMillis();
+
+		if(config.getEvictionIntervalMillis() > 0) {
+			this.connectionEvictor = new IdleConnectionEvictor(connectionManager, config.getEvictionIntervalMillis(), config.getIdleConnectionTimeoutMillis());
+			this.connectionEvictor.start();
+		} else {
+			this.connectionEvictor = null;
+		}
+	}
+
+	/**
+	 * Creates the {@link HttpClient} shared by all requests made through this transport. Subclasses may override
+	 * this to customize the client, but should use the given (pooled, thread safe) connection manager.
+	 *
+	 * @param connectionManager The pooled connection manager owned by this transport.
+	 * @param config The connection settings.
+	 * @return A thread safe {@link HttpClient}.
+	 */
+	protected HttpClient createHttpClient(ThreadSafeClientConnManager connectionManager, PostmarkClientConfig config) {
+		HttpParams params = new BasicHttpParams();
+		HttpConnectionParams.setStaleCheckingEnabled(params, config.isStaleConnectionCheck());
+		HttpConnectionParams.setConnectionTimeout(params, config.getConnectTimeoutMillis());
+		HttpConnectionParams.setSoTimeout(params, config.getSocketTimeoutMillis());
+		HttpConnectionParams.setTcpNoDelay(params, true);
+		// no pool timeout parameter: HttpClient 4.1 waits for a pooled connection for up to the connect timeout,
+		// and never waits at all behind the semaphore, which applies the connection request timeout
+
+		DefaultHttpClient client = new TimedHttpClient(connectionManager, params);
+		client.setKeepAliveStrategy(new PostmarkKeepAliveStrategy(config.getKeepAliveMillis()));
+		return client;
+	}
+
+	/**
+	 * @return The shared {@link HttpClient} used to make requests.
+	 */
+	protected HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		acquireConnection();
+		HttpPost method = new HttpPost(request.getUrl());
+		for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			method.addHeader(header.getKey(), header.getValue());
+		}
+		method.setEntity(new JsonStreamEntity(request.getBody()));
+
+		HttpContext context = null;
+		RequestTiming timing = request.getTiming();
+		if(timing != null) {
+			context = new BasicHttpContext();
+			context.setAttribute(RequestTiming.CONTEXT_ATTRIBUTE, timing);
+		}
+		try {
+			return new ApacheResponse(method, httpClient.execute(method, context));
+		} catch(IOException e) {
+			method.abort();
+			connections.release();
+			throw e;
+		} catch(RuntimeException e) {
+			method.abort();
+			connections.release();
+			throw e;
+		}
+	}
+
+	private void acquireConnection() throws IOException {
+		try {
+			if(connectionRequestTimeoutMillis <= 0) {
+				connections.acquire();
+			} else if(!connections.tryAcquire(connectionRequestTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new ConnectionPoolTimeoutException("Timeout waiting for connection");
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection.");
+		}
+	}
+
+	/**
+	 * @return The number of requests waiting for a connection.
+	 */
+	public int getWaitingCount() {
+		return connections.getQueueLength();
+	}
+
+	/**
+	 * @return The number of open connections, in use or idle.
+	 */
+	public int getPooledConnectionCount() {
+		// shutting the pool down closes its connections without resetting its count
+		return closed ? 0 : connectionManager.getConnectionsInPool();
+	}
+
+	public void close() {
+		closed = true;
+		if(connectionEvictor != null) {
+			connectionEvictor.shutdown();
+		}
+		connectionManager.shutdown();
+	}
+
+	public String toString() {
+		return "ApacheTransport";
+	}
+
+	private class ApacheResponse implements TransportResponse {
+		private final HttpPost method;
+		private final HttpResponse response;
+		private final HttpEntity entity;
+		private boolean released;
+
+		private ApacheResponse(HttpPost method, HttpResponse response) {
+			this.method = method;
+			this.response = response;
+			this.entity = response.getEntity();
+		}
+
+		public int getStatus() {
+			return response.getStatusLine().getStatusCode();
+		}
+
+		public InputStream getContent() throws IOException {
+			return entity != null ? entity.getContent() : null;
+		}
+
+		public String getCharset() {
+			return entity != null ? EntityUtils.getContentCharSet(entity) : null;
+		}
+
+		public void abort() {
+			method.abort();
+			release();
+		}
+
+		public void close() {
+			// consuming whatever is left of the entity releases the connection back to the pool
+			if(entity != null) {
+				try {
+					EntityUtils.consume(entity);
+				} catch(IOException ignored) {
+					// connection is discarded
+				}
+			}
+			release();
+		}
+
+		private void release() {
+			if(!released) {
+				released = true;
+				connections.release();
+			}
+		}
+	}
+}
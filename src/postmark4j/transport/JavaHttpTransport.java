@@ -0,0 +1,462 @@
+package postmark4j.transport;
+
+import postmark4j.PostmarkClientConfig;
+import postmark4j.metrics.RequestTiming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Transport} built on {@link HttpClient java.net.http.HttpClient}, which speaks HTTP/2 when the server
+ * does (Postmark does, over HTTPS) and falls back to HTTP/1.1 when it doesn't.
+ *
+ * With HTTP/2, concurrent requests are multiplexed as streams over a single connection per host, and all of the
+ * I/O is done without blocking by a pool of at most {@link #IO_THREADS} daemon threads, so thousands of sends in
+ * flight need neither thousands of connections nor thousands of I/O threads. The thread calling
+ * {@link #execute(TransportRequest)} writes the request body, as fast as the connection takes it, and waits for
+ * its response; pair this with virtual threads to make those waiting threads cheap too.
+ *
+ * The connection pool settings in {@link PostmarkClientConfig} (maximum connections, keep alive, eviction, stale
+ * checks) don't apply, since {@link HttpClient} manages its own connections. The connect timeout does, and the
+ * socket timeout is used as the time allowed for the response headers to arrive.
+ *
+ * <pre>
+ * PostmarkClientConfig config = new PostmarkClientConfig();
+ * config.setTransportFactory(JavaHttpTransport.FACTORY);
+ * </pre>
+ *
+ * @author Erik Beeson
+ */
+public class JavaHttpTransport implements Transport {
+	public static final TransportFactory FACTORY = new TransportFactory() {
+		public Transport createTransport(PostmarkClientConfig config) {
+			return new JavaHttpTransport(config);
+		}
+
+		public String toString() {
+			return "JavaHttpTransport.FACTORY";
+		}
+	};
+
+	/**
+	 * The most I/O threads each transport uses: one per processor, but at least 2.
+	 */
+	public static final int IO_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	private final ThreadPoolExecutor executor;
+	private volatile HttpClient httpClient;
+	private final Duration requestTimeout;
+
+	public JavaHttpTransport(PostmarkClientConfig config) {
+		if(config == null) {
+			throw new IllegalArgumentException("A config is required.");
+		}
+		this.executor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new IoThreadFactory("postmark4j-http2-" + instances.incrementAndGet()));
+		this.executor.allowCoreThreadTimeOut(true);
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.executor(executor);
+		if(config.getConnectTimeoutMillis() > 0) {
+			builder.connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()));
+		}
+		this.httpClient = createHttpClient(builder, config);
+		this.requestTimeout = config.getSocketTimeoutMillis() > 0 ? Duration.ofMillis(config.getSocketTimeoutMillis()) : null;
+	}
+
+	/**
+	 * Creates the {@link HttpClient} shared by all requests made through this transport. Subclasses may override
+	 * this to customize the client, for example with an {@link javax.net.ssl.SSLContext} or a proxy.
+	 *
+	 * @param builder A builder with the version, timeouts and executor already set.
+	 * @param config The connection settings.
+	 * @return The client.
+	 */
+	protected HttpClient createHttpClient(HttpClient.Builder builder, PostmarkClientConfig config) {
+		return builder.build();
+	}
+
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		HttpClient httpClient = this.httpClient;
+		if(httpClient == null) {
+			throw new IllegalStateException("The transport is closed.");
+		}
+		RequestTiming timing = request.getTiming();
+
+		// the body is streamed to HttpClient as the calling thread writes it, so the I/O threads never serialize
+		// and the body is never held in memory as a whole
+		final BodyPublisher body = new BodyPublisher();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+				.POST(HttpRequest.BodyPublishers.fromPublisher(body));
+		for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+		if(requestTimeout != null) {
+			builder.timeout(requestTimeout);
+		}
+
+		long sendStart = System.nanoTime();
+		CompletableFuture<HttpResponse<InputStream>> future = httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+		future.whenComplete(new BiConsumer<HttpResponse<InputStream>, Throwable>() {
+			public void accept(HttpResponse<InputStream> response, Throwable failure) {
+				// a failed request, or a response sent before the whole body was read, stops the writing
+				body.abort();
+			}
+		});
+		try {
+			request.getBody().writeTo(body);
+			body.close();
+		} catch(IOException e) {
+			// if the request is done, it has the reason the writing stopped, or the response
+			if(!future.isDone()) {
+				body.fail(e);
+				future.cancel(true);
+				throw e;
+			}
+		} catch(RuntimeException e) {
+			body.fail(e);
+			future.cancel(true);
+			throw e;
+		}
+		long serverStart = System.nanoTime();
+		if(timing != null) {
+			timing.recordSend(sendStart, serverStart - sendStart);
+		}
+
+		try {
+			return new JavaHttpResponse(future.get());
+		} catch(InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for a response.");
+			interrupted.initCause(e);
+			throw interrupted;
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			// HttpClient reports a connection closed without an answer as a plain IOException, and more specific
+			// failures (timeouts, refused connections) with subclasses
+			if(cause != null && cause.getClass() == IOException.class) {
+				throw new NoResponseException(cause.getMessage(), cause);
+			} else if(cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			if(timing != null) {
+				// connecting happens on the I/O threads, so it's counted in the send or here
+				timing.recordServer(System.nanoTime() - serverStart);
+			}
+		}
+	}
+
+	/**
+	 * Stops the I/O threads and lets go of the {@link HttpClient}. On Java 21 and later the client is shut down,
+	 * which closes its connections and stops its selector thread right away. Before Java 21 {@link HttpClient}
+	 * can't be closed; its connections are closed and its selector thread stops once the client has been garbage
+	 * collected, so they may outlive this call by a few seconds.
+	 */
+	public void close() {
+		HttpClient httpClient = this.httpClient;
+		this.httpClient = null;
+		if(httpClient != null) {
+			shutdownNow(httpClient);
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Calls {@code HttpClient.shutdownNow()}, which was added in Java 21, if it's there.
+	 */
+	private static void shutdownNow(HttpClient httpClient) {
+		Method shutdownNow;
+		try {
+			shutdownNow = HttpClient.class.getMethod("shutdownNow");
+		} catch(NoSuchMethodException e) {
+			// before Java 21
+			return;
+		}
+		try {
+			shutdownNow.invoke(httpClient);
+		} catch(IllegalAccessException e) {
+			// a public method of a public class
+			throw new IllegalStateException(e);
+		} catch(InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	public String toString() {
+		return "JavaHttpTransport";
+	}
+
+	/**
+	 * @return The charset parameter of a Content-Type header, or {@code null}.
+	 */
+	static String getCharset(String contentType) {
+		if(contentType == null) {
+			return null;
+		}
+		for(String parameter : contentType.split(";")) {
+			parameter = parameter.trim();
+			if(parameter.regionMatches(true, 0, "charset=", 0, 8)) {
+				String charset = parameter.substring(8).trim();
+				if(charset.length() > 1 && charset.startsWith("\"") && charset.endsWith("\"")) {
+					charset = charset.substring(1, charset.length() - 1);
+				}
+				return charset.length() > 0 ? charset : null;
+			}
+		}
+		return null;
+	}
+
+	private static class JavaHttpResponse implements TransportResponse {
+		private final HttpResponse<InputStream> response;
+
+		private JavaHttpResponse(HttpResponse<InputStream> response) {
+			this.response = response;
+		}
+
+		public int getStatus() {
+			return response.statusCode();
+		}
+
+		public InputStream getContent() {
+			return response.body();
+		}
+
+		public String getCharset() {
+			return JavaHttpTransport.getCharset(response.headers().firstValue("Content-Type").orElse(null));
+		}
+
+		public void abort() {
+			// closing the body before the end cancels the stream
+			try {
+				response.body().close();
+			} catch(IOException ignored) {
+				// nothing more to do
+			}
+		}
+
+		public void close() {
+			InputStream in = response.body();
+			try {
+				// reading to the end lets an HTTP/1.1 connection be reused
+				byte[] buffer = new byte[1024];
+				while(in.read(buffer) >= 0) {
+					// discard
+				}
+			} catch(IOException ignored) {
+				// connection is discarded
+			} finally {
+				try {
+					in.close();
+				} catch(IOException ignored) {
+					// nothing more to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands what the calling thread writes to HttpClient as it asks for it, one buffer per write. Writes wait for
+	 * HttpClient's demand, so at most one buffer is waiting to be sent. HttpClient subscribes once it's connected;
+	 * the body can only be sent once.
+	 */
+	private static class BodyPublisher extends OutputStream implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition changed = lock.newCondition();
+		private Flow.Subscriber<? super ByteBuffer> subscriber;
+		private long demand;
+		private boolean stopped;
+		private Throwable requestError;
+		private Throwable failure;
+
+		public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+			boolean first;
+			Throwable error;
+			lock.lock();
+			try {
+				first = this.subscriber == null;
+				if(first) {
+					this.subscriber = subscriber;
+					changed.signalAll();
+				}
+				error = first ? failure : new IllegalStateException("The request body can only be sent once.");
+			} finally {
+				lock.unlock();
+			}
+			subscriber.onSubscribe(first ? this : new Flow.Subscription() {
+				public void request(long n) {
+				}
+
+				public void cancel() {
+				}
+			});
+			if(error != null) {
+				// failed before HttpClient subscribed
+				subscriber.onError(error);
+			}
+		}
+
+		public void request(long n) {
+			lock.lock();
+			try {
+				if(n <= 0) {
+					requestError = new IllegalArgumentException("Demand must be positive.");
+					stopped = true;
+				} else {
+					demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+				}
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		public void cancel() {
+			abort();
+		}
+
+		/**
+		 * Stops the writing thread, which gets an {@link IOException}.
+		 */
+		private void abort() {
+			lock.lock();
+			try {
+				stopped = true;
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return;
+			}
+			// HttpClient may hold on to the buffer after onNext returns
+			ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len));
+			awaitDemand().onNext(buffer);
+		}
+
+		public void close() throws IOException {
+			awaitSubscriber().onComplete();
+		}
+
+		/**
+		 * Ends the body with an error, which fails the request.
+		 */
+		private void fail(Throwable t) {
+			Flow.Subscriber<? super ByteBuffer> subscriber;
+			lock.lock();
+			try {
+				subscriber = stopped ? null : this.subscriber;
+				stopped = true;
+				failure = t;
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			if(subscriber != null) {
+				subscriber.onError(t);
+			}
+		}
+
+		private Flow.Subscriber<? super ByteBuffer> awaitDemand() throws IOException {
+			lock.lock();
+			try {
+				while(!stopped && (subscriber == null || demand == 0)) {
+					await();
+				}
+				checkStopped();
+				demand--;
+				return subscriber;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private Flow.Subscriber<? super ByteBuffer> awaitSubscriber() throws IOException {
+			lock.lock();
+			try {
+				while(!stopped && subscriber == null) {
+					await();
+				}
+				checkStopped();
+				return subscriber;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void await() throws InterruptedIOException {
+			try {
+				changed.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				InterruptedIOException interrupted = new InterruptedIOException("Interrupted while sending the request body.");
+				interrupted.initCause(e);
+				throw interrupted;
+			}
+		}
+
+		private void checkStopped() throws IOException {
+			if(stopped) {
+				throw new IOException("The request stopped reading the body.", requestError);
+			}
+		}
+	}
+
+	private static class IoThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private IoThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
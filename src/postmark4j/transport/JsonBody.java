@@ -0,0 +1,104 @@
+package postmark4j.transport;
+
+import postmark4j.jsonio.Utf8Writer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A request body that writes JSON directly onto whatever the {@link Transport} gives it, as the request is sent,
+ * instead of first building the whole body as a {@link String}. Subclasses implement {@link #writeJson(Writer)}.
+ *
+ * The body can be written more than once, if the request needs to be resent.
+ *
+ * @author Erik Beeson
+ */
+public abstract class JsonBody {
+	public static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private volatile long bytesWritten;
+	private volatile long serializationNanos;
+
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	/**
+	 * Writes the body as UTF-8. Flushes, but doesn't close, {@code out}.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if(out == null) {
+			throw new IllegalArgumentException("Output stream may not be null");
+		}
+		long start = System.nanoTime();
+		MeteredOutputStream meter = new MeteredOutputStream(out);
+		Writer writer = new Utf8Writer(meter, BUFFER_SIZE);
+		try {
+			writeJson(writer);
+			// flush, but don't close: the transport owns the stream
+			writer.flush();
+		} finally {
+			bytesWritten = meter.bytes;
+			serializationNanos = Math.max(0, System.nanoTime() - start - meter.nanos);
+		}
+	}
+
+	/**
+	 * @return The size of the body the last time it was written.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return How long writing the body took the last time it was written, not counting time spent blocked on the
+	 * output stream.
+	 */
+	public long getSerializationNanos() {
+		return serializationNanos;
+	}
+
+	/**
+	 * Write the request body. May be called more than once.
+	 *
+	 * @param writer The (buffered) writer to write to, a {@link Utf8Writer}. Doesn't need to be flushed or closed.
+	 * @throws IOException If the JSON can't be written.
+	 */
+	protected abstract void writeJson(Writer writer) throws IOException;
+
+	/**
+	 * Counts the bytes written to the transport and the time spent writing them.
+	 */
+	private static class MeteredOutputStream extends FilterOutputStream {
+		private long bytes;
+		private long nanos;
+
+		private MeteredOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		public void write(int b) throws IOException {
+			long start = System.nanoTime();
+			out.write(b);
+			nanos += System.nanoTime() - start;
+			bytes++;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			out.write(b, off, len);
+			nanos += System.nanoTime() - start;
+			bytes += len;
+		}
+
+		public void flush() throws IOException {
+			long start = System.nanoTime();
+			out.flush();
+			nanos += System.nanoTime() - start;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package postmark4j.transport;
+
+import java.io.IOException;
+
+/**
+ * The connection was closed before the response arrived, typically because the server closed a connection that
+ * had been idle for too long just as a request was sent on it. Like Apache's
+ * {@link org.apache.http.NoHttpResponseException}, and retried in the same way.
+ *
+ * @author Erik Beeson
+ */
+public class NoResponseException extends IOException {
+	public NoResponseException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
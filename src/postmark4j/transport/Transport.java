@@ -0,0 +1,33 @@
+package postmark4j.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Makes HTTP requests to Postmark on behalf of a {@link postmark4j.PostmarkClient}. Everything above this (retries,
+ * rate limiting, the circuit breaker, reading responses) is done by the client, so a transport only needs to send
+ * a request and hand back the response.
+ *
+ * Two are included: {@link ApacheTransport}, the default, with a pool of HTTP/1.1 connections, and
+ * {@link JavaHttpTransport}, which multiplexes requests over HTTP/2. Choose one with
+ * {@link postmark4j.PostmarkClientConfig#setTransportFactory(TransportFactory)}.
+ *
+ * Implementations must be thread safe.
+ *
+ * @author Erik Beeson
+ */
+public interface Transport extends Closeable {
+	/**
+	 * Sends a request and waits for the response headers.
+	 *
+	 * @param request The request.
+	 * @return The response, which the caller must {@link TransportResponse#close() close}.
+	 * @throws IOException If the request couldn't be sent or no response was received.
+	 */
+	TransportResponse execute(TransportRequest request) throws IOException;
+
+	/**
+	 * Closes all connections. Requests that are in progress may fail. Calling this more than once has no effect.
+	 */
+	void close();
+}
@@ -0,0 +1,17 @@
+package postmark4j.transport;
+
+import postmark4j.PostmarkClientConfig;
+
+/**
+ * Creates the {@link Transport} for a new {@link postmark4j.PostmarkClient}, which owns it and closes it when the
+ * client is closed.
+ *
+ * @author Erik Beeson
+ */
+public interface TransportFactory {
+	/**
+	 * @param config The connection settings.
+	 * @return A new transport.
+	 */
+	Transport createTransport(PostmarkClientConfig config);
+}
@@ -0,0 +1,76 @@
+package postmark4j.transport;
+
+import postmark4j.metrics.RequestTiming;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A POST to Postmark: where it's going, its headers, and its JSON body.
+ *
+ * @author Erik Beeson
+ */
+public class TransportRequest {
+	private final String url;
+	private final JsonBody body;
+	private final Map<String, String> headers = new LinkedHashMap<String, String>();
+	private RequestTiming timing;
+
+	/**
+	 * @param url The full URL.
+	 * @param body The request body.
+	 */
+	public TransportRequest(String url, JsonBody body) {
+		if(url == null) {
+			throw new IllegalArgumentException("A URL is required.");
+		}
+		if(body == null) {
+			throw new IllegalArgumentException("A body is required.");
+		}
+		this.url = url;
+		this.body = body;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public JsonBody getBody() {
+		return body;
+	}
+
+	/**
+	 * Sets a header, replacing any earlier value.
+	 */
+	public void setHeader(String name, String value) {
+		headers.put(name, value);
+	}
+
+	/**
+	 * @return The headers, in the order they were set.
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	/**
+	 * @return Where to record how long each phase of the request takes, or {@code null} if it isn't being timed.
+	 */
+	public RequestTiming getTiming() {
+		return timing;
+	}
+
+	public void setTiming(RequestTiming timing) {
+		this.timing = timing;
+	}
+
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("TransportRequest");
+		sb.append("{url=").append(url);
+		sb.append(", headers=").append(headers.keySet());
+		sb.append('}');
+		return sb.toString();
+	}
+}
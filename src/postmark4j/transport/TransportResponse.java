@@ -0,0 +1,34 @@
+package postmark4j.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response from a {@link Transport}, whose body hasn't been read yet.
+ *
+ * @author Erik Beeson
+ */
+public interface TransportResponse extends Closeable {
+	int getStatus();
+
+	/**
+	 * @return The response body, or {@code null} if there isn't one. May only be called once.
+	 */
+	InputStream getContent() throws IOException;
+
+	/**
+	 * @return The charset from the response's Content-Type, or {@code null} if it didn't give one.
+	 */
+	String getCharset();
+
+	/**
+	 * Gives up on the response, closing the connection rather than reusing it.
+	 */
+	void abort();
+
+	/**
+	 * Discards whatever is left of the body and releases the connection for reuse.
+	 */
+	void close();
+}
@@ -0,0 +1,6 @@
+/**
+ * How {@link postmark4j.PostmarkClient} talks HTTP: the {@link postmark4j.transport.Transport} interface, the
+ * default {@link postmark4j.transport.ApacheTransport}, and {@link postmark4j.transport.JavaHttpTransport}, which
+ * multiplexes requests over HTTP/2.
+ */
+package postmark4j.transport;
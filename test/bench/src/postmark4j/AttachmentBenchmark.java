@@ -0,0 +1,98 @@
+package postmark4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.data.PostmarkAttachment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read and base64 encode a file attachment, as done while a message is being sent.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttachmentBenchmark {
+	/**
+	 * 10 KB, 1 MB and 10 MB.
+	 */
+	@Param({"10240", "1048576", "10485760"})
+	public int size;
+
+	private File file;
+	private PostmarkAttachment attachment;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("postmark4j-benchmark-", ".pdf");
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		attachment = new PostmarkAttachment(file, "application/octet-stream");
+	}
+
+	@TearDown
+	public void tearDown() {
+		if(!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public long encode() throws IOException {
+		CountingWriter writer = new CountingWriter();
+		attachment.writeContent(writer);
+		return writer.count;
+	}
+
+	/**
+	 * Discards what's written, so only reading and encoding are measured.
+	 */
+	private static class CountingWriter extends Writer {
+		private long count;
+
+		public void write(int c) {
+			count++;
+		}
+
+		public void write(char[] buffer, int offset, int length) {
+			count += length;
+		}
+
+		public void write(String str, int offset, int length) {
+			count += length;
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package postmark4j;
+
+import com.google.gson.JsonPrimitive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.jsonio.ISODateDeserializer;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of parsing the {@code SubmittedAt} dates in Postmark responses.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+	/**
+	 * The format Postmark actually sends (7 fractional digits and an offset), and a plain UTC date/time.
+	 */
+	@Param({"2010-11-26T12:01:05.1794748-05:00", "2010-11-26T17:01:05Z"})
+	public String value;
+
+	private final ISODateDeserializer deserializer = new ISODateDeserializer();
+	private JsonPrimitive json;
+
+	@Setup
+	public void setUp() {
+		json = new JsonPrimitive(value);
+	}
+
+	@Benchmark
+	public Date parse() {
+		return ISODateDeserializer.parse(value);
+	}
+
+	@Benchmark
+	public Date deserialize() {
+		return deserializer.deserialize(json, Date.class, null);
+	}
+}
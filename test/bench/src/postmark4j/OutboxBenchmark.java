@@ -0,0 +1,84 @@
+package postmark4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.outbox.PostmarkOutbox;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable enqueues into a {@link PostmarkOutbox} on local disk, while its sender drains it to a
+ * {@link FakePostmarkServer}. Each operation returns once its messages have been synced. Run with more threads
+ * ({@code -Dbench.args="-t 16"}) to see concurrent enqueues share syncs.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without nodelay, FakePostmarkServer's small responses are held back by Nagle's algorithm
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class OutboxBenchmark {
+	/**
+	 * Messages per {@link PostmarkOutbox#enqueue(PostmarkMessage...)} call.
+	 */
+	@Param({"1", "100"})
+	public int enqueueSize;
+
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+	private File directory;
+	private PostmarkOutbox outbox;
+	private PostmarkMessage[] messages;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		client = new PostmarkClient(PostmarkClient.TEST_SERVER_TOKEN, null, false, server.createClientConfig());
+		directory = Files.createTempDirectory("postmark4j-outbox-bench").toFile();
+		outbox = new PostmarkOutbox(client, directory);
+		outbox.start();
+
+		messages = new PostmarkMessage[enqueueSize];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = SerializationBenchmark.createMessage(i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		outbox.close();
+		client.close();
+		server.close();
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public long[] enqueue() throws IOException {
+		return outbox.enqueue(messages);
+	}
+}
@@ -0,0 +1,83 @@
+package postmark4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full send round trips (serializing, writing the request, reading and parsing the response) against a
+ * {@link FakePostmarkServer}. With no latency the client's own overhead is what's measured; with latency, run with
+ * more threads ({@code -Dbench.args="-t 32"}) to see how well the connection pool keeps requests in flight.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without nodelay, FakePostmarkServer's small responses are held back by Nagle's algorithm
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class SendBenchmark {
+	@Param({"1", "500"})
+	public int batchSize;
+
+	/**
+	 * Median server latency in milliseconds, or 0 for none.
+	 */
+	@Param({"0", "20"})
+	public double latencyMillis;
+
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+	private PostmarkMessage[] messages;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new FakePostmarkServer();
+		if(latencyMillis > 0) {
+			server.setLatency(LatencyDistribution.logNormal(latencyMillis, 0.5));
+		}
+		server.start();
+		client = new PostmarkClient(PostmarkClient.TEST_SERVER_TOKEN, null, false, server.createClientConfig());
+
+		messages = new PostmarkMessage[batchSize];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = SerializationBenchmark.createMessage(i);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.close();
+		server.close();
+	}
+
+	@Benchmark
+	public Object send() throws Exception {
+		if(batchSize == 1) {
+			return client.send(messages[0]);
+		}
+		PostmarkResponse[] responses = client.send(messages);
+		if(responses.length != batchSize) {
+			throw new IllegalStateException("Expected " + batchSize + " responses, got " + responses.length);
+		}
+		return responses;
+	}
+}
@@ -0,0 +1,81 @@
+package postmark4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link PostmarkClient#toJson(postmark4j.data.PostmarkMessage...)} for a single message, a full
+ * batch, and a full batch of {@link postmark4j.data.FrozenMessage}s.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+	private PostmarkClient client;
+	private PostmarkMessage message;
+	private PostmarkMessage[] batch;
+	private PostmarkMessage[] frozenBatch;
+
+	@Setup
+	public void setUp() throws IOException {
+		client = new PostmarkClient(PostmarkClient.TEST_SERVER_TOKEN);
+		message = createMessage(0);
+		batch = new PostmarkMessage[PostmarkClient.MAX_BATCH_SIZE];
+		for(int i = 0; i < batch.length; i++) {
+			batch[i] = createMessage(i);
+		}
+		frozenBatch = new PostmarkMessage[batch.length];
+		for(int i = 0; i < batch.length; i++) {
+			frozenBatch[i] = batch[i].freeze();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.close();
+	}
+
+	@Benchmark
+	public String toJsonSingle() {
+		return client.toJson(message);
+	}
+
+	@Benchmark
+	public String toJsonBatch() {
+		return client.toJson(batch);
+	}
+
+	@Benchmark
+	public String toJsonFrozenBatch() {
+		return client.toJson(frozenBatch);
+	}
+
+	static PostmarkMessage createMessage(int i) {
+		PostmarkMessage message = new PostmarkMessage(new PostmarkAddress("Sender", "sender@example.com"), "Postmark test #" + i, new PostmarkAddress("Receiver " + i, "receiver" + i + "@example.com"));
+		message.addCc(new PostmarkAddress("copied@example.com"));
+		message.setTag("benchmark");
+		message.setHtmlBody("<html><body><strong>Hello</strong> dear Postmark user #" + i + ".</body></html>");
+		message.setTextBody("Hello dear Postmark user #" + i + ".\n\"Quoted\" and \u00e9scaped text.");
+		message.addHeader("X-Benchmark", String.valueOf(i));
+		return message;
+	}
+}
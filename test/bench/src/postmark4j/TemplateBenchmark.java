@@ -0,0 +1,115 @@
+package postmark4j;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.JsonOutput;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.template.Template;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering and serializing a full batch of messages that share a large HTML layout: rendering each body to a
+ * {@link String} first, versus a precompiled {@link Template}. Run with {@code -prof gc} to compare allocation.
+ *
+ * @author Erik Beeson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+	private Template template;
+	private Map<String, String>[] values;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() {
+		StringBuilder layout = new StringBuilder("<html>\n<head><style type=\"text/css\">body { font-family: \"Helvetica\"; }</style></head>\n<body>\n");
+		layout.append("\t<h1>Hello {{name}},</h1>\n");
+		for(int i = 0; i < 200; i++) {
+			layout.append("\t<p class=\"copy\">Paragraph ").append(i).append(" of the newsletter, the same for everyone.</p>\n");
+		}
+		layout.append("\t<p><a href=\"https://example.com/unsubscribe?id={{id}}\">Unsubscribe</a></p>\n</body>\n</html>");
+		template = Template.html(layout.toString());
+
+		values = new Map[PostmarkClient.MAX_BATCH_SIZE];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = new HashMap<String, String>();
+			values[i].put("name", "Receiver " + i);
+			values[i].put("id", String.valueOf(i));
+		}
+	}
+
+	@Benchmark
+	public long renderedBatch() throws IOException {
+		PostmarkMessage[] batch = new PostmarkMessage[values.length];
+		for(int i = 0; i < batch.length; i++) {
+			batch[i] = createMessage(i);
+			batch[i].setHtmlBody(template.render(values[i]));
+		}
+		return write(batch);
+	}
+
+	@Benchmark
+	public long templatedBatch() throws IOException {
+		PostmarkMessage[] batch = new PostmarkMessage[values.length];
+		for(int i = 0; i < batch.length; i++) {
+			batch[i] = createMessage(i);
+			batch[i].setHtmlTemplate(template);
+			batch[i].setTemplateValues(values[i]);
+		}
+		return write(batch);
+	}
+
+	private static PostmarkMessage createMessage(int i) {
+		return new PostmarkMessage(new PostmarkAddress("Sender", "sender@example.com"), "Newsletter", new PostmarkAddress("Receiver " + i, "receiver" + i + "@example.com"));
+	}
+
+	private static long write(PostmarkMessage[] batch) throws IOException {
+		CountingWriter writer = new CountingWriter();
+		PostmarkJson.MESSAGE.writeBatch(new JsonOutput(writer), batch);
+		return writer.count;
+	}
+
+	/**
+	 * Stands in for the connection, so only rendering and serialization are measured.
+	 */
+	private static class CountingWriter extends Writer {
+		private long count;
+
+		public void write(char[] buffer, int offset, int length) {
+			count += length;
+		}
+
+		public void write(String str, int offset, int length) {
+			count += length;
+		}
+
+		public void write(int c) {
+			count++;
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.UnauthorizedPostmarkException;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Sends through a client whose async executor has one thread and room for one queued send, so the third of three
+ * sends made at once is handled by the rejection policy.
+ *
+ * @author Erik Beeson
+ */
+public class AsyncTests {
+	private FakePostmarkServer server;
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		server.close();
+	}
+
+	private PostmarkClient createClient(PostmarkClientConfig.RejectionPolicy rejectionPolicy) {
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		config.setAsyncThreads(1);
+		config.setAsyncQueueCapacity(1);
+		config.setAsyncRejectionPolicy(rejectionPolicy);
+		return new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	private static List<CompletableFuture<PostmarkResponse>> sendAsync(PostmarkClient client, int count) {
+		List<CompletableFuture<PostmarkResponse>> futures = new ArrayList<CompletableFuture<PostmarkResponse>>();
+		for(int i = 0; i < count; i++) {
+			futures.add(client.sendAsync(new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"))));
+		}
+		return futures;
+	}
+
+	private static Throwable failure(CompletableFuture<?> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			throw new AssertionError("Expected the send to fail");
+		} catch(ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	@Test
+	public void failRejectsWhenQueueIsFull() throws Exception {
+		server.setLatency(LatencyDistribution.fixed(200));
+		PostmarkClient client = createClient(PostmarkClientConfig.RejectionPolicy.FAIL);
+		try {
+			List<CompletableFuture<PostmarkResponse>> futures = sendAsync(client, 3);
+			assertThat(failure(futures.get(2)), instanceOf(RejectedExecutionException.class));
+			assertThat(futures.get(0).get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			assertThat(futures.get(1).get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			assertThat(server.getMessageCount(), is(2L));
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void callerRunsSendsOnCallingThread() throws Exception {
+		server.setLatency(LatencyDistribution.fixed(200));
+		PostmarkClient client = createClient(PostmarkClientConfig.RejectionPolicy.CALLER_RUNS);
+		try {
+			List<CompletableFuture<PostmarkResponse>> futures = sendAsync(client, 3);
+			// sent before sendAsync returned
+			assertThat(futures.get(2).isDone(), is(true));
+			for(CompletableFuture<PostmarkResponse> future : futures) {
+				assertThat(future.get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void blockWaitsForRoomInQueue() throws Exception {
+		server.setLatency(LatencyDistribution.fixed(200));
+		PostmarkClient client = createClient(PostmarkClientConfig.RejectionPolicy.BLOCK);
+		try {
+			long start = System.nanoTime();
+			List<CompletableFuture<PostmarkResponse>> futures = sendAsync(client, 3);
+			// until the first send finished
+			assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(150L));
+			assertThat(futures.get(2).isDone(), is(false));
+			for(CompletableFuture<PostmarkResponse> future : futures) {
+				assertThat(future.get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void closeFailsQueuedAndLaterSends() throws Exception {
+		for(PostmarkClientConfig.RejectionPolicy policy : PostmarkClientConfig.RejectionPolicy.values()) {
+			server.setLatency(LatencyDistribution.fixed(200));
+			PostmarkClient client = createClient(policy);
+			List<CompletableFuture<PostmarkResponse>> futures = sendAsync(client, 2);
+			client.close();
+			assertThat(failure(futures.get(1)), instanceOf(IllegalStateException.class));
+			assertThat(failure(sendAsync(client, 1).get(0)), instanceOf(IllegalStateException.class));
+		}
+	}
+
+	@Test
+	public void completesExceptionallyWithSendExceptions() throws Exception {
+		PostmarkClient client = createClient(PostmarkClientConfig.RejectionPolicy.FAIL);
+		try {
+			server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+			Throwable failure = failure(client.sendAsync(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"))));
+			assertThat(failure, instanceOf(UnprocessableEntityPostmarkException.class));
+			assertThat(((UnprocessableEntityPostmarkException) failure).getErrorCode(), is(406));
+
+			server.failNext(FakePostmarkServer.Fault.UNAUTHORIZED);
+			assertThat(failure(client.sendBatchAsync(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")))), instanceOf(UnauthorizedPostmarkException.class));
+		} finally {
+			client.close();
+		}
+	}
+}
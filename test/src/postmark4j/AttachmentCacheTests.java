@@ -0,0 +1,58 @@
+package postmark4j;
+
+import org.testng.annotations.Test;
+import postmark4j.attachment.AttachmentCache;
+import postmark4j.attachment.ByteArrayAttachmentSource;
+import postmark4j.data.PostmarkAttachment;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Verify that the attachment cache shares encodings, counts hits and misses, and evicts to stay within budget.
+ *
+ * @author Erik Beeson
+ */
+public class AttachmentCacheTests {
+	@Test
+	public void cachesFileEncoding() throws IOException {
+		AttachmentCache cache = new AttachmentCache(1024);
+		PostmarkAttachment first = cache.attachment(new File("test/attachments/readme.txt"), "text/plain");
+		PostmarkAttachment second = cache.attachment(new File("test/attachments/readme.txt"), "text/plain");
+
+		assertThat(first.getContent(), is("dGVzdCBjb250ZW50"));
+		assertThat(second.getSource(), sameInstance(first.getSource()));
+		assertThat(cache.getMissCount(), is(1L));
+		assertThat(cache.getHitCount(), is(1L));
+		assertThat(cache.getSizeBytes(), is(16L));
+	}
+
+	@Test
+	public void sharesIdenticalContent() throws IOException {
+		AttachmentCache cache = new AttachmentCache(1024);
+		// both test files have the same content
+		PostmarkAttachment readme = cache.attachment(new File("test/attachments/readme.txt"), "text/plain");
+		PostmarkAttachment report = cache.attachment(new File("test/attachments/report.pdf"), "application/pdf");
+
+		assertThat(report.getSource(), sameInstance(readme.getSource()));
+		assertThat(report.getName(), is("report.pdf"));
+		assertThat(cache.getEntryCount(), is(1));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws IOException {
+		AttachmentCache cache = new AttachmentCache(20);
+		PostmarkAttachment a = cache.attachment(new ByteArrayAttachmentSource(new byte[12]), "application/octet-stream", "a.bin");
+		cache.attachment(new ByteArrayAttachmentSource(new byte[9]), "application/octet-stream", "b.bin");
+
+		assertThat(cache.getEvictionCount(), is(1L));
+		assertThat(cache.getSizeBytes(), is(12L));
+		// evicted encodings still work for attachments that already use them
+		assertThat(a.getContent(), is("AAAAAAAAAAAAAAAA"));
+		assertThat(a.getSize(), is(12L));
+	}
+}
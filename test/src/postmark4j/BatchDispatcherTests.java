@@ -0,0 +1,135 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * @author Erik Beeson
+ */
+public class BatchDispatcherTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void coalescesBySize() throws Exception {
+		PostmarkBatchDispatcher dispatcher = new PostmarkBatchDispatcher(client, 5, 60000);
+		try {
+			long start = System.nanoTime();
+			List<CompletableFuture<PostmarkResponse>> futures = send(dispatcher, 10);
+			for(int i = 0; i < futures.size(); i++) {
+				// each future gets the response for its own message
+				assertThat(futures.get(i).get(10, TimeUnit.SECONDS).getTo(), is("receiver" + i + "@example.com"));
+			}
+			// full batches don't wait for the linger time
+			assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), lessThan(10L));
+			assertThat(server.getRequestCount(), is(2L));
+			assertThat(dispatcher.getRequestCount(), is(2L));
+			assertThat(dispatcher.getMessageCount(), is(10L));
+		} finally {
+			dispatcher.close();
+		}
+	}
+
+	@Test
+	public void coalescesByLinger() throws Exception {
+		PostmarkBatchDispatcher dispatcher = new PostmarkBatchDispatcher(client, 500, 200);
+		try {
+			long start = System.nanoTime();
+			List<CompletableFuture<PostmarkResponse>> futures = send(dispatcher, 3);
+			for(int i = 0; i < futures.size(); i++) {
+				assertThat(futures.get(i).get(10, TimeUnit.SECONDS).getTo(), is("receiver" + i + "@example.com"));
+			}
+			assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(150L));
+			assertThat(server.getRequestCount(), is(1L));
+		} finally {
+			dispatcher.close();
+		}
+	}
+
+	@Test
+	public void failsRejectedMessagesAlikeAloneOrBatched() throws Exception {
+		PostmarkBatchDispatcher dispatcher = new PostmarkBatchDispatcher(client, 500, 100);
+		try {
+			server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+			assertRejected(dispatcher.send(new PostmarkMessage("Alone", new PostmarkAddress("receiver@example.com"))));
+
+			server.setInactiveRecipientRate(1);
+			for(CompletableFuture<PostmarkResponse> future : send(dispatcher, 3)) {
+				assertRejected(future);
+			}
+			assertThat(server.getRequestCount(), is(2L));
+		} finally {
+			dispatcher.close();
+		}
+	}
+
+	@Test
+	public void closeSendsQueuedMessages() throws Exception {
+		PostmarkBatchDispatcher dispatcher = new PostmarkBatchDispatcher(client, 500, 60000);
+		List<CompletableFuture<PostmarkResponse>> futures = send(dispatcher, 3);
+		dispatcher.close();
+		for(CompletableFuture<PostmarkResponse> future : futures) {
+			assertThat(future.get(10, TimeUnit.SECONDS).isSuccess(), is(true));
+		}
+		assertThat(server.getRequestCount(), is(1L));
+		try {
+			dispatcher.send(new PostmarkMessage("Late", new PostmarkAddress("receiver@example.com"))).get();
+			throw new AssertionError("Expected an IllegalStateException");
+		} catch(ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		}
+	}
+
+	private static List<CompletableFuture<PostmarkResponse>> send(PostmarkBatchDispatcher dispatcher, int count) {
+		List<CompletableFuture<PostmarkResponse>> futures = new ArrayList<CompletableFuture<PostmarkResponse>>();
+		for(int i = 0; i < count; i++) {
+			futures.add(dispatcher.send(new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"))));
+		}
+		return futures;
+	}
+
+	private static void assertRejected(CompletableFuture<PostmarkResponse> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			throw new AssertionError("Expected an UnprocessableEntityPostmarkException");
+		} catch(ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(UnprocessableEntityPostmarkException.class));
+			assertThat(((UnprocessableEntityPostmarkException) e.getCause()).getErrorCode(), is(406));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.bulk.BulkResultSink;
+import postmark4j.bulk.BulkSender;
+import postmark4j.bulk.BulkSummary;
+import postmark4j.bulk.CsvMessageSource;
+import postmark4j.bulk.JsonLinesMessageSource;
+import postmark4j.bulk.JsonLinesResultSink;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.template.Template;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Erik Beeson
+ */
+public class BulkSenderTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void sendsJsonLinesInBatches() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < 1200; i++) {
+			input.append("{\"To\":\"receiver").append(i).append("@example.com\",\"Subject\":\"Digest\",\"TextBody\":\"Hello\"}\n");
+			if(i % 100 == 0) {
+				input.append('\n');
+			}
+		}
+		// too big to send
+		input.append("{\"To\":\"big@example.com\",\"Subject\":\"Digest\",\"TextBody\":\"").append(new String(new char[2000]).replace('\0', 'x')).append("\"}\n");
+
+		BulkSender sender = new BulkSender(client);
+		sender.setMaxMessageBytes(1000);
+		StringWriter output = new StringWriter();
+		BulkSummary summary = sender.send(new JsonLinesMessageSource(new StringReader(input.toString())), new JsonLinesResultSink(output));
+
+		assertThat(summary.getMessageCount(), is(1201L));
+		assertThat(summary.getSuccessCount(), is(1200L));
+		assertThat(summary.getBatchCount(), is(3L));
+		assertThat(server.getMessageCount(), is(1200L));
+		String[] lines = output.toString().split("\n");
+		assertThat(lines.length, is(1201));
+		assertThat(output.toString(), containsString("{\"Index\":1200,\"To\":\"big@example.com\",\"Error\":"));
+	}
+
+	@Test
+	public void sendsCsvWithTemplatesAndReportsEveryMessage() throws Exception {
+		String csv = "To,Subject,name\r\n" +
+				"ann@example.com,Hello,Ann\r\n" +
+				"\"Bob \"\"B\"\" Smith <bob@example.com>\",Hello,\"Bob, Jr\"\r\n";
+		CsvMessageSource source = new CsvMessageSource(new StringReader(csv));
+		source.setTextTemplate(Template.text("Hi {{name}}"));
+		List<PostmarkMessage> messages = new ArrayList<PostmarkMessage>();
+		while(source.hasNext()) {
+			messages.add(source.next());
+		}
+		assertThat(messages.size(), is(2));
+		assertThat(messages.get(1).getTo().get(0).getName(), is("Bob \"B\" Smith"));
+		assertThat(messages.get(1).getTextBody(), is("Hi Bob, Jr"));
+
+		server.setMaintenanceRate(0.5);
+		final BitSet seen = new BitSet();
+		final int[] failures = new int[1];
+		BulkSender sender = new BulkSender(client);
+		sender.setBatchSize(7);
+		sender.setMaxInFlight(2);
+		List<PostmarkMessage> many = new ArrayList<PostmarkMessage>();
+		for(int i = 0; i < 100; i++) {
+			many.add(new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com")));
+		}
+		BulkSummary summary = sender.send(many.iterator(), new BulkResultSink() {
+			public void onResult(long index, PostmarkMessage message, PostmarkResponse response) {
+				seen.set((int) index);
+				if(!response.isSuccess()) {
+					failures[0]++;
+				}
+			}
+
+			public void onFailure(long index, PostmarkMessage message, Exception error) {
+				throw new AssertionError(error);
+			}
+		});
+		assertThat(seen.cardinality(), is(100));
+		assertThat(summary.getBatchCount(), is(15L));
+		assertThat(summary.getFailureCount(), is((long) failures[0]));
+	}
+}
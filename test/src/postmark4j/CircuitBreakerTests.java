@@ -0,0 +1,158 @@
+package postmark4j;
+
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.exceptions.CircuitOpenPostmarkException;
+import postmark4j.exceptions.InternalServerErrorPostmarkException;
+import postmark4j.resilience.CircuitBreaker;
+import postmark4j.resilience.CircuitBreakerListener;
+import postmark4j.resilience.CircuitBreakerPolicy;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Erik Beeson
+ */
+public class CircuitBreakerTests {
+	private static CircuitBreakerPolicy createPolicy() {
+		CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+		policy.setWindowSize(10);
+		policy.setMinimumCalls(4);
+		policy.setFailureRateThreshold(0.5);
+		policy.setOpenMillis(200);
+		policy.setHalfOpenProbes(2);
+		return policy;
+	}
+
+	@Test
+	public void opensOnSlowCalls() {
+		CircuitBreakerPolicy policy = createPolicy();
+		policy.setSlowCallMillis(100);
+		policy.setSlowCallRateThreshold(0.75);
+		CircuitBreaker breaker = new CircuitBreaker(policy);
+		long slow = TimeUnit.MILLISECONDS.toNanos(500);
+		for(int i = 0; i < 3; i++) {
+			breaker.record(acquire(breaker), slow, false);
+		}
+		// fewer than the minimum number of calls never opens the breaker
+		assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+		breaker.record(acquire(breaker), slow, false);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+		assertThat(breaker.getSlowCallRate(), is(1.0));
+		assertThat(breaker.getFailureRate(), is(0.0));
+		assertThat(breaker.tryAcquire(), is(-1L));
+	}
+
+	@Test
+	public void halfOpenLetsProbesThrough() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(createPolicy());
+		final List<CircuitBreaker.State> states = new CopyOnWriteArrayList<CircuitBreaker.State>();
+		breaker.addListener(new CircuitBreakerListener() {
+			public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+				states.add(to);
+			}
+		});
+		for(int i = 0; i < 4; i++) {
+			breaker.record(acquire(breaker), 0, true);
+		}
+		Thread.sleep(250);
+		// only as many probes as configured, and a cancelled probe can be reissued
+		long probe = acquire(breaker);
+		long cancelled = acquire(breaker);
+		assertThat(breaker.tryAcquire(), is(-1L));
+		breaker.cancel(cancelled);
+		long reissued = acquire(breaker);
+		breaker.record(probe, 0, false);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+		breaker.record(reissued, 0, false);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+		assertThat(breaker.getFailureRate(), is(0.0));
+		assertThat(states, contains(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED));
+	}
+
+	@Test
+	public void ignoresRequestsFromBeforeItOpened() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(createPolicy());
+		// in flight while the breaker opens
+		long stale = acquire(breaker);
+		long staleToo = acquire(breaker);
+		for(int i = 0; i < 4; i++) {
+			breaker.record(acquire(breaker), 0, true);
+		}
+		assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+		Thread.sleep(250);
+		long probe = acquire(breaker);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+
+		// neither closes the breaker, opens it again, nor frees up a probe
+		breaker.record(stale, 0, false);
+		breaker.record(staleToo, 0, true);
+		breaker.cancel(staleToo);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+		long secondProbe = acquire(breaker);
+		assertThat(breaker.tryAcquire(), is(-1L));
+
+		breaker.record(probe, 0, false);
+		breaker.record(secondProbe, 0, false);
+		assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+		// or count against the new window
+		breaker.record(stale, 0, true);
+		assertThat(breaker.getFailureRate(), is(0.0));
+	}
+
+	private static long acquire(CircuitBreaker breaker) {
+		long ticket = breaker.tryAcquire();
+		assertThat(ticket, greaterThanOrEqualTo(0L));
+		return ticket;
+	}
+
+	@Test
+	public void rejectsSendsWhileOpen() throws Exception {
+		FakePostmarkServer server = new FakePostmarkServer();
+		server.start();
+		server.setFaultRate(FakePostmarkServer.Fault.INTERNAL_SERVER_ERROR, 1.0);
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		config.setCircuitBreakerPolicy(createPolicy());
+		PostmarkClient client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		PostmarkMessage message = new PostmarkMessage("Subject", new PostmarkAddress("receiver@example.com"));
+		try {
+			for(int i = 0; i < 4; i++) {
+				try {
+					client.send(message);
+					throw new AssertionError("Expected an InternalServerErrorPostmarkException");
+				} catch(InternalServerErrorPostmarkException expected) {
+					// counted as a failure
+				}
+			}
+			assertThat(client.getCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+			try {
+				client.send(message);
+				throw new AssertionError("Expected a CircuitOpenPostmarkException");
+			} catch(CircuitOpenPostmarkException e) {
+				assertThat(e.getRetryAfterMillis(), greaterThan(0L));
+			}
+			assertThat(server.getRequestCount(), is(4L));
+
+			server.clearFaults();
+			Thread.sleep(250);
+			assertThat(client.send(message).isSuccess(), is(true));
+			assertThat(client.send(message).isSuccess(), is(true));
+			assertThat(client.getCircuitBreaker().getState(), is(CircuitBreaker.State.CLOSED));
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+}
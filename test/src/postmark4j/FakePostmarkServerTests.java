@@ -0,0 +1,204 @@
+package postmark4j;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import postmark4j.attachment.ByteArrayAttachmentSource;
+import postmark4j.attachment.EncodedAttachmentSource;
+import postmark4j.data.BatchResult;
+import postmark4j.data.FanOutMessage;
+import postmark4j.data.FanOutResult;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkAttachment;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.InternalServerErrorPostmarkException;
+import postmark4j.exceptions.UnauthorizedPostmarkException;
+import postmark4j.exceptions.UnknownPostmarkException;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * @author Erik Beeson
+ */
+public class FakePostmarkServerTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+
+	@BeforeClass
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.setServerToken("server-token");
+		server.start();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterClass
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@AfterMethod
+	public void clearFaults() {
+		server.clearFaults();
+		server.setLatency(LatencyDistribution.none());
+	}
+
+	@Test
+	public void sendMessage() throws Exception {
+		PostmarkResponse response = client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		assertThat(response.getMessageId(), notNullValue());
+		assertThat(response.getSubmittedAt(), notNullValue());
+		assertThat(response.getTo(), is("receiver@example.com"));
+	}
+
+	@Test
+	public void sendBatch() throws Exception {
+		PostmarkMessage[] messages = new PostmarkMessage[3];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		PostmarkResponse[] responses = client.send(messages);
+		assertThat(responses.length, is(3));
+		assertThat(responses[2].getTo(), is("receiver2@example.com"));
+	}
+
+	@Test
+	public void splitsLargeBatches() throws Exception {
+		PostmarkMessage[] messages = new PostmarkMessage[1234];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		long requests = server.getRequestCount();
+		BatchResult result = client.sendBatch(messages);
+		assertThat(server.getRequestCount() - requests, is(3L));
+		assertThat(result.size(), is(1234));
+		assertThat(result.isSuccess(), is(true));
+		for(BatchResult.Entry entry : result) {
+			assertThat(entry.getResponse().getTo(), is("receiver" + entry.getIndex() + "@example.com"));
+			assertThat(entry.getMessage(), is(messages[entry.getIndex()]));
+		}
+		assertThat(client.send(messages)[1233].getTo(), is("receiver1233@example.com"));
+	}
+
+	@Test
+	public void splitsBatchesBySize() throws Exception {
+		PostmarkMessage small = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+		small.setTextBody("x");
+		PostmarkMessage large = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+		large.setTextBody(new String(new char[1000]).replace('\0', 'x'));
+		PostmarkAddress from = new PostmarkAddress("sender@example.com");
+		// room for a large message and a small one
+		long limit = PostmarkJson.MESSAGE.length(new PostmarkMessage(from, large)) + PostmarkJson.MESSAGE.length(new PostmarkMessage(from, small)) + 10;
+
+		assertThat(client.splitBatch(new PostmarkMessage[]{small, small}, 500, limit), nullValue());
+		// the small messages fill the space left by the large ones
+		int[][] parts = client.splitBatch(new PostmarkMessage[]{large, large, small, small, large}, 500, limit);
+		assertThat(parts.length, is(3));
+		assertThat(parts[0], is(new int[]{0, 2}));
+		assertThat(parts[1], is(new int[]{1, 3}));
+		assertThat(parts[2], is(new int[]{4}));
+		assertThat(client.splitBatch(new PostmarkMessage[]{small, small, small}, 2, limit).length, is(2));
+	}
+
+	@Test
+	public void fansOutToEveryRecipient() throws Exception {
+		List<PostmarkAddress> recipients = new ArrayList<PostmarkAddress>();
+		for(int i = 0; i < 1050; i++) {
+			recipients.add(new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		PostmarkMessage alert = new PostmarkMessage("Alert", new PostmarkAddress("oncall@example.com"));
+		alert.setTextBody("Disk full");
+		alert.addAttachment(new PostmarkAttachment(new ByteArrayAttachmentSource("details".getBytes("UTF-8")), "text/plain", "details.txt"));
+
+		FanOutMessage fanOut = new FanOutMessage(alert, recipients);
+		FanOutResult result = client.sendFanOut(fanOut);
+		assertThat(result.size(), is(1050));
+		assertThat(result.isSuccess(), is(true));
+		for(FanOutResult.Entry entry : result) {
+			assertThat(entry.getResponse().getTo(), is(entry.getRecipient().getEmail()));
+		}
+
+		fanOut.setRecipientsPerMessage(20);
+		PostmarkMessage[] copies = fanOut.expand();
+		assertThat(copies.length, is(53));
+		assertThat(copies[52].getTo().size(), is(10));
+		// one encoding of the attachment, shared by every copy
+		assertThat(copies[52].getAttachments().get(0), is(sameInstance(copies[0].getAttachments().get(0))));
+		assertThat(copies[52].getAttachments().get(0).getSource(), is(instanceOf(EncodedAttachmentSource.class)));
+
+		server.setInactiveRecipientRate(1);
+		result = client.sendFanOut(fanOut);
+		assertThat(result.getFailureCount(), is(1050));
+		assertThat(result.getFailedRecipients(), is(recipients));
+		assertThat(result.get(1049).getError().getErrorCode(), is(406));
+	}
+
+	@Test
+	public void delaysResponses() throws Exception {
+		server.setLatency(LatencyDistribution.fixed(50));
+		long start = System.nanoTime();
+		client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		assertThat((System.nanoTime() - start) / 1000000, greaterThanOrEqualTo(50L));
+	}
+
+	@Test(expectedExceptions = UnauthorizedPostmarkException.class)
+	public void rejectsWrongToken() throws Exception {
+		PostmarkClient wrongToken = new PostmarkClient("wrong-token", new PostmarkAddress("sender@example.com"), false, server.createClientConfig());
+		try {
+			wrongToken.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		} finally {
+			wrongToken.close();
+		}
+	}
+
+	@Test
+	public void rejectsInvalidMessage() throws Exception {
+		server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+		try {
+			client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+			throw new AssertionError("Expected an UnprocessableEntityPostmarkException");
+		} catch(UnprocessableEntityPostmarkException e) {
+			assertThat(e.getErrorCode(), is(406));
+		}
+	}
+
+	@Test
+	public void injectsFaults() throws Exception {
+		server.failNext(FakePostmarkServer.Fault.INTERNAL_SERVER_ERROR);
+		server.failNext(FakePostmarkServer.Fault.SERVICE_UNAVAILABLE);
+		PostmarkMessage message = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+		try {
+			client.send(message);
+			throw new AssertionError("Expected an InternalServerErrorPostmarkException");
+		} catch(InternalServerErrorPostmarkException expected) {
+			// first fault
+		}
+		try {
+			client.send(message);
+			throw new AssertionError("Expected an UnknownPostmarkException");
+		} catch(UnknownPostmarkException e) {
+			assertThat(e.getStatus(), is(503));
+		}
+		assertThat(client.send(message).getTo(), is("receiver@example.com"));
+	}
+}
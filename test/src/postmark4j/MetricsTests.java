@@ -0,0 +1,139 @@
+package postmark4j;
+
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.exceptions.InternalServerErrorPostmarkException;
+import postmark4j.metrics.Histogram;
+import postmark4j.metrics.InMemoryMetrics;
+import postmark4j.metrics.RequestTiming;
+import postmark4j.metrics.Tracer;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Erik Beeson
+ */
+public class MetricsTests {
+	@Test
+	public void histogramPercentiles() {
+		Histogram histogram = new Histogram();
+		for(long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertThat(histogram.getCount(), is(100000L));
+		assertThat(histogram.getMax(), is(100000000L));
+		// within the 3% the buckets allow
+		assertThat((double) histogram.getP50(), closeTo(50000000, 1500000));
+		assertThat((double) histogram.getP99(), closeTo(99000000, 3000000));
+		assertThat((double) histogram.getP999(), closeTo(99900000, 3000000));
+		assertThat(histogram.getValueAtPercentile(100), is(100000000L));
+
+		Histogram small = new Histogram();
+		small.record(3);
+		small.record(7);
+		assertThat(small.getP50(), is(3L));
+		assertThat(small.getP99(), is(7L));
+		assertThat(new Histogram().getP99(), is(0L));
+	}
+
+	@Test
+	public void recordsRequests() throws Exception {
+		FakePostmarkServer server = new FakePostmarkServer();
+		server.start();
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		config.setMetricsListener(metrics);
+		PostmarkClient client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		try {
+			client.send(new PostmarkMessage("Single", new PostmarkAddress("receiver@example.com")));
+
+			server.setInactiveRecipientRate(1);
+			PostmarkMessage[] batch = new PostmarkMessage[5];
+			for(int i = 0; i < batch.length; i++) {
+				batch[i] = new PostmarkMessage("Batch", new PostmarkAddress("receiver" + i + "@example.com"));
+			}
+			client.send(batch);
+
+			server.clearFaults();
+			server.failNext(FakePostmarkServer.Fault.INTERNAL_SERVER_ERROR);
+			try {
+				client.send(new PostmarkMessage("Failed", new PostmarkAddress("receiver@example.com")));
+				throw new AssertionError("Expected an InternalServerErrorPostmarkException");
+			} catch(InternalServerErrorPostmarkException expected) {
+				// counted by status
+			}
+
+			assertThat(metrics.getLatency(PostmarkClient.URL_SEND).getCount(), is(2L));
+			assertThat(metrics.getLatency(PostmarkClient.URL_BATCH).getCount(), is(1L));
+			assertThat(metrics.getLatency(PostmarkClient.URL_BATCH).getP50(), greaterThan(0L));
+			assertThat(metrics.getStatusCounts().get(200), is(2L));
+			assertThat(metrics.getStatusCounts().get(500), is(1L));
+			assertThat(metrics.getErrorCodeCounts().get(406), is(5L));
+			assertThat(metrics.getBatchSizes().getMax(), is(5L));
+			assertThat(metrics.getRequestBytes(), greaterThan(0L));
+			assertThat(metrics.getResponseBytes(), greaterThan(0L));
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void tracesRequests() throws Exception {
+		FakePostmarkServer server = new FakePostmarkServer();
+		server.start();
+		server.setLatency(LatencyDistribution.fixed(20));
+		final List<RequestTiming> timings = new CopyOnWriteArrayList<RequestTiming>();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		config.setSlowRequestMillis(10);
+		config.setTracer(new Tracer() {
+			public Span startSpan(String endpoint, int messages) {
+				final String traceId = "trace-" + timings.size();
+				return new Span() {
+					public String getTraceId() {
+						return traceId;
+					}
+
+					public void end(RequestTiming timing, Throwable error) {
+						timings.add(timing);
+					}
+				};
+			}
+		});
+		PostmarkClient client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		try {
+			client.send(new PostmarkMessage("First", new PostmarkAddress("receiver@example.com")));
+			client.send(new PostmarkMessage("Second", new PostmarkAddress("receiver@example.com")));
+
+			assertThat(timings.size(), is(2));
+			assertThat(server.getLastRequestHeader("X-Trace-Id"), is("trace-1"));
+
+			RequestTiming first = timings.get(0);
+			assertThat(first.getEndpoint(), is(PostmarkClient.URL_SEND));
+			assertThat(first.getStatus(), is(200));
+			assertThat(first.getTraceId(), is("trace-0"));
+			assertThat(first.isConnectionReused(), is(false));
+			assertThat(first.getServerNanos(), greaterThanOrEqualTo(20000000L));
+			assertThat(first.getSerializationNanos(), greaterThan(0L));
+			assertThat(first.getTotalNanos(), greaterThanOrEqualTo(first.getConnectNanos() + first.getServerNanos()));
+			// the second request reuses the pooled connection
+			assertThat(timings.get(1).isConnectionReused(), is(true));
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+}
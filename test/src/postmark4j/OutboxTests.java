@@ -0,0 +1,188 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.outbox.OutboxConfig;
+import postmark4j.outbox.OutboxListener;
+import postmark4j.outbox.PostmarkOutbox;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Erik Beeson
+ */
+public class OutboxTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+	private File directory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(RetryPolicy.none());
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		directory = Files.createTempDirectory("postmark4j-outbox").toFile();
+	}
+
+	@AfterMethod
+	public void tearDown() {
+		client.close();
+		server.close();
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static PostmarkMessage createMessage(int i) {
+		return new PostmarkMessage("Message " + i, new PostmarkAddress("receiver" + i + "@example.com"));
+	}
+
+	@Test
+	public void sendsAndAcknowledges() throws Exception {
+		final List<PostmarkResponse> responses = new CopyOnWriteArrayList<PostmarkResponse>();
+		PostmarkOutbox outbox = new PostmarkOutbox(client, directory);
+		outbox.addListener(new OutboxListener() {
+			public void onAcknowledged(long sequence, PostmarkResponse response) {
+				responses.add(response);
+			}
+		});
+		outbox.start();
+		for(int i = 0; i < 50; i++) {
+			outbox.enqueue(createMessage(i));
+		}
+		assertThat(outbox.awaitDrained(10, TimeUnit.SECONDS), is(true));
+		outbox.close();
+
+		assertThat(outbox.getSentCount(), is(50L));
+		assertThat(responses.size(), is(50));
+		assertThat(responses.get(0).isSuccess(), is(true));
+		assertThat(server.getMessageCount(), is(50L));
+
+		// nothing is sent again
+		outbox = new PostmarkOutbox(client, directory);
+		assertThat(outbox.getPendingCount(), is(0));
+		outbox.close();
+	}
+
+	@Test
+	public void replaysUnacknowledgedMessages() throws Exception {
+		PostmarkOutbox outbox = new PostmarkOutbox(client, directory);
+		long[] sequences = outbox.enqueue(createMessage(1), createMessage(2), createMessage(3));
+		outbox.close();
+		assertThat(server.getRequestCount(), is(0L));
+
+		outbox = new PostmarkOutbox(client, directory);
+		assertThat(outbox.getPendingCount(), is(3));
+		// sequence numbers keep counting from where they left off
+		assertThat(outbox.enqueue(createMessage(4)), is(sequences[2] + 1));
+		outbox.start();
+		assertThat(outbox.awaitDrained(10, TimeUnit.SECONDS), is(true));
+		outbox.close();
+		assertThat(server.getMessageCount(), is(4L));
+	}
+
+	@Test
+	public void retriesFailuresAndCompactsSegments() throws Exception {
+		OutboxConfig config = new OutboxConfig();
+		config.setSegmentSize(4096);
+		config.setBatchSize(20);
+		config.setRetryBackoffMillis(10);
+		PostmarkOutbox outbox = new PostmarkOutbox(client, directory, config);
+		for(int i = 0; i < 100; i++) {
+			outbox.enqueue(createMessage(i));
+		}
+		assertThat(outbox.getSegmentCount() > 1, is(true));
+
+		server.failNext(FakePostmarkServer.Fault.SERVICE_UNAVAILABLE);
+		server.failNext(FakePostmarkServer.Fault.DISCONNECT);
+		server.setInactiveRecipientRate(0.1);
+		outbox.start();
+		assertThat(outbox.awaitDrained(10, TimeUnit.SECONDS), is(true));
+
+		assertThat(outbox.getSentCount() + outbox.getRejectedCount(), is(100L));
+		assertThat(server.getMessageCount(), is(outbox.getSentCount()));
+		assertThat(outbox.getPendingCount(), is(0));
+		assertThat(outbox.getSegmentCount(), is(1));
+		outbox.close();
+	}
+
+	@Test
+	public void acknowledgesMessagesRejectedWithTheirBatch() throws Exception {
+		final Map<Long, PostmarkResponse> responses = new ConcurrentHashMap<Long, PostmarkResponse>();
+		PostmarkOutbox outbox = new PostmarkOutbox(client, directory);
+		outbox.addListener(new OutboxListener() {
+			public void onAcknowledged(long sequence, PostmarkResponse response) {
+				responses.put(sequence, response);
+			}
+		});
+		long[] sequences = outbox.enqueue(createMessage(0), createMessage(1), createMessage(2), createMessage(3));
+
+		// the whole batch, then its first half, then the first message alone
+		server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+		server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+		server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+		outbox.start();
+		assertThat(outbox.awaitDrained(10, TimeUnit.SECONDS), is(true));
+		outbox.close();
+
+		assertThat(outbox.getRejectedCount(), is(1L));
+		assertThat(outbox.getSentCount(), is(3L));
+		assertThat(outbox.getRequestCount(), is(5L));
+		assertThat(responses.get(sequences[0]).getErrorCode(), is(406));
+		for(int i = 1; i < sequences.length; i++) {
+			assertThat(responses.get(sequences[i]).isSuccess(), is(true));
+		}
+		assertThat(server.getMessageCount(), is(3L));
+		assertThat(outbox.getPendingCount(), is(0));
+	}
+
+	@Test
+	public void ignoresTornWrites() throws Exception {
+		PostmarkOutbox outbox = new PostmarkOutbox(client, directory);
+		outbox.enqueue(createMessage(1), createMessage(2));
+		outbox.close();
+
+		// garbage after the last record, as if the JVM died in the middle of a write
+		File[] files = directory.listFiles();
+		assertThat(files.length, is(1));
+		RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+		try {
+			raf.seek(8192);
+			raf.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+		} finally {
+			raf.close();
+		}
+
+		outbox = new PostmarkOutbox(client, directory);
+		assertThat(outbox.getPendingCount(), is(2));
+		outbox.enqueue(createMessage(3));
+		outbox.close();
+
+		outbox = new PostmarkOutbox(client, directory);
+		assertThat(outbox.getPendingCount(), is(3));
+		outbox.close();
+	}
+}
@@ -0,0 +1,151 @@
+package postmark4j;
+
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.resilience.AdaptiveConcurrencyLimit;
+import postmark4j.resilience.RateLimitExceededException;
+import postmark4j.resilience.RateLimitPolicy;
+import postmark4j.resilience.RateLimiter;
+import postmark4j.resilience.TokenBucket;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * @author Erik Beeson
+ */
+public class RateLimiterTests {
+	@Test
+	public void tokenBucketLimitsBursts() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		for(int i = 0; i < 5; i++) {
+			assertThat(bucket.tryAcquire(1), is(true));
+		}
+		assertThat(bucket.tryAcquire(1), is(false));
+		// a large request puts the bucket in debt and reports the wait
+		assertThat(bucket.reserve(10), greaterThan(TimeUnit.MILLISECONDS.toNanos(900)));
+	}
+
+	@Test
+	public void blocksUntilRateAllows() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.setMessagesPerSecond(20);
+		policy.setAdaptiveConcurrency(false);
+		RateLimiter limiter = new RateLimiter(policy);
+		long start = System.nanoTime();
+		// 20 are available immediately, the next 10 take half a second
+		limiter.acquire(20).release(false);
+		limiter.acquire(10).release(false);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(400L));
+	}
+
+	@Test
+	public void rejectedRequestsDontRefillBuckets() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.setMessagesPerSecond(10);
+		policy.setRequestsPerSecond(1000);
+		policy.setAdaptiveConcurrency(false);
+		policy.setThrottlePolicy(RateLimitPolicy.ThrottlePolicy.FAIL);
+		RateLimiter limiter = new RateLimiter(policy);
+		int sent = 0;
+		long start = System.nanoTime();
+		while(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(300)) {
+			try {
+				limiter.acquire(1).release(false);
+				sent++;
+			} catch(RateLimitExceededException e) {
+				// retry straight away
+			}
+		}
+		// the burst of 10, plus about 3 more over 300ms
+		assertThat(sent, lessThan(16));
+		assertThat(sent, greaterThanOrEqualTo(10));
+	}
+
+	@Test
+	public void concurrencyTimeoutsRefundTokens() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.setMessagesPerSecond(10);
+		policy.setInitialConcurrency(1);
+		policy.setMaxConcurrency(1);
+		policy.setMaxWaitMillis(50);
+		RateLimiter limiter = new RateLimiter(policy);
+		RateLimiter.Permit held = limiter.acquire(1);
+		try {
+			limiter.acquire(5);
+			throw new AssertionError("Expected a RateLimitExceededException");
+		} catch(RateLimitExceededException expected) {
+			// timed out waiting for the concurrency limit
+		}
+		held.release(false);
+		// the 5 messages were given back, so 9 are still available without waiting
+		limiter.acquire(9).release(false);
+	}
+
+	@Test
+	public void concurrencyLimitIsAdditiveIncreaseMultiplicativeDecrease() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, 0.5);
+		long[] tickets = new long[4];
+		for(int i = 0; i < 4; i++) {
+			tickets[i] = limit.tryAcquire();
+		}
+		assertThat(limit.tryAcquire(), is(-1L));
+		// healthy responses while busy grow the limit by about one per limit's worth
+		for(long ticket : tickets) {
+			limit.release(ticket, false);
+		}
+		assertThat(limit.getLimit(), is(4));
+		for(int i = 0; i < 4; i++) {
+			tickets[i] = limit.tryAcquire();
+		}
+		// several failures from the same generation only back off once
+		for(long ticket : tickets) {
+			limit.release(ticket, true);
+		}
+		assertThat(limit.getLimit(), lessThan(4));
+		assertThat(limit.getLimit(), greaterThanOrEqualTo(2));
+	}
+
+	@Test
+	public void failsFastWhenThrottled() throws Exception {
+		FakePostmarkServer server = new FakePostmarkServer();
+		server.setLatency(LatencyDistribution.fixed(200));
+		server.start();
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.setInitialConcurrency(1);
+		policy.setMaxConcurrency(1);
+		policy.setThrottlePolicy(RateLimitPolicy.ThrottlePolicy.FAIL);
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRateLimitPolicy(policy);
+		PostmarkClient client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		try {
+			CompletableFuture<PostmarkResponse> first = client.sendAsync(new PostmarkMessage("First", new PostmarkAddress("receiver@example.com")));
+			while(client.getRateLimiter().getInFlight() == 0) {
+				Thread.sleep(1);
+			}
+			try {
+				client.sendAsync(new PostmarkMessage("Second", new PostmarkAddress("receiver@example.com"))).get();
+				throw new AssertionError("Expected a RateLimitExceededException");
+			} catch(ExecutionException e) {
+				assertThat(e.getCause(), instanceOf(RateLimitExceededException.class));
+			}
+			assertThat(first.get().isSuccess(), is(true));
+			assertThat(server.getRequestCount(), is(1L));
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.transport.ApacheTransport;
+import postmark4j.transport.Transport;
+import postmark4j.transport.TransportFactory;
+import postmark4j.transport.TransportRequest;
+import postmark4j.transport.TransportResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Sends batches whose results are handed to a {@link PostmarkResponseHandler}, through a transport that can reset
+ * the connection partway through reading a response.
+ *
+ * @author Erik Beeson
+ */
+public class ResponseHandlerTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+	private final AtomicInteger resetAfterBytes = new AtomicInteger(-1);
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		RetryPolicy policy = new RetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(policy);
+		config.setTransportFactory(new TransportFactory() {
+			public Transport createTransport(PostmarkClientConfig config) {
+				return new ResettingTransport(ApacheTransport.FACTORY.createTransport(config));
+			}
+		});
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	private static PostmarkMessage[] createMessages(int count) {
+		PostmarkMessage[] messages = new PostmarkMessage[count];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		return messages;
+	}
+
+	@Test
+	public void handlesResultsInOrder() throws Exception {
+		RecordingHandler handler = new RecordingHandler();
+		assertThat(client.sendBatch(createMessages(10), handler), is(10));
+		assertThat(handler.indexes.size(), is(10));
+		for(int i = 0; i < 10; i++) {
+			assertThat(handler.indexes.get(i), is(i));
+			assertThat(handler.responses.get(i).isSuccess(), is(true));
+			assertThat(handler.responses.get(i).getTo(), is("receiver" + i + "@example.com"));
+		}
+		assertThat(server.getRequestCount(), is(1L));
+	}
+
+	@Test
+	public void handlesResultsBeforeResponseIsRead() throws Exception {
+		// the connection resets after the first result, which has already been handled
+		resetAfterBytes.set(300);
+		RecordingHandler handler = new RecordingHandler();
+		try {
+			client.sendBatch(createMessages(10), handler);
+			throw new AssertionError("Expected a SocketException");
+		} catch(SocketException expected) {
+			// reset
+		}
+		assertThat(handler.indexes.size(), greaterThan(0));
+		assertThat(handler.indexes.size(), lessThan(10));
+		for(int i = 0; i < handler.indexes.size(); i++) {
+			assertThat(handler.indexes.get(i), is(i));
+		}
+		// resending would hand the same messages to the handler twice
+		assertThat(server.getRequestCount(), is(1L));
+	}
+
+	@Test
+	public void retriesBeforeResultsAreHandled() throws Exception {
+		resetAfterBytes.set(0);
+		RecordingHandler handler = new RecordingHandler();
+		assertThat(client.sendBatch(createMessages(10), handler), is(10));
+		for(int i = 0; i < 10; i++) {
+			assertThat(handler.indexes.get(i), is(i));
+		}
+		assertThat(server.getRequestCount(), is(2L));
+	}
+
+	@Test
+	public void splitsBatchesTooBigForOneRequest() throws Exception {
+		int count = PostmarkClient.MAX_BATCH_SIZE + 1;
+		RecordingHandler handler = new RecordingHandler();
+		assertThat(client.sendBatch(createMessages(count), handler), is(count));
+		assertThat(handler.indexes.size(), is(count));
+		for(int i = 0; i < count; i++) {
+			// messages of the same size fill the first request, so the indexes are in order
+			assertThat(handler.indexes.get(i), is(i));
+			assertThat(handler.responses.get(i).getTo(), is("receiver" + i + "@example.com"));
+		}
+		assertThat(server.getRequestCount(), is(2L));
+		assertThat(server.getMessageCount(), is((long) count));
+	}
+
+	private static class RecordingHandler implements PostmarkResponseHandler {
+		private final List<Integer> indexes = new ArrayList<Integer>();
+		private final List<PostmarkResponse> responses = new ArrayList<PostmarkResponse>();
+
+		public void handle(int index, PostmarkResponse response) {
+			indexes.add(index);
+			responses.add(response);
+		}
+	}
+
+	/**
+	 * Resets the connection of the next response once {@link #resetAfterBytes} of it have been read.
+	 */
+	private class ResettingTransport implements Transport {
+		private final Transport transport;
+
+		private ResettingTransport(Transport transport) {
+			this.transport = transport;
+		}
+
+		public TransportResponse execute(TransportRequest request) throws IOException {
+			final TransportResponse response = transport.execute(request);
+			final int limit = resetAfterBytes.getAndSet(-1);
+			if(limit < 0) {
+				return response;
+			}
+			return new TransportResponse() {
+				public int getStatus() {
+					return response.getStatus();
+				}
+
+				public InputStream getContent() throws IOException {
+					return new ResettingInputStream(response.getContent(), limit);
+				}
+
+				public String getCharset() {
+					return response.getCharset();
+				}
+
+				public void abort() {
+					response.abort();
+				}
+
+				public void close() {
+					response.close();
+				}
+			};
+		}
+
+		public void close() {
+			transport.close();
+		}
+	}
+
+	private static class ResettingInputStream extends FilterInputStream {
+		private int remaining;
+
+		private ResettingInputStream(InputStream in, int limit) {
+			super(in);
+			this.remaining = limit;
+		}
+
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining == 0) {
+				throw new SocketException("Connection reset");
+			}
+			int read = super.read(b, off, Math.min(len, remaining));
+			if(read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		public int available() throws IOException {
+			return Math.min(super.available(), remaining);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.data.BatchResult;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkError;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.InternalServerErrorPostmarkException;
+import postmark4j.exceptions.UnauthorizedPostmarkException;
+import postmark4j.resilience.RetryBudget;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * @author Erik Beeson
+ */
+public class RetryTests {
+	private FakePostmarkServer server;
+	private PostmarkClient client;
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		RetryPolicy policy = new RetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setRetryPolicy(policy);
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void retriesServerErrors() throws Exception {
+		server.failNext(FakePostmarkServer.Fault.INTERNAL_SERVER_ERROR);
+		server.failNext(FakePostmarkServer.Fault.DISCONNECT);
+		PostmarkResponse response = client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		assertThat(response.isSuccess(), is(true));
+		assertThat(server.getRequestCount(), is(3L));
+	}
+
+	@Test(expectedExceptions = InternalServerErrorPostmarkException.class)
+	public void givesUpAfterMaxAttempts() throws Exception {
+		for(int i = 0; i < 3; i++) {
+			server.failNext(FakePostmarkServer.Fault.INTERNAL_SERVER_ERROR);
+		}
+		try {
+			client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		} finally {
+			assertThat(server.getRequestCount(), is(3L));
+		}
+	}
+
+	@Test(expectedExceptions = UnauthorizedPostmarkException.class)
+	public void doesNotRetryUnauthorized() throws Exception {
+		server.failNext(FakePostmarkServer.Fault.UNAUTHORIZED);
+		try {
+			client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		} finally {
+			assertThat(server.getRequestCount(), is(1L));
+		}
+	}
+
+	@Test
+	public void retriesOnlyFailedMessagesInBatch() throws Exception {
+		server.setMaintenanceRate(0.5);
+		PostmarkMessage[] messages = new PostmarkMessage[20];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		PostmarkResponse[] responses = client.send(messages);
+		assertThat(responses.length, is(20));
+		long succeeded = 0;
+		for(int i = 0; i < responses.length; i++) {
+			if(responses[i].isSuccess()) {
+				assertThat(responses[i].getTo(), is("receiver" + i + "@example.com"));
+				succeeded++;
+			} else {
+				assertThat(responses[i].getErrorCode(), is(PostmarkError.MAINTENANCE));
+			}
+		}
+		// no message was accepted twice
+		assertThat(server.getMessageCount(), is(succeeded));
+		assertThat(server.getRequestCount(), lessThan(4L));
+	}
+
+	@Test
+	public void batchResultPairsMessagesWithResults() throws Exception {
+		server.setInactiveRecipientRate(0.3);
+		PostmarkMessage[] messages = new PostmarkMessage[20];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		BatchResult result = client.sendBatch(messages);
+		assertThat(result.size(), is(20));
+		for(BatchResult.Entry entry : result) {
+			assertThat(entry.getMessage(), is(messages[entry.getIndex()]));
+			assertThat(entry.getAttempts(), is(1));
+			if(entry.isSuccess()) {
+				assertThat(entry.getResponse().getTo(), is("receiver" + entry.getIndex() + "@example.com"));
+				assertThat(entry.getError() == null, is(true));
+			} else {
+				assertThat(entry.getError().getErrorCode(), is(406));
+			}
+		}
+		assertThat(result.getFailedMessages().length, is(result.getFailureCount()));
+		assertThat((long) result.getSuccessCount(), is(server.getMessageCount()));
+		// inactive recipients aren't worth resubmitting
+		assertThat(server.getRequestCount(), is(1L));
+	}
+
+	@Test
+	public void resubmitsOnlyRetryableFailures() throws Exception {
+		server.setMaintenanceRate(1);
+		PostmarkMessage[] messages = {
+				new PostmarkMessage("Test", new PostmarkAddress("receiver1@example.com")),
+				new PostmarkMessage("Test", new PostmarkAddress("receiver2@example.com"))
+		};
+		BatchResult result = client.sendBatch(messages);
+		assertThat(result.getFailureCount(), is(2));
+		assertThat(result.get(0).getAttempts(), is(3));
+		assertThat(result.get(1).getError().getErrorCode(), is(PostmarkError.MAINTENANCE));
+		assertThat(server.getRequestCount(), is(3L));
+
+		client.getConfig().getRetryPolicy().setResubmitFailedMessages(false);
+		result = client.sendBatch(messages);
+		assertThat(result.get(0).getAttempts(), is(1));
+		assertThat(server.getRequestCount(), is(4L));
+	}
+
+	@Test
+	public void backoffHasFullJitter() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.setInitialBackoffMillis(100);
+		policy.setMaxBackoffMillis(1000);
+		Random random = new Random(1);
+		for(int i = 0; i < 100; i++) {
+			assertThat(policy.getBackoffMillis(1, random), lessThan(100L));
+			assertThat(policy.getBackoffMillis(10, random), lessThan(1000L));
+		}
+	}
+
+	@Test
+	public void budgetLimitsRetries() {
+		RetryBudget budget = new RetryBudget(0.5, 0, 2);
+		assertThat(budget.tryAcquire(), is(true));
+		assertThat(budget.tryAcquire(), is(true));
+		assertThat(budget.tryAcquire(), is(false));
+		budget.recordRequest();
+		budget.recordRequest();
+		assertThat(budget.tryAcquire(), is(true));
+		assertThat(budget.tryAcquire(), is(false));
+	}
+}
@@ -2,20 +2,44 @@ package postmark4j;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.StringUtils;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
 import org.testng.annotations.Test;
+import postmark4j.attachment.ByteArrayAttachmentSource;
+import postmark4j.attachment.FileAttachmentSource;
+import postmark4j.data.FrozenMessage;
 import postmark4j.data.PostmarkAddress;
 import postmark4j.data.PostmarkAttachment;
+import postmark4j.data.PostmarkError;
 import postmark4j.data.PostmarkMessage;
 import postmark4j.data.PostmarkResponse;
+import postmark4j.http.JsonStreamEntity;
 import postmark4j.jsonio.ISODateDeserializer;
+import postmark4j.jsonio.ISODateParser;
 import postmark4j.jsonio.PostmarkAddressListSerializer;
 import postmark4j.jsonio.PostmarkAddressSerializer;
+import postmark4j.jsonio.PostmarkAttachmentSerializer;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.jsonio.Utf8Writer;
+import postmark4j.template.Template;
+import postmark4j.transport.JsonBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 
 /**
@@ -83,6 +107,7 @@ public class SerializationTests {
 	private static final Gson gson = new GsonBuilder()
 			.registerTypeAdapter(PostmarkAddress.class, new PostmarkAddressSerializer())
 			.registerTypeAdapter(PostmarkAddressListSerializer.TYPE, new PostmarkAddressListSerializer())
+			.registerTypeAdapter(PostmarkAttachment.class, new PostmarkAttachmentSerializer())
 			.registerTypeAdapter(Date.class, new ISODateDeserializer())
 			.disableHtmlEscaping()
 			.create();
@@ -111,6 +136,168 @@ public class SerializationTests {
 		assertThat(gson.toJson(message), is(SERIALIZED_MESSAGE_WITH_ATTACHMENTS));
 	}
 
+	@Test
+	public void streamsRequestEntity() throws IOException {
+		PostmarkMessage first = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "R\u00e9sum\u00e9 \u2713", new PostmarkAddress("receiver1@example.com"));
+		first.setTextBody("Hello");
+		first.addAttachment(new PostmarkAttachment(new File("test/attachments/readme.txt"), "text/plain"));
+		PostmarkMessage second = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Test", new PostmarkAddress("receiver2@example.com"));
+		second.setHtmlBody("<b>Hello</b>");
+		PostmarkMessage[] messages = {first, second};
+		byte[] expected = PostmarkJson.toJson(messages).getBytes(StandardCharsets.UTF_8);
+
+		PostmarkClient client = new PostmarkClient("server-token");
+		try {
+			JsonBody body = client.createBody(messages, true);
+			JsonStreamEntity entity = new JsonStreamEntity(body);
+			assertThat(entity.isChunked(), is(true));
+			assertThat(entity.getContentLength(), is(-1L));
+			assertThat(entity.getContentType().getValue(), is(JsonBody.CONTENT_TYPE));
+			assertThat(entity.isRepeatable(), is(true));
+			// written again for every attempt
+			for(int i = 0; i < 2; i++) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				entity.writeTo(out);
+				assertThat(out.toByteArray(), is(expected));
+				assertThat(body.getBytesWritten(), is((long) expected.length));
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void writeMessage() throws IOException {
+		PostmarkMessage message = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Test", new PostmarkAddress("receiver@example.com"));
+		message.setReplyTo(new PostmarkAddress("reply@example.com"));
+		message.addCc(new PostmarkAddress("copied@example.com"));
+		message.addBcc(new PostmarkAddress("blank-copied@example.com"));
+		message.setTag("Invitation");
+		message.setHtmlBody("<b>Hello</b>");
+		message.setTextBody("Hello");
+		message.addHeader("CUSTOM-HEADER", "value");
+		assertThat(PostmarkJson.toJson(message), is(gson.toJson(message)));
+		assertThat(PostmarkJson.toJson(message), is(SERIALIZED_MESSAGE));
+	}
+
+	@Test
+	public void writeBatchMessages() throws IOException {
+		PostmarkMessage message1 = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Postmark test #1", new PostmarkAddress("receiver1@example.com"));
+		message1.setHtmlBody("<html><body><strong>Hello</strong> dear Postmark user.</body></html>");
+		PostmarkMessage message2 = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Postmark test #2", new PostmarkAddress("receiver2@example.com"));
+		message2.setHtmlBody("<html><body><strong>Hello</strong> dear Postmark user.</body></html>");
+		assertThat(PostmarkJson.toJson(message1, message2), is(SERIALIZED_BATCH_MESSAGES));
+	}
+
+	@Test
+	public void writeEscapedStrings() throws IOException {
+		PostmarkMessage message = new PostmarkMessage(new PostmarkAddress("Sender \"Quoted\" Name", "sender@example.com"), "Tab\tand\nnewline", new PostmarkAddress("receiver@example.com"), new PostmarkAddress("receiver2@example.com"));
+		message.setTextBody("Back\\slash \u0001 \u00e9");
+		assertThat(PostmarkJson.toJson(message), is(gson.toJson(message)));
+	}
+
+	@Test
+	public void writeUtf8() throws IOException {
+		String text = "ASCII \u00e9 \u20ac \ud83d\ude00 lone \ud83d and \ude00 end";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer writer = new Utf8Writer(bytes, 16);
+		for(int i = 0; i < text.length(); i += 5) {
+			writer.write(text, i, Math.min(5, text.length() - i));
+		}
+		writer.writeUtf8(new byte[]{'!'}, 0, 1);
+		writer.flush();
+		assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_8), is(new String((text + "!").getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void messageLength() throws IOException {
+		PostmarkMessage message = new PostmarkMessage(new PostmarkAddress("Sender \"Quoted\" Name", "sender@example.com"), "Tab\tand \u00e9 \u20ac \ud83d\ude00", new PostmarkAddress("receiver@example.com"));
+		message.setTextBody("Back\\slash \u0001");
+		message.addHeader("X-Header", "value");
+		message.addAttachment(new PostmarkAttachment(new ByteArrayAttachmentSource(new byte[1000]), "application/pdf", "readme.pdf"));
+		message.addAttachment(new PostmarkAttachment(new ByteArrayAttachmentSource(new byte[1001]), "application/pdf", "readme2.pdf"));
+		assertThat(PostmarkJson.MESSAGE.length(message), is((long) PostmarkJson.toJsonBytes(message).length));
+		assertThat(PostmarkJson.MESSAGE.length(message.freeze()), is((long) PostmarkJson.toJsonBytes(message).length));
+		assertThat(PostmarkJson.MESSAGE.maxLength(message, null), greaterThanOrEqualTo(PostmarkJson.MESSAGE.length(message)));
+
+		// every character escaped
+		PostmarkMessage escaped = new PostmarkMessage(new PostmarkAddress("\u0001\u0002", "sender@example.com"), "Subject \u0001\u0002\u0003", new PostmarkAddress("\u0001", "receiver@example.com"));
+		escaped.setTextBody("\u0001\u0002\u0003\u0004");
+		escaped.addHeader("\u0001", "\u0002");
+		assertThat(PostmarkJson.MESSAGE.maxLength(escaped, null), greaterThanOrEqualTo(PostmarkJson.MESSAGE.length(escaped)));
+		PostmarkMessage withoutFrom = new PostmarkMessage("Subject", new PostmarkAddress("receiver@example.com"));
+		assertThat(PostmarkJson.MESSAGE.maxLength(withoutFrom, new PostmarkAddress("\u0001", "sender@example.com")), greaterThanOrEqualTo(PostmarkJson.MESSAGE.length(new PostmarkMessage(new PostmarkAddress("\u0001", "sender@example.com"), withoutFrom))));
+
+		// templates aren't rendered to bound their output
+		message.setTextTemplate(Template.text("Hello {{name}}"));
+		assertThat(PostmarkJson.MESSAGE.maxLength(message, null), is(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void writeFrozenMessages() throws IOException {
+		PostmarkMessage message1 = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Postmark test #1", new PostmarkAddress("receiver1@example.com"));
+		message1.setHtmlBody("<html><body><strong>Hello</strong> dear Postmark user.</body></html>");
+		PostmarkMessage message2 = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Postmark test #2", new PostmarkAddress("receiver2@example.com"));
+		message2.setHtmlBody("<html><body><strong>Hello</strong> dear Postmark user.</body></html>");
+		FrozenMessage frozen1 = message1.freeze();
+
+		// changing the original doesn't change the frozen copy
+		message1.setTag("Changed");
+		assertThat(frozen1.getTag() == null, is(true));
+		assertThat(PostmarkJson.toJson(frozen1, message2.freeze()), is(SERIALIZED_BATCH_MESSAGES));
+		assertThat(PostmarkJson.toJson(frozen1, message2), is(SERIALIZED_BATCH_MESSAGES));
+		assertThat(frozen1.freeze() == frozen1, is(true));
+		assertThat(frozen1.getJsonLength(), is(frozen1.toJson().getBytes(StandardCharsets.UTF_8).length));
+
+		try {
+			frozen1.getTo().add(new PostmarkAddress("another@example.com"));
+			throw new AssertionError("Expected an UnsupportedOperationException");
+		} catch(UnsupportedOperationException expected) {
+			// immutable
+		}
+		try {
+			frozen1.setHtmlBody("Changed");
+			throw new AssertionError("Expected an UnsupportedOperationException");
+		} catch(UnsupportedOperationException expected) {
+			// immutable
+		}
+	}
+
+	@Test
+	public void toJsonLeavesCallersMessagesAlone() {
+		PostmarkClient client = new PostmarkClient(PostmarkClient.TEST_SERVER_TOKEN, new PostmarkAddress("sender@example.com"));
+		try {
+			PostmarkMessage message = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+			PostmarkMessage[] messages = {message};
+			assertThat(client.toJson(messages).contains("\"From\":\"sender@example.com\""), is(true));
+			assertThat(messages[0] == message, is(true));
+			assertThat(message.getFrom() == null, is(true));
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void writeLargeAttachment() throws IOException {
+		byte[] content = new byte[100001];
+		for(int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		PostmarkAttachment attachment = new PostmarkAttachment(new ByteArrayAttachmentSource(content), "application/octet-stream", "data.bin");
+		assertThat(attachment.getContent(), is(StringUtils.newStringUtf8(Base64.encodeBase64(content))));
+	}
+
+	@Test
+	public void reportsUnreadableAttachments() {
+		PostmarkAttachment attachment = new PostmarkAttachment(new FileAttachmentSource(new File("does-not-exist.pdf")), "application/pdf", "missing.pdf");
+		try {
+			attachment.getContent();
+			throw new AssertionError("Expected an UncheckedIOException");
+		} catch(UncheckedIOException e) {
+			assertThat(e.getCause(), instanceOf(IOException.class));
+		}
+	}
+
 	@Test
 	public void serializeBatchMessages() {
 		PostmarkMessage message1 = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Postmark test #1", new PostmarkAddress("receiver1@example.com"));
@@ -127,4 +314,68 @@ public class SerializationTests {
 		assertThat(response.getSubmittedAt(), is(new Date(1290790865179l)));
 		assertThat(response.getTo(), is("receiver@example.com"));
 	}
+
+	@Test
+	public void readResponse() throws IOException {
+		PostmarkResponse response = PostmarkJson.readResponse(new StringReader(SERIALIZED_RESPONSE));
+		assertThat(response, is(gson.fromJson(SERIALIZED_RESPONSE, PostmarkResponse.class)));
+		assertThat(response.getSubmittedAt(), is(new Date(1290790865179l)));
+	}
+
+	@Test
+	public void parseDates() throws IOException {
+		// Postmark's 7 digit fraction is kept to the nanosecond
+		assertThat(ISODateParser.parseInstant("2010-11-26T12:01:05.1794748-05:00"), is(Instant.parse("2010-11-26T17:01:05.179474800Z")));
+		assertThat(PostmarkJson.readResponse(new StringReader(SERIALIZED_RESPONSE)).getSubmittedAtInstant().getNano(), is(179474800));
+
+		DateTimeFormatter joda = ISODateTimeFormat.dateTimeParser();
+		String[] values = {"2010-11-26T12:01:05.1794748-05:00", "2010-11-26T12:01:05Z", "2012-02-29T23:59:59.9+0530",
+				"1969-12-31T23:59:59.999-01", "2010-11-26T12:01:05.1+00:00", "2010-11-26", "2010-W47-5T12:01"};
+		for(String value : values) {
+			assertThat(value, ISODateParser.parseMillis(value), is(joda.parseMillis(value)));
+		}
+	}
+
+	@Test
+	public void reportsUnparseableDates() {
+		for(String value : new String[]{"2010-02-30T12:01:05Z", "2010-11-26T25:01:05Z", "yesterday", ""}) {
+			try {
+				ISODateParser.parseDate(value);
+				throw new AssertionError("Expected an IllegalArgumentException for " + value);
+			} catch(IllegalArgumentException e) {
+				assertThat(e.getMessage(), containsString(value));
+			}
+		}
+		try {
+			gson.fromJson("{\"SubmittedAt\":\"soon\"}", PostmarkResponse.class);
+			throw new AssertionError("Expected a JsonParseException");
+		} catch(JsonParseException expected) {
+			// reported rather than read as null
+		}
+	}
+
+	@Test
+	public void readMessage() throws IOException {
+		PostmarkMessage message = PostmarkJson.readMessage(SERIALIZED_MESSAGE_WITH_ATTACHMENTS);
+		assertThat(message.getFrom(), is(new PostmarkAddress("sender@example.com")));
+		assertThat(message.getAttachments().size(), is(2));
+		assertThat(PostmarkJson.toJson(message), is(SERIALIZED_MESSAGE_WITH_ATTACHMENTS));
+	}
+
+	@Test
+	public void readMessageWithNamedAddresses() throws IOException {
+		PostmarkMessage message = new PostmarkMessage(new PostmarkAddress("Sender, Esq.", "sender@example.com"), "Test", new PostmarkAddress("Receiver One", "receiver1@example.com"), new PostmarkAddress("receiver2@example.com"));
+		message.setTextBody("Hello");
+		PostmarkMessage read = PostmarkJson.readMessage(PostmarkJson.toJson(message));
+		assertThat(read.getFrom(), is(message.getFrom()));
+		assertThat(read.getTo(), is(message.getTo()));
+		assertThat(read, is(message));
+	}
+
+	@Test
+	public void readError() throws IOException {
+		PostmarkError error = PostmarkJson.readError(new StringReader("{\"ErrorCode\": 406, \"Message\": \"Inactive recipient\", \"Extra\": [1, 2]}"));
+		assertThat(error.getErrorCode(), is(406));
+		assertThat(error.getMessage(), is("Inactive recipient"));
+	}
 }
@@ -0,0 +1,64 @@
+package postmark4j;
+
+import org.testng.annotations.Test;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.jsonio.PostmarkJson;
+import postmark4j.template.Template;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Erik Beeson
+ */
+public class TemplateTests {
+	@Test
+	public void rendersPlaceholders() {
+		Template html = Template.html("<p>Hello {{ name }}, {{{link}}}</p>{{missing}}");
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("name", "Tom & \"Jerry\" <3");
+		values.put("link", "<a href=\"#\">here</a>");
+		assertThat(html.render(values), is("<p>Hello Tom &amp; &quot;Jerry&quot; &lt;3, <a href=\"#\">here</a></p>"));
+		assertThat(html.getSlotNames(), is(Arrays.asList("name", "link", "missing")));
+
+		Template text = Template.text("Hello {{name}}.");
+		assertThat(text.render(values), is("Hello Tom & \"Jerry\" <3."));
+		assertThat(Template.text("No placeholders").render(null), is("No placeholders"));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void rejectsUnclosedPlaceholder() {
+		Template.html("Hello {{name");
+	}
+
+	@Test
+	public void serializesLikeRenderedBody() throws Exception {
+		Template html = Template.html("<html>\n\t<body class=\"main\">Hi {{name}}\\</body>\n</html>");
+		Template text = Template.text("Hi {{name}}\n");
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("name", "\"Zo\u00eb\"\n\u0001");
+
+		PostmarkMessage templated = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Test", new PostmarkAddress("receiver@example.com"));
+		templated.setHtmlTemplate(html);
+		templated.setTextTemplate(text);
+		templated.setTemplateValues(values);
+
+		PostmarkMessage rendered = new PostmarkMessage(new PostmarkAddress("sender@example.com"), "Test", new PostmarkAddress("receiver@example.com"));
+		rendered.setHtmlBody(html.render(values));
+		rendered.setTextBody(text.render(values));
+
+		assertThat(PostmarkJson.toJson(templated), is(PostmarkJson.toJson(rendered)));
+		assertThat(templated, is(rendered));
+		assertThat(PostmarkJson.readMessage(PostmarkJson.toJson(templated)), is(rendered));
+
+		// the copy made to apply a default "from" address keeps the template
+		PostmarkMessage copy = new PostmarkMessage(new PostmarkAddress("other@example.com"), templated);
+		assertThat(copy.getHtmlTemplate(), is(html));
+		assertThat(copy.getTextBody(), is(rendered.getTextBody()));
+	}
+}
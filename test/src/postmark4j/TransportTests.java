@@ -0,0 +1,226 @@
+package postmark4j;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import postmark4j.attachment.AttachmentSource;
+import postmark4j.attachment.ByteArrayAttachmentSource;
+import postmark4j.data.BatchResult;
+import postmark4j.data.PostmarkAddress;
+import postmark4j.data.PostmarkAttachment;
+import postmark4j.data.PostmarkMessage;
+import postmark4j.data.PostmarkResponse;
+import postmark4j.exceptions.UnprocessableEntityPostmarkException;
+import postmark4j.metrics.InMemoryMetrics;
+import postmark4j.resilience.RetryPolicy;
+import postmark4j.testing.FakePostmarkServer;
+import postmark4j.testing.LatencyDistribution;
+import postmark4j.transport.ApacheTransport;
+import postmark4j.transport.JavaHttpTransport;
+import postmark4j.transport.JsonBody;
+import postmark4j.transport.TransportRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Sends through {@link JavaHttpTransport}, which falls back to HTTP/1.1 against the fake server, and through a
+ * small {@link ApacheTransport} pool with many more concurrent sends than connections.
+ *
+ * @author Erik Beeson
+ */
+public class TransportTests {
+	private FakePostmarkServer server;
+	private InMemoryMetrics metrics;
+	private PostmarkClient client;
+
+	@BeforeMethod
+	public void startServer() throws IOException {
+		server = new FakePostmarkServer();
+		server.start();
+		RetryPolicy policy = new RetryPolicy();
+		policy.setInitialBackoffMillis(1);
+		metrics = new InMemoryMetrics();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setTransportFactory(JavaHttpTransport.FACTORY);
+		config.setRetryPolicy(policy);
+		config.setMetricsListener(metrics);
+		client = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+	}
+
+	@AfterMethod
+	public void stopServer() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void sendsOverJavaHttpClient() throws Exception {
+		PostmarkResponse response = client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		assertThat(response.isSuccess(), is(true));
+		assertThat(server.getLastRequestHeader("X-Postmark-Server-Token"), is("server-token"));
+
+		PostmarkMessage[] messages = new PostmarkMessage[10];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"));
+		}
+		BatchResult result = client.sendBatch(messages);
+		assertThat(result.isSuccess(), is(true));
+		assertThat(server.getMessageCount(), is(11L));
+		assertThat(metrics.getRequestBytes(), greaterThan(0L));
+		assertThat(metrics.getResponseBytes(), greaterThan(0L));
+	}
+
+	@Test
+	public void streamsBodiesOverJavaHttpClient() throws Exception {
+		PostmarkMessage message = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+		message.addAttachment(new PostmarkAttachment(new ByteArrayAttachmentSource(new byte[4 * 1024 * 1024]), "application/octet-stream", "large.bin"));
+		assertThat(client.send(message).isSuccess(), is(true));
+		assertThat(metrics.getRequestBytes(), greaterThan(4L * 1024 * 1024));
+
+		// a body that can't be written fails the request without sending it
+		PostmarkMessage broken = new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"));
+		broken.addAttachment(new PostmarkAttachment(new AttachmentSource() {
+			public InputStream openStream() throws IOException {
+				throw new IOException("Unreadable");
+			}
+
+			public long length() {
+				return 10;
+			}
+		}, "application/octet-stream", "broken.bin"));
+		try {
+			client.send(broken);
+			throw new AssertionError("Expected an IOException");
+		} catch(IOException e) {
+			assertThat(e.getMessage(), is("Unreadable"));
+		}
+		assertThat(server.getMessageCount(), is(1L));
+		assertThat(client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"))).isSuccess(), is(true));
+	}
+
+	@Test
+	public void retriesAndReportsErrors() throws Exception {
+		server.failNext(FakePostmarkServer.Fault.SERVICE_UNAVAILABLE);
+		server.failNext(FakePostmarkServer.Fault.DISCONNECT);
+		PostmarkResponse response = client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+		assertThat(response.isSuccess(), is(true));
+		assertThat(server.getRequestCount(), is(3L));
+
+		server.failNext(FakePostmarkServer.Fault.UNPROCESSABLE_ENTITY);
+		try {
+			client.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com")));
+			throw new AssertionError("Expected a 422.");
+		} catch(UnprocessableEntityPostmarkException e) {
+			assertThat(e.getErrorCode(), is(406));
+		}
+	}
+
+	@Test
+	public void closeStopsJavaHttpClient() throws Exception {
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setTransportFactory(JavaHttpTransport.FACTORY);
+		PostmarkClient http2 = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		JavaHttpTransport transport = (JavaHttpTransport) http2.getTransport();
+		assertThat(http2.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"))).isSuccess(), is(true));
+		Thread selector = null;
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(!before.contains(thread) && thread.getName().startsWith("HttpClient-") && thread.getName().endsWith("-SelectorManager")) {
+				selector = thread;
+			}
+		}
+		assertThat(selector != null, is(true));
+
+		http2.close();
+		// before Java 21 the selector stops, closing its connections, once the transport's HttpClient is collected
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while(selector.isAlive() && System.nanoTime() < deadline) {
+			System.gc();
+			selector.join(100);
+		}
+		assertThat(selector.isAlive(), is(false));
+		try {
+			transport.execute(new TransportRequest(server.getBaseURL() + PostmarkClient.URL_SEND, new JsonBody() {
+				protected void writeJson(Writer writer) throws IOException {
+					writer.write("{}");
+				}
+			}));
+			throw new AssertionError("Expected an IllegalStateException");
+		} catch(IllegalStateException expected) {
+			// transport closed
+		}
+	}
+
+	@Test
+	public void reusesPooledConnections() throws Exception {
+		PostmarkClient pooled = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, server.createClientConfig());
+		ApacheTransport transport = (ApacheTransport) pooled.getTransport();
+		try {
+			for(int i = 0; i < 5; i++) {
+				assertThat(pooled.send(new PostmarkMessage("Test", new PostmarkAddress("receiver@example.com"))).isSuccess(), is(true));
+			}
+			assertThat(server.getConnectionCount(), is(1));
+			assertThat(transport.getPooledConnectionCount(), is(1));
+		} finally {
+			pooled.close();
+		}
+		assertThat(transport.getPooledConnectionCount(), is(0));
+		// the pool is shut down, not just emptied
+		try {
+			transport.execute(new TransportRequest(server.getBaseURL() + PostmarkClient.URL_SEND, new JsonBody() {
+				protected void writeJson(Writer writer) throws IOException {
+					writer.write("{}");
+				}
+			}));
+			throw new AssertionError("Expected an IllegalStateException");
+		} catch(IllegalStateException expected) {
+			// connection pool shut down
+		}
+	}
+
+	@Test
+	public void queuesSendsForBoundedConnections() throws Exception {
+		server.setLatency(LatencyDistribution.fixed(5));
+		PostmarkClientConfig config = server.createClientConfig();
+		config.setMaxConnectionsPerRoute(2);
+		if(VirtualThreads.isSupported()) {
+			config.setVirtualThreads(true);
+		} else {
+			config.setAsyncThreads(50);
+			try {
+				config.setVirtualThreads(true);
+				throw new AssertionError("Virtual threads aren't available before Java 21.");
+			} catch(IllegalArgumentException expected) {
+				// run on platform threads instead
+			}
+		}
+		PostmarkClient pooled = new PostmarkClient("server-token", new PostmarkAddress("sender@example.com"), false, config);
+		try {
+			ApacheTransport transport = (ApacheTransport) pooled.getTransport();
+			List<CompletableFuture<PostmarkResponse>> futures = new ArrayList<CompletableFuture<PostmarkResponse>>();
+			for(int i = 0; i < 200; i++) {
+				futures.add(pooled.sendAsync(new PostmarkMessage("Test", new PostmarkAddress("receiver" + i + "@example.com"))));
+			}
+			int maxWaiting = 0;
+			for(CompletableFuture<PostmarkResponse> future : futures) {
+				maxWaiting = Math.max(maxWaiting, transport.getWaitingCount());
+				assertThat(future.get().isSuccess(), is(true));
+			}
+			assertThat(maxWaiting, greaterThan(0));
+			assertThat(server.getMessageCount(), is(200L));
+		} finally {
+			pooled.close();
+		}
+	}
+}